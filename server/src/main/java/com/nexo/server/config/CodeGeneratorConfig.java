@@ -0,0 +1,47 @@
+package com.nexo.server.config;
+
+import com.nexo.server.utils.CodeGenerator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Applies {@code app.node-id} to {@link CodeGenerator}. A random node id could collide
+ * with another instance's, so startup fails unless the id is set or only dev, local or
+ * test profiles are active.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class CodeGeneratorConfig {
+
+    private static final Set<String> DEV_PROFILES = Set.of("dev", "local", "test");
+
+    private final Environment environment;
+
+    @Value("${app.node-id:-1}")
+    private long nodeId;
+
+    @PostConstruct
+    public void configureNodeId() {
+        if (nodeId >= 0) {
+            CodeGenerator.setNodeId(nodeId);
+            log.info("Code generator node id set to {}", nodeId);
+            return;
+        }
+        String[] profiles = environment.getActiveProfiles();
+        // No active profile is how production starts, so the fallback needs an explicit dev profile
+        if (profiles.length == 0 || !Arrays.stream(profiles).allMatch(DEV_PROFILES::contains)) {
+            throw new IllegalStateException("app.node-id (APP_NODE_ID) must be set to a distinct value 0-"
+                    + "1023 per instance when running with profiles " + Arrays.toString(profiles));
+        }
+        log.warn("app.node-id is not set, using random node id {}. Set a distinct id per instance "
+                + "when running more than one node.", CodeGenerator.getNodeId());
+    }
+}
@@ -0,0 +1,105 @@
+package com.nexo.server.config;
+
+import com.nexo.server.dto.common.ConflictRetryStatsResponse;
+import com.nexo.server.exceptions.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies {@link RetryOnConflict}.
+ *
+ * <p>Ordered ahead of the transaction interceptor so every attempt gets its own
+ * transaction. Backoff doubles per attempt from {@code initial-backoff} up to
+ * {@code max-backoff}, with full jitter so colliding requests spread out instead of
+ * colliding again. Per-method counters are kept for the admin API.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@Slf4j
+public class ConflictRetryAspect {
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    @Value("${app.conflict-retry.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${app.conflict-retry.initial-backoff:PT0.02S}")
+    private Duration initialBackoff;
+
+    @Value("${app.conflict-retry.max-backoff:PT0.5S}")
+    private Duration maxBackoff;
+
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder recovered = new LongAdder();
+        final LongAdder exhausted = new LongAdder();
+        final LongAdder backoffMillis = new LongAdder();
+    }
+
+    @Around("@annotation(com.nexo.server.config.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Part of a larger unit of work; only the outermost transaction can be retried
+            return joinPoint.proceed();
+        }
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "."
+                + joinPoint.getSignature().getName();
+        Counters stats = counters.computeIfAbsent(method, m -> new Counters());
+        stats.calls.increment();
+
+        long backoffMs = initialBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = joinPoint.proceed();
+                if (attempt > 1) {
+                    stats.recovered.increment();
+                }
+                return result;
+            } catch (ConcurrencyFailureException e) {
+                stats.conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    stats.exhausted.increment();
+                    log.warn("{} still conflicting after {} attempts: {}", method, attempt, e.getMessage());
+                    throw new BusinessException("The data changed while your request was being processed, please try again");
+                }
+                long sleepMs = ThreadLocalRandom.current().nextLong(backoffMs + 1);
+                log.debug("{} hit a concurrent update on attempt {}, retrying in {} ms", method, attempt, sleepMs);
+                stats.backoffMillis.add(sleepMs);
+                Thread.sleep(sleepMs);
+                backoffMs = Math.min(backoffMs * 2, maxBackoff.toMillis());
+            }
+        }
+    }
+
+    public List<ConflictRetryStatsResponse> getStats() {
+        return counters.entrySet().stream()
+                .map(e -> ConflictRetryStatsResponse.builder()
+                        .method(e.getKey())
+                        .calls(e.getValue().calls.sum())
+                        .conflicts(e.getValue().conflicts.sum())
+                        .recovered(e.getValue().recovered.sum())
+                        .exhausted(e.getValue().exhausted.sum())
+                        .backoffMillis(e.getValue().backoffMillis.sum())
+                        .build())
+                .sorted(Comparator.comparing(ConflictRetryStatsResponse::getMethod))
+                .toList();
+    }
+}
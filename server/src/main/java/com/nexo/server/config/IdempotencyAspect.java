@@ -0,0 +1,214 @@
+package com.nexo.server.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexo.server.exceptions.BadRequestException;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.security.UserPrincipal;
+import com.nexo.server.services.IdempotencyStore;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Applies {@link Idempotent} to controller methods.
+ *
+ * <p>Keys are scoped to the authenticated user and request path. Duplicates arriving on
+ * the same node while the first request is running wait on its result in memory;
+ * duplicates on other nodes poll the store until it completes. Successful responses are
+ * stored for {@code app.idempotency.ttl}; a failed request releases the key so the
+ * client can retry it. A key whose request succeeded is never released, even when its
+ * response cannot be stored.
+ */
+@Aspect
+@Component
+@Slf4j
+public class IdempotencyAspect {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int COMPLETE_ATTEMPTS = 3;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${app.idempotency.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${app.idempotency.in-flight-ttl:PT2M}")
+    private Duration inFlightTtl;
+
+    @Value("${app.idempotency.wait-timeout:PT30S}")
+    private Duration waitTimeout;
+
+    private record InFlight(String fingerprint, CompletableFuture<Object> result) {
+    }
+
+    public IdempotencyAspect(IdempotencyStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+    }
+
+    @Around("@annotation(com.nexo.server.config.Idempotent)")
+    public Object handle(ProceedingJoinPoint joinPoint) throws Throwable {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        HttpServletRequest request = attributes != null ? attributes.getRequest() : null;
+        String header = request != null ? request.getHeader(HEADER) : null;
+        if (header == null || header.isBlank()) {
+            return joinPoint.proceed();
+        }
+        if (header.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String key = currentUserScope() + ":" + request.getMethod() + ":" + request.getRequestURI() + ":" + header;
+        String fingerprint = fingerprint(joinPoint);
+
+        InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            if (!running.fingerprint().equals(fingerprint)) {
+                throw new BusinessException(HEADER + " was already used for a different request");
+            }
+            return awaitLocal(running);
+        }
+
+        try {
+            Object result = executeOnce(joinPoint, key, fingerprint);
+            mine.result().complete(result);
+            return result;
+        } catch (Throwable t) {
+            mine.result().completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Object executeOnce(ProceedingJoinPoint joinPoint, String key, String fingerprint) throws Throwable {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        long backoffMs = 50;
+        while (true) {
+            IdempotencyStore.Acquisition acquisition = store.acquire(key, fingerprint, inFlightTtl);
+            switch (acquisition.state()) {
+                case ACQUIRED -> {
+                    return proceedAndStore(joinPoint, key);
+                }
+                case COMPLETED -> {
+                    return replay(acquisition.response());
+                }
+                case MISMATCH -> throw new BusinessException(HEADER + " was already used for a different request");
+                case IN_PROGRESS -> {
+                    // Held by another node; wait for it to finish
+                    if (System.nanoTime() > deadline) {
+                        throw new BusinessException("A request with this " + HEADER + " is still being processed");
+                    }
+                    Thread.sleep(backoffMs);
+                    backoffMs = Math.min(backoffMs * 2, 500);
+                }
+            }
+        }
+    }
+
+    private Object proceedAndStore(ProceedingJoinPoint joinPoint, String key) throws Throwable {
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable t) {
+            store.release(key);
+            throw t;
+        }
+
+        if (result instanceof ResponseEntity<?> response && response.getStatusCode().is2xxSuccessful()) {
+            String body;
+            try {
+                body = objectMapper.writeValueAsString(response.getBody());
+            } catch (JsonProcessingException e) {
+                // Still record the outcome; a retry must not repeat an operation that succeeded
+                log.warn("Could not serialize idempotent response for key {}: {}", key, e.getMessage());
+                body = "null";
+            }
+            complete(key, new IdempotencyStore.StoredResponse(response.getStatusCode().value(), body));
+        } else {
+            store.release(key);
+        }
+        return result;
+    }
+
+    /**
+     * Store the response of an operation that already succeeded. The key is never released
+     * here: if every attempt fails it stays in flight until {@code in-flight-ttl} passes.
+     */
+    private void complete(String key, IdempotencyStore.StoredResponse response) {
+        for (int attempt = 1; attempt <= COMPLETE_ATTEMPTS; attempt++) {
+            try {
+                store.complete(key, response, ttl);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == COMPLETE_ATTEMPTS) {
+                    log.error("Could not store idempotent response for key {}, leaving it in flight: {}",
+                            key, e.getMessage());
+                    return;
+                }
+                log.warn("Storing idempotent response for key {} failed (attempt {}): {}", key, attempt, e.getMessage());
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Object awaitLocal(InFlight running) throws Throwable {
+        try {
+            return running.result().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            throw new BusinessException("A request with this " + HEADER + " is still being processed");
+        }
+    }
+
+    private ResponseEntity<Object> replay(IdempotencyStore.StoredResponse stored) throws JsonProcessingException {
+        return ResponseEntity.status(stored.status())
+                .header("Idempotent-Replayed", "true")
+                .body(objectMapper.readTree(stored.body()));
+    }
+
+    private String currentUserScope() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return String.valueOf(principal.getId());
+        }
+        return "anonymous";
+    }
+
+    private String fingerprint(ProceedingJoinPoint joinPoint) throws JsonProcessingException {
+        List<Object> args = new ArrayList<>();
+        for (Object arg : joinPoint.getArgs()) {
+            if (!(arg instanceof UserPrincipal) && !(arg instanceof HttpServletRequest)) {
+                args.add(arg);
+            }
+        }
+        return DigestUtils.sha256Hex(joinPoint.getSignature().toLongString() + objectMapper.writeValueAsString(args));
+    }
+}
@@ -0,0 +1,16 @@
+package com.nexo.server.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller method as honouring the {@code Idempotency-Key} request header.
+ * Requests that repeat a key get the stored response of the first execution instead of
+ * running the handler again; requests without the header are processed as usual.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+}
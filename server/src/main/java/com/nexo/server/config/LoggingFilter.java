@@ -27,7 +27,10 @@ public class LoggingFilter extends OncePerRequestFilter {
         "/actuator",
         "/api/files",
         "/swagger",
-        "/v3/api-docs"
+        "/v3/api-docs",
+        // Streaming exports must not be buffered by ContentCachingResponseWrapper
+        "/api/wallet/transactions/export",
+        "/api/admin/transactions/export"
     );
 
     private static final List<String> SENSITIVE_HEADERS = Arrays.asList(
@@ -42,9 +45,9 @@ public class LoggingFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
             FilterChain filterChain) throws ServletException, IOException {
 
-        // Skip logging for excluded paths
+        // Skip logging for excluded paths and server-sent event streams
         String path = request.getRequestURI();
-        if (EXCLUDED_PATHS.stream().anyMatch(path::startsWith)) {
+        if (EXCLUDED_PATHS.stream().anyMatch(path::startsWith) || path.endsWith("/events")) {
             filterChain.doFilter(request, response);
             return;
         }
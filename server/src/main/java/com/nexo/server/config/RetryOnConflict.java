@@ -0,0 +1,18 @@
+package com.nexo.server.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code @Transactional} service method as safe to run again when its transaction
+ * fails on a concurrent update (an optimistic version conflict, a lock timeout or a
+ * deadlock). Each attempt runs in a fresh transaction after a short randomized backoff.
+ * Calls that join a transaction already in progress are not retried here; the conflict
+ * propagates to the outermost annotated method instead.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
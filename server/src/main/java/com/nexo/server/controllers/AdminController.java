@@ -1,18 +1,37 @@
 package com.nexo.server.controllers;
 
+import com.nexo.server.config.ConflictRetryAspect;
 import com.nexo.server.dto.common.ApiResponse;
+import com.nexo.server.dto.common.ConflictRetryStatsResponse;
 import com.nexo.server.dto.common.PageResponse;
 import com.nexo.server.dto.loan.LoanResponse;
 import com.nexo.server.dto.loan.LoanReviewRequest;
+import com.nexo.server.dto.loan.MarketplaceConsistencyResponse;
+import com.nexo.server.dto.reconciliation.ReconciliationDriftResponse;
+import com.nexo.server.dto.reconciliation.ReconciliationRunResponse;
 import com.nexo.server.dto.user.UserResponse;
 import com.nexo.server.dto.wallet.TransactionResponse;
+import com.nexo.server.dto.withdrawal.WithdrawalBatchRequest;
+import com.nexo.server.dto.withdrawal.WithdrawalBatchResponse;
 import com.nexo.server.enums.*;
 import com.nexo.server.repositories.*;
 import com.nexo.server.security.CurrentUser;
 import com.nexo.server.security.UserPrincipal;
+import com.nexo.server.services.AutoDebitService;
+import com.nexo.server.services.LateFeeService;
+import com.nexo.server.services.LedgerService;
+import com.nexo.server.services.LoanExpiryService;
+import com.nexo.server.services.LoanProgressService;
+import com.nexo.server.services.LoanSearchService;
 import com.nexo.server.services.LoanService;
+import com.nexo.server.services.MarketplaceReadModel;
+import com.nexo.server.services.ReconciliationService;
+import com.nexo.server.services.TransactionArchiveService;
+import com.nexo.server.services.TransactionExportService;
 import com.nexo.server.services.UserMapper;
 import com.nexo.server.services.WalletService;
+import com.nexo.server.services.WalletSnapshotService;
+import com.nexo.server.services.WithdrawalBatchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -22,15 +41,20 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -44,10 +68,22 @@ public class AdminController {
     private final LoanRepository loanRepository;
     private final KycProfileRepository kycProfileRepository;
     private final com.nexo.server.repositories.KycDocumentRepository kycDocumentRepository;
-    private final TransactionRepository transactionRepository;
     private final TicketRepository ticketRepository;
     private final LoanService loanService;
+    private final LoanSearchService loanSearchService;
+    private final MarketplaceReadModel marketplaceReadModel;
     private final WalletService walletService;
+    private final LedgerService ledgerService;
+    private final TransactionExportService transactionExportService;
+    private final TransactionArchiveService transactionArchiveService;
+    private final LoanExpiryService loanExpiryService;
+    private final LoanProgressService loanProgressService;
+    private final LateFeeService lateFeeService;
+    private final AutoDebitService autoDebitService;
+    private final WalletSnapshotService walletSnapshotService;
+    private final ReconciliationService reconciliationService;
+    private final WithdrawalBatchService withdrawalBatchService;
+    private final ConflictRetryAspect conflictRetryAspect;
     private final UserMapper userMapper;
 
     @GetMapping("/dashboard/stats")
@@ -181,27 +217,8 @@ public class AdminController {
             @RequestParam(required = false) LoanPurpose purpose,
             @PageableDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable) {
         
-        // Get loans with pagination (without borrower to avoid Pageable issues)
-        Page<com.nexo.server.entities.Loan> loans = loanRepository.searchLoans(search, status, purpose, pageable);
-        
-        // Fetch borrowers separately for the current page
-        List<Long> loanIds = loans.getContent().stream().map(com.nexo.server.entities.Loan::getId).toList();
-        List<com.nexo.server.entities.Loan> loansWithBorrowers = loanIds.isEmpty() 
-            ? List.of() 
-            : loanRepository.findByIdsWithBorrower(loanIds);
-        
-        // Create a map for quick lookup
-        Map<Long, com.nexo.server.entities.Loan> loanMap = loansWithBorrowers.stream()
-            .collect(Collectors.toMap(com.nexo.server.entities.Loan::getId, loan -> loan));
-        
-        // Replace loans with fetched versions that have borrowers
-        List<com.nexo.server.entities.Loan> finalLoans = loans.getContent().stream()
-            .map(loan -> loanMap.getOrDefault(loan.getId(), loan))
-            .toList();
-        
-        // Map loans to responses
-        PageResponse<LoanResponse> response = PageResponse.of(loans,
-                finalLoans.stream().map(loan -> loanService.toLoanResponse(loan)).toList());
+        Page<com.nexo.server.entities.Loan> loans = loanSearchService.searchAdmin(search, status, purpose, pageable);
+        PageResponse<LoanResponse> response = PageResponse.of(loans, loanService.toLoanResponses(loans.getContent()));
         
         return ResponseEntity.ok(ApiResponse.success(response));
     }
@@ -230,21 +247,24 @@ public class AdminController {
     public ResponseEntity<ApiResponse<PageResponse<TransactionResponse>>> getWithdrawals(
             @RequestParam(required = false) TransactionStatus status,
             @PageableDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable) {
-        Page<com.nexo.server.entities.Transaction> transactions;
-        if (status != null) {
-            transactions = transactionRepository.findByTypeAndStatusWithUser(
-                    TransactionType.WITHDRAW, status, pageable);
-        } else {
-            transactions = transactionRepository.findByTypeWithUser(
-                    TransactionType.WITHDRAW, pageable);
-        }
-        PageResponse<TransactionResponse> response = PageResponse.of(transactions,
-                transactions.getContent().stream()
-                        .map(walletService::toTransactionResponse)
-                        .toList());
+        PageResponse<TransactionResponse> response = walletService.getWithdrawals(status, pageable);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
+    @GetMapping("/transactions/export")
+    @Operation(summary = "Export transactions for accounting as CSV or NDJSON (streamed)")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        TransactionExportService.ExportFilter filter =
+                new TransactionExportService.ExportFilter(userId, type, status, from, to);
+        return transactionExportService.download(filter, format, "transactions");
+    }
+
     @PostMapping("/withdrawals/{transactionId}/approve")
     @Operation(summary = "Approve withdrawal request")
     public ResponseEntity<ApiResponse<Void>> approveWithdrawal(@PathVariable Long transactionId) {
@@ -261,6 +281,146 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponse.success("Withdrawal rejected"));
     }
 
+    @PostMapping("/withdrawals/batch")
+    @Operation(summary = "Approve or reject withdrawals in bulk")
+    public ResponseEntity<ApiResponse<WithdrawalBatchResponse>> submitWithdrawalBatch(
+            @Valid @RequestBody WithdrawalBatchRequest request) {
+        return ResponseEntity.ok(ApiResponse.success("Withdrawal batch started", withdrawalBatchService.submit(request)));
+    }
+
+    @GetMapping("/withdrawals/batch/{jobId}")
+    @Operation(summary = "Get withdrawal batch progress and per-item results")
+    public ResponseEntity<ApiResponse<WithdrawalBatchResponse>> getWithdrawalBatch(@PathVariable String jobId) {
+        return ResponseEntity.ok(ApiResponse.success(withdrawalBatchService.getJob(jobId)));
+    }
+
+    @GetMapping(value = "/withdrawals/batch/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream withdrawal batch progress as server-sent events")
+    public SseEmitter streamWithdrawalBatch(@PathVariable String jobId) {
+        return withdrawalBatchService.subscribe(jobId);
+    }
+
+    @PostMapping("/transactions/archive")
+    @Operation(summary = "Move settled transactions past the retention window to the archive tier")
+    public ResponseEntity<ApiResponse<Long>> archiveTransactions() {
+        long moved = transactionArchiveService.archive();
+        return ResponseEntity.ok(ApiResponse.success("Archived " + moved + " transactions", moved));
+    }
+
+    @PostMapping("/loans/expire")
+    @Operation(summary = "Cancel loans past their funding deadline and refund their investors")
+    public ResponseEntity<ApiResponse<Integer>> expireLoans() {
+        int expired = loanExpiryService.expireLoans();
+        return ResponseEntity.ok(ApiResponse.success("Expired " + expired + " loans", expired));
+    }
+
+    @PostMapping("/repayments/accrue-late-fees")
+    @Operation(summary = "Accrue late fees on unpaid overdue installments up to today")
+    public ResponseEntity<ApiResponse<LateFeeService.RunResult>> accrueLateFees() {
+        LateFeeService.RunResult result = lateFeeService.accrue(LocalDate.now());
+        return ResponseEntity.ok(ApiResponse.success("Accrued late fees on " + result.accrued() + " installments", result));
+    }
+
+    @PostMapping("/repayments/auto-debit")
+    @Operation(summary = "Collect installments due today from borrowers who opted in to automatic repayment")
+    public ResponseEntity<ApiResponse<AutoDebitService.RunResult>> collectAutoDebits() {
+        AutoDebitService.RunResult result = autoDebitService.collect(LocalDate.now());
+        return ResponseEntity.ok(ApiResponse.success("Collected " + result.collected() + " installments", result));
+    }
+
+    @PostMapping("/loans/verify-progress")
+    @Operation(summary = "Recount loan repayment progress from schedules and repair drift")
+    public ResponseEntity<ApiResponse<Integer>> verifyLoanProgress() {
+        int repaired = loanProgressService.verify();
+        return ResponseEntity.ok(ApiResponse.success("Repaired " + repaired + " loans", repaired));
+    }
+
+    @PostMapping("/marketplace/verify")
+    @Operation(summary = "Compare the marketplace read model with the database and repair drift")
+    public ResponseEntity<ApiResponse<MarketplaceConsistencyResponse>> verifyMarketplace() {
+        return ResponseEntity.ok(ApiResponse.success(marketplaceReadModel.verify()));
+    }
+
+    // ==================== LEDGER ====================
+
+    @PostMapping("/ledger/opening-balances")
+    @Operation(summary = "Post opening balances for wallets that have no ledger entries yet")
+    public ResponseEntity<ApiResponse<Integer>> postOpeningBalances() {
+        int wallets = ledgerService.postOpeningBalances();
+        return ResponseEntity.ok(ApiResponse.success("Opening balances posted", wallets));
+    }
+
+    @PostMapping("/ledger/rebuild-balances")
+    @Operation(summary = "Rebuild wallet balances from the ledger")
+    public ResponseEntity<ApiResponse<Integer>> rebuildWalletBalances() {
+        int wallets = ledgerService.rebuildWalletBalances();
+        return ResponseEntity.ok(ApiResponse.success("Wallet balances rebuilt", wallets));
+    }
+
+    @PostMapping("/wallet-snapshots/backfill")
+    @Operation(summary = "Rebuild daily wallet balance snapshots from a date")
+    public ResponseEntity<ApiResponse<Integer>> backfillWalletSnapshots(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        int days = walletSnapshotService.backfill(from, to != null ? to : LocalDate.now().minusDays(1));
+        return ResponseEntity.ok(ApiResponse.success("Wallet snapshots rebuilt", days));
+    }
+
+    @GetMapping("/concurrency/conflicts")
+    @Operation(summary = "Get optimistic conflict and retry counters per service method")
+    public ResponseEntity<ApiResponse<List<ConflictRetryStatsResponse>>> getConflictStats() {
+        return ResponseEntity.ok(ApiResponse.success(conflictRetryAspect.getStats()));
+    }
+
+    // ==================== RECONCILIATION ====================
+
+    @PostMapping("/reconciliation/runs")
+    @Operation(summary = "Start a wallet reconciliation run")
+    public ResponseEntity<ApiResponse<ReconciliationRunResponse>> startReconciliation(
+            @RequestParam(required = false) Integer parallelism,
+            @RequestParam(required = false) Long chunkPauseMs) {
+        ReconciliationRunResponse response = reconciliationService.start(parallelism, chunkPauseMs);
+        return ResponseEntity.ok(ApiResponse.success("Reconciliation started", response));
+    }
+
+    @PostMapping("/reconciliation/runs/{id}/resume")
+    @Operation(summary = "Resume an interrupted reconciliation run")
+    public ResponseEntity<ApiResponse<ReconciliationRunResponse>> resumeReconciliation(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer parallelism,
+            @RequestParam(required = false) Long chunkPauseMs) {
+        ReconciliationRunResponse response = reconciliationService.resume(id, parallelism, chunkPauseMs);
+        return ResponseEntity.ok(ApiResponse.success("Reconciliation resumed", response));
+    }
+
+    @PostMapping("/reconciliation/runs/{id}/cancel")
+    @Operation(summary = "Cancel the active reconciliation run")
+    public ResponseEntity<ApiResponse<Void>> cancelReconciliation(@PathVariable Long id) {
+        reconciliationService.cancel(id);
+        return ResponseEntity.ok(ApiResponse.success("Reconciliation cancellation requested"));
+    }
+
+    @PostMapping("/reconciliation/throttle")
+    @Operation(summary = "Change the pause between chunks of the active reconciliation run")
+    public ResponseEntity<ApiResponse<Void>> throttleReconciliation(@RequestParam long chunkPauseMs) {
+        reconciliationService.throttle(chunkPauseMs);
+        return ResponseEntity.ok(ApiResponse.success("Reconciliation throttle updated"));
+    }
+
+    @GetMapping("/reconciliation/runs/{id}")
+    @Operation(summary = "Get reconciliation run progress")
+    public ResponseEntity<ApiResponse<ReconciliationRunResponse>> getReconciliationRun(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.success(reconciliationService.getRun(id)));
+    }
+
+    @GetMapping("/reconciliation/runs/{id}/drifts")
+    @Operation(summary = "Get wallets with balance drift found by a reconciliation run")
+    public ResponseEntity<ApiResponse<PageResponse<ReconciliationDriftResponse>>> getReconciliationDrifts(
+            @PathVariable Long id,
+            @PageableDefault(sort = "walletId") Pageable pageable) {
+        return ResponseEntity.ok(ApiResponse.success(reconciliationService.getDrifts(id, pageable)));
+    }
+
     // ==================== KYC MANAGEMENT ====================
 
     @GetMapping("/kyc/pending")
@@ -0,0 +1,61 @@
+package com.nexo.server.controllers;
+
+import com.nexo.server.dto.autoinvest.AutoInvestRuleRequest;
+import com.nexo.server.dto.autoinvest.AutoInvestRuleResponse;
+import com.nexo.server.dto.common.ApiResponse;
+import com.nexo.server.security.CurrentUser;
+import com.nexo.server.security.UserPrincipal;
+import com.nexo.server.services.AutoInvestService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/investments/auto-invest/rules")
+@RequiredArgsConstructor
+@Tag(name = "Auto-Invest", description = "Auto-invest rule endpoints")
+public class AutoInvestController {
+
+    private final AutoInvestService autoInvestService;
+
+    @GetMapping
+    @Operation(summary = "Get my auto-invest rules")
+    public ResponseEntity<ApiResponse<List<AutoInvestRuleResponse>>> getMyRules(@CurrentUser UserPrincipal user) {
+        return ResponseEntity.ok(ApiResponse.success(autoInvestService.getMyRules(user.getId())));
+    }
+
+    @PostMapping
+    @Operation(summary = "Create an auto-invest rule")
+    public ResponseEntity<ApiResponse<AutoInvestRuleResponse>> createRule(
+            @CurrentUser UserPrincipal user,
+            @Valid @RequestBody AutoInvestRuleRequest request) {
+        AutoInvestRuleResponse response = autoInvestService.createRule(user.getId(), request);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Auto-invest rule created", response));
+    }
+
+    @PutMapping("/{id}")
+    @Operation(summary = "Update an auto-invest rule")
+    public ResponseEntity<ApiResponse<AutoInvestRuleResponse>> updateRule(
+            @CurrentUser UserPrincipal user,
+            @PathVariable Long id,
+            @Valid @RequestBody AutoInvestRuleRequest request) {
+        AutoInvestRuleResponse response = autoInvestService.updateRule(user.getId(), id, request);
+        return ResponseEntity.ok(ApiResponse.success("Auto-invest rule updated", response));
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete an auto-invest rule")
+    public ResponseEntity<ApiResponse<Void>> deleteRule(
+            @CurrentUser UserPrincipal user,
+            @PathVariable Long id) {
+        autoInvestService.deleteRule(user.getId(), id);
+        return ResponseEntity.ok(ApiResponse.success("Auto-invest rule deleted", null));
+    }
+}
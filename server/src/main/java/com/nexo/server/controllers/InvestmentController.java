@@ -1,5 +1,6 @@
 package com.nexo.server.controllers;
 
+import com.nexo.server.config.Idempotent;
 import com.nexo.server.dto.common.ApiResponse;
 import com.nexo.server.dto.common.PageResponse;
 import com.nexo.server.dto.investment.*;
@@ -26,6 +27,7 @@ public class InvestmentController {
 
     private final InvestmentService investmentService;
 
+    @Idempotent
     @PostMapping
     @Operation(summary = "Create a new investment")
     public ResponseEntity<ApiResponse<InvestmentResponse>> createInvestment(
@@ -7,6 +7,7 @@ import com.nexo.server.dto.loan.*;
 import com.nexo.server.enums.LoanStatus;
 import com.nexo.server.security.CurrentUser;
 import com.nexo.server.security.UserPrincipal;
+import com.nexo.server.services.LoanQuoteService;
 import com.nexo.server.services.LoanService;
 import org.springframework.http.MediaType;
 import org.springframework.web.multipart.MultipartFile;
@@ -31,6 +32,7 @@ import java.util.List;
 public class LoanController {
 
     private final LoanService loanService;
+    private final LoanQuoteService loanQuoteService;
 
     @PostMapping
     @Operation(summary = "Create a new loan request")
@@ -42,6 +44,14 @@ public class LoanController {
                 .body(ApiResponse.success("Loan request created successfully", response));
     }
 
+    @PostMapping("/quote")
+    @Operation(summary = "Quote installments for a grid of terms and interest rates")
+    public ResponseEntity<ApiResponse<LoanQuoteResponse>> quote(
+            @CurrentUser UserPrincipal user,
+            @Valid @RequestBody LoanQuoteRequest request) {
+        return ResponseEntity.ok(ApiResponse.success(loanQuoteService.quote(user.getId(), request)));
+    }
+
     @GetMapping("/my")
     @Operation(summary = "Get my loans")
     public ResponseEntity<ApiResponse<PageResponse<LoanResponse>>> getMyLoans(
@@ -1,5 +1,6 @@
 package com.nexo.server.controllers;
 
+import com.nexo.server.config.Idempotent;
 import com.nexo.server.dto.common.ApiResponse;
 import com.nexo.server.dto.repayment.RepaymentResponse;
 import com.nexo.server.dto.repayment.RepaymentScheduleResponse;
@@ -8,6 +9,7 @@ import com.nexo.server.entities.Repayment;
 import com.nexo.server.entities.RepaymentSchedule;
 import com.nexo.server.security.CurrentUser;
 import com.nexo.server.security.UserPrincipal;
+import com.nexo.server.services.AutoDebitService;
 import com.nexo.server.services.RepaymentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -25,6 +27,7 @@ import java.util.List;
 public class RepaymentController {
 
     private final RepaymentService repaymentService;
+    private final AutoDebitService autoDebitService;
 
     // ==================== BORROWER ENDPOINTS ====================
 
@@ -71,6 +74,7 @@ public class RepaymentController {
         return ResponseEntity.ok(ApiResponse.success(responses));
     }
 
+    @Idempotent
     @PostMapping("/schedule/{scheduleId}/pay")
     @Operation(summary = "Process a repayment")
     public ResponseEntity<ApiResponse<RepaymentResponse>> processRepayment(
@@ -81,6 +85,16 @@ public class RepaymentController {
         return ResponseEntity.ok(ApiResponse.success("Repayment processed successfully", response));
     }
 
+    @PutMapping("/auto-debit")
+    @Operation(summary = "Opt in to or out of automatic collection of due installments from my wallet")
+    public ResponseEntity<ApiResponse<Boolean>> setAutoDebit(
+            @RequestParam boolean enabled,
+            @CurrentUser UserPrincipal currentUser) {
+        boolean result = autoDebitService.setEnabled(currentUser.getId(), enabled);
+        return ResponseEntity.ok(ApiResponse.success(
+                result ? "Automatic repayment enabled" : "Automatic repayment disabled", result));
+    }
+
     @GetMapping("/loan/{loanId}/history")
     @Operation(summary = "Get repayment history for a loan")
     public ResponseEntity<ApiResponse<List<RepaymentResponse>>> getRepaymentHistory(@PathVariable Long loanId) {
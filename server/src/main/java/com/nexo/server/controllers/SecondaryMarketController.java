@@ -0,0 +1,67 @@
+package com.nexo.server.controllers;
+
+import com.nexo.server.config.Idempotent;
+import com.nexo.server.dto.common.ApiResponse;
+import com.nexo.server.dto.common.PageResponse;
+import com.nexo.server.dto.market.MarketOrderResponse;
+import com.nexo.server.dto.market.OrderBookResponse;
+import com.nexo.server.dto.market.PlaceOrderRequest;
+import com.nexo.server.enums.MarketOrderStatus;
+import com.nexo.server.security.CurrentUser;
+import com.nexo.server.security.UserPrincipal;
+import com.nexo.server.services.SecondaryMarketService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/marketplace/notes")
+@RequiredArgsConstructor
+@Tag(name = "Secondary Market", description = "Trading of investment notes between lenders")
+public class SecondaryMarketController {
+
+    private final SecondaryMarketService secondaryMarketService;
+
+    @Idempotent
+    @PostMapping("/orders")
+    @Operation(summary = "Place a buy or sell order for investment notes")
+    public ResponseEntity<ApiResponse<MarketOrderResponse>> placeOrder(
+            @CurrentUser UserPrincipal user,
+            @Valid @RequestBody PlaceOrderRequest request) {
+        MarketOrderResponse response = secondaryMarketService.placeOrder(user.getId(), request);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Order placed", response));
+    }
+
+    @DeleteMapping("/orders/{id}")
+    @Operation(summary = "Cancel an open order")
+    public ResponseEntity<ApiResponse<MarketOrderResponse>> cancelOrder(
+            @CurrentUser UserPrincipal user,
+            @PathVariable Long id) {
+        MarketOrderResponse response = secondaryMarketService.cancelOrder(user.getId(), id);
+        return ResponseEntity.ok(ApiResponse.success("Order cancelled", response));
+    }
+
+    @GetMapping("/orders/my")
+    @Operation(summary = "Get my orders")
+    public ResponseEntity<ApiResponse<PageResponse<MarketOrderResponse>>> getMyOrders(
+            @CurrentUser UserPrincipal user,
+            @RequestParam(required = false) MarketOrderStatus status,
+            @PageableDefault(sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable) {
+        PageResponse<MarketOrderResponse> response = secondaryMarketService.getMyOrders(user.getId(), status, pageable);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    @GetMapping("/{loanId}/book")
+    @Operation(summary = "Get the order book for a loan's notes")
+    public ResponseEntity<ApiResponse<OrderBookResponse>> getOrderBook(@PathVariable Long loanId) {
+        return ResponseEntity.ok(ApiResponse.success(secondaryMarketService.getOrderBook(loanId)));
+    }
+}
@@ -1,13 +1,18 @@
 package com.nexo.server.controllers;
 
+import com.nexo.server.config.Idempotent;
 import com.nexo.server.dto.common.ApiResponse;
+import com.nexo.server.dto.common.CursorResponse;
 import com.nexo.server.dto.common.PageResponse;
 import com.nexo.server.dto.wallet.*;
+import com.nexo.server.enums.ExportFormat;
 import com.nexo.server.enums.TransactionStatus;
 import com.nexo.server.enums.TransactionType;
 import com.nexo.server.security.CurrentUser;
 import com.nexo.server.security.UserPrincipal;
+import com.nexo.server.services.TransactionExportService;
 import com.nexo.server.services.WalletService;
+import com.nexo.server.services.WalletSnapshotService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -18,7 +23,9 @@ import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @RestController
@@ -28,6 +35,8 @@ import java.time.LocalDateTime;
 public class WalletController {
 
     private final WalletService walletService;
+    private final TransactionExportService transactionExportService;
+    private final WalletSnapshotService walletSnapshotService;
 
     @GetMapping
     @Operation(summary = "Get wallet info")
@@ -36,6 +45,25 @@ public class WalletController {
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
+    @GetMapping("/balance-at")
+    @Operation(summary = "Get wallet balance at the end of a given day")
+    public ResponseEntity<ApiResponse<BalanceAtDateResponse>> getBalanceAtDate(
+            @CurrentUser UserPrincipal user,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        BalanceAtDateResponse response = walletSnapshotService.getBalanceAtDate(user.getId(), date);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    @GetMapping("/balance-summary")
+    @Operation(summary = "Get opening/closing balance and flows by type for a period")
+    public ResponseEntity<ApiResponse<BalanceSummaryResponse>> getBalanceSummary(
+            @CurrentUser UserPrincipal user,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        BalanceSummaryResponse response = walletSnapshotService.getPeriodSummary(user.getId(), from, to);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
     @GetMapping("/transactions")
     @Operation(summary = "Get transaction history")
     public ResponseEntity<ApiResponse<PageResponse<TransactionResponse>>> getTransactions(
@@ -51,6 +79,38 @@ public class WalletController {
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
+    @GetMapping(value = "/transactions", params = "cursor")
+    @Operation(summary = "Get transaction history by cursor",
+            description = "Keyset pagination: pass an empty cursor for the first page, then the nextCursor of the previous page")
+    public ResponseEntity<ApiResponse<CursorResponse<TransactionResponse>>> getTransactionsByCursor(
+            @CurrentUser UserPrincipal user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        CursorResponse<TransactionResponse> response = walletService.getTransactionsByCursor(
+                user.getId(), type, status, from, to, cursor, size, includeTotal);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    @GetMapping("/transactions/export")
+    @Operation(summary = "Export transaction statement as CSV or NDJSON (streamed)")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @CurrentUser UserPrincipal user,
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        TransactionExportService.ExportFilter filter =
+                new TransactionExportService.ExportFilter(user.getId(), type, status, from, to);
+        return transactionExportService.download(filter, format, "statement-" + user.getId());
+    }
+
     @GetMapping("/transactions/{id}")
     @Operation(summary = "Get transaction detail by ID")
     public ResponseEntity<ApiResponse<TransactionResponse>> getTransaction(
@@ -60,6 +120,7 @@ public class WalletController {
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
+    @Idempotent
     @PostMapping("/deposit")
     @Operation(summary = "Request deposit via payment gateway")
     public ResponseEntity<ApiResponse<PaymentUrlResponse>> requestDeposit(
@@ -69,6 +130,7 @@ public class WalletController {
         return ResponseEntity.ok(ApiResponse.success("Payment URL generated", response));
     }
 
+    @Idempotent
     @PostMapping("/withdraw")
     @Operation(summary = "Request withdrawal")
     public ResponseEntity<ApiResponse<TransactionResponse>> requestWithdraw(
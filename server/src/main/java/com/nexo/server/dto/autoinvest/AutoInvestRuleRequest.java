@@ -0,0 +1,47 @@
+package com.nexo.server.dto.autoinvest;
+
+import com.nexo.server.enums.LoanPurpose;
+import jakarta.validation.constraints.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Criteria left null (or an empty grade list) match any loan.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AutoInvestRuleRequest {
+
+    private List<@Pattern(regexp = "[A-E]", message = "Risk grade must be A-E") String> riskGrades;
+
+    private LoanPurpose purpose;
+
+    @DecimalMin(value = "0", message = "Minimum rate must not be negative")
+    private BigDecimal minRate;
+
+    @DecimalMax(value = "100", message = "Maximum rate must be at most 100")
+    private BigDecimal maxRate;
+
+    @Min(value = 1, message = "Minimum term must be at least 1 month")
+    private Integer minTerm;
+
+    @Max(value = 120, message = "Maximum term must be at most 120 months")
+    private Integer maxTerm;
+
+    @NotNull(message = "Amount per loan is required")
+    @DecimalMin(value = "100000", message = "Minimum investment amount is 100,000 VND")
+    private BigDecimal amountPerLoan;
+
+    @NotNull(message = "Portfolio cap is required")
+    @DecimalMin(value = "100000", message = "Portfolio cap must be at least 100,000 VND")
+    private BigDecimal portfolioCap;
+
+    private Boolean active;
+}
@@ -0,0 +1,33 @@
+package com.nexo.server.dto.autoinvest;
+
+import com.nexo.server.enums.LoanPurpose;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AutoInvestRuleResponse {
+
+    private Long id;
+    private List<String> riskGrades;
+    private LoanPurpose purpose;
+    private BigDecimal minRate;
+    private BigDecimal maxRate;
+    private Integer minTerm;
+    private Integer maxTerm;
+    private BigDecimal amountPerLoan;
+    private BigDecimal portfolioCap;
+    private BigDecimal investedAmount;
+    private BigDecimal remainingCap;
+    private Boolean active;
+    private LocalDateTime lastFilledAt;
+    private LocalDateTime createdAt;
+}
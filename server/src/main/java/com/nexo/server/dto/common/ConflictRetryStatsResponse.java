@@ -0,0 +1,23 @@
+package com.nexo.server.dto.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Counters for one {@code @RetryOnConflict} method since startup.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConflictRetryStatsResponse {
+
+    private String method;
+    private long calls;
+    private long conflicts;
+    private long recovered;
+    private long exhausted;
+    private long backoffMillis;
+}
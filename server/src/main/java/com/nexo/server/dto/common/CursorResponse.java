@@ -0,0 +1,21 @@
+package com.nexo.server.dto.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorResponse<T> {
+
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+    private Long totalElements; // only filled when explicitly requested
+}
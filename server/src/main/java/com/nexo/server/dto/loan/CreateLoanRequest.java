@@ -1,6 +1,7 @@
 package com.nexo.server.dto.loan;
 
 import com.nexo.server.enums.LoanPurpose;
+import com.nexo.server.enums.RepaymentType;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -39,5 +40,8 @@ public class CreateLoanRequest {
     @DecimalMin(value = "5.00", message = "Minimum interest rate is 5%")
     @DecimalMax(value = "20.00", message = "Maximum interest rate is 20% (according to Vietnamese law)")
     private BigDecimal interestRate;
+
+    // Defaults to EMI
+    private RepaymentType repaymentType;
 }
 
@@ -0,0 +1,38 @@
+package com.nexo.server.dto.loan;
+
+import com.nexo.server.enums.RepaymentType;
+import jakarta.validation.constraints.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * An amount and a grid of terms × rates. Omitted terms or rates fall back to the default
+ * grid (common terms, and the borrower's allowed rate range in 0.5% steps).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanQuoteRequest {
+
+    @NotNull(message = "Amount is required")
+    @DecimalMin(value = "1000000", message = "Minimum loan amount is 1,000,000 VND")
+    @DecimalMax(value = "500000000", message = "Maximum loan amount is 500,000,000 VND")
+    private BigDecimal amount;
+
+    @Size(max = 24, message = "At most 24 terms per quote")
+    private List<@NotNull @Min(value = 1, message = "Minimum term is 1 month")
+            @Max(value = 60, message = "Maximum term is 60 months") Integer> termMonths;
+
+    @Size(max = 32, message = "At most 32 interest rates per quote")
+    private List<@NotNull @DecimalMin(value = "5.00", message = "Minimum interest rate is 5%")
+            @DecimalMax(value = "20.00", message = "Maximum interest rate is 20% (according to Vietnamese law)") BigDecimal> interestRates;
+
+    // Defaults to EMI
+    private RepaymentType repaymentType;
+}
@@ -0,0 +1,47 @@
+package com.nexo.server.dto.loan;
+
+import com.nexo.server.enums.RepaymentType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanQuoteResponse {
+
+    private BigDecimal amount;
+    private RepaymentType repaymentType;
+    private BigDecimal platformFeeRate;
+    private BigDecimal platformFee;
+    private BigDecimal disbursementAmount;
+
+    // Borrower's limits from their credit score
+    private BigDecimal maxLoanAmount;
+    private BigDecimal minInterestRate;
+    private BigDecimal maxInterestRate;
+
+    private List<Integer> termMonths;
+    private List<BigDecimal> interestRates;
+
+    // Row-major: cells for termMonths[0] across all rates first
+    private List<Cell> cells;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Cell {
+        private Integer termMonths;
+        private BigDecimal interestRate;
+        private BigDecimal monthlyPayment;
+        private BigDecimal lastPayment;
+        private BigDecimal totalInterest;
+        private BigDecimal totalRepayment;
+    }
+}
@@ -2,6 +2,7 @@ package com.nexo.server.dto.loan;
 
 import com.nexo.server.enums.LoanPurpose;
 import com.nexo.server.enums.LoanStatus;
+import com.nexo.server.enums.RepaymentType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -29,6 +30,7 @@ public class LoanResponse {
     private BigDecimal interestRate;
     private BigDecimal platformFeeRate;
     private Integer termMonths;
+    private RepaymentType repaymentType;
     private String riskGrade;
     private Integer creditScoreAtRequest;
     private LoanStatus status;
@@ -37,6 +39,9 @@ public class LoanResponse {
     private LocalDate maturityDate;
     private BigDecimal totalRepaid;
     private BigDecimal totalInterestPaid;
+    private Integer installmentCount;
+    private Integer paidInstallments;
+    private BigDecimal outstandingPrincipal;
     private Integer investorCount;
     
     // Rejection info
@@ -0,0 +1,31 @@
+package com.nexo.server.dto.loan;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Result of comparing the in-memory marketplace read model with the database.
+ * Drifted loans are reloaded as part of the check.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketplaceConsistencyResponse {
+
+    private LocalDateTime checkedAt;
+    private int databaseLoans;
+    private int cachedLoans;
+    private List<Long> missingLoanIds;
+    private List<Long> staleLoanIds;
+    private List<Long> extraLoanIds;
+
+    public boolean isConsistent() {
+        return missingLoanIds.isEmpty() && staleLoanIds.isEmpty() && extraLoanIds.isEmpty();
+    }
+}
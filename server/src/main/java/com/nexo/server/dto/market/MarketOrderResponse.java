@@ -0,0 +1,30 @@
+package com.nexo.server.dto.market;
+
+import com.nexo.server.enums.MarketOrderStatus;
+import com.nexo.server.enums.OrderSide;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketOrderResponse {
+
+    private Long id;
+    private Long loanId;
+    private Long investmentId;
+    private OrderSide side;
+    private BigDecimal price;
+    private BigDecimal quantity;
+    private BigDecimal remainingQuantity;
+    private BigDecimal filledQuantity;
+    private BigDecimal reservedAmount;
+    private MarketOrderStatus status;
+    private LocalDateTime createdAt;
+}
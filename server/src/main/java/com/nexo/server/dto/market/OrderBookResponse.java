@@ -0,0 +1,30 @@
+package com.nexo.server.dto.market;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBookResponse {
+
+    private Long loanId;
+    private List<Level> bids;
+    private List<Level> asks;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Level {
+        private BigDecimal price;
+        private BigDecimal quantity;
+        private Integer orders;
+    }
+}
@@ -0,0 +1,42 @@
+package com.nexo.server.dto.market;
+
+import com.nexo.server.enums.OrderSide;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * SELL orders name the investment to sell from; the quantity defaults to all of it.
+ * BUY orders name the loan and a face-value quantity.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlaceOrderRequest {
+
+    @NotNull(message = "Side is required")
+    private OrderSide side;
+
+    private Long investmentId;
+
+    private Long loanId;
+
+    // Face value in VND
+    @Digits(integer = 16, fraction = 0, message = "Quantity must be a whole VND amount")
+    private BigDecimal quantity;
+
+    // Percentage of face value
+    @NotNull(message = "Price is required")
+    @DecimalMin(value = "1.00", message = "Minimum price is 1% of face value")
+    @DecimalMax(value = "150.00", message = "Maximum price is 150% of face value")
+    @Digits(integer = 3, fraction = 2, message = "Price allows at most 2 decimals")
+    private BigDecimal price;
+}
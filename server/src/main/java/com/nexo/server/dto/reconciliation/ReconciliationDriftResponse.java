@@ -0,0 +1,26 @@
+package com.nexo.server.dto.reconciliation;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationDriftResponse {
+
+    private Long walletId;
+    private Long userId;
+    private BigDecimal walletBalance;
+    private BigDecimal ledgerBalance;
+    private BigDecimal transactionBalance;
+    private BigDecimal lockedBalance;
+    private BigDecimal pendingWithdrawals;
+    private BigDecimal ledgerDelta;
+    private BigDecimal transactionDelta;
+    private BigDecimal lockedDelta;
+}
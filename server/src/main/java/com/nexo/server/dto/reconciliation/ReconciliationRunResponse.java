@@ -0,0 +1,27 @@
+package com.nexo.server.dto.reconciliation;
+
+import com.nexo.server.enums.ReconciliationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationRunResponse {
+
+    private Long id;
+    private ReconciliationStatus status;
+    private Long minWalletId;
+    private Long maxWalletId;
+    private Long resumeFromWalletId;
+    private Long checkedWallets;
+    private Long driftCount;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String errorMessage;
+}
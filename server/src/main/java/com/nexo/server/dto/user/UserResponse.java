@@ -31,6 +31,7 @@ public class UserResponse {
     private KycStatus kycStatus;
     private Boolean emailVerified;
     private Integer creditScore;
+    private Boolean autoDebitEnabled;
     private String oauthProvider;
     private LocalDateTime lastLoginAt;
     private LocalDateTime createdAt;
@@ -0,0 +1,20 @@
+package com.nexo.server.dto.wallet;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceAtDateResponse {
+
+    private Long walletId;
+    private LocalDate date;
+    private BigDecimal balance; // closing balance at end of day
+}
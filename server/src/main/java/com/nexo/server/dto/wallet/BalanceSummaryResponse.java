@@ -0,0 +1,35 @@
+package com.nexo.server.dto.wallet;
+
+import com.nexo.server.enums.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceSummaryResponse {
+
+    private Long walletId;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private BigDecimal openingBalance;
+    private BigDecimal closingBalance;
+    private BigDecimal totalInflow;
+    private BigDecimal totalOutflow;
+    private Map<TransactionType, Flow> flows;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Flow {
+        private BigDecimal inflow;
+        private BigDecimal outflow;
+    }
+}
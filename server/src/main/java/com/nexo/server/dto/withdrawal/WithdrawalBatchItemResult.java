@@ -0,0 +1,19 @@
+package com.nexo.server.dto.withdrawal;
+
+import com.nexo.server.enums.WithdrawalBatchOutcome;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WithdrawalBatchItemResult {
+
+    private Long transactionId;
+    private String referenceCode;
+    private WithdrawalBatchOutcome outcome;
+    private String message;
+}
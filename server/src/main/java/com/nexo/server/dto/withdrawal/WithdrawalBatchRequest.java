@@ -0,0 +1,43 @@
+package com.nexo.server.dto.withdrawal;
+
+import com.nexo.server.enums.WithdrawalBatchAction;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Selects withdrawals either by explicit {@code transactionIds} or, when none are given,
+ * by filter over all pending withdrawals.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WithdrawalBatchRequest {
+
+    @NotNull(message = "Action is required")
+    private WithdrawalBatchAction action;
+
+    @Size(max = 50000, message = "At most 50000 transactions per batch")
+    private List<Long> transactionIds;
+
+    private LocalDateTime createdBefore;
+
+    private BigDecimal maxAmount;
+
+    @Min(value = 1, message = "Limit must be positive")
+    @Max(value = 50000, message = "Limit must be at most 50000")
+    private Integer limit;
+
+    @Size(max = 500, message = "Reason must be at most 500 characters")
+    private String reason;
+}
@@ -0,0 +1,35 @@
+package com.nexo.server.dto.withdrawal;
+
+import com.nexo.server.enums.WithdrawalBatchAction;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress of a withdrawal batch. In streamed chunk events {@code items} holds only the
+ * results of that chunk; in the job summary it holds every result so far.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WithdrawalBatchResponse {
+
+    private String jobId;
+    private WithdrawalBatchAction action;
+    private boolean finished;
+    private int total;
+    private int processed;
+    private int approved;
+    private int rejected;
+    private int skipped;
+    private int failed;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String errorMessage;
+    private List<WithdrawalBatchItemResult> items;
+}
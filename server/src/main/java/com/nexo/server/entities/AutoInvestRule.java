@@ -0,0 +1,66 @@
+package com.nexo.server.entities;
+
+import com.nexo.server.enums.LoanPurpose;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A lender's standing instruction to invest {@code amountPerLoan} in every newly listed
+ * loan that matches its criteria, until {@code investedAmount} reaches {@code portfolioCap}.
+ * Null criteria match any loan.
+ */
+@Entity
+@Table(name = "auto_invest_rules", indexes = {
+    @Index(name = "idx_auto_invest_rule_lender", columnList = "lender_id"),
+    @Index(name = "idx_auto_invest_rule_active", columnList = "active")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AutoInvestRule extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lender_id", nullable = false)
+    private User lender;
+
+    // Comma-separated grades, e.g. "A,B"
+    @Column(name = "risk_grades", length = 20)
+    private String riskGrades;
+
+    @Enumerated(EnumType.STRING)
+    private LoanPurpose purpose;
+
+    @Column(name = "min_rate", precision = 5, scale = 2)
+    private BigDecimal minRate;
+
+    @Column(name = "max_rate", precision = 5, scale = 2)
+    private BigDecimal maxRate;
+
+    @Column(name = "min_term")
+    private Integer minTerm;
+
+    @Column(name = "max_term")
+    private Integer maxTerm;
+
+    @Column(name = "amount_per_loan", nullable = false, precision = 18, scale = 2)
+    private BigDecimal amountPerLoan;
+
+    @Column(name = "portfolio_cap", nullable = false, precision = 18, scale = 2)
+    private BigDecimal portfolioCap;
+
+    @Column(name = "invested_amount", nullable = false, precision = 18, scale = 2)
+    @Builder.Default
+    private BigDecimal investedAmount = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean active = true;
+
+    @Column(name = "last_filled_at")
+    private LocalDateTime lastFilledAt;
+}
@@ -0,0 +1,40 @@
+package com.nexo.server.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of the Postgres idempotency store. Written and read with plain JDBC by
+ * {@code JdbcIdempotencyStore}; the entity only defines the schema.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+    @Index(name = "idx_idempotency_expires", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord extends BaseEntity {
+
+    @Column(name = "idempotency_key", nullable = false, unique = true, length = 255)
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(nullable = false, length = 20)
+    private String status; // IN_PROGRESS or COMPLETED
+
+    @Column(name = "response_status")
+    private Integer responseStatus;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -22,7 +22,7 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Investment extends BaseEntity {
+public class Investment extends VersionedEntity {
 
     @Column(name = "investment_code", nullable = false, unique = true, length = 20)
     private String investmentCode;
@@ -45,6 +45,10 @@ public class Investment extends BaseEntity {
     @Column(nullable = false)
     private InvestmentStatus status = InvestmentStatus.ACTIVE;
 
+    // Rule that placed this investment; its outstanding principal counts against the rule's cap
+    @Column(name = "auto_invest_rule_id")
+    private Long autoInvestRuleId;
+
     // Returns
     @Column(name = "expected_return", nullable = false, precision = 18, scale = 2)
     private BigDecimal expectedReturn;
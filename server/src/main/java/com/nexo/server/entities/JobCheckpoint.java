@@ -0,0 +1,43 @@
+package com.nexo.server.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress marker for resumable background jobs. A job reads its checkpoint on start
+ * and advances it after each unit of work commits, so a restart picks up where the
+ * previous run stopped. Jobs that must run on one node at a time also hold a lease on
+ * their row (see {@code JobLeaseService}).
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@DynamicUpdate
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobCheckpoint extends BaseEntity {
+
+    @Column(name = "job_name", nullable = false, unique = true, length = 100)
+    private String jobName;
+
+    @Column(name = "last_processed_date")
+    private LocalDate lastProcessedDate;
+
+    @Column(name = "last_processed_id")
+    private Long lastProcessedId;
+
+    @Column(columnDefinition = "TEXT")
+    private String details;
+
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+}
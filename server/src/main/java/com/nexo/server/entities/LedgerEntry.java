@@ -0,0 +1,53 @@
+package com.nexo.server.entities;
+
+import com.nexo.server.enums.LedgerAccountType;
+import com.nexo.server.enums.LedgerDirection;
+import com.nexo.server.enums.TransactionType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * One debit or credit leg of a {@link LedgerPosting}. Rows are written in JDBC
+ * batches by {@code LedgerService} and never updated.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries", indexes = {
+    @Index(name = "idx_entry_posting", columnList = "posting_id"),
+    @Index(name = "idx_entry_account", columnList = "account_type, account_id, created_at"),
+    @Index(name = "idx_entry_type_created", columnList = "account_type, created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEntry extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "posting_id", nullable = false)
+    private LedgerPosting posting;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "account_type", nullable = false, length = 30)
+    private LedgerAccountType accountType;
+
+    // Wallet id for WALLET, loan id for LOAN_ESCROW, null for platform-wide accounts
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private LedgerDirection direction;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal amount;
+
+    // User-facing movement type, only set on WALLET legs
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type", length = 30)
+    private TransactionType transactionType;
+}
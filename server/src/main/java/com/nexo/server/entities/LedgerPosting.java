@@ -0,0 +1,51 @@
+package com.nexo.server.entities;
+
+import com.nexo.server.enums.LedgerPostingType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * A balanced batch of ledger entries. Postings are append-only; corrections are
+ * made with a new posting, never by editing an existing one.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_postings", indexes = {
+    @Index(name = "idx_posting_code", columnList = "posting_code"),
+    @Index(name = "idx_posting_loan", columnList = "loan_id"),
+    @Index(name = "idx_posting_type", columnList = "type")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerPosting extends BaseEntity {
+
+    @Column(name = "posting_code", nullable = false, unique = true, length = 50)
+    private String postingCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private LedgerPostingType type;
+
+    @Column(name = "total_amount", nullable = false, precision = 18, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "entry_count", nullable = false)
+    private Integer entryCount;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "loan_id")
+    private Loan loan;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "repayment_id")
+    private Repayment repayment;
+
+    @Column(columnDefinition = "TEXT")
+    private String description;
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.nexo.server.enums.LoanPurpose;
 import com.nexo.server.enums.LoanStatus;
+import com.nexo.server.enums.RepaymentType;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -26,7 +27,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
-public class Loan extends BaseEntity {
+public class Loan extends VersionedEntity {
 
     @Column(name = "loan_code", nullable = false, unique = true, length = 20)
     private String loanCode;
@@ -66,6 +67,11 @@ public class Loan extends BaseEntity {
     @Column(name = "term_months", nullable = false)
     private Integer termMonths;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "repayment_type", length = 20)
+    @Builder.Default
+    private RepaymentType repaymentType = RepaymentType.EMI;
+
     // Risk
     @Column(name = "risk_grade", length = 2)
     private String riskGrade;
@@ -108,6 +114,19 @@ public class Loan extends BaseEntity {
     @Builder.Default
     private BigDecimal totalInterestPaid = BigDecimal.ZERO;
 
+    // Repayment progress, updated with each schedule and repayment; see LoanProgressService
+    @Column(name = "installment_count", columnDefinition = "INTEGER DEFAULT 0")
+    @Builder.Default
+    private Integer installmentCount = 0;
+
+    @Column(name = "paid_installments", columnDefinition = "INTEGER DEFAULT 0")
+    @Builder.Default
+    private Integer paidInstallments = 0;
+
+    @Column(name = "outstanding_principal", columnDefinition = "NUMERIC(18, 2) DEFAULT 0")
+    @Builder.Default
+    private BigDecimal outstandingPrincipal = BigDecimal.ZERO;
+
     // Relations
     @OneToMany(mappedBy = "loan", cascade = CascadeType.ALL)
     @Builder.Default
@@ -134,6 +153,10 @@ public class Loan extends BaseEntity {
                 .multiply(new BigDecimal("100"));
     }
 
+    public boolean isFullyRepaid() {
+        return installmentCount != null && installmentCount > 0 && paidInstallments >= installmentCount;
+    }
+
     public boolean isFullyFunded() {
         return fundedAmount.compareTo(requestedAmount) >= 0;
     }
@@ -0,0 +1,64 @@
+package com.nexo.server.entities;
+
+import com.nexo.server.enums.MarketOrderStatus;
+import com.nexo.server.enums.OrderSide;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * An order on the secondary market for a loan's investment notes. Quantities are face
+ * value (investment principal) in VND; the price is a percentage of face value. A SELL
+ * order offers part or all of one investment; a BUY order holds {@code reservedAmount}
+ * of the buyer's balance locked until it fills or is cancelled. Time priority is by id.
+ */
+@Entity
+@Table(name = "market_orders", indexes = {
+    @Index(name = "idx_market_order_loan_status", columnList = "loan_id, status"),
+    @Index(name = "idx_market_order_user", columnList = "user_id"),
+    @Index(name = "idx_market_order_investment", columnList = "investment_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MarketOrder extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "loan_id", nullable = false)
+    private Loan loan;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    // SELL orders only
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "investment_id")
+    private Investment investment;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 4)
+    private OrderSide side;
+
+    @Column(nullable = false, precision = 5, scale = 2)
+    private BigDecimal price;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal quantity;
+
+    @Column(name = "remaining_quantity", nullable = false, precision = 18, scale = 2)
+    private BigDecimal remainingQuantity;
+
+    // BUY orders only: balance still locked for the unfilled part
+    @Column(name = "reserved_amount", nullable = false, precision = 18, scale = 2)
+    @Builder.Default
+    private BigDecimal reservedAmount = BigDecimal.ZERO;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    @Builder.Default
+    private MarketOrderStatus status = MarketOrderStatus.OPEN;
+}
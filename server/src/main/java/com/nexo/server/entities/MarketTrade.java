@@ -0,0 +1,58 @@
+package com.nexo.server.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "market_trades", indexes = {
+    @Index(name = "idx_market_trade_loan", columnList = "loan_id"),
+    @Index(name = "idx_market_trade_buyer", columnList = "buyer_id"),
+    @Index(name = "idx_market_trade_seller", columnList = "seller_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MarketTrade extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "loan_id", nullable = false)
+    private Loan loan;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "buy_order_id", nullable = false)
+    private MarketOrder buyOrder;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sell_order_id", nullable = false)
+    private MarketOrder sellOrder;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "buyer_id", nullable = false)
+    private User buyer;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "seller_id", nullable = false)
+    private User seller;
+
+    // The seller's investment the note was cut from, and the buyer's new one
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "seller_investment_id", nullable = false)
+    private Investment sellerInvestment;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "buyer_investment_id", nullable = false)
+    private Investment buyerInvestment;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal quantity;
+
+    @Column(nullable = false, precision = 5, scale = 2)
+    private BigDecimal price;
+
+    @Column(name = "cash_amount", nullable = false, precision = 18, scale = 2)
+    private BigDecimal cashAmount;
+}
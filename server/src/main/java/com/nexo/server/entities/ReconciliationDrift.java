@@ -0,0 +1,59 @@
+package com.nexo.server.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * A wallet whose stored balances disagree with the ledger or the transaction history
+ * in a {@link ReconciliationRun}. Written in JDBC batches by the reconciliation job.
+ */
+@Entity
+@Table(name = "reconciliation_drifts", indexes = {
+    @Index(name = "idx_drift_run_wallet", columnList = "run_id, wallet_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationDrift extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private ReconciliationRun run;
+
+    @Column(name = "wallet_id", nullable = false)
+    private Long walletId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "wallet_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal walletBalance;
+
+    @Column(name = "ledger_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal ledgerBalance;
+
+    @Column(name = "transaction_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal transactionBalance;
+
+    @Column(name = "locked_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal lockedBalance;
+
+    @Column(name = "pending_withdrawals", nullable = false, precision = 18, scale = 2)
+    private BigDecimal pendingWithdrawals;
+
+    // wallet balance minus ledger balance
+    @Column(name = "ledger_delta", nullable = false, precision = 18, scale = 2)
+    private BigDecimal ledgerDelta;
+
+    // wallet balance minus transaction-implied balance
+    @Column(name = "transaction_delta", nullable = false, precision = 18, scale = 2)
+    private BigDecimal transactionDelta;
+
+    // locked balance minus pending withdrawal holds
+    @Column(name = "locked_delta", nullable = false, precision = 18, scale = 2)
+    private BigDecimal lockedDelta;
+}
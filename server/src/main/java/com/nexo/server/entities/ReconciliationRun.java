@@ -0,0 +1,55 @@
+package com.nexo.server.entities;
+
+import com.nexo.server.enums.ReconciliationStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One pass of the wallet reconciliation job. {@code resumeFromWalletId} marks the end of
+ * the contiguous range of wallet ids already checked, so an interrupted run can continue
+ * from there.
+ */
+@Entity
+@Table(name = "reconciliation_runs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationRun extends BaseEntity {
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ReconciliationStatus status;
+
+    @Column(name = "min_wallet_id", nullable = false)
+    private Long minWalletId;
+
+    @Column(name = "max_wallet_id", nullable = false)
+    private Long maxWalletId;
+
+    @Column(name = "resume_from_wallet_id", nullable = false)
+    private Long resumeFromWalletId;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Column(name = "checked_wallets", nullable = false)
+    @Builder.Default
+    private Long checkedWallets = 0L;
+
+    @Column(name = "drift_count", nullable = false)
+    @Builder.Default
+    private Long driftCount = 0L;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+}
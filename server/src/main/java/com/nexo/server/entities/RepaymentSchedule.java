@@ -43,6 +43,14 @@ public class RepaymentSchedule extends BaseEntity {
     @Column(name = "remaining_principal", precision = 18, scale = 2)
     private BigDecimal remainingPrincipal;
 
+    // Accrued by LateFeeService while unpaid; the repayment records the final fee
+    @Column(name = "late_fee", nullable = false, precision = 18, scale = 2, columnDefinition = "NUMERIC(18, 2) DEFAULT 0")
+    @Builder.Default
+    private BigDecimal lateFee = BigDecimal.ZERO;
+
+    @Column(name = "late_fee_accrued_through")
+    private LocalDate lateFeeAccruedThrough;
+
     // Link to actual repayment
     @OneToOne(mappedBy = "schedule", fetch = FetchType.LAZY)
     @JsonIgnore
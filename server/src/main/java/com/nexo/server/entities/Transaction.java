@@ -13,7 +13,11 @@ import java.math.BigDecimal;
     @Index(name = "idx_txn_wallet", columnList = "wallet_id"),
     @Index(name = "idx_txn_user", columnList = "user_id"),
     @Index(name = "idx_txn_type", columnList = "type"),
-    @Index(name = "idx_txn_status", columnList = "status")
+    @Index(name = "idx_txn_status", columnList = "status"),
+    @Index(name = "idx_txn_created", columnList = "created_at"),
+    @Index(name = "idx_txn_user_created", columnList = "user_id, created_at, id"),
+    @Index(name = "idx_txn_user_type_created", columnList = "user_id, type, created_at, id"),
+    @Index(name = "idx_txn_user_status_created", columnList = "user_id, status, created_at, id")
 })
 @Getter
 @Setter
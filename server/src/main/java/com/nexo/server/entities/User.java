@@ -82,6 +82,11 @@ public class User extends BaseEntity {
     @Column(name = "credit_score")
     private Integer creditScore = 0;
 
+    // Repayments: due installments are collected from the wallet by AutoDebitService
+    @Column(name = "auto_debit_enabled", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    @Builder.Default
+    private Boolean autoDebitEnabled = false;
+
     @Column(name = "last_login_at")
     private LocalDateTime lastLoginAt;
 
@@ -0,0 +1,26 @@
+package com.nexo.server.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Version;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Base for money-bearing entities updated from several paths at once. Hibernate checks
+ * and increments {@code version} on every update, so a write based on a stale read fails
+ * with an optimistic locking error instead of overwriting the other one.
+ *
+ * <p>Statements that update these tables directly must increment {@code version} too.
+ * It stays null until the entity is first persisted, which is how Spring Data tells new
+ * entities apart.
+ */
+@MappedSuperclass
+@Getter
+@Setter
+public abstract class VersionedEntity extends BaseEntity {
+
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long version;
+}
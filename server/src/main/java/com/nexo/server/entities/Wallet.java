@@ -14,7 +14,7 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Wallet extends BaseEntity {
+public class Wallet extends VersionedEntity {
 
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false, unique = true)
@@ -65,6 +65,11 @@ public class Wallet extends BaseEntity {
         }
     }
 
+    // Balance projection from a ledger posting; sufficiency checks belong to the caller
+    public void applyLedgerDelta(BigDecimal delta) {
+        this.balance = this.balance.add(delta);
+    }
+
     public void confirmLockedTransaction(BigDecimal amount) {
         this.lockedBalance = this.lockedBalance.subtract(amount);
         this.balance = this.balance.subtract(amount);
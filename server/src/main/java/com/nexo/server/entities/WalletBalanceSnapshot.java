@@ -0,0 +1,41 @@
+package com.nexo.server.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * End-of-day balance of a wallet, built from the ledger by {@code WalletSnapshotService}.
+ * Snapshots are sparse: a row exists only for days with wallet activity, so the balance
+ * on any day is the closing balance of the latest snapshot on or before it.
+ */
+@Entity
+@Table(name = "wallet_balance_snapshots",
+    uniqueConstraints = @UniqueConstraint(name = "uk_snapshot_wallet_date", columnNames = {"wallet_id", "snapshot_date"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalletBalanceSnapshot extends BaseEntity {
+
+    @Column(name = "wallet_id", nullable = false)
+    private Long walletId;
+
+    @Column(name = "snapshot_date", nullable = false)
+    private LocalDate snapshotDate;
+
+    @Column(name = "opening_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal openingBalance;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal inflow;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal outflow;
+
+    @Column(name = "closing_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal closingBalance;
+}
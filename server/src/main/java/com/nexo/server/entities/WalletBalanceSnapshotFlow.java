@@ -0,0 +1,39 @@
+package com.nexo.server.entities;
+
+import com.nexo.server.enums.TransactionType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Per-{@link TransactionType} inflow/outflow of a wallet on one day, alongside
+ * {@link WalletBalanceSnapshot}.
+ */
+@Entity
+@Table(name = "wallet_balance_snapshot_flows",
+    uniqueConstraints = @UniqueConstraint(name = "uk_snapshot_flow", columnNames = {"wallet_id", "snapshot_date", "transaction_type"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalletBalanceSnapshotFlow extends BaseEntity {
+
+    @Column(name = "wallet_id", nullable = false)
+    private Long walletId;
+
+    @Column(name = "snapshot_date", nullable = false)
+    private LocalDate snapshotDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type", nullable = false, length = 30)
+    private TransactionType transactionType;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal inflow;
+
+    @Column(nullable = false, precision = 18, scale = 2)
+    private BigDecimal outflow;
+}
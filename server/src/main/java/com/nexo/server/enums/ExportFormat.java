@@ -0,0 +1,6 @@
+package com.nexo.server.enums;
+
+public enum ExportFormat {
+    CSV,
+    NDJSON
+}
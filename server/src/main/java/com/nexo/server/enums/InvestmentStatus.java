@@ -3,6 +3,7 @@ package com.nexo.server.enums;
 public enum InvestmentStatus {
     ACTIVE,
     COMPLETED,
-    CANCELLED
+    CANCELLED,
+    SOLD  // fully transferred on the secondary market
 }
 
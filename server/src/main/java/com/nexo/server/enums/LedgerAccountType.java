@@ -0,0 +1,8 @@
+package com.nexo.server.enums;
+
+public enum LedgerAccountType {
+    WALLET,
+    EXTERNAL,
+    LOAN_ESCROW,
+    PLATFORM_REVENUE
+}
@@ -0,0 +1,13 @@
+package com.nexo.server.enums;
+
+public enum LedgerPostingType {
+    DEPOSIT,
+    WITHDRAWAL,
+    INVESTMENT,
+    LOAN_DISBURSEMENT,
+    REPAYMENT,
+    REFUND,
+    FEE,
+    OPENING_BALANCE,
+    NOTE_TRADE
+}
@@ -0,0 +1,7 @@
+package com.nexo.server.enums;
+
+public enum MarketOrderStatus {
+    OPEN,
+    FILLED,
+    CANCELLED
+}
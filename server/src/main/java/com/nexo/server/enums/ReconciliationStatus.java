@@ -0,0 +1,8 @@
+package com.nexo.server.enums;
+
+public enum ReconciliationStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
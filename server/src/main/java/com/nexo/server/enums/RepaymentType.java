@@ -0,0 +1,7 @@
+package com.nexo.server.enums;
+
+public enum RepaymentType {
+    EMI,              // equal monthly installments
+    EQUAL_PRINCIPAL,  // equal principal plus interest on the remaining balance
+    INTEREST_ONLY     // interest monthly, principal in full with the last installment
+}
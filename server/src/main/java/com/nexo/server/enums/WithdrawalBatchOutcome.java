@@ -0,0 +1,8 @@
+package com.nexo.server.enums;
+
+public enum WithdrawalBatchOutcome {
+    APPROVED,
+    REJECTED,
+    SKIPPED,
+    FAILED
+}
@@ -0,0 +1,15 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.AutoInvestRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AutoInvestRuleRepository extends JpaRepository<AutoInvestRule, Long> {
+
+    List<AutoInvestRule> findByLenderIdOrderByCreatedAtDesc(Long lenderId);
+
+    long countByLenderId(Long lenderId);
+}
@@ -10,12 +10,17 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface InvestmentRepository extends JpaRepository<Investment, Long> {
 
+    // Investor count per loan: [loanId, count]
+    @Query("SELECT i.loan.id, COUNT(i) FROM Investment i WHERE i.loan.id IN :loanIds GROUP BY i.loan.id")
+    List<Object[]> countByLoanIds(@Param("loanIds") Collection<Long> loanIds);
+
     Optional<Investment> findByInvestmentCode(String investmentCode);
 
     boolean existsByInvestmentCode(String investmentCode);
@@ -0,0 +1,13 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, Long> {
+
+    Optional<JobCheckpoint> findByJobName(String jobName);
+}
@@ -0,0 +1,22 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.LedgerEntry;
+import com.nexo.server.enums.LedgerAccountType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    List<LedgerEntry> findByPostingId(Long postingId);
+
+    // Credit-normal balance of an account: credits minus debits
+    @Query("SELECT COALESCE(SUM(CASE WHEN e.direction = 'CREDIT' THEN e.amount ELSE -e.amount END), 0) " +
+           "FROM LedgerEntry e WHERE e.accountType = :accountType AND e.accountId = :accountId")
+    BigDecimal sumBalance(@Param("accountType") LedgerAccountType accountType, @Param("accountId") Long accountId);
+}
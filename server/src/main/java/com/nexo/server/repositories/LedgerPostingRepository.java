@@ -0,0 +1,16 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.LedgerPosting;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LedgerPostingRepository extends JpaRepository<LedgerPosting, Long> {
+
+    Optional<LedgerPosting> findByPostingCode(String postingCode);
+
+    List<LedgerPosting> findByLoanIdOrderByIdAsc(Long loanId);
+}
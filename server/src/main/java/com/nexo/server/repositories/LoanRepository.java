@@ -78,6 +78,9 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
             @Param("purpose") LoanPurpose purpose,
             Pageable pageable);
     
+    @Query("SELECT l FROM Loan l JOIN FETCH l.borrower WHERE l.status = :status")
+    List<Loan> findAllByStatusWithBorrower(@Param("status") LoanStatus status);
+
     // Fetch loans with borrowers using separate query
     @Query("SELECT DISTINCT l FROM Loan l LEFT JOIN FETCH l.borrower WHERE l.id IN :ids")
     List<Loan> findByIdsWithBorrower(@Param("ids") List<Long> ids);
@@ -89,8 +92,9 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
     @Query("SELECT COALESCE(SUM(l.requestedAmount), 0) FROM Loan l WHERE l.status IN :statuses")
     BigDecimal sumRequestedAmountByStatusIn(@Param("statuses") List<LoanStatus> statuses);
 
-    // Find loans with expired funding deadline
-    @Query("SELECT l FROM Loan l WHERE l.status = 'FUNDING' AND l.fundingDeadline < :now")
-    List<Loan> findExpiredFundingLoans(@Param("now") LocalDateTime now);
+    // Ids of loans with expired funding deadline, in id order after a cursor
+    @Query("SELECT l.id FROM Loan l WHERE l.status = 'FUNDING' AND l.fundingDeadline < :now AND l.id > :afterId ORDER BY l.id")
+    List<Long> findExpiredFundingLoanIds(@Param("now") LocalDateTime now, @Param("afterId") Long afterId,
+                                         Pageable pageable);
 }
 
@@ -0,0 +1,36 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.MarketOrder;
+import com.nexo.server.enums.MarketOrderStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MarketOrderRepository extends JpaRepository<MarketOrder, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM MarketOrder o WHERE o.id IN :ids ORDER BY o.id")
+    List<MarketOrder> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    // Open orders of one book in time priority
+    @Query("SELECT o FROM MarketOrder o WHERE o.loan.id = :loanId AND o.status = 'OPEN' ORDER BY o.id")
+    List<MarketOrder> findOpenByLoanId(@Param("loanId") Long loanId);
+
+    @Query("SELECT DISTINCT o.loan.id FROM MarketOrder o WHERE o.status = 'OPEN'")
+    List<Long> findLoanIdsWithOpenOrders();
+
+    boolean existsByInvestmentIdAndStatus(Long investmentId, MarketOrderStatus status);
+
+    Page<MarketOrder> findByUserId(Long userId, Pageable pageable);
+
+    Page<MarketOrder> findByUserIdAndStatus(Long userId, MarketOrderStatus status, Pageable pageable);
+}
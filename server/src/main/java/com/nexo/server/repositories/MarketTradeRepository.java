@@ -0,0 +1,13 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.MarketTrade;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MarketTradeRepository extends JpaRepository<MarketTrade, Long> {
+
+    List<MarketTrade> findTop50ByLoanIdOrderByIdDesc(Long loanId);
+}
@@ -0,0 +1,13 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.ReconciliationDrift;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReconciliationDriftRepository extends JpaRepository<ReconciliationDrift, Long> {
+
+    Page<ReconciliationDrift> findByRunId(Long runId, Pageable pageable);
+}
@@ -0,0 +1,15 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.ReconciliationRun;
+import com.nexo.server.enums.ReconciliationStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface ReconciliationRunRepository extends JpaRepository<ReconciliationRun, Long> {
+
+    Optional<ReconciliationRun> findFirstByStatusInOrderByIdDesc(Collection<ReconciliationStatus> statuses);
+}
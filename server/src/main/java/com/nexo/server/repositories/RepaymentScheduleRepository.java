@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,6 +29,12 @@ public interface RepaymentScheduleRepository extends JpaRepository<RepaymentSche
            "AND rs.repayment IS NULL ORDER BY rs.installmentNumber ASC LIMIT 1")
     Optional<RepaymentSchedule> findNextUnpaidByLoanId(@Param("loanId") Long loanId);
 
+    // Next unpaid installment of each loan
+    @Query("SELECT rs FROM RepaymentSchedule rs WHERE rs.loan.id IN :loanIds AND rs.repayment IS NULL " +
+           "AND rs.installmentNumber = (SELECT MIN(n.installmentNumber) FROM RepaymentSchedule n " +
+           "WHERE n.loan.id = rs.loan.id AND n.repayment IS NULL)")
+    List<RepaymentSchedule> findNextUnpaidByLoanIds(@Param("loanIds") Collection<Long> loanIds);
+
     // Find overdue schedules (all - for admin)
     @Query("SELECT rs FROM RepaymentSchedule rs WHERE rs.repayment IS NULL AND rs.dueDate < :today")
     List<RepaymentSchedule> findOverdueSchedules(@Param("today") LocalDate today);
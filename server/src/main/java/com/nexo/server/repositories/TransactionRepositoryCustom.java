@@ -0,0 +1,24 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.Transaction;
+import com.nexo.server.enums.TransactionStatus;
+import com.nexo.server.enums.TransactionType;
+import com.nexo.server.utils.CursorCodec;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TransactionRepositoryCustom {
+
+    /**
+     * Keyset page of a user's transactions ordered by (createdAt, id) descending.
+     * Null filters are left out of the query entirely so each combination can use
+     * its matching composite index.
+     */
+    List<Transaction> findPageByUserIdAfterCursor(Long userId, TransactionType type, TransactionStatus status,
+                                                  LocalDateTime fromDate, LocalDateTime toDate,
+                                                  CursorCodec.Cursor cursor, int limit);
+
+    long countByUserIdWithFilters(Long userId, TransactionType type, TransactionStatus status,
+                                  LocalDateTime fromDate, LocalDateTime toDate);
+}
@@ -0,0 +1,75 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.Transaction;
+import com.nexo.server.enums.TransactionStatus;
+import com.nexo.server.enums.TransactionType;
+import com.nexo.server.utils.CursorCodec;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TransactionRepositoryImpl implements TransactionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Transaction> findPageByUserIdAfterCursor(Long userId, TransactionType type, TransactionStatus status,
+                                                         LocalDateTime fromDate, LocalDateTime toDate,
+                                                         CursorCodec.Cursor cursor, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder jpql = new StringBuilder("SELECT t FROM Transaction t " +
+                "JOIN FETCH t.user LEFT JOIN FETCH t.loan LEFT JOIN FETCH t.investment WHERE ");
+        appendFilters(jpql, params, userId, type, status, fromDate, toDate);
+        if (cursor != null) {
+            jpql.append(" AND (t.createdAt < :cursorCreatedAt OR (t.createdAt = :cursorCreatedAt AND t.id < :cursorId))");
+            params.put("cursorCreatedAt", cursor.createdAt());
+            params.put("cursorId", cursor.id());
+        }
+        jpql.append(" ORDER BY t.createdAt DESC, t.id DESC");
+
+        TypedQuery<Transaction> query = entityManager.createQuery(jpql.toString(), Transaction.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long countByUserIdWithFilters(Long userId, TransactionType type, TransactionStatus status,
+                                         LocalDateTime fromDate, LocalDateTime toDate) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder jpql = new StringBuilder("SELECT COUNT(t) FROM Transaction t WHERE ");
+        appendFilters(jpql, params, userId, type, status, fromDate, toDate);
+
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        params.forEach(query::setParameter);
+        return query.getSingleResult();
+    }
+
+    private void appendFilters(StringBuilder jpql, Map<String, Object> params, Long userId,
+                               TransactionType type, TransactionStatus status,
+                               LocalDateTime fromDate, LocalDateTime toDate) {
+        jpql.append("t.user.id = :userId");
+        params.put("userId", userId);
+        if (type != null) {
+            jpql.append(" AND t.type = :type");
+            params.put("type", type);
+        }
+        if (status != null) {
+            jpql.append(" AND t.status = :status");
+            params.put("status", status);
+        }
+        if (fromDate != null) {
+            jpql.append(" AND t.createdAt >= :fromDate");
+            params.put("fromDate", fromDate);
+        }
+        if (toDate != null) {
+            jpql.append(" AND t.createdAt <= :toDate");
+            params.put("toDate", toDate);
+        }
+    }
+}
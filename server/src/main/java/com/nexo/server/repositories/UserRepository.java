@@ -10,11 +10,17 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    // Borrower fields shown on loan cards: [id, firstName, lastName, creditScore]
+    @Query("SELECT u.id, u.firstName, u.lastName, u.creditScore FROM User u WHERE u.id IN :ids")
+    List<Object[]> findBorrowerSummaries(@Param("ids") Collection<Long> ids);
+
     Optional<User> findByEmail(String email);
 
     Optional<User> findByUuid(String uuid);
@@ -0,0 +1,21 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.WalletBalanceSnapshotFlow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface WalletBalanceSnapshotFlowRepository extends JpaRepository<WalletBalanceSnapshotFlow, Long> {
+
+    @Query("SELECT f.transactionType, SUM(f.inflow), SUM(f.outflow) FROM WalletBalanceSnapshotFlow f " +
+           "WHERE f.walletId = :walletId AND f.snapshotDate BETWEEN :fromDate AND :toDate " +
+           "GROUP BY f.transactionType")
+    List<Object[]> sumByTransactionType(@Param("walletId") Long walletId,
+                                        @Param("fromDate") LocalDate fromDate,
+                                        @Param("toDate") LocalDate toDate);
+}
@@ -0,0 +1,15 @@
+package com.nexo.server.repositories;
+
+import com.nexo.server.entities.WalletBalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface WalletBalanceSnapshotRepository extends JpaRepository<WalletBalanceSnapshot, Long> {
+
+    Optional<WalletBalanceSnapshot> findTopByWalletIdAndSnapshotDateLessThanEqualOrderBySnapshotDateDesc(
+            Long walletId, LocalDate date);
+}
@@ -8,6 +8,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -19,9 +21,16 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
     @Query("SELECT w FROM Wallet w WHERE w.user.id = :userId")
     Optional<Wallet> findByUserIdForUpdate(@Param("userId") Long userId);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w WHERE w.user.id IN :userIds ORDER BY w.id")
+    List<Wallet> findAllByUserIdInForUpdate(@Param("userIds") Collection<Long> userIds);
+
     @Query("SELECT w FROM Wallet w JOIN FETCH w.user WHERE w.id = :id")
     Optional<Wallet> findByIdWithUser(@Param("id") Long id);
 
     boolean existsByUserId(Long userId);
+
+    @Query("SELECT w.user.id, w.id FROM Wallet w WHERE w.user.id IN :userIds")
+    List<Object[]> findWalletIdsByUserIds(@Param("userIds") Collection<Long> userIds);
 }
 
@@ -0,0 +1,102 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.Loan;
+import com.nexo.server.utils.Amortization;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds repayment schedules with {@link Amortization} and writes them with JDBC batch
+ * inserts. Installment {@code i} falls due {@code i} months after the anchor date, taken
+ * from the anchor each time so a month-end anchor is not dragged earlier by short months.
+ * The loan's progress counters are reset to match the new schedule; they are written
+ * when the caller's transaction flushes the loan.
+ */
+@Service
+@Slf4j
+public class AmortizationService {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_SCHEDULE_SQL =
+            "INSERT INTO repayment_schedules (loan_id, installment_number, due_date, principal_amount, " +
+            "interest_amount, total_amount, remaining_principal, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AmortizationService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param principal amount to amortize (requested or funded amount)
+     * @param anchor    date the first installment is counted from, usually the disbursement date
+     */
+    public record ScheduleRequest(Loan loan, BigDecimal principal, LocalDate anchor) {
+    }
+
+    /**
+     * Write the schedule for one loan. The loan must have no schedule yet.
+     *
+     * @return number of installments written
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int createSchedule(Loan loan, BigDecimal principal, LocalDate anchor) {
+        return createSchedules(List.of(new ScheduleRequest(loan, principal, anchor)));
+    }
+
+    /**
+     * Write schedules for many loans, flushing every {@value #BATCH_SIZE} installments.
+     *
+     * @return number of installments written
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int createSchedules(List<ScheduleRequest> requests) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Amortization.Schedule schedule = new Amortization.Schedule();
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        int written = 0;
+        for (ScheduleRequest request : requests) {
+            Loan loan = request.loan();
+            long principal = Amortization.toVnd(request.principal());
+            Amortization.compute(loan.getRepaymentType(), principal,
+                    Amortization.toBasisPoints(loan.getInterestRate()), loan.getTermMonths(), schedule);
+            loan.setInstallmentCount(schedule.size());
+            loan.setPaidInstallments(0);
+            loan.setOutstandingPrincipal(BigDecimal.valueOf(principal));
+            for (int i = 0; i < schedule.size(); i++) {
+                batch.add(new Object[]{loan.getId(), i + 1, Date.valueOf(request.anchor().plusMonths(i + 1)),
+                        BigDecimal.valueOf(schedule.principal(i)), BigDecimal.valueOf(schedule.interest(i)),
+                        BigDecimal.valueOf(schedule.total(i)), BigDecimal.valueOf(schedule.remaining(i)), now, now});
+                if (batch.size() == BATCH_SIZE) {
+                    written += flush(batch);
+                }
+            }
+        }
+        written += flush(batch);
+        log.debug("Wrote {} installments for {} loans", written, requests.size());
+        return written;
+    }
+
+    private int flush(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SCHEDULE_SQL, batch);
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+}
@@ -0,0 +1,421 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.JobCheckpoint;
+import com.nexo.server.entities.User;
+import com.nexo.server.enums.NotificationType;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import com.nexo.server.repositories.JobCheckpointRepository;
+import com.nexo.server.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects due installments from the wallets of borrowers who opted in to automatic repayment.
+ *
+ * <p>A daily run selects every unpaid installment due on or before the run date, oldest
+ * first, and partitions the borrowers by id across a worker pool. A borrower's installments
+ * always land in one chunk of one partition, so they are collected in due order and a
+ * shortfall stops that borrower's later installments. Each chunk is one transaction with a
+ * fixed number of statements whatever its size: loans and then every wallet involved are
+ * locked in id order, and {@link RepaymentDistributor} writes the chunk's repayments as
+ * batches, the same way it writes a borrower's own payment. Notifications are inserted after
+ * commit, credit score events after that.
+ *
+ * <p>A chunk that fails on a transient error (deadlock, lock timeout, a concurrent
+ * investment change) is retried with jittered exponential backoff, then retried borrower
+ * by borrower. Selection is by "not yet paid", so a rerun collects only what is left. The
+ * checkpoint records each run's outcome and throughput.
+ */
+@Service
+@Slf4j
+public class AutoDebitService {
+
+    static final String JOB_NAME = "repayment-auto-debit";
+
+    private static final String DUE_SQL =
+            "SELECT s.id, l.borrower_id FROM repayment_schedules s " +
+            "JOIN loans l ON l.id = s.loan_id JOIN users u ON u.id = l.borrower_id " +
+            "WHERE s.due_date <= ? AND l.status IN ('ACTIVE', 'REPAYING') AND u.auto_debit_enabled " +
+            "AND NOT EXISTS (SELECT 1 FROM repayments r WHERE r.schedule_id = s.id) " +
+            "ORDER BY l.borrower_id, s.due_date, s.loan_id, s.installment_number";
+
+    private static final String LOCK_LOANS_SQL =
+            "SELECT " + RepaymentDistributor.LOAN_STATE_COLUMNS + " FROM loans " +
+            "WHERE id IN (SELECT loan_id FROM repayment_schedules WHERE id = ANY(?)) " +
+            "AND status IN ('ACTIVE', 'REPAYING') ORDER BY id FOR UPDATE";
+
+    // Read after the loan locks, so a manual payment that committed meanwhile drops out
+    private static final String DUE_DETAIL_SQL =
+            "SELECT s.id, s.loan_id, s.installment_number, s.due_date, s.principal_amount, s.interest_amount, " +
+            "s.total_amount, l.loan_code, l.borrower_id FROM repayment_schedules s JOIN loans l ON l.id = s.loan_id " +
+            "WHERE s.id = ANY(?) AND l.id = ANY(?) " +
+            "AND NOT EXISTS (SELECT 1 FROM repayments r WHERE r.schedule_id = s.id) " +
+            "ORDER BY l.borrower_id, s.due_date, s.loan_id, s.installment_number";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final JobLeaseService jobLeaseService;
+    private final RepaymentDistributor repaymentDistributor;
+    private final CreditScoreService creditScoreService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.auto-debit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.auto-debit.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.auto-debit.parallelism:8}")
+    private int parallelism;
+
+    @Value("${app.auto-debit.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${app.auto-debit.initial-backoff:PT0.1S}")
+    private Duration initialBackoff;
+
+    @Value("${app.auto-debit.max-backoff:PT5S}")
+    private Duration maxBackoff;
+
+    @Value("${app.auto-debit.lease:PT2H}")
+    private Duration lease;
+
+    /**
+     * Outcome of one collection run.
+     */
+    public record RunResult(long due, long collected, long shortfalls, long failed, BigDecimal amount,
+                            long elapsedMs) {
+        static final RunResult SKIPPED = new RunResult(0, 0, 0, 0, BigDecimal.ZERO, 0);
+
+        public long installmentsPerSecond() {
+            return elapsedMs > 0 ? (collected + shortfalls) * 1000 / elapsedMs : collected + shortfalls;
+        }
+    }
+
+    private record CreditEvent(long borrowerId, long repaymentId, int daysLate, Long completedLoanId) {
+    }
+
+    private record ChunkResult(int collected, int shortfalls, int failed, BigDecimal amount,
+                               List<CreditEvent> creditEvents) {
+        static final ChunkResult EMPTY = new ChunkResult(0, 0, 0, BigDecimal.ZERO, List.of());
+
+        ChunkResult plus(ChunkResult other) {
+            List<CreditEvent> events = new ArrayList<>(creditEvents);
+            events.addAll(other.creditEvents);
+            return new ChunkResult(collected + other.collected, shortfalls + other.shortfalls,
+                    failed + other.failed, amount.add(other.amount), events);
+        }
+    }
+
+    public AutoDebitService(JdbcTemplate jdbcTemplate, UserRepository userRepository,
+                            JobCheckpointRepository checkpointRepository, JobLeaseService jobLeaseService,
+                            RepaymentDistributor repaymentDistributor, CreditScoreService creditScoreService,
+                            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.jobLeaseService = jobLeaseService;
+        this.repaymentDistributor = repaymentDistributor;
+        this.creditScoreService = creditScoreService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Opt a borrower in to or out of automatic collection.
+     */
+    @Transactional
+    public boolean setEnabled(Long userId, boolean enabled) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", userId));
+        user.setAutoDebitEnabled(enabled);
+        userRepository.save(user);
+        log.info("Automatic repayment {} for user {}", enabled ? "enabled" : "disabled", userId);
+        return enabled;
+    }
+
+    @Scheduled(cron = "${app.auto-debit.cron:0 0 6 * * ?}")
+    public void scheduledCollection() {
+        if (enabled) {
+            collect(LocalDate.now());
+        }
+    }
+
+    /**
+     * Collect every installment due on or before {@code date} from opted-in borrowers.
+     */
+    public RunResult collect(LocalDate date) {
+        if (!jobLeaseService.tryAcquire(JOB_NAME, lease)) {
+            log.info("Automatic repayment collection is running on another node, skipping");
+            return RunResult.SKIPPED;
+        }
+        long started = System.currentTimeMillis();
+        int due = 0;
+        ChunkResult total = ChunkResult.EMPTY;
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "auto-debit-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<List<Long[]>> partitions = partition(date);
+            due = partitions.stream().flatMap(List::stream).mapToInt(chunk -> chunk.length).sum();
+            log.info("Automatic repayment collection for {}: {} installment(s) in {} partition(s)",
+                    date, due, partitions.size());
+
+            CompletionService<ChunkResult> completion = new ExecutorCompletionService<>(workers);
+            int running = 0;
+            for (List<Long[]> chunks : partitions) {
+                if (!chunks.isEmpty()) {
+                    completion.submit(() -> collectPartition(chunks, date));
+                    running++;
+                }
+            }
+            // Wake well inside the lease to renew it while the partitions run
+            long renewEveryMs = Math.max(1000, lease.toMillis() / 3);
+            while (running > 0) {
+                Future<ChunkResult> done = completion.poll(renewEveryMs, TimeUnit.MILLISECONDS);
+                if (done != null) {
+                    total = total.plus(done.get());
+                    running--;
+                }
+                if (!jobLeaseService.renew(JOB_NAME, lease)) {
+                    log.warn("Automatic repayment collection lost its lease, stopping");
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Automatic repayment collection interrupted");
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("Automatic repayment collection failed: {}", cause.getMessage(), cause);
+        } finally {
+            workers.shutdownNow();
+            jobLeaseService.release(JOB_NAME);
+        }
+
+        RunResult result = new RunResult(due, total.collected(), total.shortfalls(), total.failed(),
+                total.amount(), System.currentTimeMillis() - started);
+        String summary = String.format("%d due, %d collected (%s VND), %d short of funds, %d failed in %d ms, %d installments/s",
+                result.due(), result.collected(), result.amount(), result.shortfalls(), result.failed(),
+                result.elapsedMs(), result.installmentsPerSecond());
+        saveCheckpoint(date, summary);
+        log.info("Automatic repayment collection for {}: {}", date, summary);
+        return result;
+    }
+
+    /**
+     * Due installments grouped into chunks per partition. A borrower's installments stay
+     * together and in due order; a chunk closes at the first borrower boundary past the chunk size.
+     */
+    private List<List<Long[]>> partition(LocalDate date) {
+        List<List<Long[]>> partitions = new ArrayList<>(parallelism);
+        List<List<Long>> open = new ArrayList<>(parallelism);
+        for (int p = 0; p < parallelism; p++) {
+            partitions.add(new ArrayList<>());
+            open.add(new ArrayList<>());
+        }
+        long[] previousBorrower = {-1};
+        jdbcTemplate.query(DUE_SQL, rs -> {
+            long borrowerId = rs.getLong("borrower_id");
+            int p = (int) Math.floorMod(borrowerId, (long) parallelism);
+            List<Long> chunk = open.get(p);
+            if (borrowerId != previousBorrower[0] && chunk.size() >= chunkSize) {
+                partitions.get(p).add(chunk.toArray(Long[]::new));
+                chunk.clear();
+            }
+            chunk.add(rs.getLong("id"));
+            previousBorrower[0] = borrowerId;
+        }, Date.valueOf(date));
+        for (int p = 0; p < parallelism; p++) {
+            if (!open.get(p).isEmpty()) {
+                partitions.get(p).add(open.get(p).toArray(Long[]::new));
+            }
+        }
+        return partitions;
+    }
+
+    private ChunkResult collectPartition(List<Long[]> chunks, LocalDate date) {
+        ChunkResult total = ChunkResult.EMPTY;
+        for (Long[] chunk : chunks) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            ChunkResult result = collectWithFallback(chunk, date);
+            recordCreditEvents(result.creditEvents());
+            total = total.plus(new ChunkResult(result.collected(), result.shortfalls(), result.failed(),
+                    result.amount(), List.of()));
+        }
+        return total;
+    }
+
+    private ChunkResult collectWithFallback(Long[] scheduleIds, LocalDate date) {
+        try {
+            return collectWithRetry(scheduleIds, date);
+        } catch (RuntimeException e) {
+            List<Long[]> borrowers = splitByBorrower(scheduleIds);
+            if (borrowers.size() == 1) {
+                log.error("Automatic repayment of {} installment(s) failed: {}", scheduleIds.length, e.getMessage());
+                return new ChunkResult(0, 0, scheduleIds.length, BigDecimal.ZERO, List.of());
+            }
+            log.warn("Automatic repayment chunk of {} installment(s) failed ({}), retrying borrowers individually",
+                    scheduleIds.length, e.getMessage());
+            ChunkResult result = ChunkResult.EMPTY;
+            for (Long[] ids : borrowers) {
+                result = result.plus(collectWithFallback(ids, date));
+            }
+            return result;
+        }
+    }
+
+    private ChunkResult collectWithRetry(Long[] scheduleIds, LocalDate date) {
+        long backoffMs = initialBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> collectChunk(scheduleIds, date));
+            } catch (TransientDataAccessException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                long sleepMs = ThreadLocalRandom.current().nextLong(backoffMs + 1);
+                log.debug("Automatic repayment chunk hit {} on attempt {}, retrying in {} ms",
+                        e.getClass().getSimpleName(), attempt, sleepMs);
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoffMs = Math.min(backoffMs * 2, maxBackoff.toMillis());
+            }
+        }
+    }
+
+    private List<Long[]> splitByBorrower(Long[] scheduleIds) {
+        Map<Long, List<Long>> byBorrower = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT s.id, l.borrower_id FROM repayment_schedules s JOIN loans l ON l.id = s.loan_id " +
+                        "WHERE s.id = ANY(?) ORDER BY l.borrower_id, s.due_date, s.loan_id, s.installment_number",
+                rs -> {
+                    byBorrower.computeIfAbsent(rs.getLong("borrower_id"), b -> new ArrayList<>()).add(rs.getLong("id"));
+                }, (Object) scheduleIds);
+        return byBorrower.values().stream().map(ids -> ids.toArray(Long[]::new)).toList();
+    }
+
+    private ChunkResult collectChunk(Long[] scheduleIds, LocalDate date) {
+        // Loans first, then every wallet involved, each in id order
+        Map<Long, RepaymentDistributor.LoanState> loans = repaymentDistributor.lockLoans(LOCK_LOANS_SQL, scheduleIds);
+        if (loans.isEmpty()) {
+            return ChunkResult.EMPTY;
+        }
+        Long[] loanIds = loans.keySet().toArray(Long[]::new);
+        List<RepaymentDistributor.Due> dues = jdbcTemplate.query(DUE_DETAIL_SQL, (rs, i) -> new RepaymentDistributor.Due(
+                rs.getLong("id"), rs.getLong("loan_id"), rs.getInt("installment_number"),
+                rs.getDate("due_date").toLocalDate(), rs.getBigDecimal("principal_amount"),
+                rs.getBigDecimal("interest_amount"), rs.getBigDecimal("total_amount"), rs.getString("loan_code"),
+                rs.getLong("borrower_id")), scheduleIds, loanIds);
+        if (dues.isEmpty()) {
+            return ChunkResult.EMPTY;
+        }
+        Map<Long, List<RepaymentDistributor.Share>> sharesByLoan = repaymentDistributor.lenderShares(loanIds);
+        RepaymentDistributor.Wallets wallets = repaymentDistributor.lockWallets(
+                dues.stream().map(RepaymentDistributor.Due::borrowerId).toList(), sharesByLoan);
+
+        // Collect in due order; a borrower's first shortfall stops their later installments
+        List<RepaymentDistributor.Debit> collections = new ArrayList<>(dues.size());
+        List<NotificationService.Draft> notifications = new ArrayList<>();
+        Set<Long> stopped = new HashSet<>();
+        int shortfalls = 0;
+        BigDecimal collected = BigDecimal.ZERO;
+        for (RepaymentDistributor.Due due : dues) {
+            if (stopped.contains(due.borrowerId())) {
+                shortfalls++;
+                continue;
+            }
+            BigDecimal amount = due.total().add(LateFeeService.lateFee(due.total(), due.dueDate(), date));
+            Long walletId = wallets.walletOf(due.borrowerId());
+            if (walletId == null || !wallets.reserve(walletId, amount)) {
+                stopped.add(due.borrowerId());
+                shortfalls++;
+                notifications.add(new NotificationService.Draft(due.borrowerId(), NotificationType.PAYMENT,
+                        "Automatic Repayment Failed",
+                        String.format("Installment #%d of loan %s (%,.0f VND) could not be collected from your " +
+                                "wallet. Top up your balance or pay it manually.",
+                                due.installmentNumber(), due.loanCode(), amount),
+                        "/borrower/loans/" + due.loanId(), due.loanId(), null));
+                continue;
+            }
+            RepaymentDistributor.Debit collection = RepaymentDistributor.Debit.of(due, date, walletId);
+            collections.add(collection);
+            collected = collected.add(collection.amount());
+            notifications.add(new NotificationService.Draft(due.borrowerId(), NotificationType.PAYMENT,
+                    "Repayment Collected",
+                    String.format("Installment #%d of loan %s (%,.0f VND) was collected from your wallet",
+                            due.installmentNumber(), due.loanCode(), collection.amount()),
+                    "/borrower/loans/" + due.loanId(), due.loanId(), null));
+        }
+        repaymentDistributor.notifyAfterCommit(notifications);
+        if (collections.isEmpty()) {
+            return new ChunkResult(0, shortfalls, 0, BigDecimal.ZERO, List.of());
+        }
+
+        RepaymentDistributor.Collected written = repaymentDistributor.collect(collections, loans, sharesByLoan,
+                wallets, date);
+
+        List<CreditEvent> creditEvents = new ArrayList<>(collections.size());
+        Set<Long> completionRecorded = new HashSet<>();
+        for (int c = collections.size() - 1; c >= 0; c--) {
+            RepaymentDistributor.Due due = collections.get(c).due();
+            // The completion event goes with the loan's last collected installment
+            Long completed = written.completedLoans().containsKey(due.loanId()) && completionRecorded.add(due.loanId())
+                    ? due.loanId() : null;
+            creditEvents.add(new CreditEvent(due.borrowerId(), written.repaymentIds()[c],
+                    collections.get(c).daysLate(), completed));
+        }
+        Collections.reverse(creditEvents);
+        return new ChunkResult(collections.size(), shortfalls, 0, collected, creditEvents);
+    }
+
+    private void recordCreditEvents(List<CreditEvent> events) {
+        for (CreditEvent event : events) {
+            try {
+                creditScoreService.onRepaymentMade(event.borrowerId(), event.repaymentId(), event.daysLate());
+                if (event.completedLoanId() != null) {
+                    creditScoreService.onLoanCompleted(event.borrowerId(), event.completedLoanId());
+                }
+            } catch (Exception e) {
+                log.error("Failed to update credit score after repayment {}: {}", event.repaymentId(), e.getMessage());
+            }
+        }
+    }
+
+    private void saveCheckpoint(LocalDate date, String details) {
+        JobCheckpoint checkpoint = checkpointRepository.findByJobName(JOB_NAME)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(JOB_NAME).build());
+        checkpoint.setLastProcessedDate(date);
+        checkpoint.setDetails(details);
+        checkpointRepository.save(checkpoint);
+    }
+}
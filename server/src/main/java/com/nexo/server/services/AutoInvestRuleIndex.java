@@ -0,0 +1,155 @@
+package com.nexo.server.services;
+
+import com.nexo.server.enums.LoanPurpose;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * Immutable match index over active auto-invest rules.
+ *
+ * <p>Rules are partitioned into cells by (risk grade, purpose); a rule without a grade
+ * restriction is placed in every grade's cells and a rule without a purpose in the
+ * "any purpose" cell. Within a cell, rules are held in parallel arrays sorted by minimum
+ * rate, with a summary per block of {@value #BLOCK} rules: the highest maximum rate, the
+ * lowest minimum term and the highest maximum term in the block. A loan touches two cells,
+ * binary-searches each for the rules whose minimum rate it meets, and within that prefix
+ * skips every block whose summary rules out its rate or term, checking rules one by one
+ * only in blocks that may hold a match. Rules without a minimum rate sort first and are
+ * pruned the same way.
+ */
+final class AutoInvestRuleIndex {
+
+    static final List<String> GRADES = List.of("A", "B", "C", "D", "E");
+
+    // Extra grade slot for loans without a known grade; only unrestricted rules match them
+    private static final int GRADE_SLOTS = GRADES.size() + 1;
+    private static final int PURPOSE_SLOTS = LoanPurpose.values().length + 1;
+    private static final int ANY_PURPOSE = PURPOSE_SLOTS - 1;
+    private static final int BLOCK = 32;
+
+    record Rule(long id, Set<String> grades, LoanPurpose purpose, BigDecimal minRate, BigDecimal maxRate,
+                Integer minTerm, Integer maxTerm) {
+    }
+
+    private static final class Cell {
+        final long[] ids;
+        final int[] minRate;
+        final int[] maxRate;
+        final int[] minTerm;
+        final int[] maxTerm;
+        // Per block of BLOCK rules: highest maxRate, lowest minTerm, highest maxTerm
+        final int[] blockMaxRate;
+        final int[] blockMinTerm;
+        final int[] blockMaxTerm;
+
+        Cell(List<Rule> rules) {
+            rules.sort(Comparator.comparingInt(rule -> basisPoints(rule.minRate(), Integer.MIN_VALUE)));
+            int n = rules.size();
+            ids = new long[n];
+            minRate = new int[n];
+            maxRate = new int[n];
+            minTerm = new int[n];
+            maxTerm = new int[n];
+            int blocks = (n + BLOCK - 1) / BLOCK;
+            blockMaxRate = new int[blocks];
+            blockMinTerm = new int[blocks];
+            blockMaxTerm = new int[blocks];
+            Arrays.fill(blockMaxRate, Integer.MIN_VALUE);
+            Arrays.fill(blockMinTerm, Integer.MAX_VALUE);
+            Arrays.fill(blockMaxTerm, Integer.MIN_VALUE);
+            for (int i = 0; i < n; i++) {
+                Rule rule = rules.get(i);
+                ids[i] = rule.id();
+                minRate[i] = basisPoints(rule.minRate(), Integer.MIN_VALUE);
+                maxRate[i] = basisPoints(rule.maxRate(), Integer.MAX_VALUE);
+                minTerm[i] = rule.minTerm() != null ? rule.minTerm() : Integer.MIN_VALUE;
+                maxTerm[i] = rule.maxTerm() != null ? rule.maxTerm() : Integer.MAX_VALUE;
+                int b = i / BLOCK;
+                blockMaxRate[b] = Math.max(blockMaxRate[b], maxRate[i]);
+                blockMinTerm[b] = Math.min(blockMinTerm[b], minTerm[i]);
+                blockMaxTerm[b] = Math.max(blockMaxTerm[b], maxTerm[i]);
+            }
+        }
+
+        void match(int rate, int term, List<Long> out) {
+            // First rule whose minimum rate is above the loan's rate
+            int lo = 0;
+            int hi = minRate.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (minRate[mid] <= rate) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int start = 0; start < lo; start += BLOCK) {
+                int b = start / BLOCK;
+                if (blockMaxRate[b] < rate || blockMinTerm[b] > term || blockMaxTerm[b] < term) {
+                    continue;
+                }
+                int end = Math.min(start + BLOCK, lo);
+                for (int i = start; i < end; i++) {
+                    if (rate <= maxRate[i] && minTerm[i] <= term && term <= maxTerm[i]) {
+                        out.add(ids[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private final Cell[] cells;
+    private final int size;
+
+    private AutoInvestRuleIndex(Cell[] cells, int size) {
+        this.cells = cells;
+        this.size = size;
+    }
+
+    static AutoInvestRuleIndex build(Collection<Rule> rules) {
+        List<List<Rule>> buckets = new ArrayList<>(GRADE_SLOTS * PURPOSE_SLOTS);
+        for (int i = 0; i < GRADE_SLOTS * PURPOSE_SLOTS; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (Rule rule : rules) {
+            int purpose = rule.purpose() != null ? rule.purpose().ordinal() : ANY_PURPOSE;
+            for (int grade = 0; grade < GRADE_SLOTS; grade++) {
+                boolean accepts = rule.grades().isEmpty()
+                        || grade < GRADES.size() && rule.grades().contains(GRADES.get(grade));
+                if (accepts) {
+                    buckets.get(grade * PURPOSE_SLOTS + purpose).add(rule);
+                }
+            }
+        }
+        Cell[] cells = new Cell[buckets.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Cell(buckets.get(i));
+        }
+        return new AutoInvestRuleIndex(cells, rules.size());
+    }
+
+    /**
+     * Ids of the rules whose criteria the loan satisfies, in no particular order.
+     */
+    List<Long> match(String riskGrade, LoanPurpose purpose, BigDecimal interestRate, int termMonths) {
+        int grade = riskGrade != null ? GRADES.indexOf(riskGrade) : -1;
+        int gradeSlot = grade >= 0 ? grade : GRADES.size();
+        int rate = basisPoints(interestRate, 0);
+        List<Long> matches = new ArrayList<>();
+        if (purpose != null) {
+            cells[gradeSlot * PURPOSE_SLOTS + purpose.ordinal()].match(rate, termMonths, matches);
+        }
+        cells[gradeSlot * PURPOSE_SLOTS + ANY_PURPOSE].match(rate, termMonths, matches);
+        return matches;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static int basisPoints(BigDecimal rate, int ifNull) {
+        return rate != null ? rate.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact() : ifNull;
+    }
+}
@@ -0,0 +1,457 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.autoinvest.AutoInvestRuleRequest;
+import com.nexo.server.dto.autoinvest.AutoInvestRuleResponse;
+import com.nexo.server.dto.investment.InvestRequest;
+import com.nexo.server.entities.AutoInvestRule;
+import com.nexo.server.entities.Loan;
+import com.nexo.server.entities.User;
+import com.nexo.server.entities.Wallet;
+import com.nexo.server.enums.LoanPurpose;
+import com.nexo.server.enums.LoanStatus;
+import com.nexo.server.exceptions.BadRequestException;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import com.nexo.server.repositories.AutoInvestRuleRepository;
+import com.nexo.server.repositories.LoanRepository;
+import com.nexo.server.repositories.UserRepository;
+import com.nexo.server.repositories.WalletRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Lender auto-invest rules and the engine that applies them to newly listed loans.
+ *
+ * <p>Active rules are held in an {@link AutoInvestRuleIndex}, rebuilt lazily after rule
+ * changes and reloaded periodically so edits made on other nodes are picked up. When a
+ * loan enters FUNDING, allocation runs after the approving transaction commits: matched
+ * rules are filtered in one query (KYC, remaining cap, no existing position, not the
+ * borrower) and ordered least-recently-filled first, so every lender gets a turn at the
+ * front of the queue.
+ *
+ * <p>Candidates are invested in chunks, one transaction per chunk. Each chunk locks the
+ * loan row and then the lenders' wallets in id order, the same order a manual investment
+ * takes, so balances checked under the lock are the balances debited. A rule's cap is
+ * claimed with a conditional increment before its investment is placed, and the investment
+ * records the rule. If a chunk fails, its candidates are retried one per transaction.
+ *
+ * <p>{@code invested_amount} is the rule's outstanding exposure: principal leaves it through
+ * {@link #releaseClaims} when a loan's funding expires and investments are refunded, when a
+ * note is sold on the secondary market, and as installments repay principal.
+ */
+@Service
+@Slf4j
+public class AutoInvestService {
+
+    private static final int MAX_RULES_PER_LENDER = 20;
+    private static final BigDecimal MIN_INVESTMENT = new BigDecimal("100000");
+
+    private static final String ACTIVE_RULES_SQL =
+            "SELECT id, risk_grades, purpose, min_rate, max_rate, min_term, max_term " +
+            "FROM auto_invest_rules WHERE active";
+
+    private static final String CANDIDATES_SQL =
+            "SELECT r.id, r.lender_id, LEAST(r.amount_per_loan, r.portfolio_cap - r.invested_amount) AS amount " +
+            "FROM auto_invest_rules r JOIN users u ON u.id = r.lender_id " +
+            "WHERE r.id = ANY(?) AND r.active AND r.invested_amount < r.portfolio_cap " +
+            "AND u.kyc_status = 'APPROVED' AND r.lender_id <> ? " +
+            "AND NOT EXISTS (SELECT 1 FROM investments i WHERE i.loan_id = ? AND i.lender_id = r.lender_id) " +
+            "ORDER BY r.last_filled_at ASC NULLS FIRST, r.id";
+
+    private static final String LOCK_LOAN_SQL =
+            "SELECT requested_amount - funded_amount FROM loans WHERE id = ? AND status = 'FUNDING' FOR UPDATE";
+
+    private static final String CLAIM_CAP_SQL =
+            "UPDATE auto_invest_rules SET invested_amount = invested_amount + ?, last_filled_at = now(), " +
+            "updated_at = now() WHERE id = ? AND active AND invested_amount + ? <= portfolio_cap";
+
+    private static final String RELEASE_CAP_SQL =
+            "UPDATE auto_invest_rules SET invested_amount = GREATEST(invested_amount - ?, 0), updated_at = now() " +
+            "WHERE id = ?";
+
+    private final AutoInvestRuleRepository ruleRepository;
+    private final UserRepository userRepository;
+    private final LoanRepository loanRepository;
+    private final WalletRepository walletRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InvestmentService investmentService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "auto-invest");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Map<Long, AutoInvestRuleIndex.Rule> rules = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile long indexVersion = -1;
+    private volatile AutoInvestRuleIndex index = AutoInvestRuleIndex.build(List.of());
+
+    @Value("${app.auto-invest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.auto-invest.chunk-size:50}")
+    private int chunkSize;
+
+    private record Candidate(Long ruleId, Long lenderId, BigDecimal amount) {
+    }
+
+    private record ChunkResult(int placed, BigDecimal invested, boolean closed) {
+    }
+
+    public AutoInvestService(AutoInvestRuleRepository ruleRepository, UserRepository userRepository,
+                             LoanRepository loanRepository, WalletRepository walletRepository,
+                             JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             @Lazy InvestmentService investmentService) {
+        this.ruleRepository = ruleRepository;
+        this.userRepository = userRepository;
+        this.loanRepository = loanRepository;
+        this.walletRepository = walletRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.investmentService = investmentService;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // ==================== RULES ====================
+
+    public List<AutoInvestRuleResponse> getMyRules(Long lenderId) {
+        return ruleRepository.findByLenderIdOrderByCreatedAtDesc(lenderId).stream()
+                .map(this::toResponse)
+                .toList();
+    }
+
+    @Transactional
+    public AutoInvestRuleResponse createRule(Long lenderId, AutoInvestRuleRequest request) {
+        validate(request);
+        if (ruleRepository.countByLenderId(lenderId) >= MAX_RULES_PER_LENDER) {
+            throw new BusinessException("You can have at most " + MAX_RULES_PER_LENDER + " auto-invest rules");
+        }
+        User lender = userRepository.findById(lenderId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", lenderId));
+
+        AutoInvestRule rule = AutoInvestRule.builder().lender(lender).build();
+        apply(rule, request);
+        rule = ruleRepository.save(rule);
+        indexAfterCommit(rule);
+
+        log.info("Auto-invest rule {} created by lender {}", rule.getId(), lenderId);
+        return toResponse(rule);
+    }
+
+    @Transactional
+    public AutoInvestRuleResponse updateRule(Long lenderId, Long ruleId, AutoInvestRuleRequest request) {
+        validate(request);
+        AutoInvestRule rule = findOwnRule(lenderId, ruleId);
+        apply(rule, request);
+        rule = ruleRepository.save(rule);
+        indexAfterCommit(rule);
+        return toResponse(rule);
+    }
+
+    @Transactional
+    public void deleteRule(Long lenderId, Long ruleId) {
+        AutoInvestRule rule = findOwnRule(lenderId, ruleId);
+        ruleRepository.delete(rule);
+        afterCommit(() -> {
+            rules.remove(ruleId);
+            version.incrementAndGet();
+        });
+        log.info("Auto-invest rule {} deleted by lender {}", ruleId, lenderId);
+    }
+
+    private AutoInvestRule findOwnRule(Long lenderId, Long ruleId) {
+        AutoInvestRule rule = ruleRepository.findById(ruleId)
+                .orElseThrow(() -> new ResourceNotFoundException("AutoInvestRule", ruleId));
+        if (!rule.getLender().getId().equals(lenderId)) {
+            throw new ResourceNotFoundException("AutoInvestRule", ruleId);
+        }
+        return rule;
+    }
+
+    private void validate(AutoInvestRuleRequest request) {
+        if (request.getMinRate() != null && request.getMaxRate() != null
+                && request.getMinRate().compareTo(request.getMaxRate()) > 0) {
+            throw new BadRequestException("Minimum rate must not exceed maximum rate");
+        }
+        if (request.getMinTerm() != null && request.getMaxTerm() != null
+                && request.getMinTerm() > request.getMaxTerm()) {
+            throw new BadRequestException("Minimum term must not exceed maximum term");
+        }
+        if (request.getAmountPerLoan().compareTo(request.getPortfolioCap()) > 0) {
+            throw new BadRequestException("Amount per loan must not exceed the portfolio cap");
+        }
+    }
+
+    private void apply(AutoInvestRule rule, AutoInvestRuleRequest request) {
+        List<String> grades = request.getRiskGrades() != null ? request.getRiskGrades() : List.of();
+        rule.setRiskGrades(grades.isEmpty() ? null : grades.stream().distinct().sorted().collect(Collectors.joining(",")));
+        rule.setPurpose(request.getPurpose());
+        rule.setMinRate(request.getMinRate());
+        rule.setMaxRate(request.getMaxRate());
+        rule.setMinTerm(request.getMinTerm());
+        rule.setMaxTerm(request.getMaxTerm());
+        rule.setAmountPerLoan(request.getAmountPerLoan());
+        rule.setPortfolioCap(request.getPortfolioCap());
+        if (request.getActive() != null) {
+            rule.setActive(request.getActive());
+        }
+    }
+
+    // ==================== INDEX ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.auto-invest.reload-interval-ms:60000}",
+            fixedDelayString = "${app.auto-invest.reload-interval-ms:60000}")
+    public void reloadRules() {
+        if (!enabled) {
+            return;
+        }
+        Map<Long, AutoInvestRuleIndex.Rule> loaded = new ConcurrentHashMap<>();
+        jdbcTemplate.query(ACTIVE_RULES_SQL, rs -> {
+            AutoInvestRuleIndex.Rule rule = new AutoInvestRuleIndex.Rule(
+                    rs.getLong("id"),
+                    parseGrades(rs.getString("risk_grades")),
+                    rs.getString("purpose") != null ? LoanPurpose.valueOf(rs.getString("purpose")) : null,
+                    rs.getBigDecimal("min_rate"),
+                    rs.getBigDecimal("max_rate"),
+                    (Integer) rs.getObject("min_term"),
+                    (Integer) rs.getObject("max_term"));
+            loaded.put(rule.id(), rule);
+        });
+        rules = loaded;
+        version.incrementAndGet();
+        log.debug("Auto-invest rules loaded: {}", loaded.size());
+    }
+
+    private void indexAfterCommit(AutoInvestRule rule) {
+        AutoInvestRuleIndex.Rule entry = new AutoInvestRuleIndex.Rule(rule.getId(), parseGrades(rule.getRiskGrades()),
+                rule.getPurpose(), rule.getMinRate(), rule.getMaxRate(), rule.getMinTerm(), rule.getMaxTerm());
+        boolean active = Boolean.TRUE.equals(rule.getActive());
+        afterCommit(() -> {
+            if (active) {
+                rules.put(entry.id(), entry);
+            } else {
+                rules.remove(entry.id());
+            }
+            version.incrementAndGet();
+        });
+    }
+
+    private AutoInvestRuleIndex currentIndex() {
+        if (indexVersion == version.get()) {
+            return index;
+        }
+        synchronized (this) {
+            long target = version.get();
+            if (indexVersion != target) {
+                index = AutoInvestRuleIndex.build(List.copyOf(rules.values()));
+                indexVersion = target;
+            }
+            return index;
+        }
+    }
+
+    private static Set<String> parseGrades(String grades) {
+        if (grades == null || grades.isBlank()) {
+            return Set.of();
+        }
+        return Set.of(grades.split(","));
+    }
+
+    // ==================== ALLOCATION ====================
+
+    /**
+     * Run the rules against a loan once the current transaction, which moved it to
+     * FUNDING, has committed.
+     */
+    public void allocateAfterCommit(Long loanId) {
+        if (enabled) {
+            afterCommit(() -> executor.execute(() -> allocate(loanId)));
+        }
+    }
+
+    private void allocate(Long loanId) {
+        try {
+            Loan loan = loanRepository.findById(loanId).orElse(null);
+            if (loan == null || loan.getStatus() != LoanStatus.FUNDING) {
+                return;
+            }
+            long start = System.nanoTime();
+            List<Long> ruleIds = currentIndex().match(loan.getRiskGrade(), loan.getPurpose(),
+                    loan.getInterestRate(), loan.getTermMonths());
+            log.debug("Loan {} matched {} auto-invest rules in {} µs", loan.getLoanCode(), ruleIds.size(),
+                    (System.nanoTime() - start) / 1_000);
+            if (ruleIds.isEmpty()) {
+                return;
+            }
+
+            List<Candidate> candidates = findCandidates(loan, ruleIds);
+            int placed = 0;
+            BigDecimal invested = BigDecimal.ZERO;
+            for (int from = 0; from < candidates.size(); from += chunkSize) {
+                List<Candidate> chunk = candidates.subList(from, Math.min(from + chunkSize, candidates.size()));
+                ChunkResult result = allocateChunk(loanId, chunk);
+                placed += result.placed();
+                invested = invested.add(result.invested());
+                if (result.closed()) {
+                    break;
+                }
+            }
+            log.info("Auto-invest for loan {}: {} of {} candidates invested {}",
+                    loan.getLoanCode(), placed, candidates.size(), invested);
+        } catch (Exception e) {
+            log.error("Auto-invest failed for loan {}", loanId, e);
+        }
+    }
+
+    /**
+     * Eligible candidates in fair order, one per lender (their least recently filled rule).
+     */
+    private List<Candidate> findCandidates(Loan loan, List<Long> ruleIds) {
+        List<Candidate> rows = jdbcTemplate.query(CANDIDATES_SQL,
+                (rs, i) -> new Candidate(rs.getLong("id"), rs.getLong("lender_id"), rs.getBigDecimal("amount")),
+                ruleIds.toArray(Long[]::new), loan.getBorrower().getId(), loan.getId());
+        Map<Long, Candidate> byLender = new LinkedHashMap<>();
+        for (Candidate candidate : rows) {
+            byLender.putIfAbsent(candidate.lenderId(), candidate);
+        }
+        return List.copyOf(byLender.values());
+    }
+
+    private ChunkResult allocateChunk(Long loanId, List<Candidate> chunk) {
+        try {
+            return transactionTemplate.execute(status -> invest(loanId, chunk));
+        } catch (Exception e) {
+            log.warn("Auto-invest chunk for loan {} failed, retrying one by one: {}", loanId, e.getMessage());
+        }
+        int placed = 0;
+        BigDecimal invested = BigDecimal.ZERO;
+        for (Candidate candidate : chunk) {
+            try {
+                ChunkResult result = transactionTemplate.execute(status -> invest(loanId, List.of(candidate)));
+                placed += result.placed();
+                invested = invested.add(result.invested());
+                if (result.closed()) {
+                    return new ChunkResult(placed, invested, true);
+                }
+            } catch (Exception e) {
+                log.warn("Auto-invest rule {} skipped for loan {}: {}", candidate.ruleId(), loanId, e.getMessage());
+            }
+        }
+        return new ChunkResult(placed, invested, false);
+    }
+
+    private ChunkResult invest(Long loanId, List<Candidate> chunk) {
+        // Loan row first, then wallets in id order: the order a manual investment locks them in
+        List<BigDecimal> locked = jdbcTemplate.queryForList(LOCK_LOAN_SQL, BigDecimal.class, loanId);
+        if (locked.isEmpty() || locked.get(0).signum() <= 0) {
+            return new ChunkResult(0, BigDecimal.ZERO, true);
+        }
+        BigDecimal remaining = locked.get(0);
+        Map<Long, Wallet> wallets = walletRepository.findAllByUserIdInForUpdate(
+                        chunk.stream().map(Candidate::lenderId).toList()).stream()
+                .collect(Collectors.toMap(wallet -> wallet.getUser().getId(), Function.identity()));
+
+        int placed = 0;
+        BigDecimal invested = BigDecimal.ZERO;
+        for (Candidate candidate : chunk) {
+            BigDecimal amount = candidate.amount().min(remaining);
+            // Below the minimum only when it closes out the loan
+            if (amount.compareTo(MIN_INVESTMENT) < 0 && amount.compareTo(remaining) < 0) {
+                continue;
+            }
+            Wallet wallet = wallets.get(candidate.lenderId());
+            if (wallet == null || !Boolean.TRUE.equals(wallet.getIsActive())
+                    || wallet.getAvailableBalance().compareTo(amount) < 0) {
+                continue;
+            }
+            if (jdbcTemplate.update(CLAIM_CAP_SQL, amount, candidate.ruleId(), amount) == 0) {
+                continue;
+            }
+            investmentService.createInvestment(candidate.lenderId(),
+                    InvestRequest.builder().loanId(loanId).amount(amount).build(), candidate.ruleId());
+            placed++;
+            invested = invested.add(amount);
+            remaining = remaining.subtract(amount);
+            if (remaining.signum() <= 0) {
+                return new ChunkResult(placed, invested, true);
+            }
+        }
+        return new ChunkResult(placed, invested, false);
+    }
+
+    /**
+     * Give principal that is no longer at risk back to the rules that claimed it. Runs in the
+     * caller's transaction after its loan and wallet locks; rules are updated in id order.
+     *
+     * @param released principal by rule id
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void releaseClaims(Map<Long, BigDecimal> released) {
+        List<Map.Entry<Long, BigDecimal>> claims = released.entrySet().stream()
+                .filter(e -> e.getValue().signum() > 0)
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+        if (!claims.isEmpty()) {
+            jdbcTemplate.batchUpdate(RELEASE_CAP_SQL, claims, claims.size(), (ps, claim) -> {
+                ps.setBigDecimal(1, claim.getValue());
+                ps.setLong(2, claim.getKey());
+            });
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private AutoInvestRuleResponse toResponse(AutoInvestRule rule) {
+        return AutoInvestRuleResponse.builder()
+                .id(rule.getId())
+                .riskGrades(List.copyOf(new TreeSet<>(parseGrades(rule.getRiskGrades()))))
+                .purpose(rule.getPurpose())
+                .minRate(rule.getMinRate())
+                .maxRate(rule.getMaxRate())
+                .minTerm(rule.getMinTerm())
+                .maxTerm(rule.getMaxTerm())
+                .amountPerLoan(rule.getAmountPerLoan())
+                .portfolioCap(rule.getPortfolioCap())
+                .investedAmount(rule.getInvestedAmount())
+                .remainingCap(rule.getPortfolioCap().subtract(rule.getInvestedAmount()).max(BigDecimal.ZERO))
+                .active(rule.getActive())
+                .lastFilledAt(rule.getLastFilledAt())
+                .createdAt(rule.getCreatedAt())
+                .build();
+    }
+}
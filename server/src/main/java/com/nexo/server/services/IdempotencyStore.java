@@ -0,0 +1,49 @@
+package com.nexo.server.services;
+
+import java.time.Duration;
+
+/**
+ * Backend for {@code Idempotency-Key} handling. A key is first claimed as in-flight, then
+ * either completed with the response to replay or released when the request failed.
+ * Selected with {@code app.idempotency.store} ({@code postgres} or {@code memory}).
+ */
+public interface IdempotencyStore {
+
+    enum State {
+        /** The caller owns the key and must complete or release it. */
+        ACQUIRED,
+        /** Another request holds the key and has not finished yet. */
+        IN_PROGRESS,
+        /** The key finished earlier; {@link Acquisition#response()} holds the result. */
+        COMPLETED,
+        /** The key was used before for a different request. */
+        MISMATCH
+    }
+
+    record StoredResponse(int status, String body) {
+    }
+
+    record Acquisition(State state, StoredResponse response) {
+
+        static Acquisition of(State state) {
+            return new Acquisition(state, null);
+        }
+    }
+
+    /**
+     * Claims {@code key} for a request with the given fingerprint. An in-flight claim older
+     * than {@code inFlightTtl} is treated as abandoned and can be taken over.
+     */
+    Acquisition acquire(String key, String fingerprint, Duration inFlightTtl);
+
+    void complete(String key, StoredResponse response, Duration ttl);
+
+    void release(String key);
+
+    /**
+     * Drops expired keys.
+     *
+     * @return number of keys removed
+     */
+    int purgeExpired();
+}
@@ -0,0 +1,66 @@
+package com.nexo.server.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-node idempotency store. Keys are lost on restart, so use it only for local
+ * development or single-instance deployments.
+ */
+@Service
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "memory")
+@Slf4j
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private record Entry(String fingerprint, StoredResponse response, Instant expiresAt) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public Acquisition acquire(String key, String fingerprint, Duration inFlightTtl) {
+        Instant now = Instant.now();
+        Acquisition[] result = new Acquisition[1];
+        entries.compute(key, (k, existing) -> {
+            if (existing == null || existing.expiresAt().isBefore(now)) {
+                result[0] = Acquisition.of(State.ACQUIRED);
+                return new Entry(fingerprint, null, now.plus(inFlightTtl));
+            }
+            if (!existing.fingerprint().equals(fingerprint)) {
+                result[0] = Acquisition.of(State.MISMATCH);
+            } else if (existing.response() != null) {
+                result[0] = new Acquisition(State.COMPLETED, existing.response());
+            } else {
+                result[0] = Acquisition.of(State.IN_PROGRESS);
+            }
+            return existing;
+        });
+        return result[0];
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response, Duration ttl) {
+        entries.computeIfPresent(key, (k, existing) -> new Entry(existing.fingerprint(), response, Instant.now().plus(ttl)));
+    }
+
+    @Override
+    public void release(String key) {
+        entries.computeIfPresent(key, (k, existing) -> existing.response() == null ? null : existing);
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 600000)
+    public int purgeExpired() {
+        Instant now = Instant.now();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAt().isBefore(now));
+        return before - entries.size();
+    }
+}
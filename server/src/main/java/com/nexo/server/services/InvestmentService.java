@@ -1,14 +1,15 @@
 package com.nexo.server.services;
 
+import com.nexo.server.config.RetryOnConflict;
 import com.nexo.server.dto.common.PageResponse;
 import com.nexo.server.dto.investment.*;
 import com.nexo.server.entities.*;
 import com.nexo.server.enums.*;
-import com.nexo.server.exceptions.BadRequestException;
 import com.nexo.server.exceptions.BusinessException;
 import com.nexo.server.exceptions.ResourceNotFoundException;
 import com.nexo.server.repositories.*;
 import com.nexo.server.utils.CodeGenerator;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -35,9 +36,23 @@ public class InvestmentService {
     private final WalletService walletService;
     private final LoanService loanService;
     private final NotificationService notificationService;
+    private final MarketplaceReadModel marketplaceReadModel;
+    private final LoanFundingService loanFundingService;
+    private final EntityManager entityManager;
 
+    @RetryOnConflict
     @Transactional
     public InvestmentResponse createInvestment(Long lenderId, InvestRequest request) {
+        return createInvestment(lenderId, request, null);
+    }
+
+    /**
+     * Place an investment on behalf of an auto-invest rule, which has already claimed the
+     * amount against its cap.
+     */
+    @RetryOnConflict
+    @Transactional
+    public InvestmentResponse createInvestment(Long lenderId, InvestRequest request, Long autoInvestRuleId) {
         User lender = userRepository.findById(lenderId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", lenderId));
 
@@ -46,23 +61,14 @@ public class InvestmentService {
             throw new BusinessException("KYC must be approved before investing");
         }
 
-        Loan loan = loanRepository.findById(request.getLoanId())
+        // Reserve first: the conditional increment locks the loan row, so the loan read below is current
+        LoanFundingService.Reservation reservation =
+                loanFundingService.reserve(request.getLoanId(), lenderId, request.getAmount());
+        Loan loan = loanRepository.findByIdWithBorrower(request.getLoanId())
                 .orElseThrow(() -> new ResourceNotFoundException("Loan", request.getLoanId()));
-
-        // Validate loan status
-        if (loan.getStatus() != LoanStatus.FUNDING) {
-            throw new BadRequestException("Loan is not available for investment");
-        }
-
-        // Check if lender is not the borrower
-        if (loan.getBorrower().getId().equals(lenderId)) {
-            throw new BadRequestException("You cannot invest in your own loan");
-        }
-
-        // Validate investment amount
-        BigDecimal remainingAmount = loan.getRemainingAmount();
-        if (request.getAmount().compareTo(remainingAmount) > 0) {
-            throw new BusinessException("Investment amount exceeds remaining loan amount. Maximum: " + remainingAmount);
+        if (loan.getVersion() < reservation.version()) {
+            // Loaded earlier in this transaction (e.g. an auto-invest chunk), before the increment
+            entityManager.refresh(loan);
         }
 
         // Calculate expected return
@@ -76,6 +82,7 @@ public class InvestmentService {
                 .amount(request.getAmount())
                 .interestRate(loan.getInterestRate())
                 .status(InvestmentStatus.ACTIVE)
+                .autoInvestRuleId(autoInvestRuleId)
                 .expectedReturn(expectedReturn)
                 .maturityDate(LocalDate.now().plusMonths(loan.getTermMonths()))
                 .investedAt(LocalDateTime.now())
@@ -84,30 +91,28 @@ public class InvestmentService {
         investment = investmentRepository.save(investment);
 
         // Create transaction (this will deduct from balance directly)
-        Transaction transaction = walletService.createTransaction(
+        walletService.createTransaction(
                 lenderId,
                 TransactionType.INVESTMENT,
                 request.getAmount(),
                 BigDecimal.ZERO,
-                "Investment in loan: " + loan.getLoanCode()
+                "Investment in loan: " + loan.getLoanCode(),
+                loan
         );
+        marketplaceReadModel.refreshAfterCommit(loan.getId());
 
-            // Update loan funded amount
-            loan.setFundedAmount(loan.getFundedAmount().add(request.getAmount()));
-            loanRepository.save(loan);
-
-            log.info("Investment created: {} - Loan: {} - Amount: {}", 
-                    investment.getInvestmentCode(), loan.getLoanCode(), request.getAmount());
+        log.info("Investment created: {} - Loan: {} - Amount: {}",
+                investment.getInvestmentCode(), loan.getLoanCode(), request.getAmount());
 
-            // Check if fully funded
-            if (loan.isFullyFunded()) {
-                loanService.disburseLoan(loan);
-            }
+        // Only the reservation that filled the loan disburses it
+        if (reservation.filled()) {
+            loanService.disburseLoan(loan);
+        }
 
-            // Notify borrower
-            notificationService.notifyNewInvestment(loan, investment);
+        // Notify borrower
+        notificationService.notifyNewInvestment(loan, investment);
 
-            return toInvestmentResponse(investment);
+        return toInvestmentResponse(investment);
     }
 
     public PageResponse<InvestmentResponse> getMyInvestments(Long lenderId, InvestmentStatus status, Pageable pageable) {
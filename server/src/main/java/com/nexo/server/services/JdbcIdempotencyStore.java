@@ -0,0 +1,102 @@
+package com.nexo.server.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Postgres-backed idempotency store shared by all nodes. Each call is a single
+ * autocommit statement (or two on a conflict) and never joins the business transaction,
+ * so a key is visible to other nodes as soon as it is claimed.
+ */
+@Service
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "postgres", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String CLAIM_SQL =
+            "INSERT INTO idempotency_keys (idempotency_key, fingerprint, status, expires_at, created_at, updated_at) " +
+            "VALUES (?, ?, 'IN_PROGRESS', ?, ?, ?) ON CONFLICT (idempotency_key) DO NOTHING";
+
+    private static final String TAKE_OVER_SQL =
+            "UPDATE idempotency_keys SET fingerprint = ?, status = 'IN_PROGRESS', response_status = NULL, " +
+            "response_body = NULL, expires_at = ?, updated_at = ? WHERE idempotency_key = ? AND expires_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private record Row(String fingerprint, String status, Integer responseStatus, String responseBody,
+                       LocalDateTime expiresAt) {
+    }
+
+    @Override
+    public Acquisition acquire(String key, String fingerprint, Duration inFlightTtl) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp nowTs = Timestamp.valueOf(now);
+        Timestamp expiresAt = Timestamp.valueOf(now.plus(inFlightTtl));
+
+        if (jdbcTemplate.update(CLAIM_SQL, key, fingerprint, expiresAt, nowTs, nowTs) == 1) {
+            return Acquisition.of(State.ACQUIRED);
+        }
+
+        List<Row> rows = jdbcTemplate.query(
+                "SELECT fingerprint, status, response_status, response_body, expires_at " +
+                "FROM idempotency_keys WHERE idempotency_key = ?",
+                (rs, i) -> new Row(rs.getString(1), rs.getString(2), (Integer) rs.getObject(3), rs.getString(4),
+                        rs.getTimestamp(5).toLocalDateTime()),
+                key);
+        if (rows.isEmpty()) {
+            // Released between our insert and select; try once more
+            return jdbcTemplate.update(CLAIM_SQL, key, fingerprint, expiresAt, nowTs, nowTs) == 1
+                    ? Acquisition.of(State.ACQUIRED)
+                    : Acquisition.of(State.IN_PROGRESS);
+        }
+
+        Row row = rows.get(0);
+        if (row.expiresAt().isBefore(now)) {
+            return jdbcTemplate.update(TAKE_OVER_SQL, fingerprint, expiresAt, nowTs, key, nowTs) == 1
+                    ? Acquisition.of(State.ACQUIRED)
+                    : Acquisition.of(State.IN_PROGRESS);
+        }
+        if (!row.fingerprint().equals(fingerprint)) {
+            return Acquisition.of(State.MISMATCH);
+        }
+        if ("COMPLETED".equals(row.status())) {
+            return new Acquisition(State.COMPLETED, new StoredResponse(row.responseStatus(), row.responseBody()));
+        }
+        return Acquisition.of(State.IN_PROGRESS);
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(
+                "UPDATE idempotency_keys SET status = 'COMPLETED', response_status = ?, response_body = ?, " +
+                "expires_at = ?, updated_at = ? WHERE idempotency_key = ?",
+                response.status(), response.body(), Timestamp.valueOf(now.plus(ttl)), Timestamp.valueOf(now), key);
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND status = 'IN_PROGRESS'", key);
+    }
+
+    @Override
+    @Scheduled(cron = "0 15 * * * ?")
+    public int purgeExpired() {
+        int purged = jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < ?",
+                Timestamp.valueOf(LocalDateTime.now()));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+        return purged;
+    }
+}
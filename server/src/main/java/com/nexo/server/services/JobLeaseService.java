@@ -0,0 +1,66 @@
+package com.nexo.server.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Time-bounded leases on {@code job_checkpoints} rows, so a scheduled job runs on one
+ * node at a time. A lease is taken with a conditional update and renewed as the job
+ * makes progress; if the holder dies, the lease expires and another node takes over.
+ * Jobs holding a lease should still make each unit of work safe to repeat, since a
+ * holder that stalls past its lease can overlap with its successor.
+ */
+@Service
+@Slf4j
+public class JobLeaseService {
+
+    private static final String ENSURE_ROW_SQL =
+            "INSERT INTO job_checkpoints (job_name, created_at, updated_at) VALUES (?, now(), now()) " +
+            "ON CONFLICT (job_name) DO NOTHING";
+
+    private static final String ACQUIRE_SQL =
+            "UPDATE job_checkpoints SET locked_by = ?, locked_until = now() + ?::interval, updated_at = now() " +
+            "WHERE job_name = ? AND (locked_until IS NULL OR locked_until < now() OR locked_by = ?)";
+
+    private static final String RELEASE_SQL =
+            "UPDATE job_checkpoints SET locked_by = NULL, locked_until = NULL, updated_at = now() " +
+            "WHERE job_name = ? AND locked_by = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    public JobLeaseService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Take or extend the lease on a job for {@code duration}.
+     *
+     * @return false if another node holds an unexpired lease
+     */
+    public boolean tryAcquire(String jobName, Duration duration) {
+        jdbcTemplate.update(ENSURE_ROW_SQL, jobName);
+        boolean acquired = jdbcTemplate.update(ACQUIRE_SQL, nodeId, duration.toSeconds() + " seconds",
+                jobName, nodeId) == 1;
+        if (!acquired) {
+            log.debug("Job {} is leased by another node", jobName);
+        }
+        return acquired;
+    }
+
+    /**
+     * Extend a lease this node holds. Returns false if it was lost, in which case the job should stop.
+     */
+    public boolean renew(String jobName, Duration duration) {
+        return jdbcTemplate.update(ACQUIRE_SQL, nodeId, duration.toSeconds() + " seconds", jobName, nodeId) == 1;
+    }
+
+    public void release(String jobName) {
+        jdbcTemplate.update(RELEASE_SQL, jobName, nodeId);
+    }
+}
@@ -0,0 +1,256 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.JobCheckpoint;
+import com.nexo.server.enums.NotificationType;
+import com.nexo.server.repositories.JobCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accrues late fees on unpaid overdue installments into {@code repayment_schedules}.
+ *
+ * <p>A coordinator walks overdue, unpaid schedule ids in keyset order and hands each chunk
+ * to a worker pool; a worker accrues its chunk with one set-based update in its own
+ * transaction and notifies borrowers whose installment became overdue. Rows already
+ * accrued through the run date are skipped, so rerunning a day is a no-op. The checkpoint
+ * holds the run date and the last schedule id of the contiguous prefix of finished chunks,
+ * and a run restarted on the same day resumes after it.
+ */
+@Service
+@Slf4j
+public class LateFeeService {
+
+    static final String JOB_NAME = "late-fee-accrual";
+
+    /** 1% of the installment per day late. */
+    static final BigDecimal LATE_FEE_RATE = new BigDecimal("0.01");
+
+    private static final String NEXT_CHUNK_SQL =
+            "SELECT s.id FROM repayment_schedules s " +
+            "WHERE s.id > ? AND s.due_date < ? " +
+            "AND (s.late_fee_accrued_through IS NULL OR s.late_fee_accrued_through < ?) " +
+            "AND NOT EXISTS (SELECT 1 FROM repayments r WHERE r.schedule_id = s.id) " +
+            "ORDER BY s.id LIMIT ?";
+
+    // ROUND on numeric rounds half away from zero, which matches HALF_UP for these positive fees
+    private static final String ACCRUE_SQL =
+            "UPDATE repayment_schedules s " +
+            "SET late_fee = ROUND(s.total_amount * ? * (?::date - s.due_date), 2), " +
+            "late_fee_accrued_through = ?, updated_at = ? " +
+            "FROM (SELECT id, late_fee_accrued_through FROM repayment_schedules WHERE id = ANY(?)) prev, loans l " +
+            "WHERE s.id = prev.id AND l.id = s.loan_id AND s.due_date < ? " +
+            "AND (s.late_fee_accrued_through IS NULL OR s.late_fee_accrued_through < ?) " +
+            "AND NOT EXISTS (SELECT 1 FROM repayments r WHERE r.schedule_id = s.id) " +
+            "RETURNING s.id, s.loan_id, s.installment_number, l.loan_code, l.borrower_id, " +
+            "prev.late_fee_accrued_through IS NULL AS newly_overdue";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobCheckpointRepository checkpointRepository;
+    private final JobLeaseService jobLeaseService;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.late-fees.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.late-fees.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.late-fees.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.late-fees.lease:PT30M}")
+    private Duration lease;
+
+    /**
+     * Outcome of one accrual run.
+     */
+    public record RunResult(long accrued, long newlyOverdue, long elapsedMs) {
+        static final RunResult SKIPPED = new RunResult(0, 0, 0);
+
+        public long rowsPerSecond() {
+            return elapsedMs > 0 ? accrued * 1000 / elapsedMs : accrued;
+        }
+    }
+
+    private record ChunkResult(int index, long lastId, int accrued, int newlyOverdue) {
+    }
+
+    public LateFeeService(JdbcTemplate jdbcTemplate, JobCheckpointRepository checkpointRepository,
+                          JobLeaseService jobLeaseService, NotificationService notificationService,
+                          PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkpointRepository = checkpointRepository;
+        this.jobLeaseService = jobLeaseService;
+        this.notificationService = notificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Late fee on an installment paid, or accrued, as of {@code asOf}; zero if not yet late.
+     */
+    public static BigDecimal lateFee(BigDecimal totalAmount, LocalDate dueDate, LocalDate asOf) {
+        long daysLate = ChronoUnit.DAYS.between(dueDate, asOf);
+        if (daysLate <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return totalAmount.multiply(LATE_FEE_RATE).multiply(BigDecimal.valueOf(daysLate))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Scheduled(cron = "${app.late-fees.cron:0 5 0 * * ?}")
+    public void scheduledAccrual() {
+        if (enabled) {
+            accrue(LocalDate.now());
+        }
+    }
+
+    /**
+     * Bring the late fee on every unpaid overdue installment up to {@code asOf}.
+     */
+    public RunResult accrue(LocalDate asOf) {
+        if (!jobLeaseService.tryAcquire(JOB_NAME, lease)) {
+            log.info("Late fee accrual is running on another node, skipping");
+            return RunResult.SKIPPED;
+        }
+        long started = System.currentTimeMillis();
+        long accrued = 0;
+        long newlyOverdue = 0;
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "late-fee-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<ChunkResult> completion = new ExecutorCompletionService<>(workers);
+        try {
+            JobCheckpoint checkpoint = checkpointRepository.findByJobName(JOB_NAME).orElse(null);
+            long afterId = checkpoint != null && asOf.equals(checkpoint.getLastProcessedDate())
+                    && checkpoint.getLastProcessedId() != null ? checkpoint.getLastProcessedId() : 0L;
+            if (afterId > 0) {
+                log.info("Late fee accrual for {} resuming after schedule {}", asOf, afterId);
+            }
+            Date asOfDate = Date.valueOf(asOf);
+
+            // Finished chunks beyond the first gap are held back so the checkpoint only covers a contiguous prefix
+            TreeMap<Integer, ChunkResult> pending = new TreeMap<>();
+            int submitted = 0;
+            int nextIndex = 0;
+            int inFlight = 0;
+            boolean exhausted = false;
+            while (!exhausted || inFlight > 0) {
+                // Keep at most two chunks per worker queued; ids are read ahead of the workers
+                while (!exhausted && inFlight < parallelism * 2) {
+                    List<Long> ids = jdbcTemplate.queryForList(NEXT_CHUNK_SQL, Long.class,
+                            afterId, asOfDate, asOfDate, chunkSize);
+                    if (ids.isEmpty()) {
+                        exhausted = true;
+                        break;
+                    }
+                    afterId = ids.get(ids.size() - 1);
+                    int index = submitted++;
+                    Long[] chunk = ids.toArray(Long[]::new);
+                    completion.submit(() -> accrueChunk(index, chunk, asOf));
+                    inFlight++;
+                }
+                if (inFlight == 0) {
+                    break;
+                }
+                ChunkResult result = completion.take().get();
+                inFlight--;
+                accrued += result.accrued();
+                newlyOverdue += result.newlyOverdue();
+                pending.put(result.index(), result);
+                Long watermark = null;
+                while (pending.containsKey(nextIndex)) {
+                    watermark = pending.remove(nextIndex).lastId();
+                    nextIndex++;
+                }
+                if (watermark != null) {
+                    saveCheckpoint(asOf, watermark, null);
+                }
+                if (!jobLeaseService.renew(JOB_NAME, lease)) {
+                    log.warn("Late fee accrual lost its lease after {} chunk(s), stopping", nextIndex);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Late fee accrual interrupted after {} schedule(s)", accrued);
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("Late fee accrual failed after {} schedule(s): {}", accrued, cause.getMessage(), cause);
+        } finally {
+            workers.shutdownNow();
+            jobLeaseService.release(JOB_NAME);
+        }
+
+        RunResult result = new RunResult(accrued, newlyOverdue, System.currentTimeMillis() - started);
+        String summary = String.format("accrued %d schedules (%d newly overdue) in %d ms, %d rows/s",
+                result.accrued(), result.newlyOverdue(), result.elapsedMs(), result.rowsPerSecond());
+        saveCheckpoint(asOf, null, summary);
+        log.info("Late fee accrual for {}: {}", asOf, summary);
+        return result;
+    }
+
+    private ChunkResult accrueChunk(int index, Long[] ids, LocalDate asOf) {
+        Date asOfDate = Date.valueOf(asOf);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[] counts = transactionTemplate.execute(status -> {
+            List<NotificationService.Draft> notifications = new ArrayList<>();
+            int[] rows = {0};
+            jdbcTemplate.query(ACCRUE_SQL, rs -> {
+                rows[0]++;
+                if (rs.getBoolean("newly_overdue")) {
+                    long loanId = rs.getLong("loan_id");
+                    notifications.add(new NotificationService.Draft(rs.getLong("borrower_id"),
+                            NotificationType.PAYMENT, "Overdue Payment",
+                            String.format("Installment %d of loan %s is overdue. A late fee of 1%% per day now applies.",
+                                    rs.getInt("installment_number"), rs.getString("loan_code")),
+                            "/borrower/loans/" + loanId, loanId, null));
+                }
+            }, LATE_FEE_RATE, asOfDate, asOfDate, now, ids, asOfDate, asOfDate);
+            notificationService.createNotifications(notifications);
+            return new int[]{rows[0], notifications.size()};
+        });
+        return new ChunkResult(index, ids[ids.length - 1], counts[0], counts[1]);
+    }
+
+    private void saveCheckpoint(LocalDate asOf, Long lastScheduleId, String details) {
+        JobCheckpoint checkpoint = checkpointRepository.findByJobName(JOB_NAME)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(JOB_NAME).build());
+        if (!asOf.equals(checkpoint.getLastProcessedDate())) {
+            checkpoint.setLastProcessedDate(asOf);
+            checkpoint.setLastProcessedId(0L);
+        }
+        if (lastScheduleId != null) {
+            checkpoint.setLastProcessedId(lastScheduleId);
+        }
+        if (details != null) {
+            checkpoint.setDetails(details);
+        }
+        checkpointRepository.save(checkpoint);
+    }
+}
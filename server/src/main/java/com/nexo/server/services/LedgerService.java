@@ -0,0 +1,424 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.LedgerPosting;
+import com.nexo.server.entities.Loan;
+import com.nexo.server.entities.Repayment;
+import com.nexo.server.entities.Wallet;
+import com.nexo.server.enums.LedgerAccountType;
+import com.nexo.server.enums.LedgerDirection;
+import com.nexo.server.enums.LedgerPostingType;
+import com.nexo.server.enums.TransactionType;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import com.nexo.server.repositories.LedgerPostingRepository;
+import com.nexo.server.utils.CodeGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Append-only double-entry ledger. Every balance movement is recorded as a
+ * balanced {@link LedgerPosting}; {@code wallets.balance} is a projection of the
+ * WALLET legs and can be rebuilt from them at any time.
+ *
+ * <p>Wallet legs can address a wallet in two ways:
+ * <ul>
+ *   <li>by entity - the caller already holds the wallet (usually locked) and the
+ *       delta is applied in memory, flushed with the rest of the unit of work;</li>
+ *   <li>by id - the delta is applied with one set-based {@code balance = balance + ?}
+ *       JDBC batch in wallet-id order, so fan-out postings (e.g. a repayment paid to
+ *       hundreds of lenders) never read-modify-write each wallet row.</li>
+ * </ul>
+ * A wallet addressed by id must not also be loaded and modified by the caller in
+ * the same transaction.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_ENTRY_SQL =
+            "INSERT INTO ledger_entries (posting_id, account_type, account_id, direction, amount, " +
+            "transaction_type, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_POSTING_SQL =
+            "INSERT INTO ledger_postings (posting_code, type, total_amount, entry_count, loan_id, repayment_id, " +
+            "description, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String APPLY_WALLET_DELTA_SQL =
+            "UPDATE wallets SET balance = balance + ?, version = version + 1, updated_at = ? WHERE id = ?";
+
+    private static final String COUNT_UNSEEDED_WALLETS_SQL =
+            "SELECT COUNT(*) FROM wallets w WHERE w.balance > 0 AND NOT EXISTS (" +
+            "  SELECT 1 FROM ledger_entries e WHERE e.account_type = 'WALLET' AND e.account_id = w.id)";
+
+    private final LedgerPostingRepository postingRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public LedgerPosting post(Posting posting) {
+        BigDecimal total = validate(posting);
+        List<Leg> legs = posting.legs;
+
+        LedgerPosting saved = postingRepository.save(LedgerPosting.builder()
+                .postingCode(posting.postingCode != null ? posting.postingCode : CodeGenerator.generatePostingCode())
+                .type(posting.type)
+                .totalAmount(total)
+                .entryCount(legs.size())
+                .loan(posting.loan)
+                .repayment(posting.repayment)
+                .description(posting.description)
+                .build());
+
+        LocalDateTime now = LocalDateTime.now();
+        insertEntries(saved.getId(), legs, now);
+        applyProjection(legs, now);
+
+        return saved;
+    }
+
+    /**
+     * Posts many postings with three JDBC batches (postings, entries, wallet projection)
+     * instead of a round trip per posting. Intended for bulk jobs; postings may only address
+     * wallets by id or by entities the caller holds.
+     *
+     * @return ids of the created postings, in input order
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Long> postAll(List<Posting> postings) {
+        if (postings.isEmpty()) {
+            return List.of();
+        }
+        List<BigDecimal> totals = postings.stream().map(this::validate).toList();
+
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp createdAt = Timestamp.valueOf(now);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_POSTING_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Posting posting = postings.get(i);
+                        ps.setString(1, posting.postingCode != null ? posting.postingCode : CodeGenerator.generatePostingCode());
+                        ps.setString(2, posting.type.name());
+                        ps.setBigDecimal(3, totals.get(i));
+                        ps.setInt(4, posting.legs.size());
+                        setNullableLong(ps, 5, posting.loan != null ? posting.loan.getId() : null);
+                        setNullableLong(ps, 6, posting.repayment != null ? posting.repayment.getId() : null);
+                        ps.setString(7, posting.description);
+                        ps.setTimestamp(8, createdAt);
+                        ps.setTimestamp(9, createdAt);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return postings.size();
+                    }
+                }, keyHolder);
+
+        List<Long> ids = keyHolder.getKeyList().stream()
+                .map(keys -> ((Number) keys.get("id")).longValue())
+                .toList();
+        List<Leg> allLegs = new ArrayList<>();
+        List<Long> legPostingIds = new ArrayList<>();
+        for (int i = 0; i < postings.size(); i++) {
+            for (Leg leg : postings.get(i).legs) {
+                allLegs.add(leg);
+                legPostingIds.add(ids.get(i));
+            }
+        }
+        insertEntries(legPostingIds, allLegs, now);
+        applyProjection(allLegs, now);
+
+        return ids;
+    }
+
+    private BigDecimal validate(Posting posting) {
+        if (posting.legs.isEmpty()) {
+            throw new IllegalArgumentException("Ledger posting has no entries");
+        }
+
+        BigDecimal debits = BigDecimal.ZERO;
+        BigDecimal credits = BigDecimal.ZERO;
+        for (Leg leg : posting.legs) {
+            if (leg.direction() == LedgerDirection.DEBIT) {
+                debits = debits.add(leg.amount());
+            } else {
+                credits = credits.add(leg.amount());
+            }
+        }
+        if (debits.compareTo(credits) != 0) {
+            throw new IllegalStateException(String.format(
+                    "Unbalanced ledger posting %s: debits=%s credits=%s", posting.type, debits, credits));
+        }
+        return debits;
+    }
+
+    /**
+     * Current balance of a wallet according to the ledger.
+     */
+    public BigDecimal getWalletLedgerBalance(Long walletId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(CASE WHEN direction = 'CREDIT' THEN amount ELSE -amount END), 0) " +
+                "FROM ledger_entries WHERE account_type = 'WALLET' AND account_id = ?",
+                BigDecimal.class, walletId);
+    }
+
+    /**
+     * Balances of the given wallets as currently visible to this transaction.
+     */
+    public Map<Long, BigDecimal> getWalletBalances(Collection<Long> walletIds) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        if (walletIds.isEmpty()) {
+            return balances;
+        }
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement("SELECT id, balance FROM wallets WHERE id = ANY (?)");
+                    ps.setArray(1, con.createArrayOf("bigint", walletIds.toArray()));
+                    return ps;
+                },
+                rs -> {
+                    balances.put(rs.getLong(1), rs.getBigDecimal(2));
+                });
+        return balances;
+    }
+
+    /**
+     * Recomputes every wallet balance from its WALLET legs in one set-based statement.
+     * Locked balances are holds, not postings, and are left untouched.
+     *
+     * <p>Every wallet row is locked first, in id order, so no posting can apply a delta
+     * between the ledger aggregate being read and the balances being written. Refuses to
+     * run while wallets still lack an opening balance, since those would be zeroed.
+     */
+    @Transactional
+    public int rebuildWalletBalances() {
+        jdbcTemplate.query("SELECT id FROM wallets ORDER BY id FOR UPDATE", rs -> {
+        });
+        Integer unseeded = jdbcTemplate.queryForObject(COUNT_UNSEEDED_WALLETS_SQL, Integer.class);
+        if (unseeded != null && unseeded > 0) {
+            throw new BusinessException(unseeded + " wallet(s) have a balance but no ledger history; "
+                    + "post opening balances before rebuilding");
+        }
+        int updated = jdbcTemplate.update(
+                "UPDATE wallets w SET balance = p.net, version = w.version + 1, updated_at = ? " +
+                "FROM (SELECT w2.id, COALESCE(SUM(CASE WHEN e.direction = 'CREDIT' THEN e.amount ELSE -e.amount END), 0) AS net " +
+                "      FROM wallets w2 LEFT JOIN ledger_entries e ON e.account_type = 'WALLET' AND e.account_id = w2.id " +
+                "      GROUP BY w2.id) p " +
+                "WHERE w.id = p.id AND w.balance <> p.net",
+                Timestamp.valueOf(LocalDateTime.now()));
+        log.info("Rebuilt {} wallet balances from the ledger", updated);
+        return updated;
+    }
+
+    /**
+     * Seeds an OPENING_BALANCE posting for wallets that hold money but have no
+     * ledger history yet (wallets created before the ledger existed). Idempotent.
+     */
+    @Transactional
+    public int postOpeningBalances() {
+        Integer pending = jdbcTemplate.queryForObject(COUNT_UNSEEDED_WALLETS_SQL, Integer.class);
+        if (pending == null || pending == 0) {
+            return 0;
+        }
+
+        LedgerPosting opening = postingRepository.save(LedgerPosting.builder()
+                .postingCode(CodeGenerator.generatePostingCode())
+                .type(LedgerPostingType.OPENING_BALANCE)
+                .totalAmount(BigDecimal.ZERO)
+                .entryCount(0)
+                .description("Opening balances for wallets without ledger history")
+                .build());
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int wallets = jdbcTemplate.update(
+                "INSERT INTO ledger_entries (posting_id, account_type, account_id, direction, amount, transaction_type, created_at) " +
+                "SELECT ?, 'WALLET', w.id, 'CREDIT', w.balance, 'DEPOSIT', ? FROM wallets w " +
+                "WHERE w.balance > 0 AND NOT EXISTS (" +
+                "  SELECT 1 FROM ledger_entries e WHERE e.account_type = 'WALLET' AND e.account_id = w.id)",
+                opening.getId(), now);
+
+        BigDecimal total = jdbcTemplate.queryForObject(
+                "SELECT SUM(amount) FROM ledger_entries WHERE posting_id = ?", BigDecimal.class, opening.getId());
+        jdbcTemplate.update(
+                "INSERT INTO ledger_entries (posting_id, account_type, account_id, direction, amount, created_at) " +
+                "VALUES (?, 'EXTERNAL', NULL, 'DEBIT', ?, ?)",
+                opening.getId(), total, now);
+        jdbcTemplate.update(
+                "UPDATE ledger_postings SET total_amount = ?, entry_count = ? WHERE id = ?",
+                total, wallets + 1, opening.getId());
+
+        log.info("Posted opening balances for {} wallets, total {}", wallets, total);
+        return wallets;
+    }
+
+    private void insertEntries(Long postingId, List<Leg> legs, LocalDateTime now) {
+        insertEntries(Collections.nCopies(legs.size(), postingId), legs, now);
+    }
+
+    private void insertEntries(List<Long> postingIds, List<Leg> legs, LocalDateTime now) {
+        Timestamp createdAt = Timestamp.valueOf(now);
+        List<Integer> indexes = IntStream.range(0, legs.size()).boxed().toList();
+        jdbcTemplate.batchUpdate(INSERT_ENTRY_SQL, indexes, BATCH_SIZE, (ps, i) -> {
+            Leg leg = legs.get(i);
+            ps.setLong(1, postingIds.get(i));
+            ps.setString(2, leg.accountType().name());
+            setNullableLong(ps, 3, leg.accountId());
+            ps.setString(4, leg.direction().name());
+            ps.setBigDecimal(5, leg.amount());
+            if (leg.transactionType() != null) {
+                ps.setString(6, leg.transactionType().name());
+            } else {
+                ps.setNull(6, Types.VARCHAR);
+            }
+            ps.setTimestamp(7, createdAt);
+        });
+    }
+
+    private void applyProjection(List<Leg> legs, LocalDateTime now) {
+        // TreeMap keeps row locks taken in wallet-id order across concurrent postings
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        for (Leg leg : legs) {
+            if (leg.accountType() != LedgerAccountType.WALLET) {
+                continue;
+            }
+            BigDecimal signed = leg.direction() == LedgerDirection.CREDIT ? leg.amount() : leg.amount().negate();
+            if (leg.wallet() != null) {
+                leg.wallet().applyLedgerDelta(signed);
+            } else {
+                deltas.merge(leg.accountId(), signed, BigDecimal::add);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, BigDecimal>> rows = new ArrayList<>(deltas.entrySet());
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        int[][] counts = jdbcTemplate.batchUpdate(APPLY_WALLET_DELTA_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setBigDecimal(1, row.getValue());
+            ps.setTimestamp(2, updatedAt);
+            ps.setLong(3, row.getKey());
+        });
+
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    throw new ResourceNotFoundException("Wallet", rows.get(i).getKey());
+                }
+                i++;
+            }
+        }
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+
+    record Leg(LedgerAccountType accountType, Long accountId, Wallet wallet,
+               LedgerDirection direction, BigDecimal amount, TransactionType transactionType) {
+    }
+
+    /**
+     * Builder for a balanced set of legs. Zero-amount legs are dropped.
+     */
+    public static final class Posting {
+
+        private final LedgerPostingType type;
+        private final String description;
+        private final List<Leg> legs = new ArrayList<>();
+        private String postingCode;
+        private Loan loan;
+        private Repayment repayment;
+
+        private Posting(LedgerPostingType type, String description) {
+            this.type = type;
+            this.description = description;
+        }
+
+        public static Posting of(LedgerPostingType type, String description) {
+            return new Posting(type, description);
+        }
+
+        public Posting postingCode(String postingCode) {
+            this.postingCode = postingCode;
+            return this;
+        }
+
+        public Posting loan(Loan loan) {
+            this.loan = loan;
+            return this;
+        }
+
+        public Posting repayment(Repayment repayment) {
+            this.repayment = repayment;
+            return this;
+        }
+
+        public Posting debitWallet(Wallet wallet, BigDecimal amount, TransactionType transactionType) {
+            return add(LedgerAccountType.WALLET, wallet.getId(), wallet, LedgerDirection.DEBIT, amount, transactionType);
+        }
+
+        public Posting creditWallet(Wallet wallet, BigDecimal amount, TransactionType transactionType) {
+            return add(LedgerAccountType.WALLET, wallet.getId(), wallet, LedgerDirection.CREDIT, amount, transactionType);
+        }
+
+        public Posting debitWallet(Long walletId, BigDecimal amount, TransactionType transactionType) {
+            return add(LedgerAccountType.WALLET, walletId, null, LedgerDirection.DEBIT, amount, transactionType);
+        }
+
+        public Posting creditWallet(Long walletId, BigDecimal amount, TransactionType transactionType) {
+            return add(LedgerAccountType.WALLET, walletId, null, LedgerDirection.CREDIT, amount, transactionType);
+        }
+
+        public Posting debit(LedgerAccountType accountType, Long accountId, BigDecimal amount) {
+            return add(accountType, accountId, null, LedgerDirection.DEBIT, amount, null);
+        }
+
+        public Posting credit(LedgerAccountType accountType, Long accountId, BigDecimal amount) {
+            return add(accountType, accountId, null, LedgerDirection.CREDIT, amount, null);
+        }
+
+        public boolean isEmpty() {
+            return legs.isEmpty();
+        }
+
+        private Posting add(LedgerAccountType accountType, Long accountId, Wallet wallet,
+                            LedgerDirection direction, BigDecimal amount, TransactionType transactionType) {
+            if (amount == null || amount.signum() == 0) {
+                return this;
+            }
+            if (amount.signum() < 0) {
+                throw new IllegalArgumentException("Ledger amounts must be positive: " + amount);
+            }
+            if (accountType == LedgerAccountType.WALLET && accountId == null) {
+                throw new IllegalArgumentException("Wallet leg without wallet id");
+            }
+            legs.add(new Leg(accountType, accountId, wallet, direction, amount, transactionType));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.JobCheckpoint;
+import com.nexo.server.enums.LedgerAccountType;
+import com.nexo.server.enums.LedgerPostingType;
+import com.nexo.server.enums.NotificationType;
+import com.nexo.server.enums.TransactionType;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.repositories.JobCheckpointRepository;
+import com.nexo.server.repositories.LoanRepository;
+import com.nexo.server.utils.CodeGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Closes loans whose funding deadline passed before they filled, and refunds their investors.
+ *
+ * <p>Expired loans are processed in chunks of loan ids, one transaction per chunk: the
+ * loans are cancelled with a conditional update (a loan that filled in the meantime drops
+ * out), their active investments are cancelled, and the refunds are written as batched
+ * ledger postings, wallet transactions and notifications. Because a chunk commits all of
+ * this or nothing and selection is by status, a run that crashes mid-batch is simply
+ * picked up by the next one; the checkpoint row records progress for operators and
+ * carries the lease that keeps the job on a single node.
+ */
+@Service
+@Slf4j
+public class LoanExpiryService {
+
+    static final String JOB_NAME = "loan-funding-expiry";
+    private static final String EXPIRY_REASON = "Funding deadline expired before the loan was fully funded";
+
+    private static final String EXPIRE_LOANS_SQL =
+            "UPDATE loans SET status = 'CANCELLED', rejection_reason = ?, version = version + 1, updated_at = ? " +
+            "WHERE id = ANY(?) AND status = 'FUNDING' AND funding_deadline < ? " +
+            "RETURNING id, loan_code, borrower_id";
+
+    private static final String CANCEL_INVESTMENTS_SQL =
+            "UPDATE investments SET status = 'CANCELLED', version = version + 1, updated_at = ? " +
+            "WHERE loan_id = ANY(?) AND status = 'ACTIVE' " +
+            "RETURNING id, loan_id, lender_id, amount, auto_invest_rule_id";
+
+    private static final String LOCK_WALLETS_SQL =
+            "SELECT id, user_id, balance FROM wallets WHERE user_id = ANY(?) ORDER BY id FOR UPDATE";
+
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (reference_code, wallet_id, user_id, type, status, amount, fee, net_amount, " +
+            "balance_before, balance_after, currency, loan_id, investment_id, description, created_at, updated_at) " +
+            "VALUES (?, ?, ?, 'REFUND', 'COMPLETED', ?, 0, ?, ?, ?, 'VND', ?, ?, ?, ?, ?)";
+
+    private final LoanRepository loanRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final JobLeaseService jobLeaseService;
+    private final LedgerService ledgerService;
+    private final NotificationService notificationService;
+    private final LoanFundingService loanFundingService;
+    private final MarketplaceReadModel marketplaceReadModel;
+    private final AutoInvestService autoInvestService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.loan-expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.loan-expiry.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${app.loan-expiry.lease:PT10M}")
+    private Duration lease;
+
+    private record ExpiredLoan(Long id, String loanCode, Long borrowerId) {
+    }
+
+    private record Refund(Long investmentId, Long loanId, Long lenderId, BigDecimal amount, Long ruleId) {
+    }
+
+    private record ChunkResult(int expired, int refunds, BigDecimal refunded) {
+        static final ChunkResult EMPTY = new ChunkResult(0, 0, BigDecimal.ZERO);
+
+        ChunkResult plus(ChunkResult other) {
+            return new ChunkResult(expired + other.expired, refunds + other.refunds, refunded.add(other.refunded));
+        }
+    }
+
+    public LoanExpiryService(LoanRepository loanRepository, JobCheckpointRepository checkpointRepository,
+                             JobLeaseService jobLeaseService, LedgerService ledgerService,
+                             NotificationService notificationService, LoanFundingService loanFundingService,
+                             MarketplaceReadModel marketplaceReadModel, AutoInvestService autoInvestService,
+                             JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.loanRepository = loanRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.jobLeaseService = jobLeaseService;
+        this.ledgerService = ledgerService;
+        this.notificationService = notificationService;
+        this.loanFundingService = loanFundingService;
+        this.marketplaceReadModel = marketplaceReadModel;
+        this.autoInvestService = autoInvestService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${app.loan-expiry.cron:0 */15 * * * ?}")
+    public void scheduledExpiry() {
+        if (enabled) {
+            expireLoans();
+        }
+    }
+
+    /**
+     * Expire every FUNDING loan past its deadline and refund its investors.
+     *
+     * @return number of loans expired by this run; 0 if another node holds the job
+     */
+    public int expireLoans() {
+        if (!jobLeaseService.tryAcquire(JOB_NAME, lease)) {
+            log.info("Loan expiry is running on another node, skipping");
+            return 0;
+        }
+        long started = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        ChunkResult total = ChunkResult.EMPTY;
+        try {
+            // The cursor only skips loans that failed earlier in this run; expired ones leave FUNDING
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = loanRepository.findExpiredFundingLoanIds(now, afterId, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                total = total.plus(expireWithFallback(ids, now));
+                afterId = ids.get(ids.size() - 1);
+                saveCheckpoint(afterId, null);
+                if (!jobLeaseService.renew(JOB_NAME, lease)) {
+                    log.warn("Loan expiry lost its lease after loan {}, stopping", afterId);
+                    break;
+                }
+            }
+            saveCheckpoint(afterId, String.format("expired %d loans, %d refunds totalling %s",
+                    total.expired(), total.refunds(), total.refunded()));
+        } finally {
+            jobLeaseService.release(JOB_NAME);
+        }
+        if (total.expired() > 0) {
+            log.info("Expired {} loans and refunded {} investments ({} VND) in {} ms",
+                    total.expired(), total.refunds(), total.refunded(), System.currentTimeMillis() - started);
+        }
+        return total.expired();
+    }
+
+    private ChunkResult expireWithFallback(List<Long> ids, LocalDateTime now) {
+        try {
+            return transactionTemplate.execute(status -> expireChunk(ids, now));
+        } catch (RuntimeException e) {
+            if (ids.size() == 1) {
+                log.error("Failed to expire loan {}: {}", ids.get(0), e.getMessage());
+                return ChunkResult.EMPTY;
+            }
+            log.warn("Loan expiry chunk of {} failed ({}), retrying loans individually", ids.size(), e.getMessage());
+            ChunkResult result = ChunkResult.EMPTY;
+            for (Long id : ids) {
+                result = result.plus(expireWithFallback(List.of(id), now));
+            }
+            return result;
+        }
+    }
+
+    private ChunkResult expireChunk(List<Long> ids, LocalDateTime now) {
+        Timestamp ts = Timestamp.valueOf(now);
+
+        // Loan rows first, then wallets in id order: the order an investment locks them in
+        List<ExpiredLoan> loans = jdbcTemplate.query(EXPIRE_LOANS_SQL,
+                (rs, i) -> new ExpiredLoan(rs.getLong("id"), rs.getString("loan_code"), rs.getLong("borrower_id")),
+                EXPIRY_REASON, ts, ids.toArray(Long[]::new), ts);
+        if (loans.isEmpty()) {
+            return ChunkResult.EMPTY;
+        }
+        Long[] loanIds = loans.stream().map(ExpiredLoan::id).toArray(Long[]::new);
+        Map<Long, String> loanCodes = new HashMap<>();
+        loans.forEach(loan -> loanCodes.put(loan.id(), loan.loanCode()));
+
+        List<Refund> refunds = new ArrayList<>(jdbcTemplate.query(CANCEL_INVESTMENTS_SQL,
+                (rs, i) -> new Refund(rs.getLong("id"), rs.getLong("loan_id"), rs.getLong("lender_id"),
+                        rs.getBigDecimal("amount"), rs.getObject("auto_invest_rule_id", Long.class)),
+                ts, loanIds));
+
+        Map<Long, Long> walletByUser = new HashMap<>();
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        if (!refunds.isEmpty()) {
+            Long[] lenderIds = refunds.stream().map(Refund::lenderId).distinct().toArray(Long[]::new);
+            jdbcTemplate.query(LOCK_WALLETS_SQL, rs -> {
+                walletByUser.put(rs.getLong("user_id"), rs.getLong("id"));
+                balances.put(rs.getLong("id"), rs.getBigDecimal("balance"));
+            }, (Object) lenderIds);
+        }
+
+        List<LedgerService.Posting> postings = new ArrayList<>(refunds.size());
+        List<Object[]> transactions = new ArrayList<>(refunds.size());
+        List<NotificationService.Draft> notifications = new ArrayList<>(loans.size() + refunds.size());
+        BigDecimal refunded = BigDecimal.ZERO;
+        Map<Long, BigDecimal> released = new HashMap<>();
+        refunds.sort(Comparator.comparing(Refund::lenderId).thenComparing(Refund::investmentId));
+        for (Refund refund : refunds) {
+            Long walletId = walletByUser.get(refund.lenderId());
+            if (walletId == null) {
+                throw new BusinessException("Wallet not found for lender " + refund.lenderId());
+            }
+            String loanCode = loanCodes.get(refund.loanId());
+            String description = "Refund for expired loan: " + loanCode;
+            String referenceCode = CodeGenerator.generateTransactionCode();
+            BigDecimal before = balances.get(walletId);
+            BigDecimal after = before.add(refund.amount());
+            balances.put(walletId, after);
+            refunded = refunded.add(refund.amount());
+            if (refund.ruleId() != null) {
+                released.merge(refund.ruleId(), refund.amount(), BigDecimal::add);
+            }
+
+            postings.add(LedgerService.Posting.of(LedgerPostingType.REFUND, description)
+                    .postingCode(referenceCode)
+                    .loan(loanRepository.getReferenceById(refund.loanId()))
+                    .debit(LedgerAccountType.LOAN_ESCROW, refund.loanId(), refund.amount())
+                    .creditWallet(walletId, refund.amount(), TransactionType.REFUND));
+            transactions.add(new Object[]{referenceCode, walletId, refund.lenderId(), refund.amount(), refund.amount(),
+                    before, after, refund.loanId(), refund.investmentId(), description, ts, ts});
+            notifications.add(new NotificationService.Draft(refund.lenderId(), NotificationType.INVESTMENT,
+                    "Investment Refunded",
+                    String.format("Loan %s did not reach its funding goal before the deadline. " +
+                            "Your investment of %s VND has been refunded to your wallet.", loanCode, refund.amount()),
+                    "/lender/investments/" + refund.investmentId(), refund.loanId(), refund.investmentId()));
+        }
+        for (ExpiredLoan loan : loans) {
+            notifications.add(new NotificationService.Draft(loan.borrowerId(), NotificationType.LOAN,
+                    "Loan Funding Expired",
+                    String.format("Your loan %s did not reach its funding goal before the deadline and has been " +
+                            "cancelled. Investors have been refunded.", loan.loanCode()),
+                    "/borrower/loans/" + loan.id(), loan.id(), null));
+        }
+
+        ledgerService.postAll(postings);
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, transactions);
+        autoInvestService.releaseClaims(released);
+        notificationService.createNotifications(notifications);
+
+        for (ExpiredLoan loan : loans) {
+            loanFundingService.release(loan.id());
+            marketplaceReadModel.refreshAfterCommit(loan.id());
+        }
+        return new ChunkResult(loans.size(), refunds.size(), refunded);
+    }
+
+    private void saveCheckpoint(long lastLoanId, String details) {
+        JobCheckpoint checkpoint = checkpointRepository.findByJobName(JOB_NAME)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(JOB_NAME).build());
+        checkpoint.setLastProcessedDate(LocalDate.now());
+        checkpoint.setLastProcessedId(lastLoanId);
+        if (details != null) {
+            checkpoint.setDetails(details);
+        }
+        checkpointRepository.save(checkpoint);
+    }
+}
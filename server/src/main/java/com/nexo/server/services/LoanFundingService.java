@@ -0,0 +1,134 @@
+package com.nexo.server.services;
+
+import com.nexo.server.exceptions.BadRequestException;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reserves funding on a loan with a single conditional increment.
+ *
+ * <p>{@code funded_amount} only grows through {@link #reserve}, an {@code UPDATE} that
+ * succeeds only while the loan is FUNDING and the amount still fits. The row lock it
+ * takes is held until the investing transaction ends, so concurrent investors in the same
+ * loan are serialized by the database, a rollback (e.g. insufficient wallet balance)
+ * releases the reservation, and exactly one reservation can be the one that fills the
+ * loan; only that caller triggers disbursement.
+ *
+ * <p>Requests that cannot fit are rejected from a plain MVCC read before queueing on the
+ * row lock, and loans this node has seen fill are rejected from memory.
+ */
+@Service
+@Slf4j
+public class LoanFundingService {
+
+    private static final String RESERVE_SQL =
+            "UPDATE loans SET funded_amount = funded_amount + ?, version = version + 1, updated_at = now() " +
+            "WHERE id = ? AND status = 'FUNDING' AND borrower_id <> ? AND funded_amount + ? <= requested_amount " +
+            "RETURNING funded_amount, requested_amount, version";
+
+    private static final String STATE_SQL =
+            "SELECT status, borrower_id, funded_amount, requested_amount FROM loans WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Set<Long> filledLoans = ConcurrentHashMap.newKeySet();
+
+    public LoanFundingService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param fundedAmount the loan's funded amount including this reservation
+     * @param filled       whether this reservation brought the loan to its requested amount
+     * @param version      the loan row's version after the increment
+     */
+    public record Reservation(BigDecimal fundedAmount, boolean filled, long version) {
+    }
+
+    /**
+     * Add {@code amount} to the loan's funded amount, or fail without retrying.
+     * Must run inside the transaction that records the investment.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Reservation reserve(Long loanId, Long lenderId, BigDecimal amount) {
+        if (filledLoans.contains(loanId)) {
+            throw new BusinessException("Loan is already fully funded");
+        }
+        // Reject from the last committed state without waiting behind other investors' row locks
+        rejectIfCannotFit(loanId, lenderId, amount);
+
+        List<Reservation> updated = jdbcTemplate.query(RESERVE_SQL, (rs, i) -> {
+            BigDecimal funded = rs.getBigDecimal("funded_amount");
+            return new Reservation(funded, funded.compareTo(rs.getBigDecimal("requested_amount")) >= 0,
+                    rs.getLong("version"));
+        }, amount, loanId, lenderId, amount);
+        if (updated.isEmpty()) {
+            // Lost the race to another investor; report the state that made it fail
+            rejectIfCannotFit(loanId, lenderId, amount);
+            throw new BusinessException("Loan is no longer available for investment");
+        }
+
+        Reservation reservation = updated.get(0);
+        if (reservation.filled()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    filledLoans.add(loanId);
+                }
+            });
+            log.info("Loan {} fully funded at {}", loanId, reservation.fundedAmount());
+        }
+        return reservation;
+    }
+
+    /**
+     * The filled set only matters while a loan is being funded; dropping it periodically
+     * keeps it small and costs at most one extra read per loan.
+     */
+    @Scheduled(fixedDelay = 600_000)
+    public void clearFilledLoans() {
+        filledLoans.clear();
+    }
+
+    /**
+     * Forget a loan's filled state, e.g. after its funding was unwound.
+     */
+    public void release(Long loanId) {
+        filledLoans.remove(loanId);
+    }
+
+    private void rejectIfCannotFit(Long loanId, Long lenderId, BigDecimal amount) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(STATE_SQL, loanId);
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Loan", loanId);
+        }
+        Map<String, Object> state = rows.get(0);
+        if (!"FUNDING".equals(state.get("status"))) {
+            throw new BadRequestException("Loan is not available for investment");
+        }
+        if (lenderId.equals(((Number) state.get("borrower_id")).longValue())) {
+            throw new BadRequestException("You cannot invest in your own loan");
+        }
+        BigDecimal remaining = ((BigDecimal) state.get("requested_amount")).subtract((BigDecimal) state.get("funded_amount"));
+        if (remaining.signum() <= 0) {
+            filledLoans.add(loanId);
+            throw new BusinessException("Loan is already fully funded");
+        }
+        if (amount.compareTo(remaining) > 0) {
+            throw new BusinessException("Investment amount exceeds remaining loan amount. Maximum: " + remaining);
+        }
+    }
+}
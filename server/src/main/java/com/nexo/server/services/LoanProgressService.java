@@ -0,0 +1,157 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.Loan;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Keeps {@code installment_count}, {@code paid_installments} and {@code outstanding_principal}
+ * on loans honest.
+ *
+ * <p>The counters are maintained inline: {@link AmortizationService} sets them when it writes
+ * a schedule and {@link RepaymentDistributor} advances them in the repayment's transaction, so
+ * completion checks and balance displays read one row. This service recounts them from
+ * schedules and repayments: for one loan on demand (loans created before the counters
+ * existed), and for every loan in a scheduled verification pass that repairs drift.
+ *
+ * <p>Drift is found with a read-only scan in id windows; each drifted loan is then locked
+ * and recounted in its own transaction, so a repair never overwrites a repayment that
+ * committed after the scan. The version bump makes a repayment racing the repair retry.
+ */
+@Service
+@Slf4j
+public class LoanProgressService {
+
+    private static final String JOB_NAME = "loan-progress-verify";
+
+    private static final String PROGRESS_COLUMNS =
+            "COUNT(*) AS installments, COUNT(*) FILTER (WHERE p.paid) AS paid, " +
+            "COALESCE(SUM(s.principal_amount) FILTER (WHERE NOT p.paid), 0) AS outstanding " +
+            "FROM repayment_schedules s " +
+            "CROSS JOIN LATERAL (SELECT EXISTS (SELECT 1 FROM repayments r WHERE r.schedule_id = s.id) AS paid) p ";
+
+    private static final String PROGRESS_SQL = "SELECT " + PROGRESS_COLUMNS + "WHERE s.loan_id = ?";
+
+    private static final String FIND_DRIFT_SQL =
+            "SELECT l.id FROM loans l " +
+            "CROSS JOIN LATERAL (SELECT " + PROGRESS_COLUMNS + "WHERE s.loan_id = l.id) a " +
+            "WHERE l.id >= ? AND l.id < ? AND (COALESCE(l.installment_count, 0) <> a.installments " +
+            "OR COALESCE(l.paid_installments, 0) <> a.paid OR COALESCE(l.outstanding_principal, 0) <> a.outstanding) " +
+            "ORDER BY l.id";
+
+    private static final String LOCK_LOAN_SQL = "SELECT id FROM loans WHERE id = ? FOR UPDATE";
+
+    private static final String REPAIR_SQL =
+            "UPDATE loans SET installment_count = ?, paid_installments = ?, outstanding_principal = ?, " +
+            "version = version + 1, updated_at = now() WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.loan-progress.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.loan-progress.window-size:5000}")
+    private int windowSize;
+
+    @Value("${app.loan-progress.lease:PT30M}")
+    private Duration lease;
+
+    /**
+     * Counters derived from a loan's schedule rows and their repayments.
+     */
+    public record Progress(int installments, int paid, BigDecimal outstandingPrincipal) {
+    }
+
+    public LoanProgressService(JdbcTemplate jdbcTemplate, JobLeaseService jobLeaseService,
+                               PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobLeaseService = jobLeaseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public Progress count(Long loanId) {
+        return jdbcTemplate.queryForObject(PROGRESS_SQL, (rs, i) -> new Progress(
+                rs.getInt("installments"), rs.getInt("paid"), rs.getBigDecimal("outstanding")), loanId);
+    }
+
+    /**
+     * Recount a loan the caller holds and has not yet changed, e.g. one whose schedule
+     * predates the counters.
+     */
+    public void resync(Loan loan) {
+        Progress progress = count(loan.getId());
+        loan.setInstallmentCount(progress.installments());
+        loan.setPaidInstallments(progress.paid());
+        loan.setOutstandingPrincipal(progress.outstandingPrincipal());
+    }
+
+    @Scheduled(cron = "${app.loan-progress.cron:0 15 4 * * ?}")
+    public void scheduledVerify() {
+        if (enabled) {
+            verify();
+        }
+    }
+
+    /**
+     * Compare every loan's counters with its schedule and repayments and repair drift.
+     *
+     * @return number of loans repaired; 0 if another node holds the job
+     */
+    public int verify() {
+        if (!jobLeaseService.tryAcquire(JOB_NAME, lease)) {
+            log.info("Loan progress verification is running on another node, skipping");
+            return 0;
+        }
+        long started = System.currentTimeMillis();
+        int repaired = 0;
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM loans", Long.class);
+            for (long from = 0; maxId != null && from <= maxId; from += windowSize) {
+                for (Long loanId : jdbcTemplate.queryForList(FIND_DRIFT_SQL, Long.class, from, from + windowSize)) {
+                    if (repair(loanId)) {
+                        repaired++;
+                    }
+                }
+                if (!jobLeaseService.renew(JOB_NAME, lease)) {
+                    log.warn("Loan progress verification lost its lease at loan {}, stopping", from);
+                    break;
+                }
+            }
+        } finally {
+            jobLeaseService.release(JOB_NAME);
+        }
+        if (repaired > 0) {
+            log.warn("Repaired repayment progress on {} loans in {} ms", repaired, System.currentTimeMillis() - started);
+        } else {
+            log.info("Loan repayment progress verified in {} ms", System.currentTimeMillis() - started);
+        }
+        return repaired;
+    }
+
+    private boolean repair(Long loanId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            List<Long> locked = jdbcTemplate.queryForList(LOCK_LOAN_SQL, Long.class, loanId);
+            if (locked.isEmpty()) {
+                return false;
+            }
+            // Counted after the lock, so repayments committed since the scan are included
+            Progress progress = count(loanId);
+            jdbcTemplate.update(REPAIR_SQL, progress.installments(), progress.paid(),
+                    progress.outstandingPrincipal(), loanId);
+            log.info("Loan {} progress reset to {}/{} installments, {} outstanding",
+                    loanId, progress.paid(), progress.installments(), progress.outstandingPrincipal());
+            return true;
+        }));
+    }
+}
@@ -0,0 +1,156 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.creditscore.CreditScoreResponse;
+import com.nexo.server.dto.loan.LoanQuoteRequest;
+import com.nexo.server.dto.loan.LoanQuoteResponse;
+import com.nexo.server.enums.RepaymentType;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.utils.Amortization;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * What-if pricing for the create-loan page: installments, total interest and platform fee
+ * for every cell of a terms × rates grid in one call.
+ *
+ * <p>Cells are computed with the same {@link Amortization} kernel that generates real
+ * schedules, in whole dong into one reused buffer, so a quote matches the schedule the
+ * loan will get. Computed grids depend only on amount, type, terms and rates, and are
+ * kept in a small LRU cache; the borrower's limits are checked before the cache.
+ */
+@Service
+@Slf4j
+public class LoanQuoteService {
+
+    private static final List<Integer> DEFAULT_TERMS = List.of(3, 6, 9, 12, 18, 24, 36, 48, 60);
+    private static final BigDecimal DEFAULT_RATE_STEP = new BigDecimal("0.50");
+    private static final int MAX_DEFAULT_RATES = 32;
+
+    private final CreditScoreService creditScoreService;
+    private final Map<QuoteKey, QuoteGrid> cache;
+
+    @Value("${app.loan-quote.cache-size:1000}")
+    private int cacheSize;
+
+    private record QuoteKey(long amount, RepaymentType type, List<Integer> terms, List<Integer> ratesBp) {
+    }
+
+    /**
+     * Per-cell results in whole dong, row-major by term.
+     */
+    private record QuoteGrid(long[] firstPayment, long[] lastPayment, long[] totalInterest) {
+    }
+
+    public LoanQuoteService(CreditScoreService creditScoreService) {
+        this.creditScoreService = creditScoreService;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QuoteKey, QuoteGrid> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public LoanQuoteResponse quote(Long borrowerId, LoanQuoteRequest request) {
+        CreditScoreResponse creditScore = creditScoreService.getOrCreateCreditScore(borrowerId);
+        BigDecimal minRate = creditScore.getMinInterestRate();
+        BigDecimal maxRate = creditScore.getMaxInterestRate();
+
+        if (request.getAmount().compareTo(creditScore.getMaxLoanAmount()) > 0) {
+            throw new BusinessException(String.format(
+                    "Requested amount exceeds your maximum loan limit of %s VND based on your credit score",
+                    creditScore.getMaxLoanAmount().toPlainString()));
+        }
+
+        List<Integer> terms = request.getTermMonths() == null || request.getTermMonths().isEmpty()
+                ? DEFAULT_TERMS
+                : request.getTermMonths().stream().distinct().sorted().toList();
+        List<BigDecimal> rates = request.getInterestRates() == null || request.getInterestRates().isEmpty()
+                ? defaultRates(minRate, maxRate)
+                : request.getInterestRates().stream()
+                        .map(rate -> rate.setScale(2, RoundingMode.HALF_UP))
+                        .distinct().sorted().toList();
+        if (rates.get(0).compareTo(minRate) < 0 || rates.get(rates.size() - 1).compareTo(maxRate) > 0) {
+            throw new BusinessException(String.format(
+                    "Interest rate must be between %s%% and %s%% based on your credit score",
+                    minRate.toPlainString(), maxRate.toPlainString()));
+        }
+
+        RepaymentType type = request.getRepaymentType() != null ? request.getRepaymentType() : RepaymentType.EMI;
+        long amount = Amortization.toVnd(request.getAmount());
+        QuoteKey key = new QuoteKey(amount, type, terms, rates.stream().map(Amortization::toBasisPoints).toList());
+        QuoteGrid grid = cache.get(key);
+        if (grid == null) {
+            grid = compute(key);
+            cache.put(key, grid);
+        }
+
+        BigDecimal platformFee = request.getAmount().multiply(LoanService.PLATFORM_FEE_RATE)
+                .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
+
+        List<LoanQuoteResponse.Cell> cells = new ArrayList<>(terms.size() * rates.size());
+        for (int t = 0; t < terms.size(); t++) {
+            for (int r = 0; r < rates.size(); r++) {
+                int i = t * rates.size() + r;
+                cells.add(LoanQuoteResponse.Cell.builder()
+                        .termMonths(terms.get(t))
+                        .interestRate(rates.get(r))
+                        .monthlyPayment(BigDecimal.valueOf(grid.firstPayment()[i]))
+                        .lastPayment(BigDecimal.valueOf(grid.lastPayment()[i]))
+                        .totalInterest(BigDecimal.valueOf(grid.totalInterest()[i]))
+                        .totalRepayment(BigDecimal.valueOf(amount + grid.totalInterest()[i]))
+                        .build());
+            }
+        }
+
+        return LoanQuoteResponse.builder()
+                .amount(request.getAmount())
+                .repaymentType(type)
+                .platformFeeRate(LoanService.PLATFORM_FEE_RATE)
+                .platformFee(platformFee)
+                .disbursementAmount(request.getAmount().subtract(platformFee))
+                .maxLoanAmount(creditScore.getMaxLoanAmount())
+                .minInterestRate(minRate)
+                .maxInterestRate(maxRate)
+                .termMonths(terms)
+                .interestRates(rates)
+                .cells(cells)
+                .build();
+    }
+
+    private static QuoteGrid compute(QuoteKey key) {
+        int rateCount = key.ratesBp().size();
+        int cellCount = key.terms().size() * rateCount;
+        long[] first = new long[cellCount];
+        long[] last = new long[cellCount];
+        long[] interest = new long[cellCount];
+        Amortization.Schedule schedule = new Amortization.Schedule();
+        for (int t = 0; t < key.terms().size(); t++) {
+            int months = key.terms().get(t);
+            for (int r = 0; r < rateCount; r++) {
+                Amortization.compute(key.type(), key.amount(), key.ratesBp().get(r), months, schedule);
+                int i = t * rateCount + r;
+                first[i] = schedule.total(0);
+                last[i] = schedule.total(months - 1);
+                interest[i] = schedule.totalInterest();
+            }
+        }
+        return new QuoteGrid(first, last, interest);
+    }
+
+    private static List<BigDecimal> defaultRates(BigDecimal minRate, BigDecimal maxRate) {
+        List<BigDecimal> rates = new ArrayList<>();
+        for (BigDecimal rate = minRate.setScale(2, RoundingMode.HALF_UP);
+             rate.compareTo(maxRate) < 0 && rates.size() < MAX_DEFAULT_RATES - 1;
+             rate = rate.add(DEFAULT_RATE_STEP)) {
+            rates.add(rate);
+        }
+        rates.add(maxRate.setScale(2, RoundingMode.HALF_UP));
+        return rates;
+    }
+}
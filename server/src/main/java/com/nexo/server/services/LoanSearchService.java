@@ -0,0 +1,212 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.Loan;
+import com.nexo.server.enums.LoanPurpose;
+import com.nexo.server.enums.LoanStatus;
+import com.nexo.server.repositories.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Loan search for the marketplace and the admin loan list.
+ *
+ * <p>Search terms are matched against a weighted {@code tsvector} over title (A) and
+ * description (B), built through an immutable {@code unaccent} wrapper so "vay mua nha"
+ * finds "Vay mua nhà", with each term treated as a prefix. Loan codes match by prefix
+ * through a {@code text_pattern_ops} index. Both indexes are expression indexes created
+ * at startup, so the Hibernate-managed {@code loans} table is left untouched.
+ *
+ * <p>With a search term, results are ordered by relevance (code match first, then
+ * {@code ts_rank_cd}) with the requested sort as tie-breaker. Without one, the requested
+ * sort applies. If the database lacks the {@code unaccent} extension and it cannot be
+ * created, search falls back to the repository's {@code LIKE} queries.
+ */
+@Service
+@Slf4j
+public class LoanSearchService {
+
+    private static final String DOCUMENT = document("l.");
+
+    private static final String[] SCHEMA_SQL = {
+            "CREATE EXTENSION IF NOT EXISTS unaccent",
+            "CREATE OR REPLACE FUNCTION nexo_unaccent(text) RETURNS text " +
+            "LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT " +
+            "AS $$ SELECT public.unaccent('public.unaccent'::regdictionary, $1) $$",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_search ON loans USING gin (" +
+            document("") + ")",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_code_prefix ON loans (loan_code text_pattern_ops)"
+    };
+
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "l.id",
+            "createdAt", "l.created_at",
+            "interestRate", "l.interest_rate",
+            "requestedAmount", "l.requested_amount",
+            "fundedAmount", "l.funded_amount",
+            "termMonths", "l.term_months",
+            "fundingDeadline", "l.funding_deadline",
+            "riskGrade", "l.risk_grade");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LoanRepository loanRepository;
+
+    private volatile boolean available;
+
+    public LoanSearchService(JdbcTemplate jdbcTemplate, LoanRepository loanRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.loanRepository = loanRepository;
+    }
+
+    public record Criteria(String search, LoanStatus status, LoanPurpose purpose, List<String> riskGrades,
+                           BigDecimal minRate, BigDecimal maxRate, BigDecimal minAmount, BigDecimal maxAmount,
+                           Integer minTerm, Integer maxTerm) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            for (String sql : SCHEMA_SQL) {
+                jdbcTemplate.execute(sql);
+            }
+            available = true;
+            log.info("Loan full-text search indexes ready");
+        } catch (DataAccessException e) {
+            log.warn("Loan full-text search unavailable, falling back to LIKE search: {}", e.getMessage());
+        }
+    }
+
+    public Page<Loan> searchMarketplace(Criteria criteria, Pageable pageable) {
+        if (!available) {
+            return loanRepository.findMarketplaceLoans(criteria.search(), criteria.purpose(), criteria.riskGrades(),
+                    criteria.minRate(), criteria.maxRate(), criteria.minAmount(), criteria.maxAmount(),
+                    criteria.minTerm(), criteria.maxTerm(), pageable);
+        }
+        return search(criteria, pageable);
+    }
+
+    public Page<Loan> searchAdmin(String search, LoanStatus status, LoanPurpose purpose, Pageable pageable) {
+        if (!available) {
+            return loanRepository.searchLoans(search, status, purpose, pageable);
+        }
+        return search(new Criteria(search, status, purpose, null, null, null, null, null, null, null), pageable);
+    }
+
+    private Page<Loan> search(Criteria criteria, Pageable pageable) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+
+        String tsQuery = toPrefixQuery(criteria.search());
+        String codePrefix = tsQuery != null ? escapeLike(criteria.search().trim().toUpperCase(Locale.ROOT)) + "%" : null;
+        if (tsQuery != null) {
+            where.append(" AND (l.loan_code LIKE ? OR ").append(DOCUMENT)
+                    .append(" @@ to_tsquery('simple', nexo_unaccent(?)))");
+            args.add(codePrefix);
+            args.add(tsQuery);
+        }
+        if (criteria.status() != null) {
+            where.append(" AND l.status = ?");
+            args.add(criteria.status().name());
+        }
+        if (criteria.purpose() != null) {
+            where.append(" AND l.purpose = ?");
+            args.add(criteria.purpose().name());
+        }
+        if (criteria.riskGrades() != null && !criteria.riskGrades().isEmpty()) {
+            where.append(" AND l.risk_grade = ANY(?)");
+            args.add(criteria.riskGrades().toArray(String[]::new));
+        }
+        appendRange(where, args, "l.interest_rate", criteria.minRate(), criteria.maxRate());
+        appendRange(where, args, "l.requested_amount", criteria.minAmount(), criteria.maxAmount());
+        appendRange(where, args, "l.term_months", criteria.minTerm(), criteria.maxTerm());
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM loans l" + where, Long.class, args.toArray());
+        if (total == null || total == 0 || pageable.isPaged() && pageable.getOffset() >= total) {
+            return new PageImpl<>(List.of(), pageable, total != null ? total : 0);
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT l.id FROM loans l").append(where).append(" ORDER BY ");
+        List<Object> pageArgs = new ArrayList<>(args);
+        if (tsQuery != null) {
+            sql.append("(l.loan_code LIKE ?) DESC, ts_rank_cd(").append(DOCUMENT)
+                    .append(", to_tsquery('simple', nexo_unaccent(?))) DESC, ");
+            pageArgs.add(codePrefix);
+            pageArgs.add(tsQuery);
+        }
+        sql.append(orderBy(pageable.getSort()));
+        if (pageable.isPaged()) {
+            sql.append(" LIMIT ? OFFSET ?");
+            pageArgs.add(pageable.getPageSize());
+            pageArgs.add(pageable.getOffset());
+        }
+        List<Long> ids = jdbcTemplate.queryForList(sql.toString(), Long.class, pageArgs.toArray());
+
+        Map<Long, Loan> loans = loanRepository.findByIdsWithBorrower(ids).stream()
+                .collect(Collectors.toMap(Loan::getId, Function.identity()));
+        List<Loan> content = ids.stream().map(loans::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * The indexed document expression. Queries must repeat it exactly (modulo the table
+     * alias) for Postgres to use the expression index.
+     */
+    private static String document(String alias) {
+        return "(setweight(to_tsvector('simple', nexo_unaccent(coalesce(" + alias + "title, ''))), 'A') || " +
+               "setweight(to_tsvector('simple', nexo_unaccent(coalesce(" + alias + "description, ''))), 'B'))";
+    }
+
+    /**
+     * Turn free text into a tsquery where every word is a required prefix, e.g.
+     * {@code "mua nhà"} becomes {@code "mua:* & nhà:*"}. Returns null when nothing searchable is left.
+     */
+    static String toPrefixQuery(String search) {
+        if (search == null || search.isBlank()) {
+            return null;
+        }
+        String query = Arrays.stream(search.trim().split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .map(token -> token + ":*")
+                .collect(Collectors.joining(" & "));
+        return query.isEmpty() ? null : query;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static void appendRange(StringBuilder where, List<Object> args, String column, Object min, Object max) {
+        if (min != null) {
+            where.append(" AND ").append(column).append(" >= ?");
+            args.add(min);
+        }
+        if (max != null) {
+            where.append(" AND ").append(column).append(" <= ?");
+            args.add(max);
+        }
+    }
+
+    private static String orderBy(Sort sort) {
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column != null) {
+                orders.add(column + (order.isDescending() ? " DESC" : " ASC"));
+            }
+        }
+        orders.add("l.id DESC");
+        return String.join(", ", orders);
+    }
+}
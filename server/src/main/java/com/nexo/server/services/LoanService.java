@@ -1,5 +1,6 @@
 package com.nexo.server.services;
 
+import com.nexo.server.config.RetryOnConflict;
 import com.nexo.server.dto.common.PageResponse;
 import com.nexo.server.dto.creditscore.CreditScoreResponse;
 import com.nexo.server.dto.loan.*;
@@ -22,7 +23,8 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -30,16 +32,20 @@ import java.util.List;
 public class LoanService {
 
     private final LoanRepository loanRepository;
+    private final LoanSearchService loanSearchService;
+    private final MarketplaceReadModel marketplaceReadModel;
+    private final AutoInvestService autoInvestService;
     private final LoanDocumentRepository loanDocumentRepository;
     private final UserRepository userRepository;
     private final RepaymentScheduleRepository scheduleRepository;
+    private final AmortizationService amortizationService;
     private final InvestmentRepository investmentRepository;
     private final WalletService walletService;
     private final FileStorageService fileStorageService;
     private final NotificationService notificationService;
     private final CreditScoreService creditScoreService;
 
-    private static final BigDecimal PLATFORM_FEE_RATE = new BigDecimal("2.00");
+    static final BigDecimal PLATFORM_FEE_RATE = new BigDecimal("2.00");
     private static final int FUNDING_DAYS = 30;
 
     @Transactional
@@ -87,6 +93,7 @@ public class LoanService {
                 .interestRate(interestRate)
                 .platformFeeRate(PLATFORM_FEE_RATE)
                 .termMonths(request.getTermMonths())
+                .repaymentType(request.getRepaymentType() != null ? request.getRepaymentType() : RepaymentType.EMI)
                 .riskGrade(riskGrade)
                 .creditScoreAtRequest(borrower.getCreditScore())
                 .status(LoanStatus.PENDING_REVIEW)
@@ -108,7 +115,7 @@ public class LoanService {
                 ? loanRepository.findByBorrowerIdAndStatus(borrowerId, status, pageable)
                 : loanRepository.findByBorrowerId(borrowerId, pageable);
 
-        return PageResponse.of(loans, loans.getContent().stream().map(this::toLoanResponse).toList());
+        return PageResponse.of(loans, toLoanResponses(loans.getContent()));
     }
 
     public LoanResponse getLoanById(Long loanId) {
@@ -132,13 +139,19 @@ public class LoanService {
             Integer minTerm, Integer maxTerm,
             Pageable pageable) {
 
-        Page<Loan> loans = loanRepository.findMarketplaceLoans(
-                search, purpose, riskGrades, minRate, maxRate, minAmount, maxAmount, minTerm, maxTerm, pageable);
+        LoanSearchService.Criteria criteria = new LoanSearchService.Criteria(
+                search, LoanStatus.FUNDING, purpose, riskGrades, minRate, maxRate, minAmount, maxAmount, minTerm, maxTerm);
+        if ((search == null || search.isBlank()) && marketplaceReadModel.isReady()) {
+            return PageResponse.of(marketplaceReadModel.browse(criteria, pageable));
+        }
+
+        Page<Loan> loans = loanSearchService.searchMarketplace(criteria, pageable);
 
-        return PageResponse.of(loans, loans.getContent().stream().map(this::toLoanResponse).toList());
+        return PageResponse.of(loans, toLoanResponses(loans.getContent()));
     }
 
     // Admin - Review loan
+    @RetryOnConflict
     @Transactional
     public LoanResponse reviewLoan(Long loanId, Long adminId, LoanReviewRequest request) {
         Loan loan = loanRepository.findByIdWithBorrower(loanId)
@@ -163,6 +176,7 @@ public class LoanService {
 
             log.info("Loan approved: {} by admin: {}", loan.getLoanCode(), admin.getEmail());
             notificationService.notifyLoanApproved(loan);
+            autoInvestService.allocateAfterCommit(loan.getId());
         } else {
             loan.setStatus(LoanStatus.REJECTED);
             loan.setRejectionReason(request.getRejectionReason());
@@ -172,9 +186,11 @@ public class LoanService {
         }
 
         loan = loanRepository.save(loan);
+        marketplaceReadModel.refreshAfterCommit(loan.getId());
         return toLoanResponse(loan);
     }
 
+    @RetryOnConflict
     @Transactional
     public void cancelLoan(Long loanId, Long userId) {
         Loan loan = loanRepository.findByIdWithBorrower(loanId)
@@ -204,7 +220,7 @@ public class LoanService {
         loan.setStatus(LoanStatus.FUNDED);
 
         // Generate repayment schedule
-        generateRepaymentSchedule(loan);
+        amortizationService.createSchedule(loan, loan.getRequestedAmount(), LocalDate.now());
 
         // Transfer funds to borrower's wallet
         BigDecimal platformFee = loan.getRequestedAmount()
@@ -212,71 +228,26 @@ public class LoanService {
                 .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
         BigDecimal disbursementAmount = loan.getRequestedAmount().subtract(platformFee);
 
+        // The gross amount leaves escrow; the borrower is credited it net of the platform fee
         walletService.createTransaction(
                 loan.getBorrower().getId(),
                 TransactionType.LOAN_DISBURSEMENT,
-                disbursementAmount,
+                loan.getRequestedAmount(),
                 platformFee,
-                "Loan disbursement: " + loan.getLoanCode());
+                "Loan disbursement: " + loan.getLoanCode(),
+                loan);
 
         loan.setStatus(LoanStatus.ACTIVE);
         loan.setDisbursedAt(LocalDateTime.now());
         loan.setMaturityDate(LocalDate.now().plusMonths(loan.getTermMonths()));
 
         loanRepository.save(loan);
+        marketplaceReadModel.refreshAfterCommit(loan.getId());
 
         log.info("Loan disbursed: {} - Amount: {}", loan.getLoanCode(), disbursementAmount);
         notificationService.notifyLoanDisbursed(loan);
     }
 
-    private void generateRepaymentSchedule(Loan loan) {
-        BigDecimal principal = loan.getRequestedAmount();
-        BigDecimal monthlyRate = loan.getInterestRate().divide(new BigDecimal("1200"), 10, RoundingMode.HALF_UP);
-        int months = loan.getTermMonths();
-
-        // Calculate EMI (Equated Monthly Installment)
-        BigDecimal emi = calculateEMI(principal, monthlyRate, months);
-        BigDecimal remainingPrincipal = principal;
-
-        for (int i = 1; i <= months; i++) {
-            BigDecimal interestAmount = remainingPrincipal.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
-            BigDecimal principalAmount = emi.subtract(interestAmount).setScale(2, RoundingMode.HALF_UP);
-
-            // Adjust last payment
-            if (i == months) {
-                principalAmount = remainingPrincipal;
-                emi = principalAmount.add(interestAmount);
-            }
-
-            remainingPrincipal = remainingPrincipal.subtract(principalAmount);
-
-            RepaymentSchedule schedule = RepaymentSchedule.builder()
-                    .loan(loan)
-                    .installmentNumber(i)
-                    .dueDate(LocalDate.now().plusMonths(i))
-                    .principalAmount(principalAmount)
-                    .interestAmount(interestAmount)
-                    .totalAmount(emi)
-                    .remainingPrincipal(remainingPrincipal.max(BigDecimal.ZERO))
-                    .build();
-
-            scheduleRepository.save(schedule);
-        }
-    }
-
-    private BigDecimal calculateEMI(BigDecimal principal, BigDecimal monthlyRate, int months) {
-        // EMI = P * r * (1+r)^n / ((1+r)^n - 1)
-        if (monthlyRate.compareTo(BigDecimal.ZERO) == 0) {
-            return principal.divide(new BigDecimal(months), 2, RoundingMode.HALF_UP);
-        }
-
-        BigDecimal onePlusR = BigDecimal.ONE.add(monthlyRate);
-        BigDecimal onePlusRPowN = onePlusR.pow(months);
-
-        return principal.multiply(monthlyRate).multiply(onePlusRPowN)
-                .divide(onePlusRPowN.subtract(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
-    }
-
     private BigDecimal calculateInterestRate(Integer creditScore) {
         // Fallback method - now interest rate comes from request
         // Adjusted to comply with Vietnamese law (max 20%/year)
@@ -307,41 +278,85 @@ public class LoanService {
 
     // Public method for mapping loans (used by AdminController)
     public LoanResponse toLoanResponse(Loan loan) {
-        int investorCount = investmentRepository.findByLoanId(loan.getId()).size();
-
-        RepaymentSchedule nextSchedule = scheduleRepository.findNextUnpaidByLoanId(loan.getId()).orElse(null);
-
-        return LoanResponse.builder()
-                .id(loan.getId())
-                .loanCode(loan.getLoanCode())
-                .title(loan.getTitle())
-                .description(loan.getDescription())
-                .purpose(loan.getPurpose())
-                .requestedAmount(loan.getRequestedAmount())
-                .fundedAmount(loan.getFundedAmount())
-                .remainingAmount(loan.getRemainingAmount())
-                .fundingProgress(loan.getFundingProgress())
-                .interestRate(loan.getInterestRate())
-                .platformFeeRate(loan.getPlatformFeeRate())
-                .termMonths(loan.getTermMonths())
-                .riskGrade(loan.getRiskGrade())
-                .creditScoreAtRequest(loan.getCreditScoreAtRequest())
-                .status(loan.getStatus())
-                .fundingDeadline(loan.getFundingDeadline())
-                .disbursedAt(loan.getDisbursedAt())
-                .maturityDate(loan.getMaturityDate())
-                .totalRepaid(loan.getTotalRepaid())
-                .totalInterestPaid(loan.getTotalInterestPaid())
-                .investorCount(investorCount)
-                .rejectionReason(loan.getRejectionReason())
-                .borrowerId(loan.getBorrower() != null ? loan.getBorrower().getId() : null)
-                .borrowerName(loan.getBorrower() != null ? maskName(loan.getBorrower().getFullName()) : "Unknown")
-                .borrowerCreditScore(loan.getBorrower() != null ? loan.getBorrower().getCreditScore() : 0)
-                .nextRepaymentDate(nextSchedule != null ? nextSchedule.getDueDate() : null)
-                .nextRepaymentAmount(nextSchedule != null ? nextSchedule.getTotalAmount() : null)
-                .createdAt(loan.getCreatedAt())
-                .updatedAt(loan.getUpdatedAt())
-                .build();
+        return toLoanResponses(List.of(loan)).get(0);
+    }
+
+    /**
+     * Map a page of loans with a fixed number of queries: investor counts, next unpaid
+     * installments and borrower fields are each fetched once for the whole list. The
+     * borrower association itself is never initialized.
+     */
+    public List<LoanResponse> toLoanResponses(List<Loan> loans) {
+        if (loans.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> loanIds = loans.stream().map(Loan::getId).collect(Collectors.toSet());
+        Set<Long> borrowerIds = loans.stream()
+                .map(Loan::getBorrower)
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .collect(Collectors.toSet());
+
+        Map<Long, Integer> investorCounts = new HashMap<>();
+        for (Object[] row : investmentRepository.countByLoanIds(loanIds)) {
+            investorCounts.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        Map<Long, RepaymentSchedule> nextSchedules = new HashMap<>();
+        for (RepaymentSchedule schedule : scheduleRepository.findNextUnpaidByLoanIds(loanIds)) {
+            nextSchedules.put(schedule.getLoan().getId(), schedule);
+        }
+        Map<Long, Object[]> borrowers = new HashMap<>();
+        if (!borrowerIds.isEmpty()) {
+            for (Object[] row : userRepository.findBorrowerSummaries(borrowerIds)) {
+                borrowers.put((Long) row[0], row);
+            }
+        }
+
+        return loans.stream().map(loan -> {
+            Object[] borrower = loan.getBorrower() != null ? borrowers.get(loan.getBorrower().getId()) : null;
+            RepaymentSchedule nextSchedule = nextSchedules.get(loan.getId());
+            return LoanResponse.builder()
+                    .id(loan.getId())
+                    .loanCode(loan.getLoanCode())
+                    .title(loan.getTitle())
+                    .description(loan.getDescription())
+                    .purpose(loan.getPurpose())
+                    .requestedAmount(loan.getRequestedAmount())
+                    .fundedAmount(loan.getFundedAmount())
+                    .remainingAmount(loan.getRemainingAmount())
+                    .fundingProgress(loan.getFundingProgress())
+                    .interestRate(loan.getInterestRate())
+                    .platformFeeRate(loan.getPlatformFeeRate())
+                    .termMonths(loan.getTermMonths())
+                    .repaymentType(loan.getRepaymentType())
+                    .riskGrade(loan.getRiskGrade())
+                    .creditScoreAtRequest(loan.getCreditScoreAtRequest())
+                    .status(loan.getStatus())
+                    .fundingDeadline(loan.getFundingDeadline())
+                    .disbursedAt(loan.getDisbursedAt())
+                    .maturityDate(loan.getMaturityDate())
+                    .totalRepaid(loan.getTotalRepaid())
+                    .totalInterestPaid(loan.getTotalInterestPaid())
+                    .installmentCount(loan.getInstallmentCount())
+                    .paidInstallments(loan.getPaidInstallments())
+                    .outstandingPrincipal(loan.getOutstandingPrincipal())
+                    .investorCount(investorCounts.getOrDefault(loan.getId(), 0))
+                    .rejectionReason(loan.getRejectionReason())
+                    .borrowerId(borrower != null ? (Long) borrower[0] : null)
+                    .borrowerName(borrower != null ? maskName(fullName((String) borrower[1], (String) borrower[2])) : "Unknown")
+                    .borrowerCreditScore(borrower != null ? (Integer) borrower[3] : 0)
+                    .nextRepaymentDate(nextSchedule != null ? nextSchedule.getDueDate() : null)
+                    .nextRepaymentAmount(nextSchedule != null ? nextSchedule.getTotalAmount() : null)
+                    .createdAt(loan.getCreatedAt())
+                    .updatedAt(loan.getUpdatedAt())
+                    .build();
+        }).toList();
+    }
+
+    // Same format as User.getFullName, from projected columns
+    private static String fullName(String firstName, String lastName) {
+        if (firstName == null && lastName == null) return null;
+        return ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
     }
 
     private String maskName(String name) {
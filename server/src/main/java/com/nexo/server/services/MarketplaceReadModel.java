@@ -0,0 +1,400 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.loan.LoanResponse;
+import com.nexo.server.dto.loan.MarketplaceConsistencyResponse;
+import com.nexo.server.entities.Loan;
+import com.nexo.server.enums.LoanPurpose;
+import com.nexo.server.enums.LoanStatus;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.repositories.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process read model of every FUNDING loan, serving marketplace browse requests
+ * without a database round trip.
+ *
+ * <p>Loans are held as ready-made {@link LoanResponse}s. Writers (loan review,
+ * investments, disbursement) call {@link #refreshAfterCommit} and the affected loan is
+ * reloaded once their transaction commits. Reads work on an immutable snapshot with
+ * bitset indexes on purpose and risk grade, sorted range indexes on rate, amount and
+ * term, and a precomputed order per sortable field; the snapshot is rebuilt lazily by
+ * the first read after a change.
+ *
+ * <p>Changes made by other nodes are not pushed here, so {@link #verify()} runs
+ * periodically, compares every loan against the database and reloads whatever drifted.
+ */
+@Service
+@Slf4j
+public class MarketplaceReadModel {
+
+    private static final String VERIFY_SQL =
+            "SELECT l.id, l.funded_amount, l.interest_rate, l.updated_at, u.credit_score, " +
+            "(SELECT COUNT(*) FROM investments i WHERE i.loan_id = l.id) AS investor_count " +
+            "FROM loans l JOIN users u ON u.id = l.borrower_id WHERE l.status = 'FUNDING'";
+
+    private static final String DEFAULT_SORT = "createdAt";
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private static final Map<String, Function<LoanResponse, Comparable>> SORT_KEYS = Map.of(
+            "id", LoanResponse::getId,
+            "createdAt", LoanResponse::getCreatedAt,
+            "interestRate", LoanResponse::getInterestRate,
+            "requestedAmount", LoanResponse::getRequestedAmount,
+            "fundedAmount", LoanResponse::getFundedAmount,
+            "remainingAmount", LoanResponse::getRemainingAmount,
+            "fundingProgress", LoanResponse::getFundingProgress,
+            "termMonths", LoanResponse::getTermMonths,
+            "fundingDeadline", LoanResponse::getFundingDeadline,
+            "riskGrade", LoanResponse::getRiskGrade);
+
+    private final LoanRepository loanRepository;
+    private final LoanService loanService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, LoanResponse> loans = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(-1, List.of());
+    private volatile boolean ready;
+
+    @Value("${app.marketplace.read-model.enabled:true}")
+    private boolean enabled;
+
+    public MarketplaceReadModel(LoanRepository loanRepository, @Lazy LoanService loanService, JdbcTemplate jdbcTemplate) {
+        this.loanRepository = loanRepository;
+        this.loanService = loanService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            log.info("Marketplace read model disabled, browse requests query the database");
+            return;
+        }
+        long started = System.currentTimeMillis();
+        List<Loan> funding = loanRepository.findAllByStatusWithBorrower(LoanStatus.FUNDING);
+        Map<Long, LoanResponse> loaded = new HashMap<>();
+        for (int from = 0; from < funding.size(); from += LOAD_BATCH_SIZE) {
+            for (LoanResponse response : loanService.toLoanResponses(
+                    funding.subList(from, Math.min(from + LOAD_BATCH_SIZE, funding.size())))) {
+                loaded.put(response.getId(), response);
+            }
+        }
+        loans.clear();
+        loans.putAll(loaded);
+        version.incrementAndGet();
+        ready = true;
+        log.info("Marketplace read model loaded {} loans in {} ms", loaded.size(), System.currentTimeMillis() - started);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Reload a loan once the current transaction commits, or immediately when there is none.
+     */
+    public void refreshAfterCommit(Long loanId) {
+        if (!ready) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh(loanId);
+                }
+            });
+        } else {
+            refresh(loanId);
+        }
+    }
+
+    private void refresh(Long loanId) {
+        try {
+            Optional<Loan> loan = loanRepository.findByIdWithBorrower(loanId);
+            if (loan.isPresent() && loan.get().getStatus() == LoanStatus.FUNDING) {
+                loans.put(loanId, loanService.toLoanResponse(loan.get()));
+            } else {
+                loans.remove(loanId);
+            }
+            version.incrementAndGet();
+        } catch (RuntimeException e) {
+            // The periodic verification repairs the entry
+            log.warn("Could not refresh marketplace loan {}: {}", loanId, e.getMessage());
+        }
+    }
+
+    /**
+     * Filtered, sorted page of FUNDING loans. Text search is not handled here.
+     */
+    public Page<LoanResponse> browse(LoanSearchService.Criteria criteria, Pageable pageable) {
+        Snapshot current = currentSnapshot();
+        BitSet matches = current.filter(criteria);
+        int total = matches.cardinality();
+
+        List<Sort.Order> orders = pageable.getSort().stream()
+                .filter(order -> SORT_KEYS.containsKey(order.getProperty()))
+                .toList();
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), total) : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : total;
+
+        List<LoanResponse> content;
+        if (orders.size() <= 1) {
+            Sort.Order order = orders.isEmpty() ? Sort.Order.desc(DEFAULT_SORT) : orders.get(0);
+            content = current.pageInOrder(matches, order, from, limit);
+        } else {
+            Comparator<LoanResponse> comparator = null;
+            for (Sort.Order order : orders) {
+                Comparator<LoanResponse> next = comparing(order.getProperty());
+                next = order.isDescending() ? next.reversed() : next;
+                comparator = comparator == null ? next : comparator.thenComparing(next);
+            }
+            List<LoanResponse> matching = new ArrayList<>(total);
+            matches.stream().forEach(i -> matching.add(current.loans.get(i)));
+            matching.sort(comparator.thenComparing(LoanResponse::getId));
+            content = matching.subList(from, Math.min(from + limit, total));
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    @Scheduled(fixedDelayString = "${app.marketplace.read-model.verify-interval-ms:60000}",
+            initialDelayString = "${app.marketplace.read-model.verify-interval-ms:60000}")
+    public void scheduledVerify() {
+        if (ready) {
+            verify();
+        }
+    }
+
+    /**
+     * Compare every cached loan with the database and reload the ones that differ.
+     */
+    public MarketplaceConsistencyResponse verify() {
+        if (!ready) {
+            throw new BusinessException("Marketplace read model is not loaded");
+        }
+        Set<Long> seen = new HashSet<>();
+        List<Long> missing = new ArrayList<>();
+        List<Long> stale = new ArrayList<>();
+        jdbcTemplate.query(VERIFY_SQL, rs -> {
+            long id = rs.getLong("id");
+            seen.add(id);
+            LoanResponse cached = loans.get(id);
+            if (cached == null) {
+                missing.add(id);
+                return;
+            }
+            LocalDateTime updatedAt = rs.getTimestamp("updated_at") != null
+                    ? rs.getTimestamp("updated_at").toLocalDateTime() : null;
+            if (!sameAmount(cached.getFundedAmount(), rs.getBigDecimal("funded_amount"))
+                    || !sameAmount(cached.getInterestRate(), rs.getBigDecimal("interest_rate"))
+                    || !Objects.equals(cached.getUpdatedAt(), updatedAt)
+                    || !Objects.equals(cached.getBorrowerCreditScore(), rs.getObject("credit_score", Integer.class))
+                    || cached.getInvestorCount() == null || cached.getInvestorCount() != rs.getInt("investor_count")) {
+                stale.add(id);
+            }
+        });
+        List<Long> extra = loans.keySet().stream().filter(id -> !seen.contains(id)).sorted().toList();
+
+        MarketplaceConsistencyResponse report = MarketplaceConsistencyResponse.builder()
+                .checkedAt(LocalDateTime.now())
+                .databaseLoans(seen.size())
+                .cachedLoans(loans.size())
+                .missingLoanIds(missing)
+                .staleLoanIds(stale)
+                .extraLoanIds(extra)
+                .build();
+        if (!report.isConsistent()) {
+            log.warn("Marketplace read model drift: {} missing, {} stale, {} extra; reloading",
+                    missing.size(), stale.size(), extra.size());
+            missing.forEach(this::refresh);
+            stale.forEach(this::refresh);
+            extra.forEach(this::refresh);
+        }
+        return report;
+    }
+
+    private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current.version == version.get()) {
+            return current;
+        }
+        synchronized (this) {
+            long target = version.get();
+            if (snapshot.version != target) {
+                // Built after reading the version, so it holds at least every change up to it
+                snapshot = new Snapshot(target, List.copyOf(loans.values()));
+            }
+            return snapshot;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<LoanResponse> comparing(String property) {
+        Function<LoanResponse, Comparable> key = SORT_KEYS.get(property);
+        return (a, b) -> {
+            Comparable x = key.apply(a);
+            Comparable y = key.apply(b);
+            if (x == null || y == null) {
+                return x == y ? 0 : x == null ? 1 : -1;
+            }
+            return x.compareTo(y);
+        };
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final List<LoanResponse> loans;
+        private final Map<LoanPurpose, BitSet> byPurpose = new EnumMap<>(LoanPurpose.class);
+        private final Map<String, BitSet> byRiskGrade = new HashMap<>();
+        private final RangeIndex<BigDecimal> byRate;
+        private final RangeIndex<BigDecimal> byAmount;
+        private final RangeIndex<Integer> byTerm;
+        private final Map<String, int[]> orderBy = new HashMap<>();
+
+        private Snapshot(long version, List<LoanResponse> loans) {
+            this.version = version;
+            this.loans = loans;
+            for (int i = 0; i < loans.size(); i++) {
+                LoanResponse loan = loans.get(i);
+                if (loan.getPurpose() != null) {
+                    byPurpose.computeIfAbsent(loan.getPurpose(), p -> new BitSet()).set(i);
+                }
+                if (loan.getRiskGrade() != null) {
+                    byRiskGrade.computeIfAbsent(loan.getRiskGrade(), g -> new BitSet()).set(i);
+                }
+            }
+            this.byRate = new RangeIndex<>(loans, LoanResponse::getInterestRate);
+            this.byAmount = new RangeIndex<>(loans, LoanResponse::getRequestedAmount);
+            this.byTerm = new RangeIndex<>(loans, LoanResponse::getTermMonths);
+            for (String property : SORT_KEYS.keySet()) {
+                Comparator<LoanResponse> comparator = comparing(property).thenComparing(LoanResponse::getId);
+                orderBy.put(property, sortedPositions(loans, comparator));
+            }
+        }
+
+        private BitSet filter(LoanSearchService.Criteria criteria) {
+            BitSet result = new BitSet(loans.size());
+            result.set(0, loans.size());
+            if (criteria.purpose() != null) {
+                result.and(byPurpose.getOrDefault(criteria.purpose(), new BitSet()));
+            }
+            if (criteria.riskGrades() != null && !criteria.riskGrades().isEmpty()) {
+                BitSet grades = new BitSet();
+                for (String grade : criteria.riskGrades()) {
+                    BitSet positions = byRiskGrade.get(grade);
+                    if (positions != null) {
+                        grades.or(positions);
+                    }
+                }
+                result.and(grades);
+            }
+            if (criteria.minRate() != null || criteria.maxRate() != null) {
+                result.and(byRate.select(criteria.minRate(), criteria.maxRate()));
+            }
+            if (criteria.minAmount() != null || criteria.maxAmount() != null) {
+                result.and(byAmount.select(criteria.minAmount(), criteria.maxAmount()));
+            }
+            if (criteria.minTerm() != null || criteria.maxTerm() != null) {
+                result.and(byTerm.select(criteria.minTerm(), criteria.maxTerm()));
+            }
+            return result;
+        }
+
+        private List<LoanResponse> pageInOrder(BitSet matches, Sort.Order order, int from, int limit) {
+            int[] positions = orderBy.get(order.getProperty());
+            List<LoanResponse> page = new ArrayList<>(Math.min(limit, loans.size()));
+            int skipped = 0;
+            for (int n = 0; n < positions.length && page.size() < limit; n++) {
+                int position = positions[order.isDescending() ? positions.length - 1 - n : n];
+                if (!matches.get(position)) {
+                    continue;
+                }
+                if (skipped < from) {
+                    skipped++;
+                } else {
+                    page.add(loans.get(position));
+                }
+            }
+            return page;
+        }
+
+        private static int[] sortedPositions(List<LoanResponse> loans, Comparator<LoanResponse> comparator) {
+            Integer[] positions = new Integer[loans.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+            Arrays.sort(positions, (a, b) -> comparator.compare(loans.get(a), loans.get(b)));
+            return Arrays.stream(positions).mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Positions sorted by a value, answering inclusive range queries with two binary searches.
+     */
+    private static final class RangeIndex<T extends Comparable<? super T>> {
+        private final List<T> values = new ArrayList<>();
+        private final int[] positions;
+
+        private RangeIndex(List<LoanResponse> loans, Function<LoanResponse, T> key) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < loans.size(); i++) {
+                if (key.apply(loans.get(i)) != null) {
+                    order.add(i);
+                }
+            }
+            order.sort(Comparator.comparing(i -> key.apply(loans.get(i))));
+            positions = order.stream().mapToInt(Integer::intValue).toArray();
+            order.forEach(i -> values.add(key.apply(loans.get(i))));
+        }
+
+        private BitSet select(T min, T max) {
+            int from = min == null ? 0 : firstIndexNotBelow(min, false);
+            int to = max == null ? values.size() : firstIndexNotBelow(max, true);
+            BitSet result = new BitSet();
+            for (int i = from; i < to; i++) {
+                result.set(positions[i]);
+            }
+            return result;
+        }
+
+        /** First index whose value is {@code >= bound}, or {@code > bound} when {@code strict}. */
+        private int firstIndexNotBelow(T bound, boolean strict) {
+            int low = 0;
+            int high = values.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = values.get(mid).compareTo(bound);
+                if (cmp < 0 || strict && cmp == 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -11,10 +11,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -22,9 +26,21 @@ import java.util.List;
 @Slf4j
 public class NotificationService {
 
+    private static final String INSERT_NOTIFICATION_SQL =
+            "INSERT INTO notifications (user_id, type, title, message, action_url, loan_id, investment_id, " +
+            "is_read, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, false, ?, ?)";
+
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * A notification to insert through {@link #createNotifications}.
+     */
+    public record Draft(Long userId, NotificationType type, String title, String message, String actionUrl,
+                        Long loanId, Long investmentId) {
+    }
 
     @Transactional
     public void createNotification(User user, NotificationType type, String title, String message, String actionUrl) {
@@ -186,5 +202,37 @@ public class NotificationService {
         NotificationType notificationType = NotificationType.valueOf(type);
         createNotification(user, notificationType, title, message, null);
     }
-}
 
+    /**
+     * {@link #createNotifications} on the async executor in its own transaction, for
+     * callers that register it to run after their commit.
+     */
+    @Async
+    @Transactional
+    public void createNotificationsAsync(List<Draft> drafts) {
+        createNotifications(drafts);
+    }
+
+    /**
+     * Insert many notifications in one JDBC batch, joining the caller's transaction.
+     * For bulk jobs; sends no emails.
+     */
+    @Transactional
+    public void createNotifications(List<Draft> drafts) {
+        if (drafts.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION_SQL, drafts, 500, (ps, draft) -> {
+            ps.setLong(1, draft.userId());
+            ps.setString(2, draft.type().name());
+            ps.setString(3, draft.title());
+            ps.setString(4, draft.message());
+            ps.setString(5, draft.actionUrl());
+            ps.setObject(6, draft.loanId(), Types.BIGINT);
+            ps.setObject(7, draft.investmentId(), Types.BIGINT);
+            ps.setTimestamp(8, now);
+            ps.setTimestamp(9, now);
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package com.nexo.server.services;
+
+import java.util.Arrays;
+
+/**
+ * Price-time-priority book for one loan's notes. Not thread-safe: each book is owned by
+ * exactly one matching thread.
+ *
+ * <p>Each side keeps its orders in parallel primitive arrays sorted worst to best, so the
+ * best order is at the end and filling it completely is a size decrement. Fills are
+ * written into reusable arrays read back through the {@code fill*} accessors. Matching
+ * allocates only when a side or the fill buffer outgrows its current capacity.
+ */
+final class OrderBook {
+
+    private final Side bids = new Side(true);
+    private final Side asks = new Side(false);
+
+    private long[] fillMakerIds = new long[16];
+    private long[] fillQuantities = new long[16];
+    private int[] fillPrices = new int[16];
+    private int fillCount;
+
+    /**
+     * Match an incoming order and rest whatever is left. Makers owned by the same user are
+     * skipped rather than traded against. Trades execute at the maker's price.
+     *
+     * @return number of fills, readable until the next call
+     */
+    int submit(long orderId, boolean buy, int price, long quantity, long ownerId) {
+        fillCount = 0;
+        Side book = buy ? asks : bids;
+        long left = quantity;
+        for (int i = book.size - 1; i >= 0 && left > 0; i--) {
+            int makerPrice = book.prices[i];
+            if (buy ? makerPrice > price : makerPrice < price) {
+                break;
+            }
+            if (book.owners[i] == ownerId) {
+                continue;
+            }
+            long traded = Math.min(left, book.remaining[i]);
+            addFill(book.ids[i], traded, makerPrice);
+            left -= traded;
+            book.remaining[i] -= traded;
+            if (book.remaining[i] == 0) {
+                book.removeAt(i);
+            }
+        }
+        if (left > 0) {
+            (buy ? bids : asks).insert(orderId, price, left, ownerId);
+        }
+        return fillCount;
+    }
+
+    boolean cancel(long orderId) {
+        return bids.remove(orderId) || asks.remove(orderId);
+    }
+
+    void clear() {
+        bids.size = 0;
+        asks.size = 0;
+        fillCount = 0;
+    }
+
+    boolean isEmpty() {
+        return bids.size == 0 && asks.size == 0;
+    }
+
+    long fillMakerId(int i) {
+        return fillMakerIds[i];
+    }
+
+    long fillQuantity(int i) {
+        return fillQuantities[i];
+    }
+
+    int fillPrice(int i) {
+        return fillPrices[i];
+    }
+
+    /**
+     * Aggregate price levels, best first, into {@code prices}/{@code quantities}/{@code counts}.
+     *
+     * @return number of levels written
+     */
+    int depth(boolean buy, int[] prices, long[] quantities, int[] counts) {
+        Side side = buy ? bids : asks;
+        int levels = 0;
+        for (int i = side.size - 1; i >= 0; i--) {
+            if (levels > 0 && prices[levels - 1] == side.prices[i]) {
+                quantities[levels - 1] += side.remaining[i];
+                counts[levels - 1]++;
+            } else if (levels < prices.length) {
+                prices[levels] = side.prices[i];
+                quantities[levels] = side.remaining[i];
+                counts[levels] = 1;
+                levels++;
+            } else {
+                break;
+            }
+        }
+        return levels;
+    }
+
+    private void addFill(long makerId, long quantity, int price) {
+        if (fillCount == fillMakerIds.length) {
+            int capacity = fillCount * 2;
+            fillMakerIds = Arrays.copyOf(fillMakerIds, capacity);
+            fillQuantities = Arrays.copyOf(fillQuantities, capacity);
+            fillPrices = Arrays.copyOf(fillPrices, capacity);
+        }
+        fillMakerIds[fillCount] = makerId;
+        fillQuantities[fillCount] = quantity;
+        fillPrices[fillCount] = price;
+        fillCount++;
+    }
+
+    private static final class Side {
+        private final boolean buy;
+        private long[] ids = new long[16];
+        private int[] prices = new int[16];
+        private long[] remaining = new long[16];
+        private long[] owners = new long[16];
+        private int size;
+
+        Side(boolean buy) {
+            this.buy = buy;
+        }
+
+        void insert(long id, int price, long quantity, long owner) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                remaining = Arrays.copyOf(remaining, capacity);
+                owners = Arrays.copyOf(owners, capacity);
+            }
+            // First position holding an order with priority over the new one
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (hasPriority(mid, id, price)) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            int tail = size - lo;
+            if (tail > 0) {
+                System.arraycopy(ids, lo, ids, lo + 1, tail);
+                System.arraycopy(prices, lo, prices, lo + 1, tail);
+                System.arraycopy(remaining, lo, remaining, lo + 1, tail);
+                System.arraycopy(owners, lo, owners, lo + 1, tail);
+            }
+            ids[lo] = id;
+            prices[lo] = price;
+            remaining[lo] = quantity;
+            owners[lo] = owner;
+            size++;
+        }
+
+        boolean remove(long id) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (ids[i] == id) {
+                    removeAt(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void removeAt(int i) {
+            int tail = size - i - 1;
+            if (tail > 0) {
+                System.arraycopy(ids, i + 1, ids, i, tail);
+                System.arraycopy(prices, i + 1, prices, i, tail);
+                System.arraycopy(remaining, i + 1, remaining, i, tail);
+                System.arraycopy(owners, i + 1, owners, i, tail);
+            }
+            size--;
+        }
+
+        private boolean hasPriority(int i, long id, int price) {
+            if (prices[i] != price) {
+                return buy ? prices[i] > price : prices[i] < price;
+            }
+            return ids[i] < id;
+        }
+    }
+}
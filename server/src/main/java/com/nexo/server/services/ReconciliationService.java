@@ -0,0 +1,369 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.common.PageResponse;
+import com.nexo.server.dto.reconciliation.ReconciliationDriftResponse;
+import com.nexo.server.dto.reconciliation.ReconciliationRunResponse;
+import com.nexo.server.entities.ReconciliationDrift;
+import com.nexo.server.entities.ReconciliationRun;
+import com.nexo.server.enums.ReconciliationStatus;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import com.nexo.server.repositories.ReconciliationDriftRepository;
+import com.nexo.server.repositories.ReconciliationRunRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks every wallet's stored balances against the ledger and the transaction history.
+ *
+ * <p>Wallets are split into id-range chunks that run in parallel on a bounded pool. Each
+ * chunk is a single aggregate query, so the wallet row, its ledger legs and its transactions
+ * (live and archived) are read from one snapshot and in-flight postings never show up as
+ * false drift. Wallets that disagree are written to {@code reconciliation_drifts}.
+ *
+ * <p>Progress is recorded as the end of the contiguous range of finished chunks; resuming a
+ * run clears drifts past that point and continues from there. The pause between chunks can
+ * be changed while a run is active to throttle load on the database.
+ */
+@Service
+@Slf4j
+public class ReconciliationService {
+
+    private static final String CHUNK_SQL =
+            "SELECT w.id, w.user_id, w.balance, w.locked_balance, " +
+            "COALESCE(l.net, 0) AS ledger_balance, COALESCE(t.net, 0) AS transaction_balance, " +
+            "COALESCE(t.pending_withdrawals, 0) AS pending_withdrawals, COALESCE(m.reserved, 0) AS bid_reserves " +
+            "FROM wallets w " +
+            "LEFT JOIN (SELECT account_id AS wallet_id, " +
+            "      SUM(CASE WHEN direction = 'CREDIT' THEN amount ELSE -amount END) AS net " +
+            "      FROM ledger_entries WHERE account_type = 'WALLET' AND account_id >= ? AND account_id < ? " +
+            "      GROUP BY account_id) l ON l.wallet_id = w.id " +
+            "LEFT JOIN (SELECT x.wallet_id, " +
+            "      SUM(CASE WHEN status = 'COMPLETED' AND type IN ('DEPOSIT', 'REPAYMENT_RECEIVED', 'INVESTMENT_RETURN', 'LOAN_DISBURSEMENT') THEN net_amount " +
+            "               WHEN status = 'COMPLETED' AND type IN ('REFUND', 'TRANSFER_IN') THEN net_amount " +
+            "               WHEN status = 'COMPLETED' AND type = 'WITHDRAW' THEN -(amount + COALESCE(fee, 0)) " +
+            "               WHEN status = 'COMPLETED' AND type IN ('INVESTMENT', 'REPAYMENT_PAID', 'TRANSFER_OUT') THEN -amount " +
+            "               ELSE 0 END) AS net, " +
+            "      SUM(CASE WHEN status = 'PENDING' AND type = 'WITHDRAW' THEN amount + COALESCE(fee, 0) ELSE 0 END) AS pending_withdrawals " +
+            "      FROM (SELECT wallet_id, type, status, amount, fee, net_amount FROM transactions " +
+            "            WHERE wallet_id >= ? AND wallet_id < ? " +
+            "            UNION ALL SELECT wallet_id, type, status, amount, fee, net_amount " +
+            "            FROM " + TransactionArchiveService.ARCHIVE_TABLE + " WHERE wallet_id >= ? AND wallet_id < ?) x " +
+            "      GROUP BY x.wallet_id) t ON t.wallet_id = w.id " +
+            // Open buy orders on the note market hold their unfilled cost locked
+            "LEFT JOIN (SELECT user_id, SUM(reserved_amount) AS reserved FROM market_orders " +
+            "      WHERE side = 'BUY' AND status = 'OPEN' " +
+            "      AND user_id IN (SELECT user_id FROM wallets WHERE id >= ? AND id < ?) " +
+            "      GROUP BY user_id) m ON m.user_id = w.user_id " +
+            "WHERE w.id >= ? AND w.id < ?";
+
+    private static final String INSERT_DRIFT_SQL =
+            "INSERT INTO reconciliation_drifts (run_id, wallet_id, user_id, wallet_balance, ledger_balance, " +
+            "transaction_balance, locked_balance, pending_withdrawals, ledger_delta, transaction_delta, locked_delta, " +
+            "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReconciliationRunRepository runRepository;
+    private final ReconciliationDriftRepository driftRepository;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "reconciliation-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<RunContext> activeRun = new AtomicReference<>();
+
+    @Value("${app.reconciliation.chunk-size:10000}")
+    private int chunkSize;
+
+    @Value("${app.reconciliation.parallelism:4}")
+    private int defaultParallelism;
+
+    @Value("${app.reconciliation.chunk-pause-ms:0}")
+    private long defaultChunkPauseMs;
+
+    public ReconciliationService(JdbcTemplate jdbcTemplate, ReconciliationRunRepository runRepository,
+                                 ReconciliationDriftRepository driftRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.runRepository = runRepository;
+        this.driftRepository = driftRepository;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        RunContext context = activeRun.get();
+        if (context != null) {
+            context.cancelled = true;
+        }
+        coordinator.shutdownNow();
+    }
+
+    /**
+     * Nightly run: continues an interrupted run if there is one, otherwise starts a new one.
+     */
+    @Scheduled(cron = "${app.reconciliation.cron:0 0 3 * * ?}")
+    public void runNightly() {
+        if (activeRun.get() != null) {
+            return;
+        }
+        try {
+            runRepository.findFirstByStatusInOrderByIdDesc(List.of(ReconciliationStatus.RUNNING, ReconciliationStatus.FAILED))
+                    .ifPresentOrElse(run -> resume(run.getId(), null, null), () -> start(null, null));
+        } catch (Exception e) {
+            log.error("Failed to start nightly reconciliation: {}", e.getMessage(), e);
+        }
+    }
+
+    public ReconciliationRunResponse start(Integer parallelism, Long chunkPauseMs) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM wallets");
+        Long minId = bounds.get("min_id") != null ? ((Number) bounds.get("min_id")).longValue() : 0L;
+        Long maxId = bounds.get("max_id") != null ? ((Number) bounds.get("max_id")).longValue() : -1L;
+
+        ReconciliationRun run = runRepository.save(ReconciliationRun.builder()
+                .status(ReconciliationStatus.RUNNING)
+                .minWalletId(minId)
+                .maxWalletId(maxId)
+                .resumeFromWalletId(minId)
+                .chunkSize(chunkSize)
+                .startedAt(LocalDateTime.now())
+                .build());
+        launch(run, parallelism, chunkPauseMs);
+        return toRunResponse(run);
+    }
+
+    public ReconciliationRunResponse resume(Long runId, Integer parallelism, Long chunkPauseMs) {
+        ReconciliationRun run = runRepository.findById(runId)
+                .orElseThrow(() -> new ResourceNotFoundException("Reconciliation run", runId));
+        if (run.getStatus() == ReconciliationStatus.COMPLETED) {
+            throw new BusinessException("Reconciliation run is already completed");
+        }
+        run.setStatus(ReconciliationStatus.RUNNING);
+        run.setErrorMessage(null);
+        run.setFinishedAt(null);
+        runRepository.save(run);
+        launch(run, parallelism, chunkPauseMs);
+        return toRunResponse(run);
+    }
+
+    public void cancel(Long runId) {
+        RunContext context = activeRun.get();
+        if (context == null || !context.runId.equals(runId)) {
+            throw new BusinessException("Reconciliation run is not active");
+        }
+        context.cancelled = true;
+    }
+
+    public void throttle(long chunkPauseMs) {
+        RunContext context = activeRun.get();
+        if (context == null) {
+            throw new BusinessException("No reconciliation run is active");
+        }
+        context.chunkPauseMs = Math.max(0, chunkPauseMs);
+    }
+
+    public ReconciliationRunResponse getRun(Long runId) {
+        return runRepository.findById(runId)
+                .map(this::toRunResponse)
+                .orElseThrow(() -> new ResourceNotFoundException("Reconciliation run", runId));
+    }
+
+    public PageResponse<ReconciliationDriftResponse> getDrifts(Long runId, Pageable pageable) {
+        Page<ReconciliationDrift> drifts = driftRepository.findByRunId(runId, pageable);
+        return PageResponse.of(drifts, drifts.getContent().stream().map(this::toDriftResponse).toList());
+    }
+
+    private void launch(ReconciliationRun run, Integer parallelism, Long chunkPauseMs) {
+        RunContext context = new RunContext(run.getId(),
+                parallelism != null && parallelism > 0 ? parallelism : defaultParallelism,
+                chunkPauseMs != null ? chunkPauseMs : defaultChunkPauseMs);
+        if (!activeRun.compareAndSet(null, context)) {
+            throw new BusinessException("A reconciliation run is already in progress");
+        }
+        coordinator.submit(() -> {
+            try {
+                execute(context, run);
+            } finally {
+                activeRun.set(null);
+            }
+        });
+    }
+
+    private void execute(RunContext context, ReconciliationRun run) {
+        long runId = run.getId();
+        long from = run.getResumeFromWalletId();
+        long end = run.getMaxWalletId() + 1;
+        int size = run.getChunkSize();
+        long started = System.currentTimeMillis();
+
+        // Chunks past the resume point may have been partly recorded before the interruption
+        jdbcTemplate.update("DELETE FROM reconciliation_drifts WHERE run_id = ? AND wallet_id >= ?", runId, from);
+        Long recorded = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reconciliation_drifts WHERE run_id = ?", Long.class, runId);
+        long driftCount = recorded != null ? recorded : 0L;
+        long checked = from > run.getMinWalletId() ? run.getCheckedWallets() : 0L;
+
+        List<long[]> chunks = new ArrayList<>();
+        for (long lo = from; lo < end; lo += size) {
+            chunks.add(new long[]{lo, Math.min(lo + size, end)});
+        }
+        log.info("Reconciliation run {} checking wallet ids [{}, {}) in {} chunk(s) with parallelism {}",
+                runId, from, end, chunks.size(), context.parallelism);
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(context.parallelism, r -> {
+            Thread thread = new Thread(r, "reconciliation-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<ChunkResult> completion = new ExecutorCompletionService<>(workers);
+        ReconciliationStatus finalStatus = ReconciliationStatus.COMPLETED;
+        String error = null;
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+                int index = i;
+                completion.submit(() -> checkChunk(context, runId, index, chunks.get(index)[0], chunks.get(index)[1]));
+            }
+
+            // Finished chunks beyond the first gap are held back so the watermark only covers a contiguous prefix
+            TreeMap<Integer, ChunkResult> pending = new TreeMap<>();
+            int nextIndex = 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                ChunkResult result = completion.take().get();
+                driftCount += result.drifts();
+                if (result.skipped()) {
+                    continue;
+                }
+                pending.put(result.index(), result);
+                while (pending.containsKey(nextIndex)) {
+                    checked += pending.remove(nextIndex).checked();
+                    nextIndex++;
+                }
+                long resumeFrom = nextIndex < chunks.size() ? chunks.get(nextIndex)[0] : end;
+                jdbcTemplate.update("UPDATE reconciliation_runs SET resume_from_wallet_id = ?, checked_wallets = ?, " +
+                                "drift_count = ?, updated_at = ? WHERE id = ?",
+                        resumeFrom, checked, driftCount, Timestamp.valueOf(LocalDateTime.now()), runId);
+            }
+            if (context.cancelled) {
+                finalStatus = ReconciliationStatus.CANCELLED;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finalStatus = ReconciliationStatus.FAILED;
+            error = "Interrupted";
+        } catch (Exception e) {
+            context.cancelled = true;
+            finalStatus = ReconciliationStatus.FAILED;
+            error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            log.error("Reconciliation run {} failed: {}", runId, error, e);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        jdbcTemplate.update("UPDATE reconciliation_runs SET status = ?, finished_at = ?, drift_count = ?, " +
+                        "error_message = ?, updated_at = ? WHERE id = ?",
+                finalStatus.name(), Timestamp.valueOf(LocalDateTime.now()), driftCount, error,
+                Timestamp.valueOf(LocalDateTime.now()), runId);
+        log.info("Reconciliation run {} {}: {} wallet(s) checked, {} drift(s), {} ms",
+                runId, finalStatus, checked, driftCount, System.currentTimeMillis() - started);
+    }
+
+    private ChunkResult checkChunk(RunContext context, long runId, int index, long lo, long hi) throws InterruptedException {
+        if (context.cancelled) {
+            return new ChunkResult(index, 0, 0, true);
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> drifts = new ArrayList<>();
+        long[] checked = {0};
+        jdbcTemplate.query(CHUNK_SQL, rs -> {
+            checked[0]++;
+            BigDecimal balance = rs.getBigDecimal("balance");
+            BigDecimal locked = rs.getBigDecimal("locked_balance");
+            BigDecimal ledgerBalance = rs.getBigDecimal("ledger_balance");
+            BigDecimal transactionBalance = rs.getBigDecimal("transaction_balance");
+            BigDecimal pendingWithdrawals = rs.getBigDecimal("pending_withdrawals");
+            BigDecimal bidReserves = rs.getBigDecimal("bid_reserves");
+
+            BigDecimal ledgerDelta = balance.subtract(ledgerBalance);
+            BigDecimal transactionDelta = balance.subtract(transactionBalance);
+            BigDecimal lockedDelta = locked.subtract(pendingWithdrawals).subtract(bidReserves);
+            if (ledgerDelta.signum() != 0 || transactionDelta.signum() != 0 || lockedDelta.signum() != 0) {
+                drifts.add(new Object[]{runId, rs.getLong("id"), rs.getLong("user_id"), balance, ledgerBalance,
+                        transactionBalance, locked, pendingWithdrawals, ledgerDelta, transactionDelta, lockedDelta,
+                        now, now});
+            }
+        }, lo, hi, lo, hi, lo, hi, lo, hi, lo, hi);
+
+        if (!drifts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_DRIFT_SQL, drifts);
+        }
+
+        long pause = context.chunkPauseMs;
+        if (pause > 0) {
+            Thread.sleep(pause);
+        }
+        return new ChunkResult(index, checked[0], drifts.size(), false);
+    }
+
+    private ReconciliationRunResponse toRunResponse(ReconciliationRun run) {
+        return ReconciliationRunResponse.builder()
+                .id(run.getId())
+                .status(run.getStatus())
+                .minWalletId(run.getMinWalletId())
+                .maxWalletId(run.getMaxWalletId())
+                .resumeFromWalletId(run.getResumeFromWalletId())
+                .checkedWallets(run.getCheckedWallets())
+                .driftCount(run.getDriftCount())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .errorMessage(run.getErrorMessage())
+                .build();
+    }
+
+    private ReconciliationDriftResponse toDriftResponse(ReconciliationDrift drift) {
+        return ReconciliationDriftResponse.builder()
+                .walletId(drift.getWalletId())
+                .userId(drift.getUserId())
+                .walletBalance(drift.getWalletBalance())
+                .ledgerBalance(drift.getLedgerBalance())
+                .transactionBalance(drift.getTransactionBalance())
+                .lockedBalance(drift.getLockedBalance())
+                .pendingWithdrawals(drift.getPendingWithdrawals())
+                .ledgerDelta(drift.getLedgerDelta())
+                .transactionDelta(drift.getTransactionDelta())
+                .lockedDelta(drift.getLockedDelta())
+                .build();
+    }
+
+    private record ChunkResult(int index, long checked, long drifts, boolean skipped) {
+    }
+
+    private static final class RunContext {
+        private final Long runId;
+        private final int parallelism;
+        private volatile long chunkPauseMs;
+        private volatile boolean cancelled;
+
+        private RunContext(Long runId, int parallelism, long chunkPauseMs) {
+            this.runId = runId;
+            this.parallelism = parallelism;
+            this.chunkPauseMs = chunkPauseMs;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.Investment;
+import com.nexo.server.entities.Loan;
+import com.nexo.server.entities.Repayment;
+import com.nexo.server.enums.LedgerAccountType;
+import com.nexo.server.enums.LedgerPostingType;
+import com.nexo.server.enums.LoanStatus;
+import com.nexo.server.enums.NotificationType;
+import com.nexo.server.enums.TransactionType;
+import com.nexo.server.utils.Amortization;
+import com.nexo.server.utils.CodeGenerator;
+import com.nexo.server.utils.ProRata;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes collected installments, for one borrower payment or a whole auto-debit chunk.
+ *
+ * <p>Callers lock the loans ({@link #lockLoans}) and then every wallet involved
+ * ({@link #lockWallets}), each in id order, decide which installments are paid, and hand them
+ * to {@link #collect}. Each repayment gets one ledger posting: the borrower debit, lender
+ * credits split by invested amount with {@link ProRata} so they sum exactly to the
+ * installment, and the late fee plus the shares of lenders without a wallet to platform
+ * revenue. The statement count is fixed whatever the number of installments and lenders:
+ * repayments, postings, wallet transactions, lender returns, investment returns, schedules
+ * and loan counters are each written as one batch. Principal repaid on auto-invested
+ * positions is released from the rules' caps. Lender and loan-completion notifications are
+ * inserted after commit.
+ */
+@Service
+@RequiredArgsConstructor
+public class RepaymentDistributor {
+
+    static final String LOAN_STATE_COLUMNS = "id, status, installment_count, paid_installments, outstanding_principal";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String LENDER_SHARES_SQL =
+            "SELECT i.id, i.loan_id, i.lender_id, i.amount, i.version, i.auto_invest_rule_id, w.id AS wallet_id " +
+            "FROM investments i " +
+            "LEFT JOIN wallets w ON w.user_id = i.lender_id " +
+            "WHERE i.loan_id = ANY(?) AND i.status = 'ACTIVE' ORDER BY i.loan_id, i.id";
+
+    private static final String LOCK_WALLETS_SQL =
+            "SELECT id, user_id, balance, locked_balance FROM wallets WHERE user_id = ANY(?) ORDER BY id FOR UPDATE";
+
+    private static final String INSERT_REPAYMENT_SQL =
+            "INSERT INTO repayments (repayment_code, loan_id, borrower_id, schedule_id, status, due_amount, " +
+            "paid_amount, late_fee, due_date, paid_at, days_overdue, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, 'PAID', ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (reference_code, wallet_id, user_id, type, status, amount, fee, net_amount, " +
+            "balance_before, balance_after, currency, loan_id, investment_id, repayment_id, description, " +
+            "created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, 'COMPLETED', ?, 0, ?, ?, ?, 'VND', ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_LENDER_RETURN_SQL =
+            "INSERT INTO lender_returns (repayment_id, investment_id, lender_id, principal_amount, interest_amount, " +
+            "total_amount, transaction_id, paid_at, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ADD_ACTUAL_RETURN_SQL =
+            "UPDATE investments SET actual_return = actual_return + ?, version = version + 1, updated_at = ? " +
+            "WHERE id = ? AND version = ?";
+
+    private static final String UPDATE_SCHEDULE_SQL =
+            "UPDATE repayment_schedules SET late_fee = ?, late_fee_accrued_through = ?, updated_at = ? WHERE id = ?";
+
+    private static final String UPDATE_LOAN_SQL =
+            "UPDATE loans SET total_repaid = COALESCE(total_repaid, 0) + ?, " +
+            "total_interest_paid = COALESCE(total_interest_paid, 0) + ?, installment_count = ?, " +
+            "paid_installments = ?, outstanding_principal = ?, status = ?, version = version + 1, updated_at = ? " +
+            "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerService ledgerService;
+    private final NotificationService notificationService;
+    private final LoanProgressService loanProgressService;
+    private final AutoInvestService autoInvestService;
+    private final EntityManager entityManager;
+
+    /**
+     * An unpaid installment of a locked loan.
+     */
+    record Due(long scheduleId, long loanId, int installmentNumber, LocalDate dueDate,
+               BigDecimal principal, BigDecimal interest, BigDecimal total, String loanCode,
+               long borrowerId) {
+    }
+
+    /**
+     * An installment the borrower's wallet can cover, with the late fee as of the collection date.
+     */
+    record Debit(Due due, BigDecimal lateFee, BigDecimal amount, int daysLate, String code, long walletId) {
+
+        static Debit of(Due due, LocalDate date, long walletId) {
+            BigDecimal lateFee = LateFeeService.lateFee(due.total(), due.dueDate(), date);
+            int daysLate = (int) Math.max(0, ChronoUnit.DAYS.between(due.dueDate(), date));
+            return new Debit(due, lateFee, due.total().add(lateFee), daysLate,
+                    CodeGenerator.generateRepaymentCode(), walletId);
+        }
+    }
+
+    record Share(long investmentId, long loanId, long lenderId, BigDecimal amount, long version, Long walletId,
+                 Long ruleId) {
+    }
+
+    /**
+     * What {@link #collect} wrote: repayment ids in input order, and the loans it completed
+     * mapped to their borrowers.
+     */
+    record Collected(long[] repaymentIds, Map<Long, Long> completedLoans) {
+    }
+
+    /**
+     * Counters of a locked loan, advanced in memory and written back once.
+     */
+    static final class LoanState {
+        private final String status;
+        private int installments;
+        private int paid;
+        private BigDecimal outstanding;
+        private BigDecimal repaid = BigDecimal.ZERO;
+        private BigDecimal interestPaid = BigDecimal.ZERO;
+        private boolean changed;
+
+        private LoanState(String status, int installments, int paid, BigDecimal outstanding) {
+            this.status = status;
+            this.installments = installments;
+            this.paid = paid;
+            this.outstanding = outstanding;
+        }
+
+        boolean isFullyRepaid() {
+            return installments > 0 && paid >= installments;
+        }
+    }
+
+    /**
+     * Locked wallets by user, with balances advanced as rows are written and what is still
+     * available to debit.
+     */
+    static final class Wallets {
+        private final Map<Long, Long> byUser = new HashMap<>();
+        private final Map<Long, BigDecimal> balances = new HashMap<>();
+        private final Map<Long, BigDecimal> available = new HashMap<>();
+
+        Long walletOf(long userId) {
+            return byUser.get(userId);
+        }
+
+        /**
+         * Set aside {@code amount} of the wallet's available balance.
+         *
+         * @return false, leaving the wallet untouched, when it does not cover the amount
+         */
+        boolean reserve(long walletId, BigDecimal amount) {
+            if (available.get(walletId).compareTo(amount) < 0) {
+                return false;
+            }
+            available.merge(walletId, amount.negate(), BigDecimal::add);
+            return true;
+        }
+    }
+
+    /**
+     * Lock loans with {@code lockSql}, which selects {@link #LOAN_STATE_COLUMNS} ordered by id
+     * {@code FOR UPDATE}. Loans whose schedules predate the progress counters are counted here.
+     */
+    Map<Long, LoanState> lockLoans(String lockSql, Object arg) {
+        Map<Long, LoanState> loans = new HashMap<>();
+        jdbcTemplate.query(lockSql, rs -> {
+            loans.put(rs.getLong("id"), new LoanState(rs.getString("status"), rs.getInt("installment_count"),
+                    rs.getInt("paid_installments"), rs.getBigDecimal("outstanding_principal")));
+        }, arg);
+        loans.forEach((loanId, loan) -> {
+            if (loan.installments == 0) {
+                LoanProgressService.Progress progress = loanProgressService.count(loanId);
+                loan.installments = progress.installments();
+                loan.paid = progress.paid();
+                loan.outstanding = progress.outstandingPrincipal();
+            }
+        });
+        return loans;
+    }
+
+    /**
+     * Active investments of the loans in id order, with each lender's wallet id.
+     */
+    Map<Long, List<Share>> lenderShares(Long[] loanIds) {
+        Map<Long, List<Share>> sharesByLoan = new HashMap<>();
+        jdbcTemplate.query(LENDER_SHARES_SQL, rs -> {
+            Share share = new Share(rs.getLong("id"), rs.getLong("loan_id"), rs.getLong("lender_id"),
+                    rs.getBigDecimal("amount"), rs.getLong("version"), rs.getObject("wallet_id", Long.class),
+                    rs.getObject("auto_invest_rule_id", Long.class));
+            sharesByLoan.computeIfAbsent(share.loanId(), l -> new ArrayList<>()).add(share);
+        }, (Object) loanIds);
+        return sharesByLoan;
+    }
+
+    /**
+     * Lock the wallets of the borrowers and of every lender in {@code sharesByLoan}, in id order.
+     */
+    Wallets lockWallets(Collection<Long> borrowerIds, Map<Long, List<Share>> sharesByLoan) {
+        List<Long> userIds = new ArrayList<>(borrowerIds);
+        sharesByLoan.values().forEach(shares -> shares.forEach(share -> userIds.add(share.lenderId())));
+        Wallets wallets = new Wallets();
+        jdbcTemplate.query(LOCK_WALLETS_SQL, rs -> {
+            long walletId = rs.getLong("id");
+            wallets.byUser.put(rs.getLong("user_id"), walletId);
+            wallets.balances.put(walletId, rs.getBigDecimal("balance"));
+            wallets.available.put(walletId, rs.getBigDecimal("balance").subtract(rs.getBigDecimal("locked_balance")));
+        }, (Object) userIds.stream().distinct().toArray(Long[]::new));
+        return wallets;
+    }
+
+    /**
+     * Write the debits, in order. Loans, shares and wallets come from the lock calls above in
+     * the same transaction; a concurrent investment change (e.g. a note sale) fails the
+     * version check on investment returns with an optimistic locking failure.
+     *
+     * @param date the collection date, recorded as the date late fees are accrued through
+     */
+    Collected collect(List<Debit> debits, Map<Long, LoanState> loans, Map<Long, List<Share>> sharesByLoan,
+                      Wallets wallets, LocalDate date) {
+        Timestamp ts = Timestamp.valueOf(LocalDateTime.now());
+        long[] repaymentIds = insertRepayments(debits, ts);
+
+        ProRata allocator = new ProRata();
+        List<LedgerService.Posting> postings = new ArrayList<>(debits.size());
+        List<Object[]> transactions = new ArrayList<>();
+        List<Object[]> lenderReturns = new ArrayList<>();
+        List<Integer> lenderTransactionRows = new ArrayList<>();
+        Map<Long, BigDecimal> actualReturns = new LinkedHashMap<>();
+        Map<Long, Long> investmentVersions = new HashMap<>();
+        Map<Long, BigDecimal> releasedClaims = new HashMap<>();
+        List<NotificationService.Draft> notifications = new ArrayList<>();
+        for (int d = 0; d < debits.size(); d++) {
+            Debit debit = debits.get(d);
+            Due due = debit.due();
+            long repaymentId = repaymentIds[d];
+            String description = "Repayment installment #" + due.installmentNumber() + " for loan " + due.loanCode();
+            LedgerService.Posting posting = LedgerService.Posting.of(LedgerPostingType.REPAYMENT, description)
+                    .postingCode(debit.code())
+                    .loan(entityManager.getReference(Loan.class, due.loanId()))
+                    .repayment(entityManager.getReference(Repayment.class, repaymentId))
+                    .debitWallet(debit.walletId(), debit.amount(), TransactionType.REPAYMENT_PAID);
+            transactions.add(transactionRow(debit.walletId(), due.borrowerId(), TransactionType.REPAYMENT_PAID,
+                    debit.amount().negate(), wallets.balances, due.loanId(), null, repaymentId, description, ts));
+
+            // Split principal and interest by invested amount; each sums exactly to the installment's
+            List<Share> shares = sharesByLoan.getOrDefault(due.loanId(), List.of());
+            int n = shares.size();
+            long[] weights = new long[n];
+            for (int i = 0; i < n; i++) {
+                weights[i] = Amortization.toVnd(shares.get(i).amount());
+            }
+            long[] principalVnd = new long[n];
+            long[] interestVnd = new long[n];
+            if (n > 0) {
+                allocator.allocate(Amortization.toVnd(due.principal()), weights, n, principalVnd);
+                allocator.allocate(Amortization.toVnd(due.interest()), weights, n, interestVnd);
+            }
+            BigDecimal credited = BigDecimal.ZERO;
+            String returnDescription = "Return from loan " + due.loanCode() + " - Installment #" + due.installmentNumber();
+            for (int i = 0; i < n; i++) {
+                Share share = shares.get(i);
+                BigDecimal total = BigDecimal.valueOf(principalVnd[i] + interestVnd[i]);
+                int transactionRow = -1;
+                if (share.walletId() != null) {
+                    posting.creditWallet(share.walletId(), total, TransactionType.REPAYMENT_RECEIVED);
+                    credited = credited.add(total);
+                    transactionRow = transactions.size();
+                    transactions.add(transactionRow(share.walletId(), share.lenderId(),
+                            TransactionType.REPAYMENT_RECEIVED, total, wallets.balances, due.loanId(),
+                            share.investmentId(), repaymentId, returnDescription, ts));
+                    notifications.add(new NotificationService.Draft(share.lenderId(), NotificationType.PAYMENT,
+                            "Repayment Received",
+                            String.format("You received %,.0f VND from loan %s", total, due.loanCode()),
+                            null, due.loanId(), share.investmentId()));
+                }
+                lenderTransactionRows.add(transactionRow);
+                lenderReturns.add(new Object[]{repaymentId, share.investmentId(), share.lenderId(),
+                        BigDecimal.valueOf(principalVnd[i]), BigDecimal.valueOf(interestVnd[i]), total, null, ts, ts, ts});
+                actualReturns.merge(share.investmentId(), total, BigDecimal::add);
+                investmentVersions.put(share.investmentId(), share.version());
+                if (share.ruleId() != null) {
+                    releasedClaims.merge(share.ruleId(), BigDecimal.valueOf(principalVnd[i]), BigDecimal::add);
+                }
+            }
+            BigDecimal residual = debit.amount().subtract(credited);
+            if (residual.signum() >= 0) {
+                posting.credit(LedgerAccountType.PLATFORM_REVENUE, null, residual);
+            } else {
+                posting.debit(LedgerAccountType.PLATFORM_REVENUE, null, residual.negate());
+            }
+            postings.add(posting);
+
+            LoanState loan = loans.get(due.loanId());
+            loan.repaid = loan.repaid.add(due.principal()).add(due.interest());
+            loan.interestPaid = loan.interestPaid.add(due.interest());
+            loan.paid++;
+            loan.outstanding = loan.outstanding.subtract(due.principal());
+            loan.changed = true;
+        }
+        ledgerService.postAll(postings);
+
+        long[] transactionIds = insertTransactions(transactions);
+        for (int r = 0; r < lenderReturns.size(); r++) {
+            int row = lenderTransactionRows.get(r);
+            lenderReturns.get(r)[6] = row >= 0 ? transactionIds[row] : null;
+        }
+        jdbcTemplate.batchUpdate(INSERT_LENDER_RETURN_SQL, lenderReturns, BATCH_SIZE, (ps, row) -> {
+            for (int i = 0; i < row.length; i++) {
+                if (i == 6) {
+                    ps.setObject(7, row[6], Types.BIGINT);
+                } else {
+                    ps.setObject(i + 1, row[i]);
+                }
+            }
+        });
+
+        List<Map.Entry<Long, BigDecimal>> returns = new ArrayList<>(actualReturns.entrySet());
+        int[][] counts = jdbcTemplate.batchUpdate(ADD_ACTUAL_RETURN_SQL, returns, BATCH_SIZE, (ps, entry) -> {
+            ps.setBigDecimal(1, entry.getValue());
+            ps.setTimestamp(2, ts);
+            ps.setLong(3, entry.getKey());
+            ps.setLong(4, investmentVersions.get(entry.getKey()));
+        });
+        int updated = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    throw new ObjectOptimisticLockingFailureException(Investment.class, returns.get(updated).getKey());
+                }
+                updated++;
+            }
+        }
+
+        // Principal repaid to auto-invested positions frees that much of their rules' caps
+        autoInvestService.releaseClaims(releasedClaims);
+
+        jdbcTemplate.batchUpdate(UPDATE_SCHEDULE_SQL, debits, BATCH_SIZE, (ps, debit) -> {
+            ps.setBigDecimal(1, debit.lateFee());
+            ps.setDate(2, Date.valueOf(date));
+            ps.setTimestamp(3, ts);
+            ps.setLong(4, debit.due().scheduleId());
+        });
+
+        List<Long> changedLoans = loans.entrySet().stream()
+                .filter(e -> e.getValue().changed).map(Map.Entry::getKey).sorted().toList();
+        jdbcTemplate.batchUpdate(UPDATE_LOAN_SQL, changedLoans, BATCH_SIZE, (ps, loanId) -> {
+            LoanState loan = loans.get(loanId);
+            ps.setBigDecimal(1, loan.repaid);
+            ps.setBigDecimal(2, loan.interestPaid);
+            ps.setInt(3, loan.installments);
+            ps.setInt(4, loan.paid);
+            ps.setBigDecimal(5, loan.outstanding);
+            ps.setString(6, loan.isFullyRepaid() ? LoanStatus.COMPLETED.name() : loan.status);
+            ps.setTimestamp(7, ts);
+            ps.setLong(8, loanId);
+        });
+        Map<Long, Long> completedLoans = new LinkedHashMap<>();
+        for (Debit debit : debits) {
+            Due due = debit.due();
+            if (loans.get(due.loanId()).isFullyRepaid() && !completedLoans.containsKey(due.loanId())) {
+                completedLoans.put(due.loanId(), due.borrowerId());
+                notifications.add(new NotificationService.Draft(due.borrowerId(), NotificationType.LOAN,
+                        "Loan Completed", "Congratulations! You have fully repaid loan " + due.loanCode(),
+                        "/borrower/loans/" + due.loanId(), due.loanId(), null));
+            }
+        }
+        notifyAfterCommit(notifications);
+        return new Collected(repaymentIds, completedLoans);
+    }
+
+    /**
+     * Insert notifications once the surrounding transaction commits.
+     */
+    void notifyAfterCommit(List<NotificationService.Draft> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                notificationService.createNotificationsAsync(notifications);
+            }
+        });
+    }
+
+    private long[] insertRepayments(List<Debit> debits, Timestamp ts) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_REPAYMENT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Debit debit = debits.get(i);
+                        Due due = debit.due();
+                        ps.setString(1, debit.code());
+                        ps.setLong(2, due.loanId());
+                        ps.setLong(3, due.borrowerId());
+                        ps.setLong(4, due.scheduleId());
+                        ps.setBigDecimal(5, due.total());
+                        ps.setBigDecimal(6, debit.amount());
+                        ps.setBigDecimal(7, debit.lateFee());
+                        ps.setDate(8, Date.valueOf(due.dueDate()));
+                        ps.setTimestamp(9, ts);
+                        ps.setInt(10, debit.daysLate());
+                        ps.setTimestamp(11, ts);
+                        ps.setTimestamp(12, ts);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return debits.size();
+                    }
+                }, keyHolder);
+        return keyHolder.getKeyList().stream().mapToLong(keys -> ((Number) keys.get("id")).longValue()).toArray();
+    }
+
+    /**
+     * A wallet transaction row, advancing the wallet's running balance by {@code delta}.
+     */
+    private static Object[] transactionRow(long walletId, long userId, TransactionType type, BigDecimal delta,
+                                           Map<Long, BigDecimal> balances, long loanId, Long investmentId,
+                                           long repaymentId, String description, Timestamp ts) {
+        BigDecimal before = balances.get(walletId);
+        BigDecimal after = before.add(delta);
+        balances.put(walletId, after);
+        BigDecimal amount = delta.abs();
+        return new Object[]{CodeGenerator.generateTransactionCode(), walletId, userId, type.name(), amount, amount,
+                before, after, loanId, investmentId, repaymentId, description, ts, ts};
+    }
+
+    private long[] insertTransactions(List<Object[]> rows) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_TRANSACTION_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Object[] row = rows.get(i);
+                        for (int k = 0; k < row.length; k++) {
+                            if (k == 9) {
+                                ps.setObject(10, row[9], Types.BIGINT);
+                            } else {
+                                ps.setObject(k + 1, row[k]);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                }, keyHolder);
+        return keyHolder.getKeyList().stream().mapToLong(keys -> ((Number) keys.get("id")).longValue()).toArray();
+    }
+}
@@ -0,0 +1,621 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.common.PageResponse;
+import com.nexo.server.dto.market.MarketOrderResponse;
+import com.nexo.server.dto.market.OrderBookResponse;
+import com.nexo.server.dto.market.PlaceOrderRequest;
+import com.nexo.server.entities.*;
+import com.nexo.server.enums.*;
+import com.nexo.server.exceptions.BadRequestException;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import com.nexo.server.repositories.*;
+import com.nexo.server.utils.Amortization;
+import com.nexo.server.utils.CodeGenerator;
+import com.nexo.server.utils.ProRata;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Secondary market for investment notes: lenders sell part or all of an ACTIVE investment
+ * to other lenders, priced as a percentage of face value.
+ *
+ * <p>Orders are persisted first, then matched by an in-memory {@link OrderBook} per loan.
+ * Books are sharded over a few single-threaded executors by loan id, so each book is only
+ * ever touched by one thread and matching and settlement of one book never interleave.
+ * Settlement of an incoming order's fills is one transaction: the buyer's reservation is
+ * released, cash moves wallet to wallet through the ledger, and the face value is cut
+ * from the seller's investment into a new investment owned by the buyer, so later
+ * repayment distributions follow the new owner.
+ *
+ * <p>The database is the source of truth. If settlement finds an order that can no longer
+ * trade, that order is cancelled and the book is rebuilt by replaying open orders in id
+ * order; books are also loaded this way on first use, which settles any orders a crash
+ * left unmatched.
+ *
+ * <p>Books live in this node's memory only. With more than one node serving the market, a
+ * resting order can be partly filled by another node's book; settlement then sees a
+ * remaining quantity that differs from this book's. Such an order is still good, so the
+ * book is rebuilt from the database rather than the order cancelled. Matching is only
+ * globally price-time fair when a loan's orders go through a single node.
+ */
+@Service
+@Slf4j
+public class SecondaryMarketService {
+
+    private static final BigDecimal MIN_QUANTITY = new BigDecimal("100000");
+    private static final int DEPTH_LEVELS = 20;
+    private static final int SETTLE_ATTEMPTS = 3;
+    private static final Set<LoanStatus> TRADABLE_LOAN_STATUSES = EnumSet.of(LoanStatus.ACTIVE, LoanStatus.REPAYING);
+
+    private final MarketOrderRepository orderRepository;
+    private final MarketTradeRepository tradeRepository;
+    private final InvestmentRepository investmentRepository;
+    private final LoanRepository loanRepository;
+    private final UserRepository userRepository;
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerService ledgerService;
+    private final AutoInvestService autoInvestService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService[] shards;
+    private final List<Map<Long, OrderBook>> books;
+
+    @Value("${app.secondary-market.request-timeout:PT10S}")
+    private Duration requestTimeout;
+
+    private record OpenOrder(long id, long loanId, boolean buy, int price, long remaining, long ownerId) {
+        static OpenOrder of(MarketOrder order) {
+            return new OpenOrder(order.getId(), order.getLoan().getId(), order.getSide() == OrderSide.BUY,
+                    basisPoints(order.getPrice()), order.getRemainingQuantity().longValueExact(),
+                    order.getUser().getId());
+        }
+    }
+
+    /**
+     * Settlement found an order that can no longer trade.
+     */
+    private static final class StaleOrderException extends RuntimeException {
+        private final long orderId;
+        // The order is still open and only this book's copy is out of date
+        private final boolean bookOutOfDate;
+
+        StaleOrderException(long orderId, String message) {
+            this(orderId, message, false);
+        }
+
+        StaleOrderException(long orderId, String message, boolean bookOutOfDate) {
+            super(message);
+            this.orderId = orderId;
+            this.bookOutOfDate = bookOutOfDate;
+        }
+    }
+
+    public SecondaryMarketService(MarketOrderRepository orderRepository, MarketTradeRepository tradeRepository,
+                                  InvestmentRepository investmentRepository, LoanRepository loanRepository,
+                                  UserRepository userRepository, WalletRepository walletRepository,
+                                  TransactionRepository transactionRepository, LedgerService ledgerService,
+                                  AutoInvestService autoInvestService, PlatformTransactionManager transactionManager,
+                                  @Value("${app.secondary-market.shards:4}") int shardCount) {
+        this.orderRepository = orderRepository;
+        this.tradeRepository = tradeRepository;
+        this.investmentRepository = investmentRepository;
+        this.loanRepository = loanRepository;
+        this.userRepository = userRepository;
+        this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.ledgerService = ledgerService;
+        this.autoInvestService = autoInvestService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = new ExecutorService[shardCount];
+        this.books = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            String name = "market-book-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            books.add(new HashMap<>());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (ExecutorService shard : shards) {
+            shard.shutdownNow();
+        }
+    }
+
+    /**
+     * Load books with open orders so anything left crossed by a crash settles promptly.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadBooks() {
+        for (Long loanId : orderRepository.findLoanIdsWithOpenOrders()) {
+            shard(loanId).execute(() -> book(loanId));
+        }
+    }
+
+    // ==================== ORDERS ====================
+
+    public MarketOrderResponse placeOrder(Long userId, PlaceOrderRequest request) {
+        MarketOrder order = transactionTemplate.execute(status -> request.getSide() == OrderSide.SELL
+                ? createSellOrder(userId, request)
+                : createBuyOrder(userId, request));
+        OpenOrder open = OpenOrder.of(order);
+
+        onBook(open.loanId(), book -> {
+            if (!matchAndSettle(book, open)) {
+                rebuild(open.loanId(), book);
+            }
+            return null;
+        });
+        log.info("Market order {} placed: {} {} of loan {} at {}%",
+                open.id(), request.getSide(), order.getQuantity(), open.loanId(), order.getPrice());
+        return toResponse(orderRepository.findById(open.id()).orElseThrow());
+    }
+
+    public MarketOrderResponse cancelOrder(Long userId, Long orderId) {
+        MarketOrder order = orderRepository.findById(orderId)
+                .filter(o -> o.getUser().getId().equals(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("Market order", orderId));
+        if (order.getStatus() != MarketOrderStatus.OPEN) {
+            throw new BadRequestException("Order is no longer open");
+        }
+        onBook(order.getLoan().getId(), book -> {
+            book.cancel(orderId);
+            cancelInDatabase(orderId);
+            return null;
+        });
+        return toResponse(orderRepository.findById(orderId).orElseThrow());
+    }
+
+    public PageResponse<MarketOrderResponse> getMyOrders(Long userId, MarketOrderStatus status, Pageable pageable) {
+        Page<MarketOrder> orders = status != null
+                ? orderRepository.findByUserIdAndStatus(userId, status, pageable)
+                : orderRepository.findByUserId(userId, pageable);
+        return PageResponse.of(orders, orders.getContent().stream().map(this::toResponse).toList());
+    }
+
+    public OrderBookResponse getOrderBook(Long loanId) {
+        return onBook(loanId, book -> OrderBookResponse.builder()
+                .loanId(loanId)
+                .bids(levels(book, true))
+                .asks(levels(book, false))
+                .build());
+    }
+
+    private MarketOrder createSellOrder(Long userId, PlaceOrderRequest request) {
+        if (request.getInvestmentId() == null) {
+            throw new BadRequestException("Investment ID is required for a sell order");
+        }
+        Investment investment = investmentRepository.findByIdWithDetails(request.getInvestmentId())
+                .filter(i -> i.getLender().getId().equals(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("Investment", request.getInvestmentId()));
+        if (investment.getStatus() != InvestmentStatus.ACTIVE) {
+            throw new BadRequestException("Only active investments can be sold");
+        }
+        requireTradable(investment.getLoan());
+        if (orderRepository.existsByInvestmentIdAndStatus(investment.getId(), MarketOrderStatus.OPEN)) {
+            throw new BusinessException("This investment already has an open sell order");
+        }
+
+        BigDecimal quantity = request.getQuantity() != null ? request.getQuantity() : investment.getAmount();
+        if (quantity.compareTo(investment.getAmount()) > 0) {
+            throw new BadRequestException("Quantity exceeds the investment amount of " + investment.getAmount());
+        }
+        if (quantity.compareTo(MIN_QUANTITY) < 0 && quantity.compareTo(investment.getAmount()) != 0) {
+            throw new BadRequestException("Minimum quantity is 100,000 VND unless selling the whole investment");
+        }
+
+        return orderRepository.save(MarketOrder.builder()
+                .loan(investment.getLoan())
+                .user(investment.getLender())
+                .investment(investment)
+                .side(OrderSide.SELL)
+                .price(request.getPrice())
+                .quantity(wholeVnd(quantity))
+                .remainingQuantity(wholeVnd(quantity))
+                .build());
+    }
+
+    private MarketOrder createBuyOrder(Long userId, PlaceOrderRequest request) {
+        if (request.getLoanId() == null || request.getQuantity() == null) {
+            throw new BadRequestException("Loan ID and quantity are required for a buy order");
+        }
+        if (request.getQuantity().compareTo(MIN_QUANTITY) < 0) {
+            throw new BadRequestException("Minimum quantity is 100,000 VND");
+        }
+        User buyer = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", userId));
+        if (buyer.getKycStatus() != KycStatus.APPROVED) {
+            throw new BusinessException("KYC must be approved before investing");
+        }
+        Loan loan = loanRepository.findByIdWithBorrower(request.getLoanId())
+                .orElseThrow(() -> new ResourceNotFoundException("Loan", request.getLoanId()));
+        requireTradable(loan);
+        if (loan.getBorrower().getId().equals(userId)) {
+            throw new BadRequestException("You cannot invest in your own loan");
+        }
+
+        // Lock enough for the whole quantity at the limit price
+        BigDecimal quantity = wholeVnd(request.getQuantity());
+        BigDecimal reserve = BigDecimal.valueOf(cashAt(quantity.longValueExact(), basisPoints(request.getPrice())));
+        Wallet wallet = walletRepository.findByUserIdForUpdate(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found for user: " + userId));
+        if (wallet.getAvailableBalance().compareTo(reserve) < 0) {
+            throw new BusinessException("Insufficient balance");
+        }
+        wallet.lock(reserve);
+        walletRepository.save(wallet);
+
+        return orderRepository.save(MarketOrder.builder()
+                .loan(loan)
+                .user(buyer)
+                .side(OrderSide.BUY)
+                .price(request.getPrice())
+                .quantity(quantity)
+                .remainingQuantity(quantity)
+                .reservedAmount(reserve)
+                .build());
+    }
+
+    private static void requireTradable(Loan loan) {
+        if (!TRADABLE_LOAN_STATUSES.contains(loan.getStatus())) {
+            throw new BadRequestException("Notes can only be traded while the loan is being repaid");
+        }
+    }
+
+    // ==================== MATCHING (book thread only) ====================
+
+    private ExecutorService shard(Long loanId) {
+        return shards[(int) Math.floorMod(loanId, (long) shards.length)];
+    }
+
+    private OrderBook book(Long loanId) {
+        Map<Long, OrderBook> shardBooks = books.get((int) Math.floorMod(loanId, (long) shards.length));
+        OrderBook book = shardBooks.get(loanId);
+        if (book == null) {
+            book = new OrderBook();
+            rebuild(loanId, book);
+            shardBooks.put(loanId, book);
+        }
+        return book;
+    }
+
+    private <T> T onBook(Long loanId, Function<OrderBook, T> task) {
+        Future<T> future = shard(loanId).submit(() -> {
+            OrderBook book = book(loanId);
+            try {
+                return task.apply(book);
+            } finally {
+                if (book.isEmpty()) {
+                    // Reloaded from the database on next use
+                    books.get((int) Math.floorMod(loanId, (long) shards.length)).remove(loanId);
+                }
+            }
+        });
+        try {
+            return future.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new BusinessException("Order processing failed");
+        } catch (TimeoutException e) {
+            throw new BusinessException("The market for this loan is busy; check your orders shortly");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Order processing was interrupted");
+        }
+    }
+
+    /**
+     * Match one order and settle its fills.
+     *
+     * @return false if settlement failed; an order was cancelled or the book is out of date,
+     *         and the book must be rebuilt
+     */
+    private boolean matchAndSettle(OrderBook book, OpenOrder order) {
+        long start = System.nanoTime();
+        int fills = book.submit(order.id(), order.buy(), order.price(), order.remaining(), order.ownerId());
+        if (fills == 0) {
+            return true;
+        }
+        long matched = System.nanoTime();
+        long failedOrderId;
+        try {
+            settleWithRetry(book, order, fills);
+            log.debug("Order {} matched {} fills in {} µs, settled in {} ms", order.id(), fills,
+                    (matched - start) / 1_000, (System.nanoTime() - matched) / 1_000_000);
+            return true;
+        } catch (StaleOrderException e) {
+            if (e.bookOutOfDate) {
+                log.info("Market order {} changed outside this book, reloading: {}", e.orderId, e.getMessage());
+                return false;
+            }
+            log.warn("Market order {} can no longer trade: {}", e.orderId, e.getMessage());
+            failedOrderId = e.orderId;
+        } catch (RuntimeException e) {
+            log.error("Settlement of market order {} failed", order.id(), e);
+            failedOrderId = order.id();
+        }
+        cancelInDatabase(failedOrderId);
+        return false;
+    }
+
+    /**
+     * A repayment touching the same investments can win the version check; the fills are
+     * still valid, so settle them again in a fresh transaction.
+     */
+    private void settleWithRetry(OrderBook book, OpenOrder order, int fills) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> settle(book, order, fills));
+                return;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= SETTLE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Settlement of market order {} conflicted, retrying: {}", order.id(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replay the loan's open orders in time priority. Each failed replay either cancels one
+     * order or reloads quantities another node has since filled, so this terminates once
+     * the other nodes stop trading the loan.
+     */
+    private void rebuild(long loanId, OrderBook book) {
+        boolean consistent = false;
+        while (!consistent) {
+            book.clear();
+            consistent = true;
+            for (MarketOrder order : orderRepository.findOpenByLoanId(loanId)) {
+                if (!matchAndSettle(book, OpenOrder.of(order))) {
+                    consistent = false;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void settle(OrderBook book, OpenOrder taker, int fills) {
+        Set<Long> orderIds = new TreeSet<>();
+        orderIds.add(taker.id());
+        for (int i = 0; i < fills; i++) {
+            orderIds.add(book.fillMakerId(i));
+        }
+        Map<Long, MarketOrder> orders = orderRepository.findAllByIdInForUpdate(orderIds).stream()
+                .collect(Collectors.toMap(MarketOrder::getId, Function.identity()));
+        for (Long id : orderIds) {
+            MarketOrder order = orders.get(id);
+            if (order == null || order.getStatus() != MarketOrderStatus.OPEN) {
+                throw new StaleOrderException(id, "order is no longer open");
+            }
+        }
+
+        List<Long> investmentIds = orders.values().stream()
+                .filter(o -> o.getSide() == OrderSide.SELL)
+                .map(o -> o.getInvestment().getId())
+                .toList();
+        Map<Long, Investment> investments = investmentRepository.findAllById(investmentIds).stream()
+                .collect(Collectors.toMap(Investment::getId, Function.identity()));
+        Set<Long> userIds = orders.values().stream().map(o -> o.getUser().getId()).collect(Collectors.toSet());
+        Map<Long, Wallet> wallets = walletRepository.findAllByUserIdInForUpdate(userIds).stream()
+                .collect(Collectors.toMap(w -> w.getUser().getId(), Function.identity()));
+
+        MarketOrder takerOrder = orders.get(taker.id());
+        Map<Long, BigDecimal> released = new HashMap<>();
+        for (int i = 0; i < fills; i++) {
+            MarketOrder maker = orders.get(book.fillMakerId(i));
+            MarketOrder buy = taker.buy() ? takerOrder : maker;
+            MarketOrder sell = taker.buy() ? maker : takerOrder;
+            Investment source = investments.get(sell.getInvestment().getId());
+            settleFill(buy, sell, source, wallets, book.fillQuantity(i), book.fillPrice(i));
+            // Face value sold on no longer counts against the rule that bought it
+            if (source.getAutoInvestRuleId() != null) {
+                released.merge(source.getAutoInvestRuleId(), BigDecimal.valueOf(book.fillQuantity(i)), BigDecimal::add);
+            }
+        }
+        autoInvestService.releaseClaims(released);
+    }
+
+    private void settleFill(MarketOrder buy, MarketOrder sell, Investment source, Map<Long, Wallet> wallets,
+                            long quantity, int price) {
+        BigDecimal q = BigDecimal.valueOf(quantity);
+        if (sell.getRemainingQuantity().compareTo(q) < 0) {
+            throw new StaleOrderException(sell.getId(), "remaining quantity changed",
+                    sell.getRemainingQuantity().signum() > 0);
+        }
+        if (buy.getRemainingQuantity().compareTo(q) < 0) {
+            throw new StaleOrderException(buy.getId(), "remaining quantity changed",
+                    buy.getRemainingQuantity().signum() > 0);
+        }
+        // Checked after the quantities: a fill elsewhere shrinks the investment along with the order
+        if (source == null || source.getStatus() != InvestmentStatus.ACTIVE
+                || !source.getLender().getId().equals(sell.getUser().getId())
+                || source.getAmount().compareTo(q) < 0) {
+            throw new StaleOrderException(sell.getId(), "investment is no longer available for sale");
+        }
+        Wallet buyerWallet = wallets.get(buy.getUser().getId());
+        Wallet sellerWallet = wallets.get(sell.getUser().getId());
+        if (buyerWallet == null || sellerWallet == null) {
+            throw new StaleOrderException(buyerWallet == null ? buy.getId() : sell.getId(), "wallet not found");
+        }
+
+        // Release the buyer's reservation for this quantity, all of it on the last fill
+        buy.setRemainingQuantity(buy.getRemainingQuantity().subtract(q));
+        BigDecimal release = buy.getRemainingQuantity().signum() == 0
+                ? buy.getReservedAmount()
+                : buy.getReservedAmount().min(BigDecimal.valueOf(cashAt(quantity, basisPoints(buy.getPrice()))));
+        buyerWallet.unlock(release);
+        buy.setReservedAmount(buy.getReservedAmount().subtract(release));
+        sell.setRemainingQuantity(sell.getRemainingQuantity().subtract(q));
+
+        // Cash, wallet to wallet
+        Loan loan = source.getLoan();
+        BigDecimal cash = BigDecimal.valueOf(cashAt(quantity, price));
+        BigDecimal buyerBefore = buyerWallet.getBalance();
+        BigDecimal sellerBefore = sellerWallet.getBalance();
+        String buyerReference = CodeGenerator.generateTransactionCode();
+        String description = "Note trade in loan: " + loan.getLoanCode();
+        ledgerService.post(LedgerService.Posting.of(LedgerPostingType.NOTE_TRADE, description)
+                .postingCode(buyerReference)
+                .loan(loan)
+                .debitWallet(buyerWallet, cash, TransactionType.TRANSFER_OUT)
+                .creditWallet(sellerWallet, cash, TransactionType.TRANSFER_IN));
+        if (buyerWallet.getAvailableBalance().signum() < 0) {
+            throw new StaleOrderException(buy.getId(), "insufficient balance");
+        }
+        transactionRepository.saveAll(List.of(
+                tradeTransaction(buyerReference, buyerWallet, TransactionType.TRANSFER_OUT, cash, buyerBefore, loan, description),
+                tradeTransaction(CodeGenerator.generateTransactionCode(), sellerWallet, TransactionType.TRANSFER_IN, cash,
+                        sellerBefore, loan, description)));
+
+        // Face value moves to a new investment owned by the buyer, expected return split with it
+        long[] expectedSplit = ProRata.split(
+                source.getExpectedReturn().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact(),
+                quantity, Amortization.toVnd(source.getAmount()) - quantity);
+        BigDecimal expectedShare = BigDecimal.valueOf(expectedSplit[0], 2);
+        Investment note = investmentRepository.save(Investment.builder()
+                .investmentCode(CodeGenerator.generateInvestmentCode())
+                .loan(loan)
+                .lender(buy.getUser())
+                .amount(q)
+                .interestRate(source.getInterestRate())
+                .status(InvestmentStatus.ACTIVE)
+                .expectedReturn(expectedShare)
+                .maturityDate(source.getMaturityDate())
+                .investedAt(LocalDateTime.now())
+                .build());
+        source.setAmount(source.getAmount().subtract(q));
+        source.setExpectedReturn(source.getExpectedReturn().subtract(expectedShare));
+        if (source.getAmount().signum() == 0) {
+            source.setStatus(InvestmentStatus.SOLD);
+        }
+
+        for (MarketOrder order : List.of(buy, sell)) {
+            if (order.getRemainingQuantity().signum() == 0) {
+                order.setStatus(MarketOrderStatus.FILLED);
+            }
+        }
+        tradeRepository.save(MarketTrade.builder()
+                .loan(loan)
+                .buyOrder(buy)
+                .sellOrder(sell)
+                .buyer(buy.getUser())
+                .seller(sell.getUser())
+                .sellerInvestment(source)
+                .buyerInvestment(note)
+                .quantity(q)
+                .price(BigDecimal.valueOf(price, 2))
+                .cashAmount(cash)
+                .build());
+    }
+
+    private static Transaction tradeTransaction(String referenceCode, Wallet wallet, TransactionType type,
+                                                BigDecimal amount, BigDecimal balanceBefore, Loan loan,
+                                                String description) {
+        return Transaction.builder()
+                .referenceCode(referenceCode)
+                .wallet(wallet)
+                .user(wallet.getUser())
+                .loan(loan)
+                .type(type)
+                .status(TransactionStatus.COMPLETED)
+                .amount(amount)
+                .fee(BigDecimal.ZERO)
+                .netAmount(amount)
+                .balanceBefore(balanceBefore)
+                .balanceAfter(wallet.getBalance())
+                .description(description)
+                .build();
+    }
+
+    private void cancelInDatabase(long orderId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<MarketOrder> locked = orderRepository.findAllByIdInForUpdate(List.of(orderId));
+            if (locked.isEmpty() || locked.get(0).getStatus() != MarketOrderStatus.OPEN) {
+                return;
+            }
+            MarketOrder order = locked.get(0);
+            order.setStatus(MarketOrderStatus.CANCELLED);
+            if (order.getReservedAmount().signum() > 0) {
+                walletRepository.findByUserIdForUpdate(order.getUser().getId()).ifPresent(wallet -> {
+                    wallet.unlock(order.getReservedAmount());
+                    walletRepository.save(wallet);
+                });
+                order.setReservedAmount(BigDecimal.ZERO);
+            }
+            orderRepository.save(order);
+            log.info("Market order {} cancelled", orderId);
+        });
+    }
+
+    private static List<OrderBookResponse.Level> levels(OrderBook book, boolean buy) {
+        int[] prices = new int[DEPTH_LEVELS];
+        long[] quantities = new long[DEPTH_LEVELS];
+        int[] counts = new int[DEPTH_LEVELS];
+        int n = book.depth(buy, prices, quantities, counts);
+        List<OrderBookResponse.Level> levels = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            levels.add(OrderBookResponse.Level.builder()
+                    .price(BigDecimal.valueOf(prices[i], 2))
+                    .quantity(BigDecimal.valueOf(quantities[i]))
+                    .orders(counts[i])
+                    .build());
+        }
+        return levels;
+    }
+
+    // Price in hundredths of a percent of face value, e.g. 98.50% -> 9850
+    private static int basisPoints(BigDecimal price) {
+        return price.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+    }
+
+    // Cash in whole VND for a face quantity at a price, rounded half up
+    private static long cashAt(long quantity, int price) {
+        return (Math.multiplyExact(quantity, (long) price) + 5_000) / 10_000;
+    }
+
+    private static BigDecimal wholeVnd(BigDecimal amount) {
+        return amount.setScale(0, RoundingMode.HALF_UP);
+    }
+
+    private MarketOrderResponse toResponse(MarketOrder order) {
+        return MarketOrderResponse.builder()
+                .id(order.getId())
+                .loanId(order.getLoan().getId())
+                .investmentId(order.getInvestment() != null ? order.getInvestment().getId() : null)
+                .side(order.getSide())
+                .price(order.getPrice())
+                .quantity(order.getQuantity())
+                .remainingQuantity(order.getRemainingQuantity())
+                .filledQuantity(order.getQuantity().subtract(order.getRemainingQuantity()))
+                .reservedAmount(order.getReservedAmount())
+                .status(order.getStatus())
+                .createdAt(order.getCreatedAt())
+                .build();
+    }
+}
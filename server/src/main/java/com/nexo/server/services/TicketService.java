@@ -11,6 +11,7 @@ import com.nexo.server.exceptions.ResourceNotFoundException;
 import com.nexo.server.repositories.LoanRepository;
 import com.nexo.server.repositories.TicketRepository;
 import com.nexo.server.repositories.UserRepository;
+import com.nexo.server.utils.CodeGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Hibernate;
@@ -46,7 +47,7 @@ public class TicketService {
             relatedLoan = loanRepository.findById(relatedLoanId).orElse(null);
         }
 
-        String ticketCode = "TKT-" + System.currentTimeMillis();
+        String ticketCode = CodeGenerator.generateTicketCode();
 
         Ticket ticket = Ticket.builder()
                 .ticketCode(ticketCode)
@@ -0,0 +1,411 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.wallet.TransactionResponse;
+import com.nexo.server.entities.JobCheckpoint;
+import com.nexo.server.enums.TransactionStatus;
+import com.nexo.server.enums.TransactionType;
+import com.nexo.server.exceptions.BadRequestException;
+import com.nexo.server.repositories.JobCheckpointRepository;
+import com.nexo.server.utils.CursorCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cold tier for old transactions.
+ *
+ * <p>Settled transactions older than {@code retain-months} whole months are moved out of
+ * {@code transactions} into {@code transactions_archive}, a table range-partitioned by
+ * month on {@code created_at}. Each partition is written once and never updated, so it is
+ * stored with {@code fillfactor = 100} and lz4-compressed descriptions. Rows still
+ * referenced by other tables (payments, lender returns, notifications, tickets, related
+ * transactions) stay in the live table because their foreign keys point there.
+ *
+ * <p>The move runs online: rows are copied and deleted in small id windows, one
+ * statement and one commit per window, skipping rows another transaction has locked.
+ * The last finished window is checkpointed so an interrupted run resumes where it
+ * stopped. Reads go through {@link WalletService} and {@link TransactionExportService},
+ * which merge this tier in whenever the requested range reaches below the archive
+ * boundary.
+ */
+@Service
+@Slf4j
+public class TransactionArchiveService {
+
+    public static final String ARCHIVE_TABLE = "transactions_archive";
+
+    public static final String COLUMNS =
+            "id, reference_code, wallet_id, user_id, type, status, amount, fee, net_amount, balance_before, " +
+            "balance_after, currency, related_transaction_id, loan_id, investment_id, repayment_id, description, " +
+            "created_at, updated_at";
+
+    private static final String JOB_NAME = "transaction-archive";
+
+    private static final String CREATE_ARCHIVE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + ARCHIVE_TABLE + " (" +
+            "id BIGINT NOT NULL, reference_code VARCHAR(50) NOT NULL, wallet_id BIGINT NOT NULL, " +
+            "user_id BIGINT NOT NULL, type VARCHAR(50) NOT NULL, status VARCHAR(50) NOT NULL, " +
+            "amount NUMERIC(18, 2) NOT NULL, fee NUMERIC(18, 2), net_amount NUMERIC(18, 2) NOT NULL, " +
+            "balance_before NUMERIC(18, 2) NOT NULL, balance_after NUMERIC(18, 2) NOT NULL, currency VARCHAR(3), " +
+            "related_transaction_id BIGINT, loan_id BIGINT, investment_id BIGINT, repayment_id BIGINT, " +
+            "description TEXT, created_at TIMESTAMP(6) NOT NULL, updated_at TIMESTAMP(6), " +
+            "PRIMARY KEY (created_at, id)) PARTITION BY RANGE (created_at)";
+
+    private static final String[] ARCHIVE_INDEX_SQL = {
+            "CREATE INDEX IF NOT EXISTS idx_txn_archive_user_created ON " + ARCHIVE_TABLE + " (user_id, created_at, id)",
+            "CREATE INDEX IF NOT EXISTS idx_txn_archive_reference ON " + ARCHIVE_TABLE + " (reference_code)",
+            // Detail lookups by id once a transaction has left the live table
+            "CREATE INDEX IF NOT EXISTS idx_txn_archive_id ON " + ARCHIVE_TABLE + " (id)",
+            // Reconciliation sums archived history per wallet-id range
+            "CREATE INDEX IF NOT EXISTS idx_txn_archive_wallet ON " + ARCHIVE_TABLE + " (wallet_id)"
+    };
+
+    private static final String MOVE_WINDOW_SQL =
+            "WITH moved AS (DELETE FROM transactions WHERE id IN (" +
+            "SELECT c.id FROM transactions c WHERE c.id >= ? AND c.id < ? AND c.created_at < ? " +
+            "AND c.status <> 'PENDING' " +
+            "AND NOT EXISTS (SELECT 1 FROM transactions r WHERE r.related_transaction_id = c.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM lender_returns r WHERE r.transaction_id = c.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM payments r WHERE r.transaction_id = c.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM notifications r WHERE r.transaction_id = c.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM tickets r WHERE r.related_transaction_id = c.id) " +
+            "FOR UPDATE SKIP LOCKED) RETURNING " + COLUMNS + ") " +
+            "INSERT INTO " + ARCHIVE_TABLE + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved";
+
+    private static final String SELECT_SQL =
+            "SELECT a.id, a.reference_code, a.type, a.status, a.amount, a.fee, a.net_amount, a.balance_before, " +
+            "a.balance_after, a.currency, a.description, a.loan_id, l.loan_code, a.investment_id, i.investment_code, " +
+            "a.user_id, u.first_name, u.last_name, u.email, a.created_at " +
+            "FROM " + ARCHIVE_TABLE + " a " +
+            "JOIN users u ON u.id = a.user_id " +
+            "LEFT JOIN loans l ON l.id = a.loan_id " +
+            "LEFT JOIN investments i ON i.id = a.investment_id";
+
+    private static final String MERGED_SELECT_SQL = SELECT_SQL.replace("FROM " + ARCHIVE_TABLE + " a",
+            "FROM (SELECT " + COLUMNS + " FROM transactions UNION ALL SELECT " + COLUMNS + " FROM " + ARCHIVE_TABLE + ") a");
+
+    /** Sortable {@code TransactionResponse} properties and their columns. */
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "a.created_at",
+            "id", "a.id",
+            "amount", "a.amount",
+            "fee", "a.fee",
+            "netAmount", "a.net_amount",
+            "type", "a.type",
+            "status", "a.status",
+            "referenceCode", "a.reference_code");
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobCheckpointRepository checkpointRepository;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /** Start of the first month still fully live; everything archived is older. Null until the first run. */
+    private volatile LocalDateTime archivedBefore;
+
+    @Value("${app.transactions.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.transactions.archive.retain-months:12}")
+    private int retainMonths;
+
+    @Value("${app.transactions.archive.window-size:5000}")
+    private int windowSize;
+
+    @Value("${app.transactions.archive.window-pause-ms:20}")
+    private long windowPauseMs;
+
+    public TransactionArchiveService(JdbcTemplate jdbcTemplate, JobCheckpointRepository checkpointRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureSchema() {
+        jdbcTemplate.execute(CREATE_ARCHIVE_SQL);
+        for (String sql : ARCHIVE_INDEX_SQL) {
+            jdbcTemplate.execute(sql);
+        }
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + ARCHIVE_TABLE + " ALTER COLUMN description SET COMPRESSION lz4");
+        } catch (DataAccessException e) {
+            // Postgres < 14 or built without lz4; the default pglz compression still applies
+            log.info("lz4 compression not available for {}: {}", ARCHIVE_TABLE, e.getMessage());
+        }
+        refreshBoundary();
+    }
+
+    @Scheduled(fixedDelayString = "${app.transactions.archive.boundary-refresh-ms:60000}")
+    public void refreshBoundary() {
+        archivedBefore = checkpointRepository.findByJobName(JOB_NAME)
+                .map(JobCheckpoint::getLastProcessedDate)
+                .map(LocalDate::atStartOfDay)
+                .orElse(null);
+    }
+
+    /**
+     * Whether a query over {@code [fromDate, ...]} can match archived rows.
+     */
+    public boolean covers(LocalDateTime fromDate) {
+        LocalDateTime boundary = archivedBefore;
+        return boundary != null && (fromDate == null || fromDate.isBefore(boundary));
+    }
+
+    @Scheduled(cron = "${app.transactions.archive.cron:0 30 2 1 * ?}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    /**
+     * Move every eligible transaction created before the retention cutoff into the archive.
+     *
+     * @return number of rows moved by this run
+     */
+    public long archive() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Transaction archive already running, skipping");
+            return 0;
+        }
+        try {
+            LocalDate cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(retainMonths);
+            return archiveBefore(cutoff);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private long archiveBefore(LocalDate cutoff) {
+        Timestamp cutoffTs = Timestamp.valueOf(cutoff.atStartOfDay());
+        Map<String, Object> range = jdbcTemplate.queryForMap(
+                "SELECT MIN(id) AS min_id, MAX(id) AS max_id, MIN(created_at) AS oldest " +
+                "FROM transactions WHERE created_at < ?", cutoffTs);
+        if (range.get("min_id") == null) {
+            saveCheckpoint(cutoff, null, "nothing to archive");
+            return 0;
+        }
+
+        LocalDate oldestMonth = ((Timestamp) range.get("oldest")).toLocalDateTime().toLocalDate().withDayOfMonth(1);
+        for (LocalDate month = oldestMonth; month.isBefore(cutoff); month = month.plusMonths(1)) {
+            ensurePartition(month);
+        }
+
+        // Resume inside the id range if a previous run for the same cutoff was interrupted
+        JobCheckpoint checkpoint = checkpointRepository.findByJobName(JOB_NAME).orElse(null);
+        long minId = ((Number) range.get("min_id")).longValue();
+        long maxId = ((Number) range.get("max_id")).longValue();
+        long from = minId;
+        if (checkpoint != null && cutoff.equals(checkpoint.getLastProcessedDate()) && checkpoint.getLastProcessedId() != null) {
+            from = Math.max(minId, checkpoint.getLastProcessedId() + 1);
+        }
+
+        long started = System.currentTimeMillis();
+        long moved = 0;
+        for (long windowStart = from; windowStart <= maxId; windowStart += windowSize) {
+            long windowEnd = windowStart + windowSize;
+            moved += jdbcTemplate.update(MOVE_WINDOW_SQL, windowStart, windowEnd, cutoffTs);
+            saveCheckpoint(cutoff, windowEnd - 1, null);
+            pause();
+        }
+
+        saveCheckpoint(cutoff, maxId, "moved " + moved + " rows before " + cutoff);
+        archivedBefore = cutoff.atStartOfDay();
+        log.info("Archived {} transactions created before {} in {} ms", moved, cutoff, System.currentTimeMillis() - started);
+        return moved;
+    }
+
+    private void ensurePartition(LocalDate month) {
+        String partition = ARCHIVE_TABLE + "_" + month.format(PARTITION_SUFFIX);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + ARCHIVE_TABLE +
+                " FOR VALUES FROM ('" + month + "') TO ('" + month.plusMonths(1) + "') WITH (fillfactor = 100)");
+    }
+
+    private void saveCheckpoint(LocalDate cutoff, Long lastId, String details) {
+        JobCheckpoint checkpoint = checkpointRepository.findByJobName(JOB_NAME)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(JOB_NAME).build());
+        checkpoint.setLastProcessedDate(cutoff);
+        checkpoint.setLastProcessedId(lastId);
+        if (details != null) {
+            checkpoint.setDetails(details);
+        }
+        checkpointRepository.save(checkpoint);
+    }
+
+    private void pause() {
+        if (windowPauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(windowPauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Newest-first keyset page of a user's archived transactions. The cursor's timestamp
+     * bounds {@code created_at}, so Postgres only scans the partitions that can match.
+     */
+    public List<TransactionResponse> findPage(Long userId, TransactionType type, TransactionStatus status,
+                                              LocalDateTime fromDate, LocalDateTime toDate,
+                                              CursorCodec.Cursor cursor, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(SELECT_SQL).append(" WHERE ");
+        appendFilters(sql, args, userId, type, status, fromDate, toDate);
+        if (cursor != null) {
+            sql.append(" AND a.created_at <= ? AND (a.created_at < ? OR a.id < ?)");
+            args.add(Timestamp.valueOf(cursor.createdAt()));
+            args.add(Timestamp.valueOf(cursor.createdAt()));
+            args.add(cursor.id());
+        }
+        sql.append(" ORDER BY a.created_at DESC, a.id DESC LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * An archived transaction by id; empty if it is live or does not exist.
+     */
+    public Optional<TransactionResponse> findById(Long id) {
+        return jdbcTemplate.query(SELECT_SQL + " WHERE a.id = ?", ROW_MAPPER, id).stream().findFirst();
+    }
+
+    /**
+     * Offset page over live and archived rows in any supported order. Postgres merges the
+     * two tiers, so the cost grows with the offset exactly as a live-only offset page does.
+     *
+     * @param userId owner of the rows, or null for every user (admin lists)
+     * @param limit  page size, or null for every matching row
+     * @throws BadRequestException if the sort names a property that cannot be ordered on
+     */
+    public List<TransactionResponse> findMergedPage(Long userId, TransactionType type, TransactionStatus status,
+                                                    LocalDateTime fromDate, LocalDateTime toDate,
+                                                    Sort sort, long offset, Integer limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(MERGED_SELECT_SQL).append(" WHERE ");
+        appendFilters(sql, args, userId, type, status, fromDate, toDate);
+        sql.append(" ORDER BY ").append(orderBy(sort));
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            args.add(limit);
+        }
+        sql.append(" OFFSET ?");
+        args.add(offset);
+        return jdbcTemplate.query(sql.toString(), ROW_MAPPER, args.toArray());
+    }
+
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return "a.created_at DESC, a.id DESC";
+        }
+        List<String> orders = new ArrayList<>();
+        boolean hasId = false;
+        for (Sort.Order order : sort) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column == null) {
+                throw new BadRequestException("Unsupported sort property: " + order.getProperty());
+            }
+            hasId |= column.equals("a.id");
+            orders.add(column + (order.isDescending() ? " DESC" : " ASC"));
+        }
+        if (!hasId) {
+            // Stable order across pages
+            orders.add("a.id DESC");
+        }
+        return String.join(", ", orders);
+    }
+
+    public long count(Long userId, TransactionType type, TransactionStatus status,
+                      LocalDateTime fromDate, LocalDateTime toDate) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM " + ARCHIVE_TABLE + " a WHERE ");
+        appendFilters(sql, args, userId, type, status, fromDate, toDate);
+        Long count = jdbcTemplate.queryForObject(sql.toString(), Long.class, args.toArray());
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Rows matching the filters across live and archived tiers; a null user counts every user.
+     */
+    public long countMerged(Long userId, TransactionType type, TransactionStatus status,
+                            LocalDateTime fromDate, LocalDateTime toDate) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM (SELECT " + COLUMNS + " FROM transactions " +
+                "UNION ALL SELECT " + COLUMNS + " FROM " + ARCHIVE_TABLE + ") a WHERE ");
+        appendFilters(sql, args, userId, type, status, fromDate, toDate);
+        Long count = jdbcTemplate.queryForObject(sql.toString(), Long.class, args.toArray());
+        return count != null ? count : 0;
+    }
+
+    private void appendFilters(StringBuilder sql, List<Object> args, Long userId, TransactionType type,
+                               TransactionStatus status, LocalDateTime fromDate, LocalDateTime toDate) {
+        sql.append("1 = 1");
+        if (userId != null) {
+            sql.append(" AND a.user_id = ?");
+            args.add(userId);
+        }
+        if (type != null) {
+            sql.append(" AND a.type = ?");
+            args.add(type.name());
+        }
+        if (status != null) {
+            sql.append(" AND a.status = ?");
+            args.add(status.name());
+        }
+        if (fromDate != null) {
+            sql.append(" AND a.created_at >= ?");
+            args.add(Timestamp.valueOf(fromDate));
+        }
+        if (toDate != null) {
+            sql.append(" AND a.created_at <= ?");
+            args.add(Timestamp.valueOf(toDate));
+        }
+    }
+
+    private static final RowMapper<TransactionResponse> ROW_MAPPER = (rs, rowNum) -> {
+        String firstName = rs.getString("first_name");
+        String lastName = rs.getString("last_name");
+        String fullName = firstName == null && lastName == null ? null
+                : ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
+        return TransactionResponse.builder()
+                .id(rs.getLong("id"))
+                .referenceCode(rs.getString("reference_code"))
+                .type(TransactionType.valueOf(rs.getString("type")))
+                .status(TransactionStatus.valueOf(rs.getString("status")))
+                .amount(rs.getBigDecimal("amount"))
+                .fee(rs.getBigDecimal("fee"))
+                .netAmount(rs.getBigDecimal("net_amount"))
+                .balanceBefore(rs.getBigDecimal("balance_before"))
+                .balanceAfter(rs.getBigDecimal("balance_after"))
+                .currency(rs.getString("currency"))
+                .description(rs.getString("description"))
+                .loanId(rs.getObject("loan_id", Long.class))
+                .loanCode(rs.getString("loan_code"))
+                .investmentId(rs.getObject("investment_id", Long.class))
+                .investmentCode(rs.getString("investment_code"))
+                .userId(rs.getLong("user_id"))
+                .userName(fullName)
+                .userEmail(rs.getString("email"))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .build();
+    };
+}
@@ -0,0 +1,242 @@
+package com.nexo.server.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nexo.server.enums.ExportFormat;
+import com.nexo.server.enums.TransactionStatus;
+import com.nexo.server.enums.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams transaction statements straight from a forward-only JDBC cursor to an output
+ * stream. Rows are read {@code FETCH_SIZE} at a time inside a read-only transaction (the
+ * Postgres driver only honours the fetch size with autocommit off) and written as they
+ * arrive, so memory use does not depend on the number of rows exported. Archived
+ * transactions are included when the requested range reaches the archive tier.
+ */
+@Service
+@Slf4j
+public class TransactionExportService {
+
+    private static final int FETCH_SIZE = 2000;
+
+    private static final String[] COLUMNS = {
+            "id", "reference_code", "created_at", "user_id", "type", "status", "amount", "fee",
+            "net_amount", "balance_before", "balance_after", "currency", "loan_code", "investment_code", "description"
+    };
+
+    private static final String SELECT_SQL =
+            "SELECT t.id, t.reference_code, t.created_at, t.user_id, t.type, t.status, t.amount, t.fee, " +
+            "t.net_amount, t.balance_before, t.balance_after, t.currency, l.loan_code, i.investment_code, t.description " +
+            "FROM %s t " +
+            "LEFT JOIN loans l ON l.id = t.loan_id " +
+            "LEFT JOIN investments i ON i.id = t.investment_id";
+
+    private static final String LIVE_AND_ARCHIVED =
+            "(SELECT " + TransactionArchiveService.COLUMNS + " FROM transactions UNION ALL " +
+            "SELECT " + TransactionArchiveService.COLUMNS + " FROM " + TransactionArchiveService.ARCHIVE_TABLE + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionArchiveService transactionArchiveService;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public TransactionExportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                    TransactionArchiveService transactionArchiveService,
+                                    PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionArchiveService = transactionArchiveService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public record ExportFilter(Long userId, TransactionType type, TransactionStatus status,
+                               LocalDateTime fromDate, LocalDateTime toDate) {
+    }
+
+    /**
+     * Streamed download of {@link #export}, named {@code fileName} plus the format's extension.
+     */
+    public ResponseEntity<StreamingResponseBody> download(ExportFilter filter, ExportFormat format, String fileName) {
+        boolean csv = format == ExportFormat.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + fileName + (csv ? ".csv" : ".ndjson") + "\"")
+                .body(out -> export(filter, format, out));
+    }
+
+    /**
+     * Write every transaction matching the filter to {@code out}, oldest first.
+     * A null user id exports all users (admin statements).
+     */
+    public long export(ExportFilter filter, ExportFormat format, OutputStream out) throws IOException {
+        String source = transactionArchiveService.covers(filter.fromDate()) ? LIVE_AND_ARCHIVED : "transactions";
+        StringBuilder sql = new StringBuilder(String.format(SELECT_SQL, source)).append(" WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (filter.userId() != null) {
+            sql.append(" AND t.user_id = ?");
+            args.add(filter.userId());
+        }
+        if (filter.type() != null) {
+            sql.append(" AND t.type = ?");
+            args.add(filter.type().name());
+        }
+        if (filter.status() != null) {
+            sql.append(" AND t.status = ?");
+            args.add(filter.status().name());
+        }
+        if (filter.fromDate() != null) {
+            sql.append(" AND t.created_at >= ?");
+            args.add(Timestamp.valueOf(filter.fromDate()));
+        }
+        if (filter.toDate() != null) {
+            sql.append(" AND t.created_at <= ?");
+            args.add(Timestamp.valueOf(filter.toDate()));
+        }
+        sql.append(" ORDER BY t.created_at, t.id");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowWriter rowWriter = format == ExportFormat.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+
+        long started = System.nanoTime();
+        long[] rows = {0};
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, rs -> {
+            try {
+                rowWriter.write(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        }));
+        rowWriter.finish();
+        writer.flush();
+
+        double seconds = Math.max(System.nanoTime() - started, 1) / 1_000_000_000.0;
+        log.info("Exported {} transactions as {} in {} ms ({} rows/s)", rows[0], format,
+                Math.round(seconds * 1000), Math.round(rows[0] / seconds));
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        default void finish() throws IOException {
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 1; i <= COLUMNS.length; i++) {
+                if (i > 1) {
+                    writer.write(',');
+                }
+                writeCell(value(rs, i));
+            }
+            writer.write('\n');
+        }
+
+        private void writeCell(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 1; i <= COLUMNS.length; i++) {
+                Object raw = rs.getObject(i);
+                generator.writeFieldName(COLUMNS[i - 1]);
+                if (raw == null) {
+                    generator.writeNull();
+                } else if (raw instanceof BigDecimal decimal) {
+                    generator.writeNumber(decimal);
+                } else if (raw instanceof Number number) {
+                    generator.writeNumber(number.longValue());
+                } else {
+                    generator.writeString(value(rs, i));
+                }
+            }
+            generator.writeEndObject();
+            generator.flush();
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static String value(ResultSet rs, int column) throws SQLException {
+        Object raw = rs.getObject(column);
+        if (raw == null) {
+            return null;
+        }
+        if (raw instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (raw instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        return raw.toString();
+    }
+}
@@ -28,6 +28,7 @@ public class UserMapper {
             com.nexo.server.enums.KycStatus kycStatus = user.getKycStatus();
             Boolean emailVerified = user.getEmailVerified();
             Integer creditScore = user.getCreditScore();
+            Boolean autoDebitEnabled = user.getAutoDebitEnabled();
             String oauthProvider = user.getOauthProvider();
             java.time.LocalDateTime lastLoginAt = user.getLastLoginAt();
             java.time.LocalDateTime createdAt = user.getCreatedAt();
@@ -47,6 +48,7 @@ public class UserMapper {
                     .kycStatus(kycStatus)
                     .emailVerified(emailVerified)
                     .creditScore(creditScore)
+                    .autoDebitEnabled(autoDebitEnabled)
                     .oauthProvider(oauthProvider)
                     .lastLoginAt(lastLoginAt)
                     .createdAt(createdAt)
@@ -0,0 +1,265 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.Wallet;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import com.nexo.server.repositories.WalletRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Serializes wallet mutations per wallet on single-writer lanes.
+ *
+ * <p>Commands are partitioned by user id (one wallet per user) onto a fixed number of
+ * lanes. Each lane drains up to {@code batch-size} queued commands and runs them in one
+ * transaction: the wallets involved are locked once, in id order, and every command in
+ * the batch shares the commit. Hot wallets therefore cost one row lock and one commit
+ * per batch instead of one per request, and the number of connections used for wallet
+ * writes is bounded by the lane count rather than by the request thread count.
+ *
+ * <p>If any command in a batch fails the batch is rolled back and its commands are
+ * re-run one by one, so a failing command never affects the others.
+ *
+ * <p>A caller that times out cancels its command if a lane has not picked it up yet, so
+ * the command never runs; once picked up, the caller waits for the outcome instead.
+ *
+ * <p>Commands submitted while a transaction is already active (e.g. an investment that
+ * debits the lender and updates the loan atomically) run inline in that transaction.
+ */
+@Service
+@Slf4j
+public class WalletCommandDispatcher {
+
+    private final WalletRepository walletRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.wallet.dispatcher.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.wallet.dispatcher.lanes:4}")
+    private int laneCount;
+
+    @Value("${app.wallet.dispatcher.batch-size:64}")
+    private int batchSize;
+
+    @Value("${app.wallet.dispatcher.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.wallet.dispatcher.timeout-ms:30000}")
+    private long timeoutMs;
+
+    private Lane[] lanes;
+
+    public WalletCommandDispatcher(WalletRepository walletRepository, PlatformTransactionManager transactionManager) {
+        this.walletRepository = walletRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Wallet command dispatcher disabled, wallet commands run on the calling thread");
+            return;
+        }
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i);
+            lanes[i].start();
+        }
+        log.info("Wallet command dispatcher started with {} lanes, batch size {}", laneCount, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (lanes == null) {
+            return;
+        }
+        for (Lane lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Run a command against the wallet of the given user, holding that wallet's row lock.
+     * Exceptions thrown by the command are rethrown to the caller unchanged.
+     */
+    public <T> T execute(Long userId, Function<Wallet, T> command) {
+        if (lanes == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return executeInline(userId, command);
+        }
+
+        Command<T> queued = new Command<>(userId, command);
+        Lane lane = lanes[Math.floorMod(userId.hashCode(), lanes.length)];
+        if (!lane.queue.offer(queued)) {
+            // Lane is saturated, fall back to the caller's thread rather than queueing unbounded work
+            log.warn("Wallet lane {} is full, running command for user {} inline", lane.index, userId);
+            return executeInline(userId, command);
+        }
+
+        try {
+            return queued.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            if (queued.cancel()) {
+                lane.queue.remove(queued);
+                throw new BusinessException("Wallet is busy, please try again");
+            }
+            // A lane already claimed the command; its outcome will be committed either way
+            return awaitClaimed(queued);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (queued.cancel()) {
+                lane.queue.remove(queued);
+            }
+            throw new BusinessException("Wallet operation interrupted");
+        }
+    }
+
+    private static <T> T awaitClaimed(Command<T> command) {
+        try {
+            return command.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> T executeInline(Long userId, Function<Wallet, T> command) {
+        return transactionTemplate.execute(status -> command.apply(walletRepository.findByUserIdForUpdate(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"))));
+    }
+
+    private void runBatch(List<Command<?>> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, Wallet> wallets = walletRepository
+                        .findAllByUserIdInForUpdate(batch.stream().map(c -> c.userId).collect(Collectors.toCollection(TreeSet::new)))
+                        .stream()
+                        .collect(Collectors.toMap(w -> w.getUser().getId(), Function.identity()));
+                for (Command<?> command : batch) {
+                    Wallet wallet = wallets.get(command.userId);
+                    if (wallet == null) {
+                        throw new ResourceNotFoundException("Wallet not found");
+                    }
+                    command.run(wallet);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.debug("Wallet batch of {} failed ({}), retrying commands individually", batch.size(), e.getMessage());
+            for (Command<?> command : batch) {
+                runBatch(List.of(command));
+            }
+            return;
+        }
+        batch.forEach(Command::complete);
+    }
+
+    private static final class Command<T> {
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Long userId;
+        private final Function<Wallet, T> action;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private T result;
+
+        private Command(Long userId, Function<Wallet, T> action) {
+            this.userId = userId;
+            this.action = action;
+        }
+
+        /** Taken by a lane; false if the caller gave up first. */
+        private boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+
+        /** Withdrawn by the caller; false if a lane already took it. */
+        private boolean cancel() {
+            return state.compareAndSet(QUEUED, CANCELLED);
+        }
+
+        private void run(Wallet wallet) {
+            result = action.apply(wallet);
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+    }
+
+    private final class Lane implements Runnable {
+        private final int index;
+        private final BlockingQueue<Command<?>> queue = new LinkedBlockingQueue<>(queueCapacity);
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Lane(int index) {
+            this.index = index;
+            this.thread = new Thread(this, "wallet-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void shutdown() {
+            running = false;
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            List<Command<?>> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    Command<?> first = queue.poll(500, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    batch.removeIf(c -> !c.claim());
+                    if (!batch.isEmpty()) {
+                        runBatch(batch);
+                    }
+                } catch (InterruptedException e) {
+                    // Only raised by shutdown; the loop drains what is left and exits
+                } catch (RuntimeException e) {
+                    log.error("Wallet lane {} failed to process batch", index, e);
+                    batch.forEach(c -> c.future.completeExceptionally(e));
+                } finally {
+                    batch.clear();
+                }
+            }
+            log.info("Wallet lane {} stopped", index);
+        }
+    }
+}
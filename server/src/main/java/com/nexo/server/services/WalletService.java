@@ -1,9 +1,13 @@
 package com.nexo.server.services;
 
+import com.nexo.server.dto.common.CursorResponse;
 import com.nexo.server.dto.common.PageResponse;
 import com.nexo.server.dto.wallet.*;
+import com.nexo.server.entities.Loan;
 import com.nexo.server.entities.Transaction;
 import com.nexo.server.entities.Wallet;
+import com.nexo.server.enums.LedgerAccountType;
+import com.nexo.server.enums.LedgerPostingType;
 import com.nexo.server.enums.TransactionStatus;
 import com.nexo.server.enums.TransactionType;
 import com.nexo.server.exceptions.BadRequestException;
@@ -13,15 +17,20 @@ import com.nexo.server.exceptions.ResourceNotFoundException;
 import com.nexo.server.repositories.TransactionRepository;
 import com.nexo.server.repositories.WalletRepository;
 import com.nexo.server.utils.CodeGenerator;
+import com.nexo.server.utils.CursorCodec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -31,6 +40,11 @@ public class WalletService {
     private final WalletRepository walletRepository;
     private final TransactionRepository transactionRepository;
     private final PaymentService paymentService;
+    private final LedgerService ledgerService;
+    private final WalletCommandDispatcher walletCommandDispatcher;
+    private final TransactionArchiveService transactionArchiveService;
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
 
     public WalletResponse getWallet(Long userId) {
         Wallet wallet = walletRepository.findByUserId(userId)
@@ -40,6 +54,52 @@ public class WalletService {
 
     public PageResponse<TransactionResponse> getTransactions(Long userId, TransactionType type, 
             TransactionStatus status, LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable) {
+        if (transactionArchiveService.covers(fromDate)) {
+            return getTransactionsWithArchive(userId, type, status, fromDate, toDate, pageable);
+        }
+        Page<Transaction> transactions = findLiveTransactions(userId, type, status, fromDate, toDate, pageable);
+        return PageResponse.of(transactions, 
+                transactions.getContent().stream().map(this::toTransactionResponse).toList());
+    }
+
+    /**
+     * Offset page over live and archived rows. Any sort the archive tier can order on is
+     * accepted; others are rejected rather than silently leaving archived rows out.
+     */
+    private PageResponse<TransactionResponse> getTransactionsWithArchive(Long userId, TransactionType type,
+            TransactionStatus status, LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable) {
+        List<TransactionResponse> content = transactionArchiveService.findMergedPage(userId, type, status,
+                fromDate, toDate, pageable.getSort(), pageable.isPaged() ? pageable.getOffset() : 0,
+                pageable.isPaged() ? pageable.getPageSize() : null);
+        long total = transactionRepository.countByUserIdWithFilters(userId, type, status, fromDate, toDate)
+                + transactionArchiveService.count(userId, type, status, fromDate, toDate);
+        return PageResponse.of(new PageImpl<>(content, pageable, total));
+    }
+
+    private static List<TransactionResponse> mergeNewestFirst(List<TransactionResponse> live,
+                                                              List<TransactionResponse> archived, int limit) {
+        if (archived.isEmpty()) {
+            return live.size() > limit ? live.subList(0, limit) : live;
+        }
+        Comparator<TransactionResponse> newestFirst = Comparator
+                .comparing(TransactionResponse::getCreatedAt)
+                .thenComparing(TransactionResponse::getId)
+                .reversed();
+        List<TransactionResponse> merged = new ArrayList<>(Math.min(limit, live.size() + archived.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < live.size() || j < archived.size())) {
+            if (j >= archived.size() || (i < live.size() && newestFirst.compare(live.get(i), archived.get(j)) <= 0)) {
+                merged.add(live.get(i++));
+            } else {
+                merged.add(archived.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    private Page<Transaction> findLiveTransactions(Long userId, TransactionType type,
+            TransactionStatus status, LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable) {
         Page<Transaction> transactions;
         
         log.info("Fetching transactions for user {} with filters: type={}, status={}, from={}, to={}", 
@@ -101,8 +161,44 @@ public class WalletService {
             }
         }
         
-        return PageResponse.of(transactions, 
-                transactions.getContent().stream().map(this::toTransactionResponse).toList());
+        return transactions;
+    }
+
+    /**
+     * Keyset-paginated history. Same filters as {@link #getTransactions}, but pages are
+     * addressed by an opaque cursor instead of an offset and no count is run unless asked for.
+     */
+    @Transactional(readOnly = true)
+    public CursorResponse<TransactionResponse> getTransactionsByCursor(Long userId, TransactionType type,
+            TransactionStatus status, LocalDateTime fromDate, LocalDateTime toDate,
+            String cursor, int size, boolean includeTotal) {
+        int pageSize = Math.clamp(size, 1, MAX_CURSOR_PAGE_SIZE);
+        CursorCodec.Cursor after = CursorCodec.decode(cursor);
+        boolean withArchive = transactionArchiveService.covers(fromDate);
+        List<TransactionResponse> live = transactionRepository.findPageByUserIdAfterCursor(
+                        userId, type, status, fromDate, toDate, after, pageSize + 1)
+                .stream().map(this::toTransactionResponse).toList();
+        List<TransactionResponse> rows = withArchive
+                ? mergeNewestFirst(live, transactionArchiveService.findPage(
+                        userId, type, status, fromDate, toDate, after, pageSize + 1), pageSize + 1)
+                : live;
+
+        boolean hasNext = rows.size() > pageSize;
+        List<TransactionResponse> page = hasNext ? rows.subList(0, pageSize) : rows;
+        TransactionResponse last = page.isEmpty() ? null : page.get(page.size() - 1);
+
+        Long total = null;
+        if (includeTotal) {
+            total = transactionRepository.countByUserIdWithFilters(userId, type, status, fromDate, toDate)
+                    + (withArchive ? transactionArchiveService.count(userId, type, status, fromDate, toDate) : 0);
+        }
+        return CursorResponse.<TransactionResponse>builder()
+                .content(page)
+                .size(pageSize)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? CursorCodec.encode(last.getCreatedAt(), last.getId()) : null)
+                .totalElements(total)
+                .build();
     }
 
     @Transactional
@@ -131,42 +227,47 @@ public class WalletService {
         return paymentService.createPayment(userId, request, transaction);
     }
 
-    @Transactional
     public void processDepositCallback(String paymentCode, boolean success, String providerTransactionId) {
-        Transaction transaction = transactionRepository.findByReferenceCode(paymentCode)
+        Transaction pending = transactionRepository.findByReferenceCode(paymentCode)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
 
-        if (transaction.getStatus() != TransactionStatus.PENDING) {
-            log.warn("Transaction {} already processed", paymentCode);
-            return;
-        }
+        walletCommandDispatcher.execute(pending.getUser().getId(), wallet -> {
+            // Re-read under the wallet lock so concurrent callbacks for the same payment apply once
+            Transaction transaction = transactionRepository.findByReferenceCode(paymentCode)
+                    .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
 
-        if (success) {
-            // Get wallet with lock
-            Wallet wallet = walletRepository.findByUserIdForUpdate(transaction.getUser().getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"));
-
-            wallet.deposit(transaction.getAmount());
-            walletRepository.save(wallet);
+            if (transaction.getStatus() != TransactionStatus.PENDING) {
+                log.warn("Transaction {} already processed", paymentCode);
+                return null;
+            }
 
-            transaction.setStatus(TransactionStatus.COMPLETED);
-            transaction.setBalanceAfter(wallet.getBalance());
-            transaction.setDescription(transaction.getDescription() + " - Provider: " + providerTransactionId);
-            
-            log.info("Deposit successful: {} - Amount: {}", paymentCode, transaction.getAmount());
-        } else {
-            transaction.setStatus(TransactionStatus.FAILED);
-            log.info("Deposit failed: {}", paymentCode);
-        }
+            if (success) {
+                ledgerService.post(LedgerService.Posting.of(LedgerPostingType.DEPOSIT, transaction.getDescription())
+                        .postingCode(transaction.getReferenceCode())
+                        .debit(LedgerAccountType.EXTERNAL, null, transaction.getAmount())
+                        .creditWallet(wallet, transaction.getAmount(), TransactionType.DEPOSIT));
+                walletRepository.save(wallet);
+
+                transaction.setStatus(TransactionStatus.COMPLETED);
+                transaction.setBalanceAfter(wallet.getBalance());
+                transaction.setDescription(transaction.getDescription() + " - Provider: " + providerTransactionId);
+
+                log.info("Deposit successful: {} - Amount: {}", paymentCode, transaction.getAmount());
+            } else {
+                transaction.setStatus(TransactionStatus.FAILED);
+                log.info("Deposit failed: {}", paymentCode);
+            }
 
-        transactionRepository.save(transaction);
+            transactionRepository.save(transaction);
+            return null;
+        });
     }
 
-    @Transactional
     public TransactionResponse requestWithdraw(Long userId, WithdrawRequest request) {
-        Wallet wallet = walletRepository.findByUserIdForUpdate(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"));
+        return walletCommandDispatcher.execute(userId, wallet -> requestWithdraw(wallet, request));
+    }
 
+    private TransactionResponse requestWithdraw(Wallet wallet, WithdrawRequest request) {
         BigDecimal withdrawalFee = new BigDecimal("10000"); // Fixed fee
         BigDecimal totalAmount = request.getAmount().add(withdrawalFee);
 
@@ -201,93 +302,128 @@ public class WalletService {
         return toTransactionResponse(transaction);
     }
 
-    @Transactional
     public void processWithdrawal(Long transactionId, boolean approved, String adminNote) {
-        Transaction transaction = transactionRepository.findById(transactionId)
+        Transaction pending = transactionRepository.findById(transactionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction", transactionId));
 
-        if (transaction.getStatus() != TransactionStatus.PENDING) {
-            throw new BadRequestException("Transaction already processed");
-        }
-        if (transaction.getType() != TransactionType.WITHDRAW) {
-            throw new BadRequestException("Not a withdrawal transaction");
-        }
-
-        Wallet wallet = walletRepository.findByUserIdForUpdate(transaction.getUser().getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"));
+        walletCommandDispatcher.execute(pending.getUser().getId(), wallet -> {
+            Transaction transaction = transactionRepository.findById(transactionId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Transaction", transactionId));
 
-        BigDecimal totalAmount = transaction.getAmount().add(transaction.getFee());
+            if (transaction.getStatus() != TransactionStatus.PENDING) {
+                throw new BadRequestException("Transaction already processed");
+            }
+            if (transaction.getType() != TransactionType.WITHDRAW) {
+                throw new BadRequestException("Not a withdrawal transaction");
+            }
 
-        if (approved) {
-            wallet.confirmLockedTransaction(totalAmount);
-            transaction.setStatus(TransactionStatus.COMPLETED);
-            transaction.setBalanceAfter(wallet.getBalance());
-            log.info("Withdrawal approved: {}", transaction.getReferenceCode());
-        } else {
-            wallet.unlock(totalAmount);
-            transaction.setStatus(TransactionStatus.CANCELLED);
-            transaction.setDescription(transaction.getDescription() + " - Rejected: " + adminNote);
-            log.info("Withdrawal rejected: {}", transaction.getReferenceCode());
-        }
+            BigDecimal totalAmount = transaction.getAmount().add(transaction.getFee());
+
+            if (approved) {
+                wallet.unlock(totalAmount);
+                ledgerService.post(LedgerService.Posting.of(LedgerPostingType.WITHDRAWAL, transaction.getDescription())
+                        .postingCode(transaction.getReferenceCode())
+                        .debitWallet(wallet, totalAmount, TransactionType.WITHDRAW)
+                        .credit(LedgerAccountType.EXTERNAL, null, transaction.getAmount())
+                        .credit(LedgerAccountType.PLATFORM_REVENUE, null, transaction.getFee()));
+                transaction.setStatus(TransactionStatus.COMPLETED);
+                transaction.setBalanceAfter(wallet.getBalance());
+                log.info("Withdrawal approved: {}", transaction.getReferenceCode());
+            } else {
+                wallet.unlock(totalAmount);
+                transaction.setStatus(TransactionStatus.CANCELLED);
+                transaction.setDescription(transaction.getDescription() + " - Rejected: " + adminNote);
+                log.info("Withdrawal rejected: {}", transaction.getReferenceCode());
+            }
 
-        walletRepository.save(wallet);
-        transactionRepository.save(transaction);
+            walletRepository.save(wallet);
+            transactionRepository.save(transaction);
+            return null;
+        });
     }
 
-    @Transactional
     public void lockBalance(Long userId, BigDecimal amount) {
-        Wallet wallet = walletRepository.findByUserIdForUpdate(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"));
-        
-        if (wallet.getAvailableBalance().compareTo(amount) < 0) {
-            throw new BusinessException("Insufficient balance");
-        }
-        
-        wallet.lock(amount);
-        walletRepository.save(wallet);
+        walletCommandDispatcher.execute(userId, wallet -> {
+            if (wallet.getAvailableBalance().compareTo(amount) < 0) {
+                throw new BusinessException("Insufficient balance");
+            }
+
+            wallet.lock(amount);
+            return walletRepository.save(wallet);
+        });
     }
 
-    @Transactional
     public void unlockBalance(Long userId, BigDecimal amount) {
-        Wallet wallet = walletRepository.findByUserIdForUpdate(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"));
-        
-        wallet.unlock(amount);
-        walletRepository.save(wallet);
+        walletCommandDispatcher.execute(userId, wallet -> {
+            wallet.unlock(amount);
+            return walletRepository.save(wallet);
+        });
     }
 
-    @Transactional
     public Transaction createTransaction(Long userId, TransactionType type, BigDecimal amount, 
             BigDecimal fee, String description) {
-        Wallet wallet = walletRepository.findByUserIdForUpdate(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"));
+        return createTransaction(userId, type, amount, fee, description, null);
+    }
+
+    /**
+     * Moves money in or out of a wallet through the ledger. When a loan is given the
+     * counterparty is that loan's escrow account, otherwise the external settlement account.
+     * For credits {@code amount} is gross: the wallet receives it less {@code fee}.
+     */
+    public Transaction createTransaction(Long userId, TransactionType type, BigDecimal amount,
+            BigDecimal fee, String description, Loan loan) {
+        return walletCommandDispatcher.execute(userId,
+                wallet -> createTransaction(wallet, type, amount, fee, description, loan));
+    }
 
+    private Transaction createTransaction(Wallet wallet, TransactionType type, BigDecimal amount,
+            BigDecimal fee, String description, Loan loan) {
         BigDecimal balanceBefore = wallet.getBalance();
-        BigDecimal netAmount = amount.subtract(fee != null ? fee : BigDecimal.ZERO);
+        BigDecimal feeAmount = fee != null ? fee : BigDecimal.ZERO;
+        BigDecimal netAmount = amount.subtract(feeAmount);
+        String referenceCode = CodeGenerator.generateTransactionCode();
+
+        LedgerAccountType contraAccount = loan != null ? LedgerAccountType.LOAN_ESCROW : LedgerAccountType.EXTERNAL;
+        Long contraAccountId = loan != null ? loan.getId() : null;
+        LedgerService.Posting posting = LedgerService.Posting.of(toPostingType(type), description)
+                .postingCode(referenceCode)
+                .loan(loan);
 
         // Update wallet balance based on transaction type
         if (type == TransactionType.DEPOSIT || type == TransactionType.REPAYMENT_RECEIVED 
                 || type == TransactionType.INVESTMENT_RETURN || type == TransactionType.LOAN_DISBURSEMENT) {
-            wallet.deposit(netAmount);
+            posting.debit(contraAccount, contraAccountId, amount)
+                    .creditWallet(wallet, netAmount, type)
+                    .credit(LedgerAccountType.PLATFORM_REVENUE, null, feeAmount);
         } else if (type == TransactionType.WITHDRAW || type == TransactionType.REPAYMENT_PAID) {
-            // For WITHDRAW and REPAYMENT_PAID: confirm locked transaction (reduce balance and lockedBalance)
-            wallet.confirmLockedTransaction(amount);
+            // For WITHDRAW and REPAYMENT_PAID: confirm locked transaction (release the hold, then debit)
+            wallet.unlock(amount);
+            posting.debitWallet(wallet, amount, type)
+                    .credit(contraAccount, contraAccountId, amount);
         } else if (type == TransactionType.INVESTMENT) {
             // For INVESTMENT: directly deduct from available balance
             // No locking needed - money is transferred immediately
-            wallet.withdraw(amount);
+            if (wallet.getAvailableBalance().compareTo(amount) < 0) {
+                throw new BusinessException("Insufficient balance");
+            }
+            posting.debitWallet(wallet, amount, type)
+                    .credit(contraAccount, contraAccountId, amount);
         }
 
+        if (!posting.isEmpty()) {
+            ledgerService.post(posting);
+        }
         walletRepository.save(wallet);
 
         Transaction transaction = Transaction.builder()
-                .referenceCode(CodeGenerator.generateTransactionCode())
+                .referenceCode(referenceCode)
                 .wallet(wallet)
                 .user(wallet.getUser())
+                .loan(loan)
                 .type(type)
                 .status(TransactionStatus.COMPLETED)
                 .amount(amount)
-                .fee(fee != null ? fee : BigDecimal.ZERO)
+                .fee(feeAmount)
                 .netAmount(netAmount)
                 .balanceBefore(balanceBefore)
                 .balanceAfter(wallet.getBalance())
@@ -297,6 +433,18 @@ public class WalletService {
         return transactionRepository.save(transaction);
     }
 
+    private LedgerPostingType toPostingType(TransactionType type) {
+        return switch (type) {
+            case DEPOSIT, TRANSFER_IN -> LedgerPostingType.DEPOSIT;
+            case WITHDRAW, TRANSFER_OUT -> LedgerPostingType.WITHDRAWAL;
+            case INVESTMENT -> LedgerPostingType.INVESTMENT;
+            case LOAN_DISBURSEMENT -> LedgerPostingType.LOAN_DISBURSEMENT;
+            case REPAYMENT_PAID, REPAYMENT_RECEIVED, INVESTMENT_RETURN -> LedgerPostingType.REPAYMENT;
+            case REFUND -> LedgerPostingType.REFUND;
+            case FEE -> LedgerPostingType.FEE;
+        };
+    }
+
     private WalletResponse toWalletResponse(Wallet wallet) {
         return WalletResponse.builder()
                 .id(wallet.getId())
@@ -310,15 +458,35 @@ public class WalletService {
     }
 
     public TransactionResponse getTransactionById(Long transactionId, Long userId) {
-        Transaction transaction = transactionRepository.findById(transactionId)
+        // Archived transactions stay readable through the same endpoint
+        TransactionResponse transaction = transactionRepository.findById(transactionId)
+                .map(this::toTransactionResponse)
+                .or(() -> transactionArchiveService.findById(transactionId))
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction", transactionId));
         
         // Verify transaction belongs to user
-        if (!transaction.getUser().getId().equals(userId)) {
+        if (!transaction.getUserId().equals(userId)) {
             throw new ForbiddenException("You can only view your own transactions");
         }
         
-        return toTransactionResponse(transaction);
+        return transaction;
+    }
+
+    /**
+     * Admin list of withdrawals, including archived ones once the archive holds any.
+     */
+    public PageResponse<TransactionResponse> getWithdrawals(TransactionStatus status, Pageable pageable) {
+        if (transactionArchiveService.covers(null)) {
+            List<TransactionResponse> content = transactionArchiveService.findMergedPage(null,
+                    TransactionType.WITHDRAW, status, null, null, pageable.getSort(),
+                    pageable.isPaged() ? pageable.getOffset() : 0, pageable.isPaged() ? pageable.getPageSize() : null);
+            long total = transactionArchiveService.countMerged(null, TransactionType.WITHDRAW, status, null, null);
+            return PageResponse.of(new PageImpl<>(content, pageable, total));
+        }
+        Page<Transaction> transactions = status != null
+                ? transactionRepository.findByTypeAndStatusWithUser(TransactionType.WITHDRAW, status, pageable)
+                : transactionRepository.findByTypeWithUser(TransactionType.WITHDRAW, pageable);
+        return PageResponse.of(transactions, transactions.getContent().stream().map(this::toTransactionResponse).toList());
     }
 
     public TransactionResponse toTransactionResponse(Transaction transaction) {
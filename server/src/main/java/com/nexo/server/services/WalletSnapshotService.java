@@ -0,0 +1,307 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.wallet.BalanceAtDateResponse;
+import com.nexo.server.dto.wallet.BalanceSummaryResponse;
+import com.nexo.server.entities.JobCheckpoint;
+import com.nexo.server.entities.Wallet;
+import com.nexo.server.entities.WalletBalanceSnapshot;
+import com.nexo.server.enums.TransactionType;
+import com.nexo.server.exceptions.BadRequestException;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import com.nexo.server.repositories.JobCheckpointRepository;
+import com.nexo.server.repositories.WalletBalanceSnapshotFlowRepository;
+import com.nexo.server.repositories.WalletBalanceSnapshotRepository;
+import com.nexo.server.repositories.WalletRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Daily wallet balance snapshots built from the ledger's WALLET legs.
+ *
+ * <p>The nightly job builds every day after the last checkpoint, one day per transaction,
+ * with two set-based upserts (totals and per-type flows), so a restart resumes at the
+ * first unbuilt day and re-running a day is harmless. Queries read the latest snapshot on
+ * or before the requested date and only scan ledger entries for days the job has not
+ * reached yet (normally just today). If the job has fallen more than
+ * {@code max-tail-days} behind, a query builds the missing days first, so the ledger
+ * scan stays bounded.
+ */
+@Service
+@Slf4j
+public class WalletSnapshotService {
+
+    static final String JOB_NAME = "wallet-balance-snapshots";
+
+    private static final String UPSERT_SNAPSHOTS_SQL =
+            "INSERT INTO wallet_balance_snapshots (wallet_id, snapshot_date, opening_balance, inflow, outflow, " +
+            "closing_balance, created_at, updated_at) " +
+            "SELECT a.wallet_id, ?, COALESCE(p.closing_balance, 0), a.inflow, a.outflow, " +
+            "COALESCE(p.closing_balance, 0) + a.inflow - a.outflow, ?, ? " +
+            "FROM (SELECT account_id AS wallet_id, " +
+            "      SUM(CASE WHEN direction = 'CREDIT' THEN amount ELSE 0 END) AS inflow, " +
+            "      SUM(CASE WHEN direction = 'DEBIT' THEN amount ELSE 0 END) AS outflow " +
+            "      FROM ledger_entries WHERE account_type = 'WALLET' AND created_at >= ? AND created_at < ? " +
+            "      GROUP BY account_id) a " +
+            "LEFT JOIN LATERAL (SELECT s.closing_balance FROM wallet_balance_snapshots s " +
+            "      WHERE s.wallet_id = a.wallet_id AND s.snapshot_date < ? " +
+            "      ORDER BY s.snapshot_date DESC LIMIT 1) p ON TRUE " +
+            "ON CONFLICT (wallet_id, snapshot_date) DO UPDATE SET opening_balance = EXCLUDED.opening_balance, " +
+            "inflow = EXCLUDED.inflow, outflow = EXCLUDED.outflow, closing_balance = EXCLUDED.closing_balance, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private static final String UPSERT_FLOWS_SQL =
+            "INSERT INTO wallet_balance_snapshot_flows (wallet_id, snapshot_date, transaction_type, inflow, outflow, " +
+            "created_at, updated_at) " +
+            "SELECT account_id, ?, transaction_type, " +
+            "SUM(CASE WHEN direction = 'CREDIT' THEN amount ELSE 0 END), " +
+            "SUM(CASE WHEN direction = 'DEBIT' THEN amount ELSE 0 END), ?, ? " +
+            "FROM ledger_entries WHERE account_type = 'WALLET' AND transaction_type IS NOT NULL " +
+            "AND created_at >= ? AND created_at < ? " +
+            "GROUP BY account_id, transaction_type " +
+            "ON CONFLICT (wallet_id, snapshot_date, transaction_type) DO UPDATE SET inflow = EXCLUDED.inflow, " +
+            "outflow = EXCLUDED.outflow, updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WalletRepository walletRepository;
+    private final WalletBalanceSnapshotRepository snapshotRepository;
+    private final WalletBalanceSnapshotFlowRepository flowRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.wallet.snapshot.max-tail-days:2}")
+    private int maxTailDays;
+
+    public WalletSnapshotService(JdbcTemplate jdbcTemplate, WalletRepository walletRepository,
+                                 WalletBalanceSnapshotRepository snapshotRepository,
+                                 WalletBalanceSnapshotFlowRepository flowRepository,
+                                 JobCheckpointRepository checkpointRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.walletRepository = walletRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.flowRepository = flowRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Builds snapshots up to yesterday. Runs after midnight so postings from the previous
+     * day have committed.
+     */
+    @Scheduled(cron = "${app.wallet.snapshot.cron:0 30 1 * * ?}")
+    public void buildNightly() {
+        try {
+            buildThrough(LocalDate.now().minusDays(1));
+        } catch (Exception e) {
+            log.error("Wallet snapshot job failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builds every day after the checkpoint up to and including {@code through}.
+     *
+     * @return number of days built
+     */
+    public synchronized int buildThrough(LocalDate through) {
+        LocalDate lastBuilt = getLastBuiltDate();
+        LocalDate start = lastBuilt != null ? lastBuilt.plusDays(1) : getFirstLedgerDate();
+        if (start == null) {
+            return 0;
+        }
+        return buildRange(start, through);
+    }
+
+    /**
+     * Rebuilds snapshots from {@code from}. Later days that were already built are rebuilt
+     * as well, since their opening balances chain from the rebuilt ones.
+     */
+    public synchronized int backfill(LocalDate from, LocalDate through) {
+        if (through.isAfter(LocalDate.now().minusDays(1))) {
+            throw new BadRequestException("Snapshots can only be built for completed days");
+        }
+        LocalDate lastBuilt = getLastBuiltDate();
+        LocalDate end = lastBuilt != null && lastBuilt.isAfter(through) ? lastBuilt : through;
+        return buildRange(from, end);
+    }
+
+    private int buildRange(LocalDate from, LocalDate through) {
+        int days = 0;
+        long started = System.currentTimeMillis();
+        for (LocalDate day = from; !day.isAfter(through); day = day.plusDays(1)) {
+            LocalDate current = day;
+            transactionTemplate.executeWithoutResult(status -> {
+                buildDay(current);
+                advanceCheckpoint(current);
+            });
+            days++;
+        }
+        if (days > 0) {
+            log.info("Built wallet balance snapshots for {} day(s) {}..{} in {} ms",
+                    days, from, through, System.currentTimeMillis() - started);
+        }
+        return days;
+    }
+
+    private void buildDay(LocalDate day) {
+        Timestamp dayStart = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp dayEnd = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        java.sql.Date snapshotDate = java.sql.Date.valueOf(day);
+
+        int wallets = jdbcTemplate.update(UPSERT_SNAPSHOTS_SQL,
+                snapshotDate, now, now, dayStart, dayEnd, snapshotDate);
+        jdbcTemplate.update(UPSERT_FLOWS_SQL, snapshotDate, now, now, dayStart, dayEnd);
+        log.debug("Snapshot {}: {} wallet(s) with activity", day, wallets);
+    }
+
+    private void advanceCheckpoint(LocalDate day) {
+        JobCheckpoint checkpoint = checkpointRepository.findByJobName(JOB_NAME)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(JOB_NAME).build());
+        if (checkpoint.getLastProcessedDate() == null || day.isAfter(checkpoint.getLastProcessedDate())) {
+            checkpoint.setLastProcessedDate(day);
+            checkpointRepository.save(checkpoint);
+        }
+    }
+
+    public LocalDate getLastBuiltDate() {
+        return checkpointRepository.findByJobName(JOB_NAME)
+                .map(JobCheckpoint::getLastProcessedDate)
+                .orElse(null);
+    }
+
+    private LocalDate getFirstLedgerDate() {
+        Timestamp first = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM ledger_entries WHERE account_type = 'WALLET'", Timestamp.class);
+        return first != null ? first.toLocalDateTime().toLocalDate() : null;
+    }
+
+    // ==================== QUERIES ====================
+
+    public BalanceAtDateResponse getBalanceAtDate(Long userId, LocalDate date) {
+        Wallet wallet = walletRepository.findByUserId(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"));
+        return BalanceAtDateResponse.builder()
+                .walletId(wallet.getId())
+                .date(date)
+                .balance(balanceAt(wallet.getId(), date, ensureRecentlyBuilt()))
+                .build();
+    }
+
+    public BalanceSummaryResponse getPeriodSummary(Long userId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new BadRequestException("fromDate must not be after toDate");
+        }
+        Wallet wallet = walletRepository.findByUserId(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Wallet not found"));
+        Long walletId = wallet.getId();
+        LocalDate lastBuilt = ensureRecentlyBuilt();
+
+        Map<TransactionType, BalanceSummaryResponse.Flow> flows = new EnumMap<>(TransactionType.class);
+        // Days covered by snapshots
+        if (lastBuilt != null && !from.isAfter(lastBuilt)) {
+            LocalDate snapshotTo = to.isBefore(lastBuilt) ? to : lastBuilt;
+            for (Object[] row : flowRepository.sumByTransactionType(walletId, from, snapshotTo)) {
+                addFlow(flows, (TransactionType) row[0], (BigDecimal) row[1], (BigDecimal) row[2]);
+            }
+        }
+        // Tail not yet covered by snapshots
+        LocalDate tailFrom = lastBuilt == null || from.isAfter(lastBuilt) ? from : lastBuilt.plusDays(1);
+        if (!tailFrom.isAfter(to)) {
+            jdbcTemplate.query(
+                    "SELECT transaction_type, " +
+                    "SUM(CASE WHEN direction = 'CREDIT' THEN amount ELSE 0 END), " +
+                    "SUM(CASE WHEN direction = 'DEBIT' THEN amount ELSE 0 END) " +
+                    "FROM ledger_entries WHERE account_type = 'WALLET' AND account_id = ? " +
+                    "AND transaction_type IS NOT NULL AND created_at >= ? AND created_at < ? " +
+                    "GROUP BY transaction_type",
+                    rs -> {
+                        addFlow(flows, TransactionType.valueOf(rs.getString(1)), rs.getBigDecimal(2), rs.getBigDecimal(3));
+                    },
+                    walletId, Timestamp.valueOf(tailFrom.atStartOfDay()), Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+
+        BigDecimal totalInflow = flows.values().stream().map(BalanceSummaryResponse.Flow::getInflow)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalOutflow = flows.values().stream().map(BalanceSummaryResponse.Flow::getOutflow)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        return BalanceSummaryResponse.builder()
+                .walletId(walletId)
+                .fromDate(from)
+                .toDate(to)
+                .openingBalance(balanceAt(walletId, from.minusDays(1), lastBuilt))
+                .closingBalance(balanceAt(walletId, to, lastBuilt))
+                .totalInflow(totalInflow)
+                .totalOutflow(totalOutflow)
+                .flows(flows)
+                .build();
+    }
+
+    /**
+     * Last built day, after building any missing days when the unbuilt tail would be longer
+     * than {@code max-tail-days}. Every ledger entry after the returned day (or every entry,
+     * if it is null) is then at most that many days old.
+     */
+    private LocalDate ensureRecentlyBuilt() {
+        LocalDate lastBuilt = getLastBuiltDate();
+        LocalDate tailStart = lastBuilt != null ? lastBuilt.plusDays(1) : getFirstLedgerDate();
+        if (tailStart != null && tailStart.isBefore(tailBound())) {
+            log.info("Wallet snapshots only built through {}, building missing days before answering", lastBuilt);
+            buildThrough(LocalDate.now().minusDays(1));
+            lastBuilt = getLastBuiltDate();
+        }
+        return lastBuilt;
+    }
+
+    private LocalDate tailBound() {
+        return LocalDate.now().minusDays(maxTailDays);
+    }
+
+    /**
+     * End-of-day balance: latest snapshot on or before the date, plus ledger movements
+     * for days after the last built snapshot day.
+     */
+    private BigDecimal balanceAt(Long walletId, LocalDate date, LocalDate lastBuilt) {
+        BigDecimal base = BigDecimal.ZERO;
+        LocalDateTime tailFrom = null;
+        if (lastBuilt != null) {
+            LocalDate snapshotDate = date.isBefore(lastBuilt) ? date : lastBuilt;
+            base = snapshotRepository
+                    .findTopByWalletIdAndSnapshotDateLessThanEqualOrderBySnapshotDateDesc(walletId, snapshotDate)
+                    .map(WalletBalanceSnapshot::getClosingBalance)
+                    .orElse(BigDecimal.ZERO);
+            if (!date.isAfter(lastBuilt)) {
+                return base;
+            }
+            tailFrom = lastBuilt.plusDays(1).atStartOfDay();
+        }
+
+        BigDecimal tail = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(CASE WHEN direction = 'CREDIT' THEN amount ELSE -amount END), 0) " +
+                "FROM ledger_entries WHERE account_type = 'WALLET' AND account_id = ? " +
+                "AND created_at >= ? AND created_at < ?",
+                BigDecimal.class, walletId,
+                // Without snapshots every entry is newer than the tail bound (see ensureRecentlyBuilt)
+                Timestamp.valueOf(tailFrom != null ? tailFrom : tailBound().atStartOfDay()),
+                Timestamp.valueOf(date.plusDays(1).atStartOfDay()));
+        return base.add(tail);
+    }
+
+    private void addFlow(Map<TransactionType, BalanceSummaryResponse.Flow> flows, TransactionType type,
+                         BigDecimal inflow, BigDecimal outflow) {
+        flows.merge(type, new BalanceSummaryResponse.Flow(inflow, outflow),
+                (a, b) -> new BalanceSummaryResponse.Flow(a.getInflow().add(b.getInflow()), a.getOutflow().add(b.getOutflow())));
+    }
+}
@@ -0,0 +1,397 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.withdrawal.WithdrawalBatchItemResult;
+import com.nexo.server.dto.withdrawal.WithdrawalBatchRequest;
+import com.nexo.server.dto.withdrawal.WithdrawalBatchResponse;
+import com.nexo.server.enums.*;
+import com.nexo.server.exceptions.BadRequestException;
+import com.nexo.server.exceptions.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+/**
+ * Approves or rejects pending withdrawals in bulk.
+ *
+ * <p>Selected transactions are processed in chunks, each chunk in one database
+ * transaction: the wallets involved are locked once in id order (the same order the
+ * {@link WalletCommandDispatcher} uses, so bulk runs and single wallet commands cannot
+ * deadlock), then the transaction rows are locked and re-checked, and all ledger
+ * postings, status changes and lock releases are written with JDBC batches. A chunk that
+ * fails is rolled back and its items are re-run one by one, so one bad withdrawal does
+ * not block the rest of the chunk.
+ *
+ * <p>Jobs run on a single background thread. Progress is kept in memory and streamed to
+ * subscribers as server-sent events: a {@code chunk} event per processed chunk and a
+ * final {@code done} event.
+ */
+@Service
+@Slf4j
+public class WithdrawalBatchService {
+
+    private static final String SELECT_PENDING_SQL =
+            "SELECT id, reference_code, wallet_id, amount, fee, description FROM transactions " +
+            "WHERE id = ANY(?) AND type = 'WITHDRAW' AND status = 'PENDING' ORDER BY id";
+
+    private static final String LOCK_PENDING_SQL = SELECT_PENDING_SQL + " FOR UPDATE";
+
+    private static final String LOCK_WALLETS_SQL =
+            "SELECT id, balance FROM wallets WHERE id = ANY(?) ORDER BY id FOR UPDATE";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE transactions SET status = 'COMPLETED', balance_after = ?, updated_at = ? WHERE id = ?";
+
+    private static final String CANCEL_SQL =
+            "UPDATE transactions SET status = 'CANCELLED', description = COALESCE(description, '') || ?, " +
+            "updated_at = ? WHERE id = ?";
+
+    private static final String UNLOCK_SQL =
+            "UPDATE wallets SET locked_balance = GREATEST(locked_balance - ?, 0), version = version + 1, updated_at = ? " +
+            "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerService ledgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "withdrawal-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    @Value("${app.withdrawal-batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.withdrawal-batch.emitter-timeout:PT30M}")
+    private Duration emitterTimeout;
+
+    @Value("${app.withdrawal-batch.retention:PT6H}")
+    private Duration retention;
+
+    private record PendingWithdrawal(Long id, String referenceCode, Long walletId, BigDecimal amount, BigDecimal fee,
+                                     String description) {
+        BigDecimal total() {
+            return amount.add(fee);
+        }
+    }
+
+    public WithdrawalBatchService(JdbcTemplate jdbcTemplate, LedgerService ledgerService,
+                                  PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerService = ledgerService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Resolve the selection and queue the job. The selection is fixed at submit time;
+     * withdrawals that are no longer pending when their chunk runs are reported as skipped.
+     */
+    public WithdrawalBatchResponse submit(WithdrawalBatchRequest request) {
+        if (request.getAction() == WithdrawalBatchAction.REJECT
+                && (request.getReason() == null || request.getReason().isBlank())) {
+            throw new BadRequestException("Reason is required to reject withdrawals");
+        }
+
+        List<Long> ids = selectTransactionIds(request);
+        if (ids.isEmpty()) {
+            throw new BadRequestException("No pending withdrawals match the selection");
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), request.getAction(), request.getReason(), ids);
+        jobs.put(job.id, job);
+        executor.submit(() -> run(job));
+        log.info("Withdrawal batch {} queued: {} {} withdrawals", job.id, job.action, ids.size());
+        return job.snapshot(false);
+    }
+
+    public WithdrawalBatchResponse getJob(String jobId) {
+        return findJob(jobId).snapshot(true);
+    }
+
+    /**
+     * Subscribe to a job's progress. The current totals are sent immediately so late
+     * subscribers do not need the events they missed.
+     */
+    public SseEmitter subscribe(String jobId) {
+        Job job = findJob(jobId);
+        SseEmitter emitter = new SseEmitter(emitterTimeout.toMillis());
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(e -> job.emitters.remove(emitter));
+
+        synchronized (job) {
+            try {
+                if (job.finishedAt != null) {
+                    emitter.send(SseEmitter.event().name("done").data(job.snapshot(false)));
+                    emitter.complete();
+                } else {
+                    emitter.send(SseEmitter.event().name("progress").data(job.snapshot(false)));
+                    job.emitters.add(emitter);
+                }
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${app.withdrawal-batch.eviction-interval-ms:600000}")
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private Job findJob(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("Withdrawal batch", "id", jobId);
+        }
+        return job;
+    }
+
+    private List<Long> selectTransactionIds(WithdrawalBatchRequest request) {
+        if (request.getTransactionIds() != null && !request.getTransactionIds().isEmpty()) {
+            return new ArrayList<>(new TreeSet<>(request.getTransactionIds()));
+        }
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT id FROM transactions WHERE type = 'WITHDRAW' AND status = 'PENDING'");
+        List<Object> params = new ArrayList<>();
+        if (request.getCreatedBefore() != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(request.getCreatedBefore()));
+        }
+        if (request.getMaxAmount() != null) {
+            sql.append(" AND amount <= ?");
+            params.add(request.getMaxAmount());
+        }
+        sql.append(" ORDER BY id");
+        if (request.getLimit() != null) {
+            sql.append(" LIMIT ?");
+            params.add(request.getLimit());
+        }
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, params.toArray());
+    }
+
+    private void run(Job job) {
+        long start = System.currentTimeMillis();
+        try {
+            for (int from = 0; from < job.transactionIds.size(); from += chunkSize) {
+                List<Long> chunk = job.transactionIds.subList(from, Math.min(from + chunkSize, job.transactionIds.size()));
+                job.publishChunk(processChunkWithFallback(job, chunk));
+            }
+        } catch (RuntimeException e) {
+            log.error("Withdrawal batch {} aborted", job.id, e);
+            job.errorMessage = e.getMessage();
+        } finally {
+            job.finish();
+            log.info("Withdrawal batch {} finished in {} ms: {} approved, {} rejected, {} skipped, {} failed",
+                    job.id, System.currentTimeMillis() - start, job.approved, job.rejected, job.skipped, job.failed);
+        }
+    }
+
+    private List<WithdrawalBatchItemResult> processChunkWithFallback(Job job, List<Long> chunk) {
+        try {
+            return transactionTemplate.execute(status -> processChunk(job, chunk));
+        } catch (RuntimeException e) {
+            if (chunk.size() == 1) {
+                return List.of(WithdrawalBatchItemResult.builder()
+                        .transactionId(chunk.get(0))
+                        .outcome(WithdrawalBatchOutcome.FAILED)
+                        .message(e.getMessage())
+                        .build());
+            }
+            log.warn("Withdrawal batch {} chunk of {} failed ({}), retrying items individually",
+                    job.id, chunk.size(), e.getMessage());
+            List<WithdrawalBatchItemResult> results = new ArrayList<>(chunk.size());
+            for (Long id : chunk) {
+                results.addAll(processChunkWithFallback(job, List.of(id)));
+            }
+            return results;
+        }
+    }
+
+    private List<WithdrawalBatchItemResult> processChunk(Job job, List<Long> chunk) {
+        Long[] ids = chunk.toArray(Long[]::new);
+
+        // Wallets first, in id order, then the transaction rows: the same order as the single-item path
+        Long[] walletIds = jdbcTemplate.query(SELECT_PENDING_SQL, (rs, i) -> rs.getLong("wallet_id"), (Object) ids)
+                .stream().distinct().sorted().toArray(Long[]::new);
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        jdbcTemplate.query(LOCK_WALLETS_SQL, rs -> {
+            balances.put(rs.getLong("id"), rs.getBigDecimal("balance"));
+        }, (Object) walletIds);
+
+        Map<Long, PendingWithdrawal> pending = new LinkedHashMap<>();
+        jdbcTemplate.query(LOCK_PENDING_SQL, rs -> {
+            pending.put(rs.getLong("id"), new PendingWithdrawal(rs.getLong("id"), rs.getString("reference_code"),
+                    rs.getLong("wallet_id"), rs.getBigDecimal("amount"), rs.getBigDecimal("fee"), rs.getString("description")));
+        }, (Object) ids);
+
+        List<WithdrawalBatchItemResult> results = new ArrayList<>(chunk.size());
+        List<PendingWithdrawal> accepted = new ArrayList<>();
+        List<BigDecimal> balancesAfter = new ArrayList<>();
+        Map<Long, BigDecimal> unlocks = new TreeMap<>();
+        for (Long id : chunk) {
+            PendingWithdrawal withdrawal = pending.get(id);
+            if (withdrawal == null || !balances.containsKey(withdrawal.walletId())) {
+                // Processed since submit, or locked wallet set changed between the two reads
+                results.add(result(id, null, WithdrawalBatchOutcome.SKIPPED, "Not a pending withdrawal"));
+                continue;
+            }
+            if (job.action == WithdrawalBatchAction.APPROVE) {
+                BigDecimal balance = balances.get(withdrawal.walletId());
+                if (balance.compareTo(withdrawal.total()) < 0) {
+                    results.add(result(id, withdrawal.referenceCode(), WithdrawalBatchOutcome.FAILED, "Insufficient balance"));
+                    continue;
+                }
+                balance = balance.subtract(withdrawal.total());
+                balances.put(withdrawal.walletId(), balance);
+                balancesAfter.add(balance);
+            }
+            accepted.add(withdrawal);
+            unlocks.merge(withdrawal.walletId(), withdrawal.total(), BigDecimal::add);
+            results.add(result(id, withdrawal.referenceCode(), job.action == WithdrawalBatchAction.APPROVE
+                    ? WithdrawalBatchOutcome.APPROVED : WithdrawalBatchOutcome.REJECTED, null));
+        }
+        if (accepted.isEmpty()) {
+            return results;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (job.action == WithdrawalBatchAction.APPROVE) {
+            ledgerService.postAll(accepted.stream()
+                    .map(w -> LedgerService.Posting.of(LedgerPostingType.WITHDRAWAL, w.description())
+                            .postingCode(w.referenceCode())
+                            .debitWallet(w.walletId(), w.total(), TransactionType.WITHDRAW)
+                            .credit(LedgerAccountType.EXTERNAL, null, w.amount())
+                            .credit(LedgerAccountType.PLATFORM_REVENUE, null, w.fee()))
+                    .toList());
+            List<Integer> indexes = IntStream.range(0, accepted.size()).boxed().toList();
+            jdbcTemplate.batchUpdate(COMPLETE_SQL, indexes, chunkSize, (ps, i) -> {
+                ps.setBigDecimal(1, balancesAfter.get(i));
+                ps.setTimestamp(2, now);
+                ps.setLong(3, accepted.get(i).id());
+            });
+        } else {
+            String note = " - Rejected: " + job.reason;
+            jdbcTemplate.batchUpdate(CANCEL_SQL, accepted, chunkSize, (ps, w) -> {
+                ps.setString(1, note);
+                ps.setTimestamp(2, now);
+                ps.setLong(3, w.id());
+            });
+        }
+        jdbcTemplate.batchUpdate(UNLOCK_SQL, new ArrayList<>(unlocks.entrySet()), chunkSize, (ps, e) -> {
+            ps.setBigDecimal(1, e.getValue());
+            ps.setTimestamp(2, now);
+            ps.setLong(3, e.getKey());
+        });
+        return results;
+    }
+
+    private static WithdrawalBatchItemResult result(Long id, String referenceCode, WithdrawalBatchOutcome outcome,
+                                                    String message) {
+        return WithdrawalBatchItemResult.builder()
+                .transactionId(id)
+                .referenceCode(referenceCode)
+                .outcome(outcome)
+                .message(message)
+                .build();
+    }
+
+    private static final class Job {
+        private final String id;
+        private final WithdrawalBatchAction action;
+        private final String reason;
+        private final List<Long> transactionIds;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final List<WithdrawalBatchItemResult> results = new ArrayList<>();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private int approved;
+        private int rejected;
+        private int skipped;
+        private int failed;
+        private volatile LocalDateTime finishedAt;
+        private volatile String errorMessage;
+
+        private Job(String id, WithdrawalBatchAction action, String reason, List<Long> transactionIds) {
+            this.id = id;
+            this.action = action;
+            this.reason = reason;
+            this.transactionIds = transactionIds;
+        }
+
+        private synchronized void publishChunk(List<WithdrawalBatchItemResult> chunkResults) {
+            for (WithdrawalBatchItemResult result : chunkResults) {
+                switch (result.getOutcome()) {
+                    case APPROVED -> approved++;
+                    case REJECTED -> rejected++;
+                    case SKIPPED -> skipped++;
+                    case FAILED -> failed++;
+                }
+            }
+            results.addAll(chunkResults);
+
+            WithdrawalBatchResponse event = snapshot(false);
+            event.setItems(chunkResults);
+            send("chunk", event, false);
+        }
+
+        private synchronized void finish() {
+            finishedAt = LocalDateTime.now();
+            send("done", snapshot(false), true);
+        }
+
+        private void send(String name, WithdrawalBatchResponse data, boolean complete) {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name(name).data(data));
+                    if (complete) {
+                        emitter.complete();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; the job carries on and the summary stays available
+                    emitters.remove(emitter);
+                }
+            }
+        }
+
+        private synchronized WithdrawalBatchResponse snapshot(boolean withItems) {
+            return WithdrawalBatchResponse.builder()
+                    .jobId(id)
+                    .action(action)
+                    .finished(finishedAt != null)
+                    .total(transactionIds.size())
+                    .processed(results.size())
+                    .approved(approved)
+                    .rejected(rejected)
+                    .skipped(skipped)
+                    .failed(failed)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .errorMessage(errorMessage)
+                    .items(withItems ? List.copyOf(results) : null)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.nexo.server.utils;
+
+import com.nexo.server.enums.RepaymentType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Monthly amortization in whole VND.
+ *
+ * <p>Amounts are {@code long} dong and the annual rate is in basis points, so each month's
+ * interest is {@code round(remaining * bp / 120000)} in exact integer arithmetic and the
+ * principal portions always sum to the loan amount. The only floating-point step is the
+ * EMI level, computed once per loan and rounded to the dong; the last installment absorbs
+ * whatever that rounding leaves over.
+ *
+ * <p>Results are written into a caller-owned {@link Schedule}, which can be reused across
+ * loans so bulk generation allocates nothing per loan.
+ */
+public final class Amortization {
+
+    private static final long MONTHLY_RATE_DIVISOR = 12 * 10_000L;
+
+    private Amortization() {
+    }
+
+    /**
+     * Installment columns for one loan, indexed from 0. Arrays may be longer than
+     * {@link #size()} when the schedule is reused.
+     */
+    public static final class Schedule {
+        private long[] principal = new long[0];
+        private long[] interest = new long[0];
+        private long[] remaining = new long[0];
+        private int size;
+
+        public int size() {
+            return size;
+        }
+
+        public long principal(int i) {
+            return principal[i];
+        }
+
+        public long interest(int i) {
+            return interest[i];
+        }
+
+        public long total(int i) {
+            return principal[i] + interest[i];
+        }
+
+        /** Principal still outstanding after installment {@code i} is paid. */
+        public long remaining(int i) {
+            return remaining[i];
+        }
+
+        public long totalInterest() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += interest[i];
+            }
+            return sum;
+        }
+
+        private void reset(int months) {
+            if (principal.length < months) {
+                principal = new long[months];
+                interest = new long[months];
+                remaining = new long[months];
+            }
+            size = months;
+        }
+
+        private void set(int i, long principalAmount, long interestAmount, long remainingAfter) {
+            principal[i] = principalAmount;
+            interest[i] = interestAmount;
+            remaining[i] = remainingAfter;
+        }
+    }
+
+    public static Schedule compute(RepaymentType type, long principal, int annualRateBp, int months) {
+        Schedule schedule = new Schedule();
+        compute(type, principal, annualRateBp, months, schedule);
+        return schedule;
+    }
+
+    public static void compute(RepaymentType type, long principal, int annualRateBp, int months, Schedule into) {
+        if (principal <= 0 || months <= 0 || annualRateBp < 0) {
+            throw new IllegalArgumentException("Invalid loan terms: principal=" + principal
+                    + ", rateBp=" + annualRateBp + ", months=" + months);
+        }
+        into.reset(months);
+        switch (type != null ? type : RepaymentType.EMI) {
+            case EMI -> emi(principal, annualRateBp, months, into);
+            case EQUAL_PRINCIPAL -> equalPrincipal(principal, annualRateBp, months, into);
+            case INTEREST_ONLY -> interestOnly(principal, annualRateBp, months, into);
+        }
+    }
+
+    /**
+     * Amount in whole dong. VND has no minor unit, so fractional amounts are rounded.
+     */
+    public static long toVnd(BigDecimal amount) {
+        return amount.setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Annual percentage rate (e.g. 12.50) in basis points (1250).
+     */
+    public static int toBasisPoints(BigDecimal annualRate) {
+        return annualRate.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+    }
+
+    private static void emi(long principal, int rateBp, int months, Schedule into) {
+        long installment;
+        if (rateBp == 0) {
+            installment = (principal + months - 1) / months;
+        } else {
+            double r = rateBp / (double) MONTHLY_RATE_DIVISOR;
+            double growth = Math.pow(1 + r, months);
+            installment = Math.round(principal * r * growth / (growth - 1));
+        }
+        long remaining = principal;
+        for (int i = 0; i < months; i++) {
+            long interest = monthlyInterest(remaining, rateBp);
+            long principalPart = i == months - 1
+                    ? remaining
+                    : Math.min(remaining, Math.max(0, installment - interest));
+            remaining -= principalPart;
+            into.set(i, principalPart, interest, remaining);
+        }
+    }
+
+    private static void equalPrincipal(long principal, int rateBp, int months, Schedule into) {
+        // The first (principal % months) installments carry one extra dong
+        long base = principal / months;
+        long extra = principal % months;
+        long remaining = principal;
+        for (int i = 0; i < months; i++) {
+            long interest = monthlyInterest(remaining, rateBp);
+            long principalPart = base + (i < extra ? 1 : 0);
+            remaining -= principalPart;
+            into.set(i, principalPart, interest, remaining);
+        }
+    }
+
+    private static void interestOnly(long principal, int rateBp, int months, Schedule into) {
+        long interest = monthlyInterest(principal, rateBp);
+        for (int i = 0; i < months - 1; i++) {
+            into.set(i, 0, interest, principal);
+        }
+        into.set(months - 1, principal, interest, 0);
+    }
+
+    private static long monthlyInterest(long remaining, int rateBp) {
+        // Half-up rounding; remaining * bp stays far below Long.MAX_VALUE for any realistic loan
+        return (Math.multiplyExact(remaining, (long) rateBp) + MONTHLY_RATE_DIVISOR / 2) / MONTHLY_RATE_DIVISOR;
+    }
+}
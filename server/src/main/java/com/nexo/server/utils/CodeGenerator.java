@@ -1,45 +1,103 @@
 package com.nexo.server.utils;
 
 import java.security.SecureRandom;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Business codes ({@code LOAN}, {@code INV}, {@code TXN}, ...) built from a 64-bit
+ * time-ordered id: 41 bits of milliseconds since 2024-01-01, a 10-bit node id and a
+ * 12-bit per-millisecond sequence. The id is rendered as 13 Crockford base32 characters,
+ * so codes with the same prefix sort by creation time and never collide across nodes
+ * with distinct node ids.
+ */
 public class CodeGenerator {
 
     private static final SecureRandom RANDOM = new SecureRandom();
-    private static final AtomicInteger COUNTER = new AtomicInteger(0);
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final int CODE_LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    // (millis since epoch << SEQUENCE_BITS) | sequence of the last id handed out
+    private static final AtomicLong LAST_STATE = new AtomicLong();
+    private static volatile long nodeId = RANDOM.nextInt((int) MAX_NODE_ID + 1);
+
+    /**
+     * Sets this instance's node id (0-1023). Every node in a deployment needs a distinct
+     * value; until it is set a random id is used, which {@code CodeGeneratorConfig} only
+     * allows in local development.
+     */
+    public static void setNodeId(long id) {
+        if (id < 0 || id > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        nodeId = id;
+    }
+
+    public static long getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Next time-ordered id. Lock-free; when the clock stalls, steps back or a millisecond's
+     * sequence runs out, ids continue from the last one instead of waiting, so they stay
+     * strictly increasing on this node.
+     */
+    public static long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long state;
+        long next;
+        do {
+            state = LAST_STATE.get();
+            next = Math.max(state + 1, now);
+        } while (!LAST_STATE.compareAndSet(state, next));
+
+        long millis = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
 
     public static String generateLoanCode() {
-        return "LOAN" + generateCode();
+        return generateCode("LOAN");
     }
 
     public static String generateInvestmentCode() {
-        return "INV" + generateCode();
+        return generateCode("INV");
     }
 
     public static String generateTransactionCode() {
-        return "TXN" + generateCode();
+        return generateCode("TXN");
     }
 
     public static String generatePaymentCode() {
-        return "PAY" + generateCode();
+        return generateCode("PAY");
     }
 
     public static String generateRepaymentCode() {
-        return "REP" + generateCode();
+        return generateCode("REP");
     }
 
     public static String generateTicketCode() {
-        return "TKT" + generateCode();
+        return generateCode("TKT");
     }
 
-    private static String generateCode() {
-        String date = LocalDateTime.now().format(DATE_FORMAT);
-        int counter = COUNTER.incrementAndGet() % 10000;
-        int random = RANDOM.nextInt(1000);
-        return date + String.format("%04d%03d", counter, random);
+    public static String generatePostingCode() {
+        return generateCode("PST");
+    }
+
+    private static String generateCode(String prefix) {
+        long id = nextId();
+        int prefixLength = prefix.length();
+        char[] chars = new char[prefixLength + CODE_LENGTH];
+        prefix.getChars(0, prefixLength, chars, 0);
+        for (int i = chars.length - 1; i >= prefixLength; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
     }
 
     public static String generateRandomString(int length) {
@@ -0,0 +1,41 @@
+package com.nexo.server.utils;
+
+import com.nexo.server.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor over (created_at, id). Clients must treat the value as a token
+ * and only pass back what the previous page returned.
+ */
+public final class CursorCodec {
+
+    private CursorCodec() {
+    }
+
+    public record Cursor(LocalDateTime createdAt, Long id) {
+    }
+
+    public static String encode(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or {@code null} for a blank value (first page)
+     */
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.nexo.server.utils;
+
+import java.math.BigInteger;
+
+/**
+ * Splits a whole-VND amount across weights so the parts sum to exactly the amount.
+ *
+ * <p>Largest-remainder allocation: each part starts at {@code floor(amount * w / W)},
+ * and the few dong that flooring leaves over go one each to the parts with the largest
+ * remainders, ties to the lower index. Every part is within one dong of its exact
+ * proportional value. Arithmetic is on {@code long}, falling back to {@link BigInteger}
+ * only for products that overflow.
+ *
+ * <p>An instance keeps scratch buffers, so repeated splits through one instance
+ * allocate nothing once the buffers are large enough. Instances are not thread-safe.
+ */
+public final class ProRata {
+
+    private long[] remainders = new long[0];
+    private long[] selection = new long[0];
+
+    /**
+     * Split into a new array. Convenient for one-off splits.
+     */
+    public static long[] split(long amount, long... weights) {
+        long[] parts = new long[weights.length];
+        new ProRata().allocate(amount, weights, weights.length, parts);
+        return parts;
+    }
+
+    /**
+     * Write the parts of {@code amount} for the first {@code n} weights into {@code into}.
+     *
+     * @throws IllegalArgumentException if the amount or a weight is negative, or all weights are zero
+     */
+    public void allocate(long amount, long[] weights, int n, long[] into) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative: " + amount);
+        }
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("Weight must not be negative: " + weights[i]);
+            }
+            total = Math.addExact(total, weights[i]);
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Weights must not all be zero");
+        }
+        if (remainders.length < n) {
+            remainders = new long[n];
+            selection = new long[n];
+        }
+
+        long left = amount;
+        for (int i = 0; i < n; i++) {
+            long quotient;
+            long remainder;
+            long high = Math.multiplyHigh(amount, weights[i]);
+            long low = amount * weights[i];
+            if (high == 0 && low >= 0) {
+                quotient = low / total;
+                remainder = low % total;
+            } else {
+                BigInteger[] qr = BigInteger.valueOf(amount).multiply(BigInteger.valueOf(weights[i]))
+                        .divideAndRemainder(BigInteger.valueOf(total));
+                quotient = qr[0].longValueExact();
+                remainder = qr[1].longValueExact();
+            }
+            into[i] = quotient;
+            remainders[i] = remainder;
+            left -= quotient;
+        }
+        if (left == 0) {
+            return;
+        }
+
+        // left < n: find the left-th largest remainder, bump everything above it, then ties by index
+        System.arraycopy(remainders, 0, selection, 0, n);
+        long threshold = select(selection, n, n - (int) left);
+        int bumped = 0;
+        for (int i = 0; i < n; i++) {
+            if (remainders[i] > threshold) {
+                into[i]++;
+                bumped++;
+            }
+        }
+        for (int i = 0; i < n && bumped < left; i++) {
+            if (remainders[i] == threshold) {
+                into[i]++;
+                bumped++;
+            }
+        }
+    }
+
+    /**
+     * The k-th smallest of {@code values[0..n)}, 0-based; reorders the array (quickselect).
+     */
+    private static long select(long[] values, int n, int k) {
+        int lo = 0;
+        int hi = n - 1;
+        while (lo < hi) {
+            long pivot = values[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+}
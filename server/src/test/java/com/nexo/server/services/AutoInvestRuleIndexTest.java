@@ -0,0 +1,75 @@
+package com.nexo.server.services;
+
+import com.nexo.server.enums.LoanPurpose;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AutoInvestRuleIndexTest {
+
+    @Test
+    void matchesTheSameRulesAsAFullScan() {
+        Random random = new Random(7);
+        LoanPurpose[] purposes = LoanPurpose.values();
+        List<AutoInvestRuleIndex.Rule> rules = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            Set<String> grades = new HashSet<>();
+            for (String grade : AutoInvestRuleIndex.GRADES) {
+                if (random.nextInt(3) == 0) {
+                    grades.add(grade);
+                }
+            }
+            rules.add(new AutoInvestRuleIndex.Rule(i, grades,
+                    random.nextInt(3) == 0 ? null : purposes[random.nextInt(purposes.length)],
+                    random.nextInt(3) == 0 ? null : BigDecimal.valueOf(500 + random.nextInt(1_500), 2),
+                    random.nextInt(3) == 0 ? null : BigDecimal.valueOf(800 + random.nextInt(2_000), 2),
+                    random.nextInt(3) == 0 ? null : 1 + random.nextInt(24),
+                    random.nextInt(3) == 0 ? null : 6 + random.nextInt(54)));
+        }
+        AutoInvestRuleIndex index = AutoInvestRuleIndex.build(rules);
+
+        for (int round = 0; round < 2_000; round++) {
+            String grade = random.nextInt(6) < 5 ? AutoInvestRuleIndex.GRADES.get(random.nextInt(5)) : null;
+            LoanPurpose purpose = purposes[random.nextInt(purposes.length)];
+            BigDecimal rate = BigDecimal.valueOf(400 + random.nextInt(2_500), 2);
+            int term = 1 + random.nextInt(60);
+
+            assertThat(index.match(grade, purpose, rate, term))
+                    .containsExactlyInAnyOrderElementsOf(scan(rules, grade, purpose, rate, term));
+        }
+    }
+
+    @Test
+    void rulesWithoutLimitsMatchEveryLoan() {
+        AutoInvestRuleIndex index = AutoInvestRuleIndex.build(List.of(
+                new AutoInvestRuleIndex.Rule(1, Set.of(), null, null, null, null, null),
+                new AutoInvestRuleIndex.Rule(2, Set.of("A"), LoanPurpose.values()[0], null, null, null, null)));
+
+        assertThat(index.match("A", LoanPurpose.values()[0], new BigDecimal("12.00"), 12)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.match(null, null, new BigDecimal("0.01"), 1)).containsExactly(1L);
+    }
+
+    private static List<Long> scan(List<AutoInvestRuleIndex.Rule> rules, String grade, LoanPurpose purpose,
+                                   BigDecimal rate, int term) {
+        List<Long> matches = new ArrayList<>();
+        for (AutoInvestRuleIndex.Rule rule : rules) {
+            boolean accepts = (rule.grades().isEmpty() || grade != null && rule.grades().contains(grade))
+                    && (rule.purpose() == null || rule.purpose() == purpose)
+                    && (rule.minRate() == null || rule.minRate().compareTo(rate) <= 0)
+                    && (rule.maxRate() == null || rule.maxRate().compareTo(rate) >= 0)
+                    && (rule.minTerm() == null || rule.minTerm() <= term)
+                    && (rule.maxTerm() == null || rule.maxTerm() >= term);
+            if (accepts) {
+                matches.add(rule.id());
+            }
+        }
+        return matches;
+    }
+}
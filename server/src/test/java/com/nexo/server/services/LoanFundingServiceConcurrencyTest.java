@@ -0,0 +1,235 @@
+package com.nexo.server.services;
+
+import com.nexo.server.dto.investment.InvestRequest;
+import com.nexo.server.dto.investment.InvestmentResponse;
+import com.nexo.server.entities.Loan;
+import com.nexo.server.entities.User;
+import com.nexo.server.entities.Wallet;
+import com.nexo.server.enums.KycStatus;
+import com.nexo.server.enums.LoanPurpose;
+import com.nexo.server.enums.LoanStatus;
+import com.nexo.server.enums.TransactionType;
+import com.nexo.server.enums.UserRole;
+import com.nexo.server.enums.UserStatus;
+import com.nexo.server.exceptions.BaseException;
+import com.nexo.server.repositories.LoanRepository;
+import com.nexo.server.repositories.UserRepository;
+import com.nexo.server.repositories.WalletRepository;
+import com.nexo.server.utils.CodeGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A thousand funded lenders invest in one loan at once through
+ * {@link InvestmentService#createInvestment}, against the real database. The row lock taken
+ * by the funding reservation must keep the loan from being over-funded, and only the
+ * investment that fills it may disburse: one LOAN_DISBURSEMENT and one repayment schedule.
+ *
+ * <p>Every run creates its own users and loan; the rows are left in the test database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=32",
+        "spring.datasource.hikari.connection-timeout=180000"
+})
+@ActiveProfiles("test")
+class LoanFundingServiceConcurrencyTest {
+
+    private static final int INVESTORS = 1_000;
+    private static final int TERM_MONTHS = 12;
+    private static final BigDecimal STAKE = new BigDecimal("200000.00");
+    // Half the investors fit
+    private static final BigDecimal REQUESTED = STAKE.multiply(BigDecimal.valueOf(INVESTORS / 2));
+    private static final BigDecimal WALLET_FUNDING = new BigDecimal("2000000.00");
+
+    @Autowired
+    private InvestmentService investmentService;
+
+    @Autowired
+    private LoanFundingService loanFundingService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Loan loan;
+    private List<Long> lenderIds;
+
+    @BeforeEach
+    void setUp() {
+        User borrower = userRepository.save(user(UserRole.BORROWER));
+        walletRepository.save(Wallet.builder().user(borrower).build());
+        loan = loanRepository.save(Loan.builder()
+                .loanCode(CodeGenerator.generateLoanCode())
+                .borrower(borrower)
+                .title("Funding race")
+                .purpose(LoanPurpose.PERSONAL)
+                .requestedAmount(REQUESTED)
+                .interestRate(new BigDecimal("12.00"))
+                .termMonths(TERM_MONTHS)
+                .status(LoanStatus.FUNDING)
+                .build());
+
+        List<User> lenders = new ArrayList<>(INVESTORS);
+        for (int i = 0; i < INVESTORS; i++) {
+            lenders.add(user(UserRole.LENDER));
+        }
+        lenders = userRepository.saveAll(lenders);
+        walletRepository.saveAll(lenders.stream().map(lender -> Wallet.builder().user(lender).build()).toList());
+        lenderIds = lenders.stream().map(User::getId).toList();
+        // Fund through the ledger, as a real deposit would
+        for (Long lenderId : lenderIds) {
+            walletService.createTransaction(lenderId, TransactionType.DEPOSIT, WALLET_FUNDING, BigDecimal.ZERO,
+                    "Funding race deposit");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        loanFundingService.release(loan.getId());
+    }
+
+    @Test
+    void investorsRacingForTheSameStakeFillTheLoanAndDisburseOnce() throws Exception {
+        List<InvestmentResponse> placed = race(i -> STAKE);
+
+        assertThat(placed).hasSize(INVESTORS / 2);
+        assertThat(fundedAmount()).isEqualByComparingTo(REQUESTED);
+        assertThat(investedAmount()).isEqualByComparingTo(REQUESTED);
+        assertDisbursedOnce();
+        assertLendersDebited(placed);
+    }
+
+    @Test
+    void investorsRacingWithMixedAmountsNeverOverFund() throws Exception {
+        // 100k..1.099M each: most fit early, the last few must not push past the requested amount
+        List<InvestmentResponse> placed = race(i -> new BigDecimal(100_000 + 1_000 * i));
+
+        BigDecimal reserved = placed.stream().map(InvestmentResponse::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(placed).isNotEmpty();
+        assertThat(fundedAmount()).isEqualByComparingTo(reserved).isLessThanOrEqualTo(REQUESTED);
+        assertThat(investedAmount()).isEqualByComparingTo(reserved);
+        if (reserved.compareTo(REQUESTED) == 0) {
+            assertDisbursedOnce();
+        } else {
+            assertThat(disbursements()).isZero();
+            assertThat(scheduleRows().get("installments")).isEqualTo(0L);
+        }
+        assertLendersDebited(placed);
+    }
+
+    /**
+     * Start every investor at once, each investing in its own transaction.
+     *
+     * @return the investments that committed
+     */
+    private List<InvestmentResponse> race(IntFunction<BigDecimal> amountOf) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(INVESTORS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<InvestmentResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < INVESTORS; i++) {
+                Long lenderId = lenderIds.get(i);
+                InvestRequest request = InvestRequest.builder().loanId(loan.getId()).amount(amountOf.apply(i)).build();
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        return investmentService.createInvestment(lenderId, request);
+                    } catch (BaseException e) {
+                        // Rejected: the loan is full or the amount no longer fits
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<InvestmentResponse> placed = new ArrayList<>();
+            for (Future<InvestmentResponse> future : futures) {
+                InvestmentResponse investment = future.get(5, TimeUnit.MINUTES);
+                if (investment != null) {
+                    placed.add(investment);
+                }
+            }
+            return placed;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void assertDisbursedOnce() {
+        assertThat(disbursements()).isEqualTo(1);
+        Map<String, Object> schedule = scheduleRows();
+        assertThat(schedule.get("installments")).isEqualTo((long) TERM_MONTHS);
+        assertThat(schedule.get("numbers")).isEqualTo((long) TERM_MONTHS);
+        assertThat(loanRepository.findById(loan.getId()).orElseThrow().getStatus()).isEqualTo(LoanStatus.ACTIVE);
+    }
+
+    private void assertLendersDebited(List<InvestmentResponse> placed) {
+        BigDecimal debited = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(? - balance), 0) FROM wallets WHERE user_id = ANY(?)",
+                BigDecimal.class, WALLET_FUNDING, lenderIds.toArray(Long[]::new));
+        assertThat(debited).isEqualByComparingTo(investedAmount());
+        assertThat(placed.stream().map(InvestmentResponse::getId).distinct()).hasSize(placed.size());
+    }
+
+    private BigDecimal fundedAmount() {
+        return jdbcTemplate.queryForObject("SELECT funded_amount FROM loans WHERE id = ?", BigDecimal.class, loan.getId());
+    }
+
+    private BigDecimal investedAmount() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM investments WHERE loan_id = ? AND status = 'ACTIVE'",
+                BigDecimal.class, loan.getId());
+    }
+
+    private int disbursements() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transactions WHERE loan_id = ? AND type = 'LOAN_DISBURSEMENT'",
+                Integer.class, loan.getId());
+    }
+
+    private Map<String, Object> scheduleRows() {
+        return jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS installments, COUNT(DISTINCT installment_number) AS numbers " +
+                "FROM repayment_schedules WHERE loan_id = ?", loan.getId());
+    }
+
+    private static User user(UserRole role) {
+        return User.builder()
+                .uuid(UUID.randomUUID().toString())
+                .email("funding-race-" + UUID.randomUUID() + "@test.local")
+                .role(role)
+                .status(UserStatus.ACTIVE)
+                .kycStatus(KycStatus.APPROVED)
+                .build();
+    }
+}
@@ -0,0 +1,116 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.Loan;
+import com.nexo.server.entities.User;
+import com.nexo.server.enums.LoanPurpose;
+import com.nexo.server.enums.LoanStatus;
+import com.nexo.server.enums.UserRole;
+import com.nexo.server.enums.UserStatus;
+import com.nexo.server.repositories.LoanRepository;
+import com.nexo.server.repositories.UserRepository;
+import com.nexo.server.utils.CodeGenerator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards {@link LoanService#toLoanResponses} against N+1 regressions: mapping a page of
+ * loans must cost the same number of statements whatever the page size.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Transactional
+class LoanServiceQueryCountTest {
+
+    // Investor counts, next unpaid installments, borrower summaries
+    private static final long STATEMENTS_PER_PAGE = 3;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> loanIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        List<User> borrowers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            borrowers.add(userRepository.save(User.builder()
+                    .uuid(UUID.randomUUID().toString())
+                    .email("query-count-" + UUID.randomUUID() + "@test.local")
+                    .firstName("Borrower")
+                    .lastName(String.valueOf(i))
+                    .role(UserRole.BORROWER)
+                    .status(UserStatus.ACTIVE)
+                    .build()));
+        }
+        for (int i = 0; i < 20; i++) {
+            loanIds.add(loanRepository.save(Loan.builder()
+                    .loanCode(CodeGenerator.generateLoanCode())
+                    .borrower(borrowers.get(i % borrowers.size()))
+                    .title("Query count " + i)
+                    .purpose(LoanPurpose.PERSONAL)
+                    .requestedAmount(new BigDecimal("10000000.00"))
+                    .interestRate(new BigDecimal("12.00"))
+                    .termMonths(12)
+                    .status(LoanStatus.FUNDING)
+                    .build()).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void pageOfLoansMapsWithAFixedNumberOfStatements() {
+        assertThat(statementsToMap(loanIds.subList(0, 1))).isEqualTo(STATEMENTS_PER_PAGE);
+        assertThat(statementsToMap(loanIds)).isEqualTo(STATEMENTS_PER_PAGE);
+    }
+
+    @Test
+    void borrowerFieldsComeFromTheProjection() {
+        List<Loan> loans = loanRepository.findAllById(loanIds);
+
+        loanService.toLoanResponses(loans).forEach(response -> {
+            assertThat(response.getBorrowerId()).isNotNull();
+            assertThat(response.getBorrowerName()).matches("B\\*\\*\\*[0-4]");
+        });
+        loans.forEach(loan -> assertThat(entityManagerFactory.getPersistenceUnitUtil()
+                .isLoaded(loan.getBorrower())).isFalse());
+    }
+
+    private long statementsToMap(List<Long> ids) {
+        entityManager.clear();
+        List<Loan> loans = loanRepository.findAllById(ids);
+        assertThat(loans).hasSize(ids.size());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertThat(loanService.toLoanResponses(loans)).hasSize(ids.size());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,135 @@
+package com.nexo.server.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderBookTest {
+
+    private final OrderBook book = new OrderBook();
+
+    @Test
+    void nonCrossingOrdersRest() {
+        assertThat(book.submit(1, true, 99, 10, 100)).isZero();
+        assertThat(book.submit(2, false, 101, 10, 200)).isZero();
+        assertThat(book.isEmpty()).isFalse();
+    }
+
+    @Test
+    void buyFillsBestAskFirstAtTheMakerPrice() {
+        book.submit(1, false, 102, 5, 200);
+        book.submit(2, false, 100, 5, 201);
+        book.submit(3, false, 101, 5, 202);
+
+        int fills = book.submit(4, true, 102, 12, 100);
+
+        assertThat(fills).isEqualTo(3);
+        assertFill(0, 2, 5, 100);
+        assertFill(1, 3, 5, 101);
+        assertFill(2, 1, 2, 102);
+    }
+
+    @Test
+    void ordersAtOnePriceFillOldestFirst() {
+        book.submit(1, true, 100, 5, 200);
+        book.submit(2, true, 100, 5, 201);
+        book.submit(3, true, 100, 5, 202);
+
+        int fills = book.submit(4, false, 100, 7, 100);
+
+        assertThat(fills).isEqualTo(2);
+        assertFill(0, 1, 5, 100);
+        assertFill(1, 2, 2, 100);
+    }
+
+    @Test
+    void limitPriceStopsMatching() {
+        book.submit(1, false, 100, 5, 200);
+        book.submit(2, false, 105, 5, 201);
+
+        assertThat(book.submit(3, true, 103, 10, 100)).isEqualTo(1);
+        assertFill(0, 1, 5, 100);
+
+        // The unfilled 5 rests as a bid at 103 and is hit by the next seller
+        assertThat(book.submit(4, false, 103, 5, 202)).isEqualTo(1);
+        assertFill(0, 3, 5, 103);
+    }
+
+    @Test
+    void ownOrdersAreSkipped() {
+        book.submit(1, false, 100, 5, 100);
+        book.submit(2, false, 101, 5, 200);
+
+        assertThat(book.submit(3, true, 101, 5, 100)).isEqualTo(1);
+        assertFill(0, 2, 5, 101);
+
+        // The skipped order is still on the book
+        assertThat(book.submit(4, true, 100, 5, 300)).isEqualTo(1);
+        assertFill(0, 1, 5, 100);
+    }
+
+    @Test
+    void cancelledOrdersNoLongerMatch() {
+        book.submit(1, false, 100, 5, 200);
+
+        assertThat(book.cancel(1)).isTrue();
+        assertThat(book.cancel(1)).isFalse();
+        assertThat(book.isEmpty()).isTrue();
+        assertThat(book.submit(2, true, 100, 5, 100)).isZero();
+    }
+
+    @Test
+    void depthAggregatesLevelsBestFirst() {
+        book.submit(1, true, 98, 3, 200);
+        book.submit(2, true, 100, 4, 201);
+        book.submit(3, true, 100, 6, 202);
+        book.submit(4, true, 99, 1, 203);
+
+        int[] prices = new int[2];
+        long[] quantities = new long[2];
+        int[] counts = new int[2];
+        int levels = book.depth(true, prices, quantities, counts);
+
+        assertThat(levels).isEqualTo(2);
+        assertThat(prices).containsExactly(100, 99);
+        assertThat(quantities).containsExactly(10, 1);
+        assertThat(counts).containsExactly(2, 1);
+    }
+
+    @Test
+    void sidesAndFillsGrowPastInitialCapacity() {
+        int makers = 100;
+        for (int i = 0; i < makers; i++) {
+            book.submit(i + 1, false, 100 + (i % 7), 1, 1000 + i);
+        }
+
+        int fills = book.submit(10_000, true, 200, makers, 1);
+
+        assertThat(fills).isEqualTo(makers);
+        long filled = 0;
+        int lastPrice = 0;
+        for (int i = 0; i < fills; i++) {
+            assertThat(book.fillPrice(i)).isGreaterThanOrEqualTo(lastPrice);
+            lastPrice = book.fillPrice(i);
+            filled += book.fillQuantity(i);
+        }
+        assertThat(filled).isEqualTo(makers);
+        assertThat(book.isEmpty()).isTrue();
+    }
+
+    @Test
+    void clearEmptiesBothSides() {
+        book.submit(1, true, 99, 5, 100);
+        book.submit(2, false, 101, 5, 200);
+
+        book.clear();
+
+        assertThat(book.isEmpty()).isTrue();
+    }
+
+    private void assertFill(int i, long makerId, long quantity, int price) {
+        assertThat(book.fillMakerId(i)).isEqualTo(makerId);
+        assertThat(book.fillQuantity(i)).isEqualTo(quantity);
+        assertThat(book.fillPrice(i)).isEqualTo(price);
+    }
+}
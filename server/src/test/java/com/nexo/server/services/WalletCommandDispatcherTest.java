@@ -0,0 +1,246 @@
+package com.nexo.server.services;
+
+import com.nexo.server.entities.User;
+import com.nexo.server.entities.Wallet;
+import com.nexo.server.exceptions.BusinessException;
+import com.nexo.server.repositories.WalletRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WalletCommandDispatcherTest {
+
+    private static final Long USER_ID = 1L;
+    private static final int COLD_WALLETS = 10_000;
+
+    private WalletRepository walletRepository;
+    private Wallet wallet;
+    private WalletCommandDispatcher dispatcher;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        User user = User.builder().build();
+        user.setId(USER_ID);
+        wallet = Wallet.builder().user(user).build();
+
+        walletRepository = mock(WalletRepository.class);
+        when(walletRepository.findAllByUserIdInForUpdate(any())).thenReturn(List.of(wallet));
+        callers = Executors.newFixedThreadPool(16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void hotWalletUnderContentionAppliesEveryCommandExactlyOnce() throws Exception {
+        startDispatcher(4, 64, 30_000);
+        int threads = 16;
+        int commandsPerThread = 500;
+
+        run(threads * commandsPerThread, i -> USER_ID);
+
+        assertThat(wallet.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(threads * commandsPerThread));
+    }
+
+    @Test
+    void hotWalletCoalescesLocksThatTenThousandColdWalletsCannot() throws Exception {
+        Map<Long, Wallet> wallets = new HashMap<>();
+        for (long userId = 1; userId <= COLD_WALLETS; userId++) {
+            User user = User.builder().build();
+            user.setId(userId);
+            wallets.put(userId, Wallet.builder().user(user).build());
+        }
+        AtomicInteger locks = new AtomicInteger();
+        when(walletRepository.findAllByUserIdInForUpdate(any())).thenAnswer(invocation -> {
+            locks.incrementAndGet();
+            // Stands in for the lock round trip, so commands queue up behind a running batch
+            Thread.sleep(1);
+            Collection<Long> userIds = invocation.getArgument(0);
+            return userIds.stream().map(wallets::get).toList();
+        });
+        startDispatcher(4, 64, 30_000);
+
+        // Same command count both ways: one deposit into each of 10k wallets, then 10k into one
+        long coldMs = run(COLD_WALLETS, i -> 1L + i);
+        int coldLocks = locks.getAndSet(0);
+        long hotMs = run(COLD_WALLETS, i -> USER_ID);
+        int hotLocks = locks.get();
+
+        wallets.forEach((userId, w) -> assertThat(w.getBalance())
+                .isEqualByComparingTo(userId.equals(USER_ID) ? BigDecimal.valueOf(COLD_WALLETS + 1) : BigDecimal.ONE));
+        String summary = String.format("cold: %d locks in %d ms, hot: %d locks in %d ms",
+                coldLocks, coldMs, hotLocks, hotMs);
+        assertThat(coldLocks).as(summary).isLessThanOrEqualTo(COLD_WALLETS);
+        // One lane serves the hot wallet, yet it pays well under one lock per command and
+        // fewer than the cold wallets, whose commands spread thinly over every lane
+        assertThat(hotLocks).as(summary).isLessThan(COLD_WALLETS / 2).isLessThan(coldLocks);
+    }
+
+    @Test
+    void queuedCommandsForOneWalletShareALockAndCommit() throws Exception {
+        startDispatcher(1, 64, 30_000);
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> first = callers.submit(() -> dispatcher.execute(USER_ID, w -> {
+            blocking.countDown();
+            await(release);
+            return null;
+        }));
+        assertThat(blocking.await(5, TimeUnit.SECONDS)).isTrue();
+
+        int queued = 10;
+        List<Future<?>> rest = new ArrayList<>();
+        for (int i = 0; i < queued; i++) {
+            rest.add(callers.submit(() -> dispatcher.execute(USER_ID, w -> {
+                w.deposit(BigDecimal.ONE);
+                return null;
+            })));
+        }
+        awaitQueueSize(queued);
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        for (Future<?> result : rest) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(wallet.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(queued));
+        // One lock for the blocking command, one for everything queued behind it
+        verify(walletRepository, atMost(2)).findAllByUserIdInForUpdate(any());
+    }
+
+    @Test
+    void commandThatTimesOutInTheQueueNeverRuns() throws Exception {
+        startDispatcher(1, 64, 200);
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> first = callers.submit(() -> dispatcher.execute(USER_ID, w -> {
+            blocking.countDown();
+            await(release);
+            return "done";
+        }));
+        assertThat(blocking.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicBoolean ran = new AtomicBoolean();
+        assertThatThrownBy(() -> dispatcher.execute(USER_ID, w -> {
+            ran.set(true);
+            return null;
+        })).isInstanceOf(BusinessException.class);
+
+        release.countDown();
+        // The blocking command was already claimed, so its caller outlives the timeout and gets the result
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+
+        // A later command on the same lane runs only after anything still queued ahead of it
+        dispatcher.execute(USER_ID, w -> null);
+        assertThat(ran).isFalse();
+    }
+
+    /**
+     * Submit {@code commands} one-dong deposits from 16 threads at once.
+     *
+     * @return elapsed milliseconds
+     */
+    private long run(int commands, IntFunction<Long> userIdOf) throws Exception {
+        int threads = 16;
+        long started = System.nanoTime();
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            results.add(callers.submit(() -> {
+                for (int i = first; i < commands; i += threads) {
+                    dispatcher.execute(userIdOf.apply(i), w -> {
+                        w.deposit(BigDecimal.ONE);
+                        return null;
+                    });
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    private void startDispatcher(int lanes, int batchSize, long timeoutMs) {
+        dispatcher = new WalletCommandDispatcher(walletRepository, new NoOpTransactionManager());
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "laneCount", lanes);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", batchSize);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 10_000);
+        ReflectionTestUtils.setField(dispatcher, "timeoutMs", timeoutMs);
+        dispatcher.start();
+    }
+
+    private void awaitQueueSize(int size) throws InterruptedException {
+        Object[] lanes = (Object[]) ReflectionTestUtils.getField(dispatcher, "lanes");
+        BlockingQueue<?> queue = (BlockingQueue<?>) ReflectionTestUtils.getField(lanes[0], "queue");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (queue.size() < size) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Stands in for the JPA transaction manager; the repository is a mock. */
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
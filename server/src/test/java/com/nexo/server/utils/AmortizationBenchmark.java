@@ -0,0 +1,114 @@
+package com.nexo.server.utils;
+
+import com.nexo.server.enums.RepaymentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to compute schedules for 100k loans with {@link Amortization}, reusing one
+ * {@link Amortization.Schedule}, against the {@code BigDecimal.pow} EMI loop it replaced.
+ * Only the arithmetic is measured; persistence is a JDBC batch either way.
+ *
+ * <p>Run with {@code main} from the test classpath after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AmortizationBenchmark {
+
+    private static final int LOANS = 100_000;
+
+    private long[] principals;
+    private int[] ratesBp;
+    private int[] terms;
+
+    /**
+     * Repayment type and reused schedule for the engine; the legacy loop only did EMI.
+     */
+    @State(Scope.Thread)
+    public static class Engine {
+        @Param({"EMI", "EQUAL_PRINCIPAL", "INTEREST_ONLY"})
+        private RepaymentType type;
+
+        private final Amortization.Schedule schedule = new Amortization.Schedule();
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(17);
+        principals = new long[LOANS];
+        ratesBp = new int[LOANS];
+        terms = new int[LOANS];
+        for (int i = 0; i < LOANS; i++) {
+            // 5M..500M VND at 8-24% over 3-36 months
+            principals[i] = 5_000_000L + random.nextInt(495_000_000);
+            ratesBp[i] = 800 + random.nextInt(1_601);
+            terms[i] = 3 + random.nextInt(34);
+        }
+    }
+
+    @Benchmark
+    public long engine(Engine engine) {
+        long checksum = 0;
+        for (int i = 0; i < LOANS; i++) {
+            Amortization.compute(engine.type, principals[i], ratesBp[i], terms[i], engine.schedule);
+            checksum += engine.schedule.totalInterest();
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public BigDecimal legacyEmi() {
+        BigDecimal checksum = BigDecimal.ZERO;
+        for (int i = 0; i < LOANS; i++) {
+            checksum = checksum.add(legacyTotalInterest(BigDecimal.valueOf(principals[i]),
+                    BigDecimal.valueOf(ratesBp[i], 2), terms[i]));
+        }
+        return checksum;
+    }
+
+    /**
+     * The previous schedule loop, without building entities: EMI through
+     * {@code BigDecimal.pow} at scale 10, each month rounded HALF_UP to cents.
+     */
+    private static BigDecimal legacyTotalInterest(BigDecimal principal, BigDecimal annualRate, int termMonths) {
+        BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(12 * 100), 10, RoundingMode.HALF_UP);
+        BigDecimal onePlusRPowN = BigDecimal.ONE.add(monthlyRate).pow(termMonths);
+        BigDecimal emi = principal.multiply(monthlyRate).multiply(onePlusRPowN)
+                .divide(onePlusRPowN.subtract(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
+
+        BigDecimal remainingPrincipal = principal;
+        BigDecimal totalInterest = BigDecimal.ZERO;
+        for (int i = 1; i <= termMonths; i++) {
+            BigDecimal interestAmount = remainingPrincipal.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal principalAmount = i == termMonths ? remainingPrincipal : emi.subtract(interestAmount);
+            remainingPrincipal = remainingPrincipal.subtract(principalAmount);
+            totalInterest = totalInterest.add(interestAmount);
+        }
+        return totalInterest;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AmortizationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,125 @@
+package com.nexo.server.utils;
+
+import com.nexo.server.enums.RepaymentType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AmortizationTest {
+
+    @Test
+    void emiInstallmentsAreLevelAndTheLastAbsorbsRounding() {
+        Amortization.Schedule schedule = Amortization.compute(RepaymentType.EMI, 12_000_000, 1200, 12);
+
+        assertThat(schedule.size()).isEqualTo(12);
+        for (int i = 0; i < 11; i++) {
+            assertThat(schedule.total(i)).isEqualTo(1_066_185);
+        }
+        assertThat(schedule.total(11)).isEqualTo(1_066_191);
+        assertThat(schedule.interest(0)).isEqualTo(120_000);
+        assertThat(schedule.totalInterest()).isEqualTo(794_226);
+    }
+
+    @Test
+    void equalPrincipalSpreadsTheOddDongOverTheFirstInstallments() {
+        Amortization.Schedule schedule = Amortization.compute(RepaymentType.EQUAL_PRINCIPAL, 1_001, 1200, 3);
+
+        assertThat(schedule.principal(0)).isEqualTo(334);
+        assertThat(schedule.principal(1)).isEqualTo(334);
+        assertThat(schedule.principal(2)).isEqualTo(333);
+    }
+
+    @Test
+    void interestOnlyRepaysPrincipalWithTheLastInstallment() {
+        Amortization.Schedule schedule = Amortization.compute(RepaymentType.INTEREST_ONLY, 12_000_000, 1200, 12);
+
+        for (int i = 0; i < 11; i++) {
+            assertThat(schedule.principal(i)).isZero();
+            assertThat(schedule.interest(i)).isEqualTo(120_000);
+            assertThat(schedule.remaining(i)).isEqualTo(12_000_000);
+        }
+        assertThat(schedule.principal(11)).isEqualTo(12_000_000);
+        assertThat(schedule.totalInterest()).isEqualTo(1_440_000);
+    }
+
+    @Test
+    void zeroRateEmiRepaysPrincipalOnly() {
+        Amortization.Schedule schedule = Amortization.compute(RepaymentType.EMI, 1_000, 0, 3);
+
+        assertThat(schedule.principal(0)).isEqualTo(334);
+        assertThat(schedule.principal(1)).isEqualTo(334);
+        assertThat(schedule.principal(2)).isEqualTo(332);
+        assertThat(schedule.totalInterest()).isZero();
+    }
+
+    @ParameterizedTest
+    @EnumSource(RepaymentType.class)
+    void principalPortionsSumToTheLoanAndRemainingRunsDownToZero(RepaymentType type) {
+        long[] principals = {1, 999, 5_000_000, 123_456_789, 2_000_000_000L};
+        int[] rates = {0, 1, 850, 1999, 3600};
+        int[] terms = {1, 3, 12, 36, 60};
+        for (long principal : principals) {
+            for (int rate : rates) {
+                for (int months : terms) {
+                    Amortization.Schedule schedule = Amortization.compute(type, principal, rate, months);
+
+                    long repaid = 0;
+                    long previous = principal;
+                    for (int i = 0; i < schedule.size(); i++) {
+                        assertThat(schedule.principal(i)).isNotNegative();
+                        assertThat(schedule.interest(i)).isNotNegative();
+                        repaid += schedule.principal(i);
+                        assertThat(schedule.remaining(i)).isEqualTo(principal - repaid).isLessThanOrEqualTo(previous);
+                        previous = schedule.remaining(i);
+                    }
+                    assertThat(repaid).isEqualTo(principal);
+                    assertThat(schedule.remaining(months - 1)).isZero();
+                }
+            }
+        }
+    }
+
+    @Test
+    void reusedScheduleMatchesAFreshOne() {
+        Amortization.Schedule reused = new Amortization.Schedule();
+        Amortization.compute(RepaymentType.EMI, 50_000_000, 1500, 60, reused);
+        Amortization.compute(RepaymentType.EQUAL_PRINCIPAL, 7_000_000, 1000, 6, reused);
+
+        Amortization.Schedule fresh = Amortization.compute(RepaymentType.EQUAL_PRINCIPAL, 7_000_000, 1000, 6);
+        assertThat(reused.size()).isEqualTo(6);
+        for (int i = 0; i < 6; i++) {
+            assertThat(reused.principal(i)).isEqualTo(fresh.principal(i));
+            assertThat(reused.interest(i)).isEqualTo(fresh.interest(i));
+            assertThat(reused.remaining(i)).isEqualTo(fresh.remaining(i));
+        }
+        assertThat(reused.totalInterest()).isEqualTo(fresh.totalInterest());
+    }
+
+    @Test
+    void missingTypeDefaultsToEmi() {
+        assertThat(Amortization.compute(null, 12_000_000, 1200, 12).total(0)).isEqualTo(1_066_185);
+    }
+
+    @Test
+    void invalidTermsAreRejected() {
+        assertThatThrownBy(() -> Amortization.compute(RepaymentType.EMI, 0, 1200, 12))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Amortization.compute(RepaymentType.EMI, 1_000, 1200, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Amortization.compute(RepaymentType.EMI, 1_000, -1, 12))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void convertsDecimalsToDongAndBasisPoints() {
+        assertThat(Amortization.toVnd(new BigDecimal("1000.50"))).isEqualTo(1_001);
+        assertThat(Amortization.toVnd(new BigDecimal("1000.49"))).isEqualTo(1_000);
+        assertThat(Amortization.toBasisPoints(new BigDecimal("12.5"))).isEqualTo(1250);
+        assertThat(Amortization.toBasisPoints(new BigDecimal("8.755"))).isEqualTo(876);
+    }
+}
@@ -0,0 +1,84 @@
+package com.nexo.server.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CodeGeneratorTest {
+
+    @Test
+    void idsAreStrictlyIncreasingOnOneThread() {
+        long previous = CodeGenerator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            long next = CodeGenerator.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = CodeGenerator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> seen = new HashSet<>(threads * perThread * 2);
+            for (Future<long[]> result : results) {
+                for (long id : result.get(30, TimeUnit.SECONDS)) {
+                    assertThat(seen.add(id)).as("duplicate id %d", id).isTrue();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void idCarriesTheNodeId() {
+        long original = CodeGenerator.getNodeId();
+        try {
+            CodeGenerator.setNodeId(1023);
+            assertThat((CodeGenerator.nextId() >>> 12) & 1023).isEqualTo(1023);
+            CodeGenerator.setNodeId(5);
+            assertThat((CodeGenerator.nextId() >>> 12) & 1023).isEqualTo(5);
+        } finally {
+            CodeGenerator.setNodeId(original);
+        }
+    }
+
+    @Test
+    void nodeIdOutsideTenBitsIsRejected() {
+        assertThatThrownBy(() -> CodeGenerator.setNodeId(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CodeGenerator.setNodeId(1024)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void codesArePrefixedCrockfordBase32AndSortByCreation() {
+        String first = CodeGenerator.generateTransactionCode();
+        String second = CodeGenerator.generateTransactionCode();
+
+        assertThat(first).matches("TXN[0-9A-HJKMNP-TV-Z]{13}");
+        assertThat(CodeGenerator.generateLoanCode()).matches("LOAN[0-9A-HJKMNP-TV-Z]{13}");
+        assertThat(first).isLessThan(second);
+    }
+}
@@ -0,0 +1,64 @@
+package com.nexo.server.utils;
+
+import com.nexo.server.exceptions.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CursorCodecTest {
+
+    @Test
+    void roundTripsTimestampAndId() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 14, 9, 26, 53, 589_793_000);
+
+        CursorCodec.Cursor cursor = CursorCodec.decode(CursorCodec.encode(createdAt, 42L));
+
+        assertThat(cursor.createdAt()).isEqualTo(createdAt);
+        assertThat(cursor.id()).isEqualTo(42L);
+    }
+
+    @Test
+    void roundTripsWholeSecondsAndLargeIds() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        CursorCodec.Cursor cursor = CursorCodec.decode(CursorCodec.encode(createdAt, Long.MAX_VALUE));
+
+        assertThat(cursor.createdAt()).isEqualTo(createdAt);
+        assertThat(cursor.id()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String encoded = CursorCodec.encode(LocalDateTime.of(2025, 12, 31, 23, 59, 59, 999_999_000), 987_654_321L);
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void blankCursorMeansFirstPage() {
+        assertThat(CursorCodec.decode(null)).isNull();
+        assertThat(CursorCodec.decode("")).isNull();
+        assertThat(CursorCodec.decode("  ")).isNull();
+    }
+
+    @Test
+    void malformedCursorsAreBadRequests() {
+        assertThatThrownBy(() -> CursorCodec.decode("not base64!"))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> CursorCodec.decode(encodeRaw("no-separator")))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> CursorCodec.decode(encodeRaw("yesterday|1")))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> CursorCodec.decode(encodeRaw("2025-01-01T00:00|abc")))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
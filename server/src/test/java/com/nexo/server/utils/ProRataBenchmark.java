@@ -0,0 +1,93 @@
+package com.nexo.server.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting one installment's principal and interest across a loan's lenders with
+ * {@link ProRata}, reusing its buffers, against the per-lender {@code BigDecimal} share
+ * ratio loop it replaced.
+ *
+ * <p>Run with {@code main} from the test classpath after {@code mvn test-compile}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProRataBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int lenders;
+
+    private long principal;
+    private long interest;
+    private long[] weights;
+    private BigDecimal[] amounts;
+    private BigDecimal funded;
+    private final ProRata proRata = new ProRata();
+    private long[] principalShares;
+    private long[] interestShares;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(23);
+        weights = new long[lenders];
+        amounts = new BigDecimal[lenders];
+        long total = 0;
+        for (int i = 0; i < lenders; i++) {
+            // 100k..10M VND stakes in whole thousands
+            weights[i] = 1_000L * (100 + random.nextInt(9_901));
+            amounts[i] = BigDecimal.valueOf(weights[i]);
+            total += weights[i];
+        }
+        funded = BigDecimal.valueOf(total);
+        principal = total / 12;
+        interest = total / 100;
+        principalShares = new long[lenders];
+        interestShares = new long[lenders];
+    }
+
+    @Benchmark
+    public long proRata() {
+        proRata.allocate(principal, weights, lenders, principalShares);
+        proRata.allocate(interest, weights, lenders, interestShares);
+        return principalShares[lenders - 1] + interestShares[lenders - 1];
+    }
+
+    @Benchmark
+    public BigDecimal legacy() {
+        BigDecimal principalAmount = BigDecimal.valueOf(principal);
+        BigDecimal interestAmount = BigDecimal.valueOf(interest);
+        BigDecimal distributed = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts) {
+            BigDecimal shareRatio = amount.divide(funded, 10, RoundingMode.HALF_UP);
+            BigDecimal principalShare = principalAmount.multiply(shareRatio).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal interestShare = interestAmount.multiply(shareRatio).setScale(2, RoundingMode.HALF_UP);
+            distributed = distributed.add(principalShare.add(interestShare));
+        }
+        return distributed;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProRataBenchmark.class.getSimpleName()).build()).run();
+    }
+}
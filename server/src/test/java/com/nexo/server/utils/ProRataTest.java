@@ -0,0 +1,101 @@
+package com.nexo.server.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProRataTest {
+
+    @Test
+    void partsSumToTheAmountAndStayWithinOneOfTheExactShare() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2_000; round++) {
+            int n = 1 + random.nextInt(50);
+            long[] weights = new long[n];
+            for (int i = 0; i < n; i++) {
+                weights[i] = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(1_000_000_000);
+            }
+            weights[random.nextInt(n)] = 1 + random.nextInt(1_000);
+            long amount = random.nextLong() >>> 20;
+
+            assertSplit(amount, weights, ProRata.split(amount, weights));
+        }
+    }
+
+    @Test
+    void productsThatOverflowALongAreSplitExactly() {
+        long amount = Long.MAX_VALUE / 3;
+        long[] weights = {Long.MAX_VALUE / 4, Long.MAX_VALUE / 5, 7};
+
+        assertSplit(amount, weights, ProRata.split(amount, weights));
+    }
+
+    @Test
+    void leftoverDongGoesToLargestRemaindersThenLowerIndex() {
+        assertThat(ProRata.split(100, 1, 1, 1)).containsExactly(34, 33, 33);
+        assertThat(ProRata.split(2, 1, 1, 1)).containsExactly(1, 1, 0);
+        // Exact shares 3.3, 3.6, 3.1: the single leftover dong goes to the .6
+        assertThat(ProRata.split(10, 33, 36, 31)).containsExactly(3, 4, 3);
+    }
+
+    @Test
+    void splitIsDeterministicAndReusedInstancesMatchOneOffSplits() {
+        long[] weights = {5, 3, 3, 3, 0, 11, 7};
+        long[] expected = ProRata.split(1_000_003, weights);
+
+        ProRata proRata = new ProRata();
+        long[] into = new long[weights.length];
+        for (int i = 0; i < 10; i++) {
+            // Dirty the scratch buffers with a different split in between
+            proRata.allocate(17, new long[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, 9, new long[9]);
+            proRata.allocate(1_000_003, weights, weights.length, into);
+            assertThat(into).containsExactly(expected);
+            assertThat(ProRata.split(1_000_003, weights)).containsExactly(expected);
+        }
+    }
+
+    @Test
+    void onlyTheFirstNWeightsAreUsed() {
+        long[] into = new long[4];
+        new ProRata().allocate(10, new long[]{1, 1, 999, 999}, 2, into);
+
+        assertThat(into).containsExactly(5, 5, 0, 0);
+    }
+
+    @Test
+    void zeroWeightsGetNothing() {
+        assertThat(ProRata.split(1_000, 0, 1, 0, 1)).containsExactly(0, 500, 0, 500);
+        assertThat(ProRata.split(0, 3, 5)).containsExactly(0, 0);
+    }
+
+    @Test
+    void allZeroOrNoWeightsAreRejected() {
+        assertThatThrownBy(() -> ProRata.split(100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProRata.split(100, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void negativeInputsAreRejected() {
+        assertThatThrownBy(() -> ProRata.split(-1, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProRata.split(100, 1, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertSplit(long amount, long[] weights, long[] parts) {
+        BigInteger total = BigInteger.ZERO;
+        for (long weight : weights) {
+            total = total.add(BigInteger.valueOf(weight));
+        }
+        assertThat(Arrays.stream(parts).sum()).isEqualTo(amount);
+        for (int i = 0; i < weights.length; i++) {
+            // |part - amount * w / W| < 1  <=>  |part * W - amount * w| < W
+            BigInteger exact = BigInteger.valueOf(amount).multiply(BigInteger.valueOf(weights[i]));
+            BigInteger error = BigInteger.valueOf(parts[i]).multiply(total).subtract(exact).abs();
+            assertThat(error).as("part %d of %s", i, Arrays.toString(weights)).isLessThan(total);
+        }
+    }
+}